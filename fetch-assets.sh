@@ -0,0 +1,32 @@
+#!/usr/bin/env bash
+#
+# Downloads the front-end libraries the templates use into src/main/resources/webroot/assets, so that the wiki
+# serves them itself, and checks each one against the integrity hash of the published file.
+
+set -euo pipefail
+
+ASSETS="$(dirname "$0")/src/main/resources/webroot/assets"
+mkdir -p "$ASSETS"
+
+fetch() {
+  local name="$1" url="$2" integrity="$3"
+  local file="$ASSETS/$name"
+  curl -fsSL -o "$file.tmp" "$url"
+  local actual="sha384-$(openssl dgst -sha384 -binary "$file.tmp" | openssl base64 -A)"
+  if [ "$actual" != "$integrity" ]; then
+    rm -f "$file.tmp"
+    echo "$url does not match $integrity (got $actual)" >&2
+    exit 1
+  fi
+  mv "$file.tmp" "$file"
+  echo "$name"
+}
+
+fetch bootstrap.min.css https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/css/bootstrap.min.css \
+  sha384-AysaV+vQoT3kOAXZkl02PThvDr8HYKPZhNT5h/CXfBThSRXQ6jW5DO2ekP5ViFdi
+fetch jquery.min.js https://ajax.googleapis.com/ajax/libs/jquery/3.1.1/jquery.min.js \
+  sha384-3ceskX3iaEnIogmQchP8opvBy3Mi7Ce34nWjpBIwVTHfGYWQS9jwHDVRnpKKHJg7
+fetch tether.min.js https://cdnjs.cloudflare.com/ajax/libs/tether/1.3.7/js/tether.min.js \
+  sha384-XTs3FgkjiBgo8qjEjBk0tGmf3wPrWtA6coPfQDfFEY8AnYJwjalXCiosYRBIBZX8
+fetch bootstrap.min.js https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/js/bootstrap.min.js \
+  sha384-BLiI7JTZm+JWlgKa0M0kGRpJbF2J8q+qreVrKBC47e3K6BW78kGLrCkeRX6I9RoK
@@ -39,16 +39,17 @@ import io.vertx.serviceproxy.ProxyHelper;
 import io.vertx.serviceproxy.ProxyHandler;
 import io.vertx.serviceproxy.ServiceException;
 import io.vertx.serviceproxy.ServiceExceptionMessageCodec;
+import io.vertx.starter.database.DeadlineTracker;
+import io.vertx.core.Vertx;
+import java.util.HashMap;
+import io.vertx.starter.database.WikiDatabaseService;
 import io.vertx.core.json.JsonArray;
 import java.util.List;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.starter.database.SqlQuery;
-import io.vertx.core.Vertx;
-import java.util.HashMap;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
-import io.vertx.starter.database.WikiDatabaseService;
 
 /*
   Generated Proxy code - DO NOT EDIT
@@ -129,6 +130,7 @@ public class WikiDatabaseServiceVertxProxyHandler extends ProxyHandler {
       switch (action) {
 
 
+
         case "fetchAllPages": {
           service.fetchAllPages(createHandler(msg));
           break;
@@ -141,6 +143,10 @@ public class WikiDatabaseServiceVertxProxyHandler extends ProxyHandler {
           service.fetchPageById(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
           break;
         }
+        case "fetchPageName": {
+          service.fetchPageName(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
+          break;
+        }
         case "createPage": {
           service.createPage((java.lang.String)json.getValue("title"), (java.lang.String)json.getValue("markdown"), createHandler(msg));
           break;
@@ -149,6 +155,14 @@ public class WikiDatabaseServiceVertxProxyHandler extends ProxyHandler {
           service.savePage(json.getValue("id") == null ? null : (json.getLong("id").intValue()), (java.lang.String)json.getValue("markdown"), createHandler(msg));
           break;
         }
+        case "savePageIfVersion": {
+          service.savePageIfVersion(json.getValue("id") == null ? null : (json.getLong("id").intValue()), json.getValue("version") == null ? null : (json.getLong("version").intValue()), (java.lang.String)json.getValue("markdown"), createHandler(msg));
+          break;
+        }
+        case "savePageFromFile": {
+          service.savePageFromFile(json.getValue("id") == null ? null : (json.getLong("id").intValue()), (java.lang.String)json.getValue("file"), createHandler(msg));
+          break;
+        }
         case "deletePage": {
           service.deletePage(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
           break;
@@ -157,6 +171,42 @@ public class WikiDatabaseServiceVertxProxyHandler extends ProxyHandler {
           service.fetchAllPagesData(createListHandler(msg));
           break;
         }
+        case "importPages": {
+          service.importPages((io.vertx.core.json.JsonArray)json.getValue("pages"), createHandler(msg));
+          break;
+        }
+        case "fetchPageSections": {
+          service.fetchPageSections(json.getValue("id") == null ? null : (json.getLong("id").intValue()), createHandler(msg));
+          break;
+        }
+        case "fetchPageSection": {
+          service.fetchPageSection(json.getValue("id") == null ? null : (json.getLong("id").intValue()), json.getValue("index") == null ? null : (json.getLong("index").intValue()), createHandler(msg));
+          break;
+        }
+        case "savePageSection": {
+          service.savePageSection(json.getValue("id") == null ? null : (json.getLong("id").intValue()), json.getValue("index") == null ? null : (json.getLong("index").intValue()), (java.lang.String)json.getValue("markdown"), createHandler(msg));
+          break;
+        }
+        case "savePageSectionIfVersion": {
+          service.savePageSectionIfVersion(json.getValue("id") == null ? null : (json.getLong("id").intValue()), json.getValue("index") == null ? null : (json.getLong("index").intValue()), json.getValue("version") == null ? null : (json.getLong("version").intValue()), (java.lang.String)json.getValue("markdown"), createHandler(msg));
+          break;
+        }
+        case "fetchChanges": {
+          service.fetchChanges((java.lang.String)json.getValue("since"), json.getValue("limit") == null ? null : (json.getLong("limit").intValue()), createHandler(msg));
+          break;
+        }
+        case "fetchBacklinks": {
+          service.fetchBacklinks((java.lang.String)json.getValue("name"), createHandler(msg));
+          break;
+        }
+        case "fetchExistingPages": {
+          service.fetchExistingPages((io.vertx.core.json.JsonArray)json.getValue("names"), createHandler(msg));
+          break;
+        }
+        case "fetchStatistics": {
+          service.fetchStatistics(createHandler(msg));
+          break;
+        }
         default: {
           throw new IllegalStateException("Invalid action: " + action);
         }
@@ -1,33 +1,170 @@
 package io.vertx.starter;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.backup.BackupVerticle;
 import io.vertx.starter.database.WikiDataBaseVerticle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Deploys the verticles of the roles listed in {@link #CONFIG_ROLES}, all of them by default.
+ * <p>
+ * Started with {@code -cluster}, each JVM can take a subset of the roles, e.g. one node with {@code ["db", "backup"]}
+ * and several with {@code ["http"]}: service proxies and page change events go over the clustered event bus.
+ * <p>
+ * All verticles are deployed at once: the HTTP verticles build their router and load their templates while the
+ * database verticles warm up their connection pool, and only wait for the database where they need it. Once
+ * everything is deployed, the {@link StartupTimer} report is logged as JSON, and written to
+ * {@link #CONFIG_STARTUP_REPORT_FILE} when set.
+ * <p>
+ * The HTTP verticles can be replaced without downtime by sending a message to {@link #REDEPLOY_ADDRESS}.
+ */
 public class MainVerticle extends AbstractVerticle {
 
+	public static final String CONFIG_ROLES = "main.roles";
+	public static final String CONFIG_HTTP_INSTANCES = "main.http.instances";
+	public static final String CONFIG_STARTUP_REPORT_FILE = "main.startup_report.file";
+
+	public static final String ROLE_DB = "db";
+	public static final String ROLE_BACKUP = "backup";
+	public static final String ROLE_HTTP = "http";
+
+	/**
+	 * Local event bus address that triggers a rolling redeploy of the HTTP verticles, see
+	 * {@link #redeployHttp(Message)}.
+	 */
+	public static final String REDEPLOY_ADDRESS = "main.redeploy.http";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
+
+	private String httpDeployment;
+	private int httpGeneration;
+	private boolean redeploying;
+
 	@Override
 	public void start(Future<Void> startFuture) throws Exception {
+		StartupTimer timer = StartupTimer.shared(vertx);
+		long start = System.currentTimeMillis();
 
-		Future<String> dbVerticleDeployment = Future.future();
-		vertx.deployVerticle(new WikiDataBaseVerticle(), dbVerticleDeployment.completer());
+		JsonArray roles = config().getJsonArray(CONFIG_ROLES, new JsonArray().add(ROLE_DB).add(ROLE_BACKUP).add(ROLE_HTTP));
+		DeploymentOptions options = new DeploymentOptions().setConfig(config());
+		List<Future> deployments = new ArrayList<>();
 
-		dbVerticleDeployment.compose(id -> {
-			Future<String> httpVerticleDeployment = Future.future();
-			vertx.deployVerticle(
-					"io.vertx.starter.http.HttpServerVerticle",
-					new DeploymentOptions().setInstances(2),
-					httpVerticleDeployment.completer());
+		if (roles.contains(ROLE_DB)) {
+			int shards = config().getInteger(WikiDataBaseVerticle.CONFIG_WIKIDB_SHARDS, 1);
+			if (shards <= 1) {
+				Future<String> dbVerticleDeployment = Future.future();
+				vertx.deployVerticle(new WikiDataBaseVerticle(), options,
+						timer.timed("main.deploy.db", dbVerticleDeployment.completer()));
+				deployments.add(dbVerticleDeployment);
+			} else {
+				for (int shard = 0; shard < shards; shard++) {
+					Future<String> shardDeployment = Future.future();
+					vertx.deployVerticle(new WikiDataBaseVerticle(),
+							new DeploymentOptions().setConfig(WikiDataBaseVerticle.shardConfig(config(), shard)),
+							timer.timed("main.deploy.db." + shard, shardDeployment.completer()));
+					deployments.add(shardDeployment);
+				}
+			}
+		}
 
-			return httpVerticleDeployment;
+		if (roles.contains(ROLE_BACKUP)) {
+			Future<String> backupVerticleDeployment = Future.future();
+			vertx.deployVerticle(new BackupVerticle(), options,
+					timer.timed("main.deploy.backup", backupVerticleDeployment.completer()));
+			deployments.add(backupVerticleDeployment);
+		}
+
+		if (roles.contains(ROLE_HTTP)) {
+			Future<String> httpVerticleDeployment = Future.future();
+			deployHttp(false, timer.timed("main.deploy.http", httpVerticleDeployment.completer()));
+			deployments.add(httpVerticleDeployment);
+			vertx.eventBus().<JsonObject>localConsumer(REDEPLOY_ADDRESS, this::redeployHttp);
+		}
 
-		}).setHandler(asyncResult -> {
+		CompositeFuture.all(deployments).setHandler(asyncResult -> {
+			timer.record("main.start", start);
 			if (asyncResult.succeeded()) {
+				reportStartup(timer.report());
 				startFuture.complete();
 			} else {
 				startFuture.fail(asyncResult.cause());
 			}
 		});
 	}
+
+	private void deployHttp(boolean isolated, Handler<AsyncResult<String>> handler) {
+		DeploymentOptions options = new DeploymentOptions()
+				.setConfig(config())
+				.setInstances(config().getInteger(CONFIG_HTTP_INSTANCES, 2));
+		if (isolated) {
+			options.setIsolationGroup("http-" + (++httpGeneration))
+					.setIsolatedClasses(Collections.singletonList("io.vertx.starter.http.*"));
+		}
+		vertx.deployVerticle("io.vertx.starter.http.HttpServerVerticle", options, ar -> {
+			if (ar.succeeded()) {
+				httpDeployment = ar.result();
+			}
+			handler.handle(ar);
+		});
+	}
+
+	/**
+	 * Rolling redeploy of the HTTP verticles: the new instances listen before the old ones drain, so no request is
+	 * refused. With {@code {"isolated": true}} the new instances load the {@code http} package classes again from the
+	 * class path, which picks up recompiled code without restarting the process.
+	 */
+	private void redeployHttp(Message<JsonObject> message) {
+		if (redeploying) {
+			message.fail(409, "A redeploy is already in progress");
+			return;
+		}
+		redeploying = true;
+		String previous = httpDeployment;
+		long start = System.currentTimeMillis();
+		JsonObject request = message.body() != null ? message.body() : new JsonObject();
+		deployHttp(request.getBoolean("isolated", false), deployed -> {
+			if (deployed.failed()) {
+				redeploying = false;
+				LOGGER.error("Redeploy failed, keeping the running HTTP verticles", deployed.cause());
+				message.fail(500, deployed.cause().getMessage());
+				return;
+			}
+			vertx.undeploy(previous, undeployed -> {
+				redeploying = false;
+				if (undeployed.failed()) {
+					LOGGER.error("Could not undeploy the previous HTTP verticles", undeployed.cause());
+				}
+				LOGGER.info("Redeployed the HTTP verticles in {} ms", System.currentTimeMillis() - start);
+				message.reply(new JsonObject()
+						.put("deploymentId", deployed.result())
+						.put("previous", previous)
+						.put("duration", System.currentTimeMillis() - start));
+			});
+		});
+	}
+
+	private void reportStartup(JsonObject report) {
+		LOGGER.info("Startup report: {}", report.encode());
+		String file = config().getString(CONFIG_STARTUP_REPORT_FILE);
+		if (file != null) {
+			vertx.fileSystem().writeFile(file, report.toBuffer(), ar -> {
+				if (ar.failed()) {
+					LOGGER.error("Could not write the startup report", ar.cause());
+				}
+			});
+		}
+	}
 }
@@ -0,0 +1,41 @@
+package io.vertx.starter;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds a value in a local shared map of a Vert.x instance, for state that outlives the generations of isolated
+ * HTTP verticles (see {@link MainVerticle#REDEPLOY_ADDRESS}).
+ * <p>
+ * An isolated generation loads its own copy of the {@code http} classes, so an instance of one of them cannot be
+ * handed to the next generation. This class is not isolated, and neither are the classes of the JDK: a value made of
+ * those is the same for every generation, under a single stable key.
+ */
+public final class SharedState<T> implements Shareable {
+
+	private final T value;
+
+	private SharedState(T value) {
+		this.value = value;
+	}
+
+	/**
+	 * @return the value under {@code key} in the local map {@code name}, created by {@code factory} on first use
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(Vertx vertx, String name, String key, Supplier<T> factory) {
+		LocalMap<String, SharedState<?>> map = vertx.sharedData().getLocalMap(name);
+		SharedState<?> state = map.get(key);
+		if (state == null) {
+			SharedState<T> created = new SharedState<>(factory.get());
+			state = map.putIfAbsent(key, created);
+			if (state == null) {
+				state = created;
+			}
+		}
+		return (T) state.value;
+	}
+}
@@ -0,0 +1,77 @@
+package io.vertx.starter;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects how long each startup phase of the verticles took, for the report {@link MainVerticle} logs once
+ * everything is deployed. Offsets are relative to the JVM start, so the report also gives the time to the first
+ * request the server can take.
+ * <p>
+ * Shared by all the verticles of a Vert.x instance, see {@link #shared(Vertx)}; phases may be recorded from any thread.
+ */
+public class StartupTimer implements Shareable {
+
+	private static final String SHARED_MAP = "wiki.startup";
+	private static final String SHARED_KEY = "timer";
+
+	private final long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+	private final List<JsonObject> phases = new ArrayList<>();
+
+	public static StartupTimer shared(Vertx vertx) {
+		LocalMap<String, StartupTimer> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+		StartupTimer timer = new StartupTimer();
+		StartupTimer existing = map.putIfAbsent(SHARED_KEY, timer);
+		return existing != null ? existing : timer;
+	}
+
+	/**
+	 * Records a phase that started at {@code start} (epoch milliseconds) and ends now.
+	 */
+	public void record(String phase, long start) {
+		long now = System.currentTimeMillis();
+		JsonObject entry = new JsonObject()
+				.put("phase", phase)
+				.put("start", start - jvmStart)
+				.put("duration", now - start)
+				.put("thread", Thread.currentThread().getName());
+		synchronized (phases) {
+			phases.add(entry);
+		}
+	}
+
+	/**
+	 * @return {@code handler}, recording the phase when it is called
+	 */
+	public <T> Handler<AsyncResult<T>> timed(String phase, Handler<AsyncResult<T>> handler) {
+		long start = System.currentTimeMillis();
+		return ar -> {
+			record(phase + (ar.failed() ? " (failed)" : ""), start);
+			handler.handle(ar);
+		};
+	}
+
+	/**
+	 * @return the phases sorted by start time, and {@code ready}, the time from the JVM start to now
+	 */
+	public JsonObject report() {
+		List<JsonObject> sorted;
+		synchronized (phases) {
+			sorted = new ArrayList<>(phases);
+		}
+		sorted.sort(Comparator.comparing(phase -> phase.getLong("start")));
+		return new JsonObject()
+				.put("ready", System.currentTimeMillis() - jvmStart)
+				.put("phases", new JsonArray(sorted));
+	}
+}
@@ -0,0 +1,34 @@
+package io.vertx.starter.backup;
+
+import io.vertx.codegen.annotations.Fluent;
+import io.vertx.codegen.annotations.ProxyGen;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Runs wiki backups as background jobs.
+ * <p>
+ * Jobs are described by JSON objects with an {@code id}, a {@code status} ({@code running}, {@code succeeded} or
+ * {@code failed}) and progress counters.
+ */
+@ProxyGen
+public interface BackupService {
+
+	static BackupService createProxy(Vertx vertx, String address) {
+		return new BackupServiceVertxEBProxy(vertx, address);
+	}
+
+	/**
+	 * Starts a backup job, or returns the job that is already running.
+	 */
+	@Fluent
+	BackupService startBackup(Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Fetches a job by id; the result has {@code found} set to {@code false} for unknown or expired jobs.
+	 */
+	@Fluent
+	BackupService fetchJob(String id, Handler<AsyncResult<JsonObject>> resultHandler);
+}
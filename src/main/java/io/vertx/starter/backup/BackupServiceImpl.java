@@ -0,0 +1,295 @@
+package io.vertx.starter.backup;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.database.WikiDatabaseService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Incremental backups: only the pages changed since the change log sequence saved in the manifest are read, and of
+ * those only the ones whose content hash differs from the last successful upload are sent, in batches, each retried
+ * with exponential backoff. The manifest is saved after every batch, so a failed job resumes where it stopped on the
+ * next run.
+ * <p>
+ * The first run, and any run the database answers with a {@code reset}, lists every page instead; the pages backed up
+ * but no longer listed are then deleted from the backup.
+ */
+public class BackupServiceImpl implements BackupService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BackupServiceImpl.class);
+
+	private static final int MAX_JOBS = 20;
+
+	private final Vertx vertx;
+	private final WikiDatabaseService dbService;
+	private final BackupTarget target;
+	private final String manifestFile;
+	private final int batchSize;
+	private final int maxAttempts;
+	private final long initialDelay;
+	private final long maxDelay;
+
+	private final Map<String, JsonObject> jobs = new LinkedHashMap<String, JsonObject>() {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+			return size() > MAX_JOBS;
+		}
+	};
+
+	private JsonObject running;
+
+	BackupServiceImpl(Vertx vertx, WikiDatabaseService dbService, BackupTarget target, JsonObject config) {
+		this.vertx = vertx;
+		this.dbService = dbService;
+		this.target = target;
+		this.manifestFile = config.getString(BackupVerticle.CONFIG_BACKUP_MANIFEST_FILE, "db/backup-manifest.json");
+		this.batchSize = config.getInteger(BackupVerticle.CONFIG_BACKUP_BATCH_SIZE, 20);
+		this.maxAttempts = config.getInteger(BackupVerticle.CONFIG_BACKUP_RETRY_MAX_ATTEMPTS, 5);
+		this.initialDelay = config.getLong(BackupVerticle.CONFIG_BACKUP_RETRY_INITIAL_DELAY, 500L);
+		this.maxDelay = config.getLong(BackupVerticle.CONFIG_BACKUP_RETRY_MAX_DELAY, 30_000L);
+	}
+
+	@Override
+	public BackupService startBackup(Handler<AsyncResult<JsonObject>> resultHandler) {
+		if (running != null) {
+			resultHandler.handle(Future.succeededFuture(running.copy()));
+			return this;
+		}
+
+		JsonObject job = new JsonObject()
+				.put("id", UUID.randomUUID().toString())
+				.put("status", "running")
+				.put("startedAt", Instant.now())
+				.put("changed", 0)
+				.put("deleted", 0)
+				.put("uploaded", 0)
+				.put("batches", 0)
+				.put("retries", 0);
+		jobs.put(job.getString("id"), job);
+		running = job;
+		resultHandler.handle(Future.succeededFuture(job.copy()));
+
+		loadManifest(manifest -> {
+			if (manifest.failed()) {
+				finish(job, manifest.cause());
+				return;
+			}
+			job.put("url", manifest.result().getString("url"));
+			run(job, manifest.result(), null);
+		});
+		return this;
+	}
+
+	@Override
+	public BackupService fetchJob(String id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		JsonObject job = jobs.get(id);
+		if (job == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+		} else {
+			resultHandler.handle(Future.succeededFuture(job.copy().put("found", true)));
+		}
+		return this;
+	}
+
+	/**
+	 * Backs up the next page of changes after the sequence in the manifest, then carries on until there are no more.
+	 *
+	 * @param listed the pages seen so far while the database lists every page, {@code null} otherwise
+	 */
+	private void run(JsonObject job, JsonObject manifest, Set<String> listed) {
+		String since = manifest.getString("sequence", "0");
+		dbService.fetchChanges(since, batchSize, reply -> {
+			if (reply.failed()) {
+				finish(job, reply.cause());
+				return;
+			}
+			JsonObject changes = reply.result();
+			JsonObject hashes = manifest.getJsonObject("pages", new JsonObject());
+			manifest.put("pages", hashes);
+
+			// Starting over, or told to: the pages backed up but missing from the full listing were deleted
+			Set<String> seen = listed;
+			if (seen == null && ("0".equals(since) || changes.getBoolean("reset"))) {
+				seen = new HashSet<>();
+			}
+
+			JsonObject files = new JsonObject();
+			int changed = 0;
+			int deleted = 0;
+			for (Object change : changes.getJsonArray("pages")) {
+				JsonObject page = (JsonObject) change;
+				String name = page.getString("name");
+				if (page.getBoolean("deleted")) {
+					if (hashes.containsKey(name)) {
+						deleted++;
+						files.putNull(name);
+					}
+					continue;
+				}
+				if (seen != null) {
+					seen.add(name);
+				}
+				String content = page.getString("markdown");
+				if (!hash(content).equals(hashes.getString(name))) {
+					changed++;
+					files.put(name, content);
+				}
+			}
+			boolean more = changes.getBoolean("more");
+			if (seen != null && !more && manifest.getString("remoteId") != null) {
+				for (String name : hashes.fieldNames()) {
+					if (!seen.contains(name) && !files.containsKey(name)) {
+						deleted++;
+						files.putNull(name);
+					}
+				}
+			}
+			job.put("changed", job.getInteger("changed") + changed);
+			job.put("deleted", job.getInteger("deleted") + deleted);
+
+			Set<String> next = seen;
+			uploadBatches(job, manifest, batches(files), 0, uploaded -> {
+				if (uploaded.failed()) {
+					finish(job, uploaded.cause());
+					return;
+				}
+				// Only past this point are all the changes up to the sequence backed up
+				manifest.put("sequence", changes.getString("sequence"));
+				vertx.fileSystem().writeFile(manifestFile, manifest.toBuffer(), written -> {
+					if (written.failed()) {
+						finish(job, written.cause());
+					} else if (more) {
+						run(job, manifest, next);
+					} else {
+						finish(job, null);
+					}
+				});
+			});
+		});
+	}
+
+	private List<JsonObject> batches(JsonObject files) {
+		List<JsonObject> batches = new ArrayList<>();
+		JsonObject batch = new JsonObject();
+		for (String name : files.fieldNames()) {
+			batch.put(name, files.getValue(name));
+			if (batch.size() == batchSize) {
+				batches.add(batch);
+				batch = new JsonObject();
+			}
+		}
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	private void uploadBatches(JsonObject job, JsonObject manifest, List<JsonObject> batches, int index,
+							   Handler<AsyncResult<Void>> resultHandler) {
+		if (index == batches.size()) {
+			resultHandler.handle(Future.succeededFuture());
+			return;
+		}
+		JsonObject files = batches.get(index);
+		upload(job, manifest.getString("remoteId"), files, 1, initialDelay, ar -> {
+			if (ar.failed()) {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			manifest.put("remoteId", ar.result().getString("id"));
+			manifest.put("url", ar.result().getString("url"));
+			JsonObject hashes = manifest.getJsonObject("pages");
+			files.forEach(file -> {
+				if (file.getValue() == null) {
+					hashes.remove(file.getKey());
+				} else {
+					hashes.put(file.getKey(), hash((String) file.getValue()));
+				}
+			});
+			job.put("url", manifest.getString("url"));
+			job.put("uploaded", job.getInteger("uploaded") + files.size());
+			job.put("batches", job.getInteger("batches") + 1);
+
+			vertx.fileSystem().writeFile(manifestFile, manifest.toBuffer(), written -> {
+				if (written.succeeded()) {
+					uploadBatches(job, manifest, batches, index + 1, resultHandler);
+				} else {
+					resultHandler.handle(Future.failedFuture(written.cause()));
+				}
+			});
+		});
+	}
+
+	private void upload(JsonObject job, String remoteId, JsonObject files, int attempt, long delay,
+						Handler<AsyncResult<JsonObject>> resultHandler) {
+		target.upload(remoteId, files, ar -> {
+			if (ar.succeeded() || attempt >= maxAttempts) {
+				resultHandler.handle(ar);
+			} else {
+				LOGGER.warn("Backup upload attempt {} failed, retrying in {} ms: {}", attempt, delay, ar.cause().getMessage());
+				job.put("retries", job.getInteger("retries") + 1);
+				vertx.setTimer(delay, id ->
+						upload(job, remoteId, files, attempt + 1, Math.min(delay * 2, maxDelay), resultHandler));
+			}
+		});
+	}
+
+	private void finish(JsonObject job, Throwable failure) {
+		running = null;
+		job.put("finishedAt", Instant.now());
+		if (failure == null) {
+			job.put("status", "succeeded");
+			LOGGER.info("Backup {} uploaded {} files", job.getString("id"), job.getInteger("uploaded"));
+		} else {
+			job.put("status", "failed").put("error", failure.getMessage());
+			LOGGER.error("Backup " + job.getString("id") + " failed", failure);
+		}
+	}
+
+	private void loadManifest(Handler<AsyncResult<JsonObject>> handler) {
+		vertx.fileSystem().exists(manifestFile, exists -> {
+			if (exists.failed()) {
+				handler.handle(Future.failedFuture(exists.cause()));
+			} else if (!exists.result()) {
+				handler.handle(Future.succeededFuture(new JsonObject()));
+			} else {
+				vertx.fileSystem().readFile(manifestFile, read -> {
+					if (read.succeeded()) {
+						handler.handle(Future.succeededFuture(read.result().toJsonObject()));
+					} else {
+						handler.handle(Future.failedFuture(read.cause()));
+					}
+				});
+			}
+		});
+	}
+
+	private static String hash(String content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package io.vertx.starter.backup;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Remote storage that backups are uploaded to.
+ */
+public interface BackupTarget {
+
+	/**
+	 * Uploads one batch of files.
+	 *
+	 * @param remoteId      the id returned by a previous upload, or {@code null} to create a new backup
+	 * @param files         file name to content; a {@code null} content deletes the file
+	 * @param resultHandler completed with the remote backup, holding at least its {@code id} and {@code url}
+	 */
+	void upload(String remoteId, JsonObject files, Handler<AsyncResult<JsonObject>> resultHandler);
+}
@@ -0,0 +1,44 @@
+package io.vertx.starter.backup;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.serviceproxy.ProxyHelper;
+import io.vertx.starter.StartupTimer;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.database.WikiDatabaseService;
+
+/**
+ * Hosts the {@link BackupService}, so that backup jobs outlive the HTTP requests that start them and can be looked up
+ * from any {@code HttpServerVerticle} instance.
+ */
+public class BackupVerticle extends AbstractVerticle {
+
+	public static final String CONFIG_BACKUP_QUEUE = "backup.queue";
+	public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+
+	public static final String CONFIG_BACKUP_MANIFEST_FILE = "backup.manifest.file";
+	public static final String CONFIG_BACKUP_BATCH_SIZE = "backup.batch_size";
+	public static final String CONFIG_BACKUP_RETRY_MAX_ATTEMPTS = "backup.retry.max_attempts";
+	public static final String CONFIG_BACKUP_RETRY_INITIAL_DELAY = "backup.retry.initial_delay";
+	public static final String CONFIG_BACKUP_RETRY_MAX_DELAY = "backup.retry.max_delay";
+
+	public static final String CONFIG_BACKUP_TARGET_HOST = "backup.target.host";
+	public static final String CONFIG_BACKUP_TARGET_PORT = "backup.target.port";
+	public static final String CONFIG_BACKUP_TARGET_SSL = "backup.target.ssl";
+	public static final String CONFIG_BACKUP_TARGET_TOKEN = "backup.target.token";
+
+	@Override
+	public void start(Future<Void> startFuture) throws Exception {
+		WikiDatabaseService dbService = WikiDatabaseService.createProxy(vertx,
+				config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue"),
+				config().getInteger(WikiDataBaseVerticle.CONFIG_WIKIDB_SHARDS, 1), new DeliveryOptions());
+		long start = System.currentTimeMillis();
+		BackupTarget target = new GistBackupTarget(vertx, config());
+		StartupTimer.shared(vertx).record("backup.web_client", start);
+		BackupService service = new BackupServiceImpl(vertx, dbService, target, config());
+		ProxyHelper.registerService(BackupService.class, vertx, service,
+				config().getString(CONFIG_BACKUP_QUEUE, "backup.queue"));
+		startFuture.complete();
+	}
+}
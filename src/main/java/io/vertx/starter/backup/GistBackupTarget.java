@@ -0,0 +1,81 @@
+package io.vertx.starter.backup;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.ext.web.codec.BodyCodec;
+
+/**
+ * Stores backups as GitHub gists: the first batch creates the gist, the following ones patch it.
+ * <p>
+ * Host, port and TLS are configurable so that tests can point it at a local stand-in server.
+ */
+public class GistBackupTarget implements BackupTarget {
+
+	private final WebClient webClient;
+	private final String host;
+	private final int port;
+	private final String token;
+
+	public GistBackupTarget(Vertx vertx, JsonObject config) {
+		this.host = config.getString(BackupVerticle.CONFIG_BACKUP_TARGET_HOST, "api.github.com");
+		this.port = config.getInteger(BackupVerticle.CONFIG_BACKUP_TARGET_PORT, 443);
+		this.token = config.getString(BackupVerticle.CONFIG_BACKUP_TARGET_TOKEN);
+		this.webClient = WebClient.create(vertx, new WebClientOptions()
+				.setSsl(config.getBoolean(BackupVerticle.CONFIG_BACKUP_TARGET_SSL, true))
+				.setUserAgent("vert-x3"));
+	}
+
+	@Override
+	public void upload(String remoteId, JsonObject files, Handler<AsyncResult<JsonObject>> resultHandler) {
+		JsonObject filesObject = new JsonObject();
+		files.forEach(file -> filesObject.put(file.getKey(), file.getValue() == null ? null
+				: new JsonObject().put("content", file.getValue())));
+
+		JsonObject gistPayload = new JsonObject().put("files", filesObject);
+		HttpRequest<JsonObject> request;
+		if (remoteId == null) {
+			gistPayload
+					.put("description", "A wiki backup")
+					.put("public", true);
+			request = webClient.post(port, host, "/gists").as(BodyCodec.jsonObject());
+		} else {
+			request = webClient.patch(port, host, "/gists/" + remoteId).as(BodyCodec.jsonObject());
+		}
+		request
+				.putHeader("Accept", "application/vnd.github.v3+json")
+				.putHeader("Content-Type", "application/json");
+		if (token != null) {
+			request.putHeader("Authorization", "token " + token);
+		}
+
+		request.sendJsonObject(gistPayload, ar -> {
+			if (ar.failed()) {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			HttpResponse<JsonObject> response = ar.result();
+			JsonObject body = response.body();
+			if ((response.statusCode() == 201 || response.statusCode() == 200) && body != null) {
+				resultHandler.handle(Future.succeededFuture(new JsonObject()
+						.put("id", body.getString("id"))
+						.put("url", body.getString("html_url"))));
+			} else {
+				StringBuilder message = new StringBuilder()
+						.append("Could not backup the wiki: ")
+						.append(response.statusMessage());
+				if (body != null) {
+					message.append(System.getProperty("line.separator"))
+							.append(body.encodePrettily());
+				}
+				resultHandler.handle(Future.failedFuture(message.toString()));
+			}
+		});
+	}
+}
@@ -0,0 +1,6 @@
+@ModuleGen(groupPackage = "io.vertx.starter.backup", name="wiki-backup")
+package io.vertx.starter.backup;
+
+import io.vertx.codegen.annotations.ModuleGen;
+
+
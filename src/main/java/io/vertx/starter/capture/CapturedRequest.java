@@ -0,0 +1,160 @@
+package io.vertx.starter.capture;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One request of a capture file, see {@link TrafficCapture} for the layout.
+ */
+final class CapturedRequest {
+
+	static final int MAGIC = 0x57434150; // "WCAP"
+	static final byte VERSION = 2;
+
+	/**
+	 * The request headers that change the response and are replayed, in the order of {@link #headers}; version 1 files
+	 * have none of them.
+	 */
+	static final String[] HEADERS = {"If-Match", "X-API-Key", "Accept-Encoding"};
+
+	/**
+	 * Length of the file header: magic, version and the capture start in epoch milliseconds.
+	 */
+	static final int HEADER_LENGTH = 4 + 1 + 8;
+
+	/**
+	 * Microseconds since the epoch, once read; relative to the capture start in the file.
+	 */
+	final long arrival;
+	final HttpMethod method;
+	final String uri;
+	final String contentType;
+	/**
+	 * The values of the {@link #HEADERS}, {@code null} for those the request did not have.
+	 */
+	final String[] headers;
+	final long bodyHash;
+	final int bodyLength;
+	/**
+	 * {@code null} unless the bodies were captured.
+	 */
+	final Buffer body;
+	final int status;
+	final long latency;
+
+	CapturedRequest(long arrival, HttpMethod method, String uri, String contentType, String[] headers, long bodyHash,
+	                int bodyLength, Buffer body, int status, long latency) {
+		this.arrival = arrival;
+		this.method = method;
+		this.uri = uri;
+		this.contentType = contentType;
+		this.headers = headers;
+		this.bodyHash = bodyHash;
+		this.bodyLength = bodyLength;
+		this.body = body;
+		this.status = status;
+		this.latency = latency;
+	}
+
+	static Buffer header(long startMillis) {
+		return Buffer.buffer(HEADER_LENGTH).appendInt(MAGIC).appendByte(VERSION).appendLong(startMillis);
+	}
+
+	void writeTo(Buffer buffer) {
+		writeVarLong(buffer, arrival);
+		buffer.appendByte((byte) method.ordinal());
+		writeString(buffer, uri);
+		writeString(buffer, contentType == null ? "" : contentType);
+		for (String header : headers) {
+			writeString(buffer, header == null ? "" : header);
+		}
+		buffer.appendLong(bodyHash);
+		writeVarLong(buffer, bodyLength);
+		if (body == null) {
+			buffer.appendByte((byte) 0);
+		} else {
+			buffer.appendByte((byte) 1).appendBuffer(body);
+		}
+		writeVarLong(buffer, status);
+		writeVarLong(buffer, latency);
+	}
+
+	/**
+	 * Reads the request at {@code position[0]} and moves it past the request.
+	 *
+	 * @param origin  the capture start, in microseconds since the epoch
+	 * @param version the version of the file
+	 */
+	static CapturedRequest readFrom(Buffer buffer, int[] position, long origin, byte version) {
+		long arrival = origin + readVarLong(buffer, position);
+		HttpMethod method = HttpMethod.values()[buffer.getByte(position[0]++)];
+		String uri = readString(buffer, position);
+		String contentType = readString(buffer, position);
+		String[] headers = new String[HEADERS.length];
+		if (version >= 2) {
+			for (int i = 0; i < headers.length; i++) {
+				String header = readString(buffer, position);
+				headers[i] = header.isEmpty() ? null : header;
+			}
+		}
+		long bodyHash = buffer.getLong(position[0]);
+		position[0] += 8;
+		int bodyLength = (int) readVarLong(buffer, position);
+		Buffer body = null;
+		if (buffer.getByte(position[0]++) != 0) {
+			body = buffer.getBuffer(position[0], position[0] + bodyLength);
+			position[0] += bodyLength;
+		}
+		int status = (int) readVarLong(buffer, position);
+		long latency = readVarLong(buffer, position);
+		return new CapturedRequest(arrival, method, uri, contentType.isEmpty() ? null : contentType, headers,
+				bodyHash,
+				bodyLength, body, status, latency);
+	}
+
+	/**
+	 * 64-bit FNV-1a, which is enough to tell bodies apart and costs no allocation.
+	 */
+	static long hash(Buffer body) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < body.length(); i++) {
+			hash ^= body.getByte(i) & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static void writeString(Buffer buffer, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(buffer, bytes.length);
+		buffer.appendBytes(bytes);
+	}
+
+	private static String readString(Buffer buffer, int[] position) {
+		int length = (int) readVarLong(buffer, position);
+		String value = buffer.getString(position[0], position[0] + length, "UTF-8");
+		position[0] += length;
+		return value;
+	}
+
+	private static void writeVarLong(Buffer buffer, long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer.appendByte((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.appendByte((byte) value);
+	}
+
+	private static long readVarLong(Buffer buffer, int[] position) {
+		long value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.getByte(position[0]++);
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package io.vertx.starter.capture;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Records the requests of an HTTP server to a compact binary file, for {@link TrafficReplay} to re-issue them.
+ * <p>
+ * Each instance writes its own {@code capture-<start>-<random>.bin} file in the capture directory: a header with a
+ * magic number, a version and the capture start in epoch milliseconds, then one record per response with the arrival
+ * time in microseconds since the start, the method, the URI with its query parameters, the {@code Content-Type}, the
+ * headers that change the response ({@code If-Match}, {@code X-API-Key} and {@code Accept-Encoding}), a hash and the
+ * length of the body, the body itself when bodies are captured, the status and the latency in
+ * microseconds. Integers are variable-length, so a typical read takes 20 to 40 bytes.
+ * <p>
+ * Requests are recorded once their response is sent, when the {@code BodyHandler} of their route has read the body,
+ * so records are in completion order; {@link TrafficReplay} sorts them. Bodies that the routes stream, such as
+ * imports and uploads, are recorded with a zero length. Records are written through an {@link AsyncFile}, and dropped
+ * rather than queued when its write queue is full.
+ * <p>
+ * The API keys are recorded as sent, so capture files are as sensitive as the keys themselves.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+public class TrafficCapture {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TrafficCapture.class);
+
+	private final Vertx vertx;
+	private final boolean captureBodies;
+
+	private AsyncFile file;
+	private String path;
+	private long startNanos;
+	private long captured;
+	private long dropped;
+	private long writeFailures;
+
+	/**
+	 * @param captureBodies whether the bodies are recorded, so that writes can be replayed; only their hash otherwise
+	 */
+	public TrafficCapture(Vertx vertx, boolean captureBodies) {
+		this.vertx = vertx;
+		this.captureBodies = captureBodies;
+	}
+
+	/**
+	 * Creates the capture file in {@code directory}; requests are only recorded from then on.
+	 */
+	public void open(String directory, Handler<AsyncResult<Void>> handler) {
+		long startMillis = System.currentTimeMillis();
+		String name = String.format("capture-%d-%08x.bin", startMillis, ThreadLocalRandom.current().nextInt());
+		String file = Paths.get(directory, name).toString();
+		vertx.fileSystem().mkdirs(directory, created -> {
+			if (created.failed()) {
+				handler.handle(Future.failedFuture(created.cause()));
+				return;
+			}
+			vertx.fileSystem().open(file, new OpenOptions().setCreateNew(true).setWrite(true), ar -> {
+				if (ar.failed()) {
+					handler.handle(Future.failedFuture(ar.cause()));
+					return;
+				}
+				this.file = ar.result();
+				this.file.exceptionHandler(err -> {
+					writeFailures++;
+					LOGGER.error("Could not write to the capture file " + path, err);
+				});
+				this.path = file;
+				this.startNanos = System.nanoTime();
+				this.file.write(CapturedRequest.header(startMillis));
+				LOGGER.info("Capturing the requests to {}", file);
+				handler.handle(Future.succeededFuture());
+			});
+		});
+	}
+
+	public void handle(RoutingContext context) {
+		if (file != null) {
+			long arrival = System.nanoTime();
+			context.addBodyEndHandler(v -> record(context, arrival));
+		}
+		context.next();
+	}
+
+	public JsonObject statistics() {
+		return new JsonObject()
+				.put("file", path)
+				.put("captured", captured)
+				.put("dropped", dropped)
+				.put("writeFailures", writeFailures);
+	}
+
+	public void close(Handler<AsyncResult<Void>> handler) {
+		if (file == null) {
+			handler.handle(Future.succeededFuture());
+			return;
+		}
+		AsyncFile closing = file;
+		file = null;
+		closing.close(handler);
+	}
+
+	private void record(RoutingContext context, long arrival) {
+		if (file == null) {
+			return;
+		}
+		if (file.writeQueueFull()) {
+			dropped++;
+			return;
+		}
+		HttpServerRequest request = context.request();
+		Buffer body = context.getBody();
+		int bodyLength = body == null ? 0 : body.length();
+		String[] headers = new String[CapturedRequest.HEADERS.length];
+		for (int i = 0; i < headers.length; i++) {
+			headers[i] = request.getHeader(CapturedRequest.HEADERS[i]);
+		}
+		CapturedRequest captured = new CapturedRequest(
+				(arrival - startNanos) / 1000,
+				request.method(),
+				request.uri(),
+				request.getHeader("Content-Type"),
+				headers,
+				bodyLength == 0 ? 0 : CapturedRequest.hash(body),
+				bodyLength,
+				captureBodies && bodyLength > 0 ? body : null,
+				context.response().getStatusCode(),
+				(System.nanoTime() - arrival) / 1000);
+		Buffer record = Buffer.buffer(64 + (captured.body == null ? 0 : bodyLength));
+		captured.writeTo(record);
+		file.write(record);
+		this.captured++;
+	}
+}
@@ -0,0 +1,430 @@
+package io.vertx.starter.capture;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.MainVerticle;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.http.HttpServerVerticle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Re-issues the requests of {@link TrafficCapture} files against a wiki, keeping their inter-arrival times, and
+ * compares the latency distributions with those of a baseline run.
+ * <p>
+ * Usage: {@code TrafficReplay [options] <capture file or directory>...}, with the options
+ * <ul>
+ * <li>{@code --host} and {@code --port}: the instance to replay against, {@code localhost:8080} by default;</li>
+ * <li>{@code --snapshot <path>}: copies the HSQLDB database at {@code <path>}, e.g. {@code db/wiki}, to a temporary
+ * directory and replays against a {@link MainVerticle} deployed in this process on that copy, so that every run
+ * starts from the same data; {@code --conf <file>} gives it extra configuration, with rate limiting always off so
+ * that a faster replay is not refused;</li>
+ * <li>{@code --speed}: {@code 1} replays at the captured pace, {@code 10} ten times faster, {@code max} sends
+ * everything at once;</li>
+ * <li>{@code --connections} and {@code --timeout}: the connection pool size and the request timeout in
+ * milliseconds;</li>
+ * <li>{@code --output <file>}: writes the summary of the run as JSON, to serve as a later baseline;</li>
+ * <li>{@code --baseline <file>} and {@code --threshold}: compares the p50, p90 and p99 latencies, overall and per
+ * route, with those of a previous run, and exits with status 1 when one grew by more than the threshold, 0.1 by
+ * default, and by more than a millisecond.</li>
+ * </ul>
+ * Latencies are measured from the time each request was due, not from when it could be sent, so that a slow server
+ * cannot hide queueing by delaying the requests. They are in microseconds.
+ */
+public class TrafficReplay {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(TrafficReplay.class);
+
+	private static final long NOISE_FLOOR = 1000;
+
+	private static final String[] PERCENTILES = {"p50", "p90", "p99"};
+
+	private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+	private final Vertx vertx;
+	private final List<CapturedRequest> requests;
+	private final String host;
+	private final int port;
+	private final double speed;
+	private final long timeout;
+	private final HttpClient client;
+
+	private final Map<String, List<Long>> latencies = new TreeMap<>();
+	private final Map<Integer, Integer> statuses = new TreeMap<>();
+	private Handler<AsyncResult<JsonObject>> handler;
+	private long startNanos;
+	private int next;
+	private int finished;
+	private int errors;
+	private int statusMismatches;
+	private int missingBodies;
+	private int skipped;
+
+	/**
+	 * @param requests the requests to replay, sorted by arrival
+	 * @param speed    how many times faster than captured to replay, or {@code 0} to send everything at once
+	 */
+	TrafficReplay(Vertx vertx, List<CapturedRequest> requests, String host, int port, double speed, int connections,
+	              long timeout) {
+		this.vertx = vertx;
+		this.requests = requests;
+		this.host = host;
+		this.port = port;
+		this.speed = speed;
+		this.timeout = timeout;
+		this.client = vertx.createHttpClient(new HttpClientOptions().setMaxPoolSize(connections).setKeepAlive(true));
+	}
+
+	/**
+	 * Replays the requests; the summary holds the number of requests, errors and statuses, and the latency
+	 * distribution overall and per route, see {@link #routeOf(HttpMethod, String)}.
+	 */
+	void run(Handler<AsyncResult<JsonObject>> handler) {
+		this.handler = handler;
+		this.startNanos = System.nanoTime();
+		if (requests.isEmpty()) {
+			complete();
+			return;
+		}
+		pump();
+	}
+
+	private void pump() {
+		long now = System.nanoTime();
+		while (next < requests.size() && due(next) <= now) {
+			send(next++);
+		}
+		if (next < requests.size()) {
+			vertx.setTimer(Math.max(1, (due(next) - now) / 1_000_000), id -> pump());
+		}
+	}
+
+	private long due(int index) {
+		if (speed <= 0) {
+			return startNanos;
+		}
+		long offset = requests.get(index).arrival - requests.get(0).arrival;
+		return startNanos + (long) (offset * 1000 / speed);
+	}
+
+	private void send(int index) {
+		CapturedRequest captured = requests.get(index);
+		long due = speed <= 0 ? System.nanoTime() : due(index);
+		if (captured.method == HttpMethod.OTHER) {
+			skipped++;
+			finished();
+			return;
+		}
+		boolean[] done = new boolean[1];
+		HttpClientRequest request = client.request(captured.method, port, host, captured.uri, response ->
+				response.bodyHandler(body -> {
+					if (done[0]) {
+						return;
+					}
+					done[0] = true;
+					long latency = (System.nanoTime() - due) / 1000;
+					String route = routeOf(captured.method, captured.uri);
+					latencies.computeIfAbsent(route, key -> new ArrayList<>()).add(latency);
+					statuses.merge(response.statusCode(), 1, Integer::sum);
+					if (response.statusCode() != captured.status) {
+						statusMismatches++;
+					}
+					finished();
+				}));
+		request.setTimeout(timeout);
+		request.exceptionHandler(err -> {
+			if (done[0]) {
+				return;
+			}
+			done[0] = true;
+			errors++;
+			finished();
+		});
+		if (captured.contentType != null) {
+			request.putHeader("Content-Type", captured.contentType);
+		}
+		for (int i = 0; i < captured.headers.length; i++) {
+			if (captured.headers[i] != null) {
+				request.putHeader(CapturedRequest.HEADERS[i], captured.headers[i]);
+			}
+		}
+		if (captured.body != null) {
+			request.end(captured.body);
+		} else {
+			if (captured.bodyLength > 0) {
+				missingBodies++;
+			}
+			request.end();
+		}
+	}
+
+	private void finished() {
+		if (++finished == requests.size()) {
+			complete();
+		}
+	}
+
+	private void complete() {
+		client.close();
+		List<Long> all = new ArrayList<>();
+		JsonObject routes = new JsonObject();
+		latencies.forEach((route, values) -> {
+			all.addAll(values);
+			routes.put(route, distribution(values));
+		});
+		JsonObject statusCounts = new JsonObject();
+		statuses.forEach((status, count) -> statusCounts.put(String.valueOf(status), count));
+		handler.handle(Future.succeededFuture(new JsonObject()
+				.put("requests", requests.size())
+				.put("errors", errors)
+				.put("skipped", skipped)
+				.put("statusMismatches", statusMismatches)
+				.put("missingBodies", missingBodies)
+				.put("durationMs", (System.nanoTime() - startNanos) / 1_000_000)
+				.put("statuses", statusCounts)
+				.put("latency", distribution(all))
+				.put("routes", routes)));
+	}
+
+	/**
+	 * Groups the requests by method and path, with numeric segments, page names and asset names replaced by
+	 * placeholders, e.g. {@code GET /api/pages/:id} or {@code GET /wiki/:page}.
+	 */
+	static String routeOf(HttpMethod method, String uri) {
+		int query = uri.indexOf('?');
+		String path = query < 0 ? uri : uri.substring(0, query);
+		if (path.startsWith("/wiki/")) {
+			path = "/wiki/:page";
+		} else if (path.startsWith("/assets/")) {
+			path = "/assets/:asset";
+		} else {
+			String[] segments = path.split("/", -1);
+			for (int i = 0; i < segments.length; i++) {
+				if (NUMBER.matcher(segments[i]).matches()) {
+					segments[i] = ":id";
+				}
+			}
+			path = String.join("/", segments);
+		}
+		return method + " " + path;
+	}
+
+	static JsonObject distribution(List<Long> values) {
+		long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+		JsonObject distribution = new JsonObject().put("count", sorted.length);
+		if (sorted.length == 0) {
+			return distribution;
+		}
+		return distribution
+				.put("mean", Arrays.stream(sorted).sum() / sorted.length)
+				.put("p50", percentile(sorted, 0.5))
+				.put("p90", percentile(sorted, 0.9))
+				.put("p99", percentile(sorted, 0.99))
+				.put("p999", percentile(sorted, 0.999))
+				.put("max", sorted[sorted.length - 1]);
+	}
+
+	private static long percentile(long[] sorted, double quantile) {
+		return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1))];
+	}
+
+	/**
+	 * Compares the p50, p90 and p99 latencies of {@code run} with those of {@code baseline}, overall and for each route
+	 * of both.
+	 *
+	 * @return one {@code {route, percentile, baseline, run, ratio, regression}} object per comparison
+	 */
+	static JsonArray compare(JsonObject baseline, JsonObject run, double threshold) {
+		JsonArray comparisons = new JsonArray();
+		compare("*", baseline.getJsonObject("latency"), run.getJsonObject("latency"), threshold, comparisons);
+		JsonObject baselineRoutes = baseline.getJsonObject("routes", new JsonObject());
+		JsonObject runRoutes = run.getJsonObject("routes", new JsonObject());
+		for (String route : new TreeMap<>(runRoutes.getMap()).keySet()) {
+			if (baselineRoutes.containsKey(route)) {
+				compare(route, baselineRoutes.getJsonObject(route), runRoutes.getJsonObject(route), threshold, comparisons);
+			}
+		}
+		return comparisons;
+	}
+
+	private static void compare(String route, JsonObject baseline, JsonObject run, double threshold,
+	                            JsonArray comparisons) {
+		for (String percentile : PERCENTILES) {
+			Long before = baseline.getLong(percentile);
+			Long after = run.getLong(percentile);
+			if (before == null || after == null) {
+				continue;
+			}
+			comparisons.add(new JsonObject()
+					.put("route", route)
+					.put("percentile", percentile)
+					.put("baseline", before)
+					.put("run", after)
+					.put("ratio", before == 0 ? null : (double) after / before)
+					.put("regression", after > before * (1 + threshold) && after - before > NOISE_FLOOR));
+		}
+	}
+
+	/**
+	 * Reads the capture files, and those of the capture directories, into one list sorted by arrival.
+	 */
+	static List<CapturedRequest> read(List<Path> paths) throws IOException {
+		List<Path> files = new ArrayList<>();
+		for (Path path : paths) {
+			if (Files.isDirectory(path)) {
+				try (DirectoryStream<Path> captures = Files.newDirectoryStream(path, "capture-*.bin")) {
+					captures.forEach(files::add);
+				}
+			} else {
+				files.add(path);
+			}
+		}
+		List<CapturedRequest> requests = new ArrayList<>();
+		for (Path file : files) {
+			Buffer buffer = Buffer.buffer(Files.readAllBytes(file));
+			if (buffer.length() < CapturedRequest.HEADER_LENGTH || buffer.getInt(0) != CapturedRequest.MAGIC) {
+				throw new IOException(file + " is not a capture file");
+			}
+			byte version = buffer.getByte(4);
+			if (version < 1 || version > CapturedRequest.VERSION) {
+				throw new IOException(file + " has an unsupported version " + version);
+			}
+			long origin = buffer.getLong(5) * 1000;
+			int[] position = {CapturedRequest.HEADER_LENGTH};
+			while (position[0] < buffer.length()) {
+				try {
+					requests.add(CapturedRequest.readFrom(buffer, position, origin, version));
+				} catch (IndexOutOfBoundsException e) {
+					// The server stopped in the middle of a write
+					LOGGER.warn("Ignoring the truncated last request of {}", file);
+					break;
+				}
+			}
+		}
+		requests.sort(Comparator.comparingLong(request -> request.arrival));
+		return requests;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>();
+		List<Path> captures = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("--") && i + 1 < args.length) {
+				options.put(args[i].substring(2), args[++i]);
+			} else {
+				captures.add(Paths.get(args[i]));
+			}
+		}
+		if (captures.isEmpty()) {
+			System.err.println("Usage: TrafficReplay [--host h] [--port p] [--snapshot db/wiki] [--conf file] "
+					+ "[--speed 1|max] [--connections n] [--timeout ms] [--output file] [--baseline file] "
+					+ "[--threshold 0.1] <capture file or directory>...");
+			System.exit(2);
+		}
+
+		List<CapturedRequest> requests = read(captures);
+		String host = options.getOrDefault("host", "localhost");
+		int port = Integer.parseInt(options.getOrDefault("port", "8080"));
+		String speed = options.getOrDefault("speed", "1");
+		System.out.println("Replaying " + requests.size() + " requests against " + host + ":" + port + " at speed " + speed);
+
+		Vertx vertx = Vertx.vertx();
+		JsonObject summary;
+		try {
+			if (options.containsKey("snapshot")) {
+				deploySnapshot(vertx, Paths.get(options.get("snapshot")), port, options.get("conf"));
+			}
+			CompletableFuture<JsonObject> result = new CompletableFuture<>();
+			new TrafficReplay(vertx, requests, host, port, "max".equals(speed) ? 0 : Double.parseDouble(speed),
+					Integer.parseInt(options.getOrDefault("connections", "64")),
+					Long.parseLong(options.getOrDefault("timeout", "30000")))
+					.run(ar -> result.complete(ar.result()));
+			summary = result.get();
+		} finally {
+			CompletableFuture<Void> closed = new CompletableFuture<>();
+			vertx.close(ar -> closed.complete(null));
+			closed.get();
+		}
+		System.out.println(summary.encodePrettily());
+		if (options.containsKey("output")) {
+			Files.write(Paths.get(options.get("output")), summary.encodePrettily().getBytes("UTF-8"));
+		}
+
+		int status = 0;
+		if (options.containsKey("baseline")) {
+			JsonObject baseline = new JsonObject(new String(Files.readAllBytes(Paths.get(options.get("baseline"))), "UTF-8"));
+			JsonArray comparisons = compare(baseline, summary, Double.parseDouble(options.getOrDefault("threshold", "0.1")));
+			for (int i = 0; i < comparisons.size(); i++) {
+				JsonObject comparison = comparisons.getJsonObject(i);
+				System.out.println(String.format("%-40s %-4s %10d us -> %10d us%s",
+						comparison.getString("route"), comparison.getString("percentile"),
+						comparison.getLong("baseline"), comparison.getLong("run"),
+						comparison.getBoolean("regression") ? "  REGRESSION" : ""));
+				if (comparison.getBoolean("regression")) {
+					status = 1;
+				}
+			}
+		}
+		System.exit(status);
+	}
+
+	/**
+	 * Copies the HSQLDB files of {@code snapshot}, e.g. {@code db/wiki.script} and {@code db/wiki.properties} for
+	 * {@code db/wiki}, to a temporary directory and deploys the wiki on the copy.
+	 */
+	private static void deploySnapshot(Vertx vertx, Path snapshot, int port, String conf) throws Exception {
+		Path copy = Files.createTempDirectory("wiki-replay");
+		Path directory = snapshot.toAbsolutePath().getParent();
+		String prefix = snapshot.getFileName() + ".";
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+			for (Path file : files) {
+				if (!file.getFileName().toString().endsWith(".lck")) {
+					Files.copy(file, copy.resolve(file.getFileName()));
+				}
+			}
+		}
+		JsonObject config = conf == null ? new JsonObject()
+				: new JsonObject(new String(Files.readAllBytes(Paths.get(conf)), "UTF-8"));
+		config.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL,
+				"jdbc:hsqldb:file:" + copy.resolve(snapshot.getFileName().toString()) + ";shutdown=true")
+				.put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, port)
+				.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, copy.resolve("top-pages.json").toString())
+				.put(HttpServerVerticle.CONFIG_RATE_LIMIT_ENABLED, false)
+				.remove(HttpServerVerticle.CONFIG_CAPTURE_DIRECTORY);
+		CompletableFuture<Void> deployed = new CompletableFuture<>();
+		vertx.deployVerticle(new MainVerticle(), new DeploymentOptions().setConfig(config), ar -> {
+			if (ar.succeeded()) {
+				deployed.complete(null);
+			} else {
+				deployed.completeExceptionally(ar.cause());
+			}
+		});
+		deployed.get();
+		System.out.println("Deployed the wiki on a copy of " + snapshot + " in " + copy);
+	}
+}
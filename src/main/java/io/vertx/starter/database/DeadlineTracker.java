@@ -0,0 +1,62 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Drops service proxy calls whose caller has already given up.
+ * <p>
+ * Callers put an absolute deadline (epoch milliseconds) in the {@link WikiDataBaseVerticle#DEADLINE_HEADER} header.
+ * Expired messages are failed with {@link ErrorCodes#DEADLINE_EXCEEDED} before they reach the service; the others are
+ * dispatched with their deadline exposed through {@link #current()}, so the service can check it again once it holds
+ * a connection. Dispatching is synchronous and confined to the database verticle event loop.
+ */
+class DeadlineTracker {
+
+	static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private long current = NO_DEADLINE;
+	private long expiredBeforeDispatch;
+	private long expiredBeforeQuery;
+
+	void dispatch(Message<JsonObject> message, Handler<Message<JsonObject>> handler) {
+		String header = message.headers().get(WikiDataBaseVerticle.DEADLINE_HEADER);
+		long deadline = header == null ? NO_DEADLINE : Long.parseLong(header);
+		if (System.currentTimeMillis() > deadline) {
+			expiredBeforeDispatch++;
+			message.fail(ErrorCodes.DEADLINE_EXCEEDED.ordinal(), "Deadline exceeded");
+			return;
+		}
+		current = deadline;
+		try {
+			handler.handle(message);
+		} finally {
+			current = NO_DEADLINE;
+		}
+	}
+
+	/**
+	 * @return the deadline of the call being dispatched, or {@link #NO_DEADLINE}
+	 */
+	long current() {
+		return current;
+	}
+
+	/**
+	 * Checks a deadline captured with {@link #current()}, counting it as dropped if it has passed.
+	 */
+	boolean expired(long deadline) {
+		if (System.currentTimeMillis() > deadline) {
+			expiredBeforeQuery++;
+			return true;
+		}
+		return false;
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("expiredBeforeDispatch", expiredBeforeDispatch)
+				.put("expiredBeforeQuery", expiredBeforeQuery);
+	}
+}
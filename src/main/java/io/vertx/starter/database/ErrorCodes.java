@@ -7,5 +7,6 @@ package io.vertx.starter.database;
 public enum ErrorCodes {
 	NO_ACTION_SPECIFIED,
 	BAD_ACTION,
-	DB_ERROR
+	DB_ERROR,
+	DEADLINE_EXCEEDED
 }
@@ -0,0 +1,460 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * {@link WikiDatabaseService} backed by a {@link PageLogStore} instead of JDBC.
+ * <p>
+ * All operations run on the event loop of the verticle that created the service and only touch memory-mapped
+ * segments; forcing segments to disk and compacting them are done on worker threads.
+ */
+public class LogStoreWikiDatabaseServiceImpl implements WikiDatabaseService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LogStoreWikiDatabaseServiceImpl.class);
+
+	private final Vertx vertx;
+	private final DeadlineTracker deadlines;
+	private final double compactionThreshold;
+	private final List<Long> timers = new ArrayList<>();
+
+	private PageLogStore store;
+	private PageLinks links;
+	private boolean compacting;
+	private Handler<Void> compactionEndHandler;
+
+	LogStoreWikiDatabaseServiceImpl(Vertx vertx, JsonObject config, DeadlineTracker deadlines,
+									Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+		this.vertx = vertx;
+		this.deadlines = deadlines;
+		this.compactionThreshold = config.getDouble(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_COMPACTION_THRESHOLD, 0.5);
+
+		String directory = config.getString(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_DIRECTORY, "db/logstore");
+		int segmentSize = config.getInteger(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_SEGMENT_SIZE, 16 * 1024 * 1024);
+		vertx.<PageLogStore>executeBlocking(future -> {
+			try {
+				future.complete(PageLogStore.open(Paths.get(directory), segmentSize));
+			} catch (Exception e) {
+				future.fail(e);
+			}
+		}, ar -> {
+			if (ar.succeeded()) {
+				store = ar.result();
+				LOGGER.info("Opened page log in {} with {} pages", directory, store.size());
+				timers.add(vertx.setPeriodic(config.getLong(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_SYNC_INTERVAL, 1000L), id -> sync()));
+				timers.add(vertx.setPeriodic(config.getLong(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_COMPACTION_INTERVAL, 60_000L), id -> compact(false, null)));
+				readyHandler.handle(Future.succeededFuture(this));
+			} else {
+				LOGGER.error("Could not open the page log", ar.cause());
+				readyHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+		JsonArray pages = new JsonArray(StreamSupport.stream(store.names().spliterator(), false)
+				.sorted()
+				.collect(Collectors.toList()));
+		resultHandler.handle(Future.succeededFuture(pages));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(name);
+		JsonObject response = new JsonObject();
+		if (entry == null) {
+			response.put("found", false);
+		} else {
+			response.put("found", true);
+			response.put("id", entry.id);
+			String content = store.readContent(entry);
+			response.put("rawContent", content);
+			response.put("version", entry.version);
+		}
+		resultHandler.handle(Future.succeededFuture(response));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		if (entry == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+		} else {
+			String content = store.readContent(entry);
+			resultHandler.handle(Future.succeededFuture(new JsonObject()
+					.put("found", true)
+					.put("id", entry.id)
+					.put("name", entry.name)
+					.put("content", content)
+					.put("version", entry.version)));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		if (entry == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+		} else {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", true).put("name", entry.name)));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		try {
+			store.create(title, markdown);
+			relinked(title, markdown);
+			resultHandler.handle(Future.succeededFuture());
+		} catch (Exception e) {
+			LOGGER.error("Page log write error", e);
+			resultHandler.handle(Future.failedFuture(e));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		try {
+			if (store.update(id, markdown)) {
+				relinked(store.get(id).name, markdown);
+			}
+			resultHandler.handle(Future.succeededFuture());
+		} catch (Exception e) {
+			LOGGER.error("Page log write error", e);
+			resultHandler.handle(Future.failedFuture(e));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		if (entry == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+			return this;
+		}
+		if (entry.version != version) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject()
+					.put("found", true)
+					.put("saved", false)
+					.put("version", entry.version)));
+			return this;
+		}
+		savePage(id, markdown, ar -> {
+			if (ar.succeeded()) {
+				resultHandler.handle(Future.succeededFuture(new JsonObject()
+						.put("found", true)
+						.put("saved", true)
+						.put("version", store.get(id).version)));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Records are written whole, so the content goes through memory here.
+	 */
+	@Override
+	public WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler) {
+		vertx.fileSystem().readFile(file, read -> {
+			if (read.failed()) {
+				resultHandler.handle(Future.failedFuture(read.cause()));
+			} else {
+				savePage(id, read.result().toString(StandardCharsets.UTF_8), resultHandler);
+			}
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+		try {
+			PageLogStore.Entry entry = store.get(id);
+			if (store.delete(id) && links != null) {
+				links.remove(entry.name);
+			}
+			resultHandler.handle(Future.succeededFuture());
+		} catch (Exception e) {
+			LOGGER.error("Page log write error", e);
+			resultHandler.handle(Future.failedFuture(e));
+		}
+		return this;
+	}
+
+	/**
+	 * The log has no transactions: pages are appended one at a time, and a failure leaves those before it written.
+	 */
+	@Override
+	public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler) {
+		try {
+			for (int i = 0; i < pages.size(); i++) {
+				JsonObject page = pages.getJsonObject(i);
+				PageLogStore.Entry entry = store.get(page.getString("name"));
+				if (entry == null) {
+					store.create(page.getString("name"), page.getString("markdown"));
+				} else {
+					store.update(entry.id, page.getString("markdown"));
+				}
+				relinked(page.getString("name"), page.getString("markdown"));
+			}
+			resultHandler.handle(Future.succeededFuture());
+		} catch (Exception e) {
+			LOGGER.error("Page log write error", e);
+			resultHandler.handle(Future.failedFuture(e));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+		List<JsonObject> pages = new ArrayList<>(store.size());
+		for (PageLogStore.Entry entry : store.entries()) {
+			pages.add(new JsonObject()
+					.put("ID", entry.id)
+					.put("NAME", entry.name)
+					.put("CONTENT", store.readContent(entry)));
+		}
+		resultHandler.handle(Future.succeededFuture(pages));
+		return this;
+	}
+
+	/**
+	 * Records are read whole, so sections are computed from the content on every call rather than indexed.
+	 */
+	@Override
+	public WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		if (entry == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+		} else {
+			resultHandler.handle(Future.succeededFuture(new JsonObject()
+					.put("found", true)
+					.put("sections", PageSections.toJson(PageSections.index(store.readContent(entry))))));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		List<PageSections.Section> sections = null;
+		String content = null;
+		if (entry != null) {
+			content = store.readContent(entry);
+			sections = PageSections.index(content);
+		}
+		if (sections == null || index < 0 || index >= sections.size()) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+		} else {
+			PageSections.Section section = sections.get(index);
+			resultHandler.handle(Future.succeededFuture(section.toJson(index)
+					.put("found", true)
+					.put("markdown", content.substring(section.start, section.start + section.length))));
+		}
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		saveSection(id, index, null, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		saveSection(id, index, version, markdown, resultHandler);
+		return this;
+	}
+
+	/**
+	 * The log store keeps no change log, so every call is answered with all the pages and a reset, and the returned
+	 * sequence never moves: clients of this backend resync everything, whatever {@code limit}.
+	 */
+	@Override
+	public WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		JsonArray pages = new JsonArray();
+		for (PageLogStore.Entry entry : store.entries()) {
+			pages.add(new JsonObject()
+					.put("id", entry.id)
+					.put("name", entry.name)
+					.put("deleted", false)
+					.put("markdown", store.readContent(entry)));
+		}
+		resultHandler.handle(Future.succeededFuture(new JsonObject()
+				.put("reset", true)
+				.put("sequence", "0")
+				.put("more", false)
+				.put("pages", pages)));
+		return this;
+	}
+
+	/**
+	 * The link index is built from the content of every page on the first call, then kept up to date by the writes.
+	 */
+	@Override
+	public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler) {
+		if (links == null) {
+			links = new PageLinks();
+			for (PageLogStore.Entry entry : store.entries()) {
+				links.set(entry.name, PageLinks.extract(store.readContent(entry)));
+			}
+		}
+		resultHandler.handle(Future.succeededFuture(links.sources(name)));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler) {
+		resultHandler.handle(Future.succeededFuture(new JsonArray(names.stream()
+				.filter(name -> name instanceof String && store.get((String) name) != null)
+				.collect(Collectors.toList()))));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+		resultHandler.handle(Future.succeededFuture(new JsonObject()
+				.put("deadlines", deadlines.statistics())
+				.put("links", links == null ? 0 : links.links())
+				.put("pages", store.size())
+				.put("garbageRatio", store.garbageRatio())));
+		return this;
+	}
+
+	/**
+	 * Compacts the sealed segments if enough of them is garbage, or unconditionally when {@code force} is set.
+	 */
+	void compact(boolean force, Handler<AsyncResult<Void>> doneHandler) {
+		Handler<AsyncResult<Void>> done = doneHandler != null ? doneHandler : ar -> {};
+		if (compacting || (!force && store.garbageRatio() < compactionThreshold)) {
+			done.handle(Future.succeededFuture());
+			return;
+		}
+
+		PageLogStore.CompactionPlan plan;
+		try {
+			plan = store.planCompaction();
+		} catch (Exception e) {
+			LOGGER.error("Could not start a page log compaction", e);
+			done.handle(Future.failedFuture(e));
+			return;
+		}
+		if (plan == null) {
+			done.handle(Future.succeededFuture());
+			return;
+		}
+
+		compacting = true;
+		vertx.<Void>executeBlocking(future -> {
+			try {
+				store.compact(plan);
+				future.complete();
+			} catch (Exception e) {
+				future.fail(e);
+			}
+		}, false, ar -> {
+			compacting = false;
+			if (ar.succeeded()) {
+				store.completeCompaction(plan);
+				LOGGER.info("Compacted {} page log segments, {} live pages", plan.sealed.size(), plan.live.size());
+			} else {
+				LOGGER.error("Page log compaction failed", ar.cause());
+			}
+			done.handle(ar);
+			if (compactionEndHandler != null) {
+				compactionEndHandler.handle(null);
+			}
+		});
+	}
+
+	/**
+	 * @param version the version the page must be at, or {@code null} to save whatever its version
+	 */
+	private void saveSection(int id, int index, Integer version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		PageLogStore.Entry entry = store.get(id);
+		String content = entry == null ? null : store.readContent(entry);
+		PageSections.Replacement replacement = content == null ? null
+				: PageSections.replace(PageSections.index(content), index, markdown);
+		if (replacement == null) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+			return;
+		}
+		if (version != null && entry.version != version) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject()
+					.put("found", true)
+					.put("saved", false)
+					.put("version", entry.version)));
+			return;
+		}
+		String updated = content.substring(0, replacement.start) + replacement.text
+				+ content.substring(replacement.start + replacement.removed);
+		savePage(id, updated, ar -> {
+			if (ar.succeeded()) {
+				resultHandler.handle(Future.succeededFuture(new JsonObject()
+						.put("found", true)
+						.put("saved", true)
+						.put("version", store.get(id).version)
+						.put("sections", PageSections.toJson(replacement.sections))));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	private void relinked(String name, String markdown) {
+		if (links != null) {
+			links.set(name, PageLinks.extract(markdown));
+		}
+	}
+
+	private void sync() {
+		List<MappedByteBuffer> buffers = store.drainUnsynced();
+		if (!buffers.isEmpty()) {
+			vertx.executeBlocking(future -> {
+				buffers.forEach(MappedByteBuffer::force);
+				future.complete();
+			}, false, ar -> {
+				if (ar.failed()) {
+					LOGGER.error("Could not sync the page log", ar.cause());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Stops the background tasks and forces every pending write to disk.
+	 */
+	void close(Handler<AsyncResult<Void>> doneHandler) {
+		timers.forEach(vertx::cancelTimer);
+		if (compacting) {
+			compactionEndHandler = v -> close(doneHandler);
+			return;
+		}
+		vertx.<Void>executeBlocking(future -> {
+			store.close();
+			future.complete();
+		}, doneHandler);
+	}
+}
@@ -0,0 +1,183 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.json.JsonArray;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Links between pages: Markdown links to {@code /wiki/<name>}, and an in-memory index of them in both directions.
+ * <p>
+ * Only inline links are recognized, {@code [text](/wiki/Name)}, optionally with a title, a query or a fragment after
+ * the name; the name is percent-decoded. The index is keyed by page name, as are the links.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+final class PageLinks {
+
+	private static final String TARGET_PREFIX = "](/wiki/";
+	private static final int MAX_NAME = 255;
+	private static final int MAX_ENCODED_NAME = 3 * MAX_NAME;
+
+	private final Map<String, Set<String>> outgoing = new HashMap<>();
+	private final Map<String, Set<String>> incoming = new HashMap<>();
+	private int links;
+
+	/**
+	 * Replaces the links of page {@code source}.
+	 */
+	void set(String source, Set<String> targets) {
+		remove(source);
+		if (targets.isEmpty()) {
+			return;
+		}
+		outgoing.put(source, targets);
+		for (String target : targets) {
+			incoming.computeIfAbsent(target, key -> new TreeSet<>()).add(source);
+		}
+		links += targets.size();
+	}
+
+	/**
+	 * Drops the links of page {@code source}; links to it from other pages stay, as they still appear in their
+	 * content.
+	 */
+	void remove(String source) {
+		Set<String> targets = outgoing.remove(source);
+		if (targets == null) {
+			return;
+		}
+		for (String target : targets) {
+			Set<String> sources = incoming.get(target);
+			sources.remove(source);
+			if (sources.isEmpty()) {
+				incoming.remove(target);
+			}
+		}
+		links -= targets.size();
+	}
+
+	/**
+	 * @return the names of the pages linking to {@code target}, sorted
+	 */
+	JsonArray sources(String target) {
+		Set<String> sources = incoming.get(target);
+		return sources == null ? new JsonArray() : new JsonArray(new ArrayList<>(sources));
+	}
+
+	Set<String> targets(String source) {
+		return outgoing.getOrDefault(source, Collections.emptySet());
+	}
+
+	int links() {
+		return links;
+	}
+
+	static Set<String> extract(CharSequence markdown) {
+		return count(markdown).keySet();
+	}
+
+	/**
+	 * @return how many times {@code markdown} links to each page, in order of first appearance
+	 */
+	static Map<String, Integer> count(CharSequence markdown) {
+		Extractor extractor = new Extractor();
+		for (int i = 0; i < markdown.length(); i++) {
+			extractor.accept(markdown.charAt(i));
+		}
+		return extractor.counts();
+	}
+
+	/**
+	 * @return a reader extracting the links of the characters that go through it into {@code extractor}
+	 */
+	static Reader extracting(Reader reader, Extractor extractor) {
+		return new FilterReader(reader) {
+			@Override
+			public int read() throws IOException {
+				int c = super.read();
+				if (c != -1) {
+					extractor.accept((char) c);
+				}
+				return c;
+			}
+
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				int read = super.read(buffer, offset, length);
+				for (int i = 0; i < read; i++) {
+					extractor.accept(buffer[offset + i]);
+				}
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * Incremental extractor, fed one character at a time like {@link PageSections.Indexer}, so that content streamed
+	 * to the database is scanned on the way. Only the name being read is buffered.
+	 */
+	static final class Extractor {
+
+		private final Map<String, Integer> counts = new LinkedHashMap<>();
+		private final StringBuilder name = new StringBuilder();
+
+		/**
+		 * Number of characters of {@link #TARGET_PREFIX} matched so far; the name is being read once all are.
+		 */
+		private int matched;
+
+		void accept(char c) {
+			if (matched == TARGET_PREFIX.length()) {
+				if (c == ')' || c == ' ' || c == '\t' || c == '#' || c == '?') {
+					String target = decode(name.toString());
+					if (!target.isEmpty() && target.length() <= MAX_NAME) {
+						counts.merge(target, 1, Integer::sum);
+					}
+					reset();
+				} else if (c == '\n' || c == '\r' || name.length() >= MAX_ENCODED_NAME) {
+					reset();
+				} else {
+					name.append(c);
+					return;
+				}
+			}
+			if (c == TARGET_PREFIX.charAt(matched)) {
+				matched++;
+			} else {
+				matched = c == TARGET_PREFIX.charAt(0) ? 1 : 0;
+			}
+		}
+
+		Set<String> finish() {
+			return counts.keySet();
+		}
+
+		Map<String, Integer> counts() {
+			return counts;
+		}
+
+		private void reset() {
+			matched = 0;
+			name.setLength(0);
+		}
+
+		private static String decode(String encoded) {
+			try {
+				return URLDecoder.decode(encoded.replace("+", "%2B"), "UTF-8");
+			} catch (IllegalArgumentException | UnsupportedEncodingException e) {
+				return encoded;
+			}
+		}
+	}
+}
@@ -0,0 +1,539 @@
+package io.vertx.starter.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only page log kept in memory-mapped segment files.
+ * <p>
+ * Every write appends a self-describing record to the active segment; the in-memory indexes map page ids and names
+ * to the latest record. On open, the segments are replayed in order to rebuild the indexes, stopping at the first
+ * torn record of a segment.
+ * <p>
+ * Record layout: {@code length:int | crc32:int | type:byte | id:int | nameLength:int | name | contentLength:int | content}
+ * where {@code length} covers the whole record and the checksum covers everything after it. The content of a versioned
+ * put starts with the {@code version:int} of the page, the number of times it was written; plain puts, written before
+ * pages were versioned, stand for version 0.
+ * <p>
+ * The store is not thread-safe: everything except {@link #compact(CompactionPlan)} must run on the owning thread.
+ */
+class PageLogStore {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageLogStore.class);
+
+	static final String SEGMENT_SUFFIX = ".log";
+	static final String COMPACTION_SUFFIX = ".compact";
+
+	private static final byte RECORD_PUT = 1;
+	private static final byte RECORD_DELETE = 2;
+	private static final byte RECORD_NEXT_ID = 3;
+	private static final byte RECORD_COMMIT = 4;
+	private static final byte RECORD_VERSIONED_PUT = 5;
+
+	private static final int HEADER_SIZE = 4 + 4 + 1 + 4 + 4 + 4;
+
+	private final Path directory;
+	private final int segmentSize;
+
+	private final List<Segment> segments = new ArrayList<>();
+	private final TreeMap<Integer, Entry> idIndex = new TreeMap<>();
+	private final HashMap<String, Integer> nameIndex = new HashMap<>();
+
+	private Segment active;
+	private int nextId;
+	private boolean dirty;
+	private List<MappedByteBuffer> unsynced = new ArrayList<>();
+
+	private PageLogStore(Path directory, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Opens (or creates) the store in {@code directory}, finishing any interrupted compaction and replaying the log.
+	 * This uses blocking file APIs.
+	 */
+	static PageLogStore open(Path directory, int segmentSize) throws IOException {
+		Files.createDirectories(directory);
+		PageLogStore store = new PageLogStore(directory, segmentSize);
+		store.recoverCompactions();
+		store.replay();
+		return store;
+	}
+
+	Entry get(int id) {
+		return idIndex.get(id);
+	}
+
+	Entry get(String name) {
+		Integer id = nameIndex.get(name);
+		return id == null ? null : idIndex.get(id);
+	}
+
+	Iterable<Entry> entries() {
+		return idIndex.values();
+	}
+
+	Iterable<String> names() {
+		return nameIndex.keySet();
+	}
+
+	int size() {
+		return idIndex.size();
+	}
+
+	String readContent(Entry entry) {
+		ByteBuffer buffer = entry.segment.buffer.duplicate();
+		int contentOffset = entry.offset + HEADER_SIZE - 4 + entry.nameLength;
+		int contentLength = buffer.getInt(contentOffset);
+		int versionLength = entry.versioned ? 4 : 0;
+		buffer.position(contentOffset + 4 + versionLength).limit(contentOffset + 4 + contentLength);
+		return StandardCharsets.UTF_8.decode(buffer).toString();
+	}
+
+	int create(String name, String content) throws IOException {
+		if (nameIndex.containsKey(name)) {
+			throw new IllegalArgumentException("A page named '" + name + "' already exists");
+		}
+		int id = nextId++;
+		put(id, name, content);
+		return id;
+	}
+
+	boolean update(int id, String content) throws IOException {
+		Entry entry = idIndex.get(id);
+		if (entry == null) {
+			return false;
+		}
+		put(id, entry.name, content);
+		return true;
+	}
+
+	boolean delete(int id) throws IOException {
+		Entry entry = idIndex.get(id);
+		if (entry == null) {
+			return false;
+		}
+		Location location = append(RECORD_DELETE, id, new byte[0], new byte[0]);
+		idIndex.remove(id);
+		nameIndex.remove(entry.name);
+		entry.segment.garbage += entry.length;
+		location.segment.garbage += location.length;
+		return true;
+	}
+
+	private void put(int id, String name, String content) throws IOException {
+		Entry current = idIndex.get(id);
+		Location location = append(RECORD_VERSIONED_PUT, id, name.getBytes(StandardCharsets.UTF_8),
+				current == null ? 1 : current.version + 1, content.getBytes(StandardCharsets.UTF_8));
+		Entry previous = idIndex.put(id, new Entry(id, name, location));
+		nameIndex.put(name, id);
+		if (previous != null) {
+			previous.segment.garbage += previous.length;
+		}
+	}
+
+	/**
+	 * Hands over the segments written since the last call, so that they can be forced to disk off the owning thread.
+	 */
+	List<MappedByteBuffer> drainUnsynced() {
+		if (dirty) {
+			dirty = false;
+			unsynced.add(active.buffer);
+		}
+		List<MappedByteBuffer> buffers = unsynced;
+		unsynced = new ArrayList<>();
+		return buffers;
+	}
+
+	/**
+	 * Forces every pending write to disk and releases the segments. This blocks.
+	 */
+	void close() {
+		drainUnsynced().forEach(MappedByteBuffer::force);
+		for (Segment segment : segments) {
+			segment.close();
+		}
+		segments.clear();
+	}
+
+	/**
+	 * @return the fraction of bytes in sealed segments that belong to overwritten or deleted pages
+	 */
+	double garbageRatio() {
+		long used = 0;
+		long garbage = 0;
+		for (Segment segment : segments) {
+			if (segment != active) {
+				used += segment.position;
+				garbage += segment.garbage;
+			}
+		}
+		return used == 0 ? 0.0 : (double) garbage / used;
+	}
+
+	/**
+	 * Seals the active segment and captures the live records of every sealed segment. Runs on the owning thread.
+	 *
+	 * @return the plan to hand to {@link #compact(CompactionPlan)}, or {@code null} when there is nothing to compact
+	 */
+	CompactionPlan planCompaction() throws IOException {
+		if (active.position > 0) {
+			roll(0);
+		}
+		List<Segment> sealed = new ArrayList<>(segments);
+		sealed.remove(active);
+		if (sealed.isEmpty()) {
+			return null;
+		}
+		List<Entry> live = new ArrayList<>();
+		for (Entry entry : idIndex.values()) {
+			if (entry.segment != active) {
+				live.add(entry);
+			}
+		}
+		return new CompactionPlan(sealed, live, nextId);
+	}
+
+	/**
+	 * Copies the live records of a plan into a single new segment, then atomically replaces the sealed segments with
+	 * it. Only reads sealed segments, so it may run on a worker thread while the owning thread keeps appending.
+	 * <p>
+	 * The compacted file is first written as {@code segment-N.compact} and ends with a commit record; once that is on
+	 * disk, {@link #recoverCompactions()} can always finish the swap after a crash.
+	 */
+	void compact(CompactionPlan plan) throws IOException {
+		long seq = plan.sealed.get(plan.sealed.size() - 1).seq;
+		int size = HEADER_SIZE * 2;
+		for (Entry entry : plan.live) {
+			size += entry.length;
+		}
+
+		Path compactPath = directory.resolve(fileName(seq, COMPACTION_SUFFIX));
+		Segment target = Segment.create(seq, compactPath, size);
+		for (Entry entry : plan.live) {
+			ByteBuffer record = entry.segment.buffer.duplicate();
+			record.position(entry.offset).limit(entry.offset + entry.length);
+			plan.relocated.put(entry, target.position);
+			target.buffer.position(target.position);
+			target.buffer.put(record);
+			target.position += entry.length;
+		}
+		writeRecord(target, RECORD_NEXT_ID, plan.nextId, new byte[0], new byte[0]);
+		writeRecord(target, RECORD_COMMIT, 0, new byte[0], new byte[0]);
+		target.buffer.force();
+
+		for (Segment segment : plan.sealed) {
+			Files.deleteIfExists(segment.path);
+		}
+		Path segmentPath = directory.resolve(fileName(seq, SEGMENT_SUFFIX));
+		Files.move(compactPath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+		target.path = segmentPath;
+		plan.target = target;
+	}
+
+	/**
+	 * Points the indexes at the compacted segment, skipping pages that were rewritten or deleted while compaction ran.
+	 * Runs on the owning thread.
+	 */
+	void completeCompaction(CompactionPlan plan) {
+		Segment target = plan.target;
+		for (Map.Entry<Entry, Integer> moved : plan.relocated.entrySet()) {
+			Entry old = moved.getKey();
+			if (idIndex.get(old.id) == old) {
+				idIndex.put(old.id, new Entry(old.id, old.name, new Location(target, moved.getValue(), old.length)));
+			} else {
+				target.garbage += old.length;
+			}
+		}
+		int index = segments.indexOf(plan.sealed.get(0));
+		segments.removeAll(plan.sealed);
+		segments.add(index, target);
+		for (Segment segment : plan.sealed) {
+			segment.close();
+		}
+	}
+
+	private Location append(byte type, int id, byte[] name, byte[] content) throws IOException {
+		return append(type, id, name, 0, content);
+	}
+
+	/**
+	 * @param version written ahead of the content of a {@link #RECORD_VERSIONED_PUT}, ignored for other records
+	 */
+	private Location append(byte type, int id, byte[] name, int version, byte[] content) throws IOException {
+		int length = HEADER_SIZE + name.length + (type == RECORD_VERSIONED_PUT ? 4 : 0) + content.length;
+		if (active.position + length > active.capacity) {
+			roll(length);
+		}
+		int offset = active.position;
+		writeRecord(active, type, id, name, version, content);
+		dirty = true;
+		return new Location(active, offset, length);
+	}
+
+	private void roll(int minimumCapacity) throws IOException {
+		if (dirty) {
+			dirty = false;
+			unsynced.add(active.buffer);
+		}
+		long seq = active == null ? 0 : active.seq + 1;
+		active = Segment.create(seq, directory.resolve(fileName(seq, SEGMENT_SUFFIX)),
+				Math.max(segmentSize, minimumCapacity));
+		segments.add(active);
+	}
+
+	private static void writeRecord(Segment segment, byte type, int id, byte[] name, byte[] content) {
+		writeRecord(segment, type, id, name, 0, content);
+	}
+
+	private static void writeRecord(Segment segment, byte type, int id, byte[] name, int version, byte[] content) {
+		int versionLength = type == RECORD_VERSIONED_PUT ? 4 : 0;
+		int length = HEADER_SIZE + name.length + versionLength + content.length;
+		ByteBuffer buffer = segment.buffer;
+		int offset = segment.position;
+		buffer.position(offset + 8);
+		buffer.put(type).putInt(id).putInt(name.length).put(name).putInt(versionLength + content.length);
+		if (versionLength > 0) {
+			buffer.putInt(version);
+		}
+		buffer.put(content);
+
+		CRC32 crc = new CRC32();
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset + 8).limit(offset + length);
+		crc.update(body);
+		buffer.putInt(offset + 4, (int) crc.getValue());
+		// the length goes in last, so a record is never visible before it is complete
+		buffer.putInt(offset, length);
+		segment.position = offset + length;
+	}
+
+	private void recoverCompactions() throws IOException {
+		for (Path compacted : list(COMPACTION_SUFFIX)) {
+			long seq = seqOf(compacted, COMPACTION_SUFFIX);
+			Segment segment = Segment.open(seq, compacted);
+			boolean committed = false;
+			int position = 0;
+			int length;
+			while ((length = validRecordLength(segment, position)) > 0) {
+				committed = segment.buffer.get(position + 8) == RECORD_COMMIT;
+				position += length;
+			}
+			segment.close();
+
+			if (committed) {
+				LOGGER.info("Finishing interrupted compaction into segment {}", seq);
+				for (Path path : list(SEGMENT_SUFFIX)) {
+					if (seqOf(path, SEGMENT_SUFFIX) <= seq) {
+						Files.delete(path);
+					}
+				}
+				Files.move(compacted, directory.resolve(fileName(seq, SEGMENT_SUFFIX)), StandardCopyOption.ATOMIC_MOVE);
+			} else {
+				LOGGER.warn("Discarding incomplete compaction into segment {}", seq);
+				Files.delete(compacted);
+			}
+		}
+	}
+
+	private void replay() throws IOException {
+		List<Path> paths = list(SEGMENT_SUFFIX);
+		paths.sort((a, b) -> Long.compare(seqOf(a, SEGMENT_SUFFIX), seqOf(b, SEGMENT_SUFFIX)));
+		for (Path path : paths) {
+			Segment segment = Segment.open(seqOf(path, SEGMENT_SUFFIX), path);
+			segments.add(segment);
+			int length;
+			while ((length = validRecordLength(segment, segment.position)) > 0) {
+				apply(segment, segment.position, length);
+				segment.position += length;
+			}
+			if (segment.position + 4 <= segment.capacity && segment.buffer.getInt(segment.position) != 0) {
+				LOGGER.warn("Truncating torn record at offset {} of {}", segment.position, path);
+				int end = Math.min(segment.capacity, segment.position + HEADER_SIZE);
+				for (int i = segment.position; i < end; i++) {
+					segment.buffer.put(i, (byte) 0);
+				}
+			}
+			active = segment;
+		}
+		if (active == null || active.position + HEADER_SIZE > active.capacity) {
+			roll(0);
+		}
+	}
+
+	private void apply(Segment segment, int offset, int length) {
+		ByteBuffer buffer = segment.buffer;
+		byte type = buffer.get(offset + 8);
+		int id = buffer.getInt(offset + 9);
+		switch (type) {
+			case RECORD_PUT:
+			case RECORD_VERSIONED_PUT:
+				int nameLength = buffer.getInt(offset + 13);
+				byte[] name = new byte[nameLength];
+				ByteBuffer nameBuffer = buffer.duplicate();
+				nameBuffer.position(offset + 17);
+				nameBuffer.get(name);
+				Entry entry = new Entry(id, new String(name, StandardCharsets.UTF_8), new Location(segment, offset, length));
+				Entry previous = idIndex.put(id, entry);
+				if (previous != null) {
+					previous.segment.garbage += previous.length;
+					nameIndex.remove(previous.name);
+				}
+				nameIndex.put(entry.name, id);
+				nextId = Math.max(nextId, id + 1);
+				break;
+			case RECORD_DELETE:
+				Entry deleted = idIndex.remove(id);
+				if (deleted != null) {
+					nameIndex.remove(deleted.name);
+					deleted.segment.garbage += deleted.length;
+				}
+				segment.garbage += length;
+				break;
+			case RECORD_NEXT_ID:
+				nextId = Math.max(nextId, id);
+				segment.garbage += length;
+				break;
+			default:
+				segment.garbage += length;
+		}
+	}
+
+	/**
+	 * @return the length of the record at {@code offset}, or 0 if there is no complete, intact record there
+	 */
+	private static int validRecordLength(Segment segment, int offset) {
+		if (offset + HEADER_SIZE > segment.capacity) {
+			return 0;
+		}
+		ByteBuffer buffer = segment.buffer;
+		int length = buffer.getInt(offset);
+		if (length < HEADER_SIZE || offset + length > segment.capacity) {
+			return 0;
+		}
+		ByteBuffer body = buffer.duplicate();
+		body.position(offset + 8).limit(offset + length);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		return (int) crc.getValue() == buffer.getInt(offset + 4) ? length : 0;
+	}
+
+	private List<Path> list(String suffix) throws IOException {
+		List<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*" + suffix)) {
+			stream.forEach(paths::add);
+		}
+		return paths;
+	}
+
+	private static String fileName(long seq, String suffix) {
+		return String.format("segment-%016d%s", seq, suffix);
+	}
+
+	private static long seqOf(Path path, String suffix) {
+		String name = path.getFileName().toString();
+		return Long.parseLong(name.substring("segment-".length(), name.length() - suffix.length()));
+	}
+
+	static class Location {
+		final Segment segment;
+		final int offset;
+		final int length;
+
+		Location(Segment segment, int offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	static final class Entry extends Location {
+		final int id;
+		final String name;
+		final int nameLength;
+		final boolean versioned;
+		/**
+		 * The number of times the page was written, counted from 0 at the last plain put.
+		 */
+		final int version;
+
+		Entry(int id, String name, Location location) {
+			super(location.segment, location.offset, location.length);
+			this.id = id;
+			this.name = name;
+			ByteBuffer buffer = location.segment.buffer;
+			this.nameLength = buffer.getInt(location.offset + 13);
+			this.versioned = buffer.get(location.offset + 8) == RECORD_VERSIONED_PUT;
+			this.version = versioned ? buffer.getInt(location.offset + HEADER_SIZE + nameLength) : 0;
+		}
+	}
+
+	static final class CompactionPlan {
+		final List<Segment> sealed;
+		final List<Entry> live;
+		final int nextId;
+		final Map<Entry, Integer> relocated = new HashMap<>();
+		Segment target;
+
+		CompactionPlan(List<Segment> sealed, List<Entry> live, int nextId) {
+			this.sealed = sealed;
+			this.live = live;
+			this.nextId = nextId;
+		}
+	}
+
+	static final class Segment {
+		final long seq;
+		final MappedByteBuffer buffer;
+		final int capacity;
+		Path path;
+		int position;
+		long garbage;
+		private FileChannel channel;
+
+		private Segment(long seq, Path path, FileChannel channel, int capacity) throws IOException {
+			this.seq = seq;
+			this.path = path;
+			this.channel = channel;
+			this.capacity = capacity;
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+
+		static Segment create(long seq, Path path, int capacity) throws IOException {
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new Segment(seq, path, channel, capacity);
+		}
+
+		static Segment open(long seq, Path path) throws IOException {
+			FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			return new Segment(seq, path, channel, (int) channel.size());
+		}
+
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close segment " + path, e);
+			}
+		}
+	}
+}
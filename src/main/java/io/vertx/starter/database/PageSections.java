@@ -0,0 +1,233 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits markdown into heading-delimited sections, as offsets into the page content.
+ * <p>
+ * Every ATX heading ({@code #} to {@code ######}) outside fenced code blocks starts a section that runs until the next
+ * heading, whatever its level. Section 0 is the text before the first heading and always exists, possibly empty.
+ * Offsets and lengths count {@code char}s, like the database does for {@code clob}s, so a section can be read or
+ * replaced without touching the rest of the page.
+ */
+final class PageSections {
+
+	static final int MAX_HEADING_LENGTH = 255;
+
+	private static final int MAX_LINE_PREFIX = 1024;
+
+	private PageSections() {
+	}
+
+	static final class Section {
+		final String heading;
+		final int level;
+		final int start;
+		final int length;
+
+		Section(String heading, int level, int start, int length) {
+			this.heading = heading;
+			this.level = level;
+			this.start = start;
+			this.length = length;
+		}
+
+		JsonObject toJson(int index) {
+			return new JsonObject()
+					.put("index", index)
+					.put("heading", heading)
+					.put("level", level)
+					.put("start", start)
+					.put("length", length);
+		}
+	}
+
+	/**
+	 * The content of a page once a section was replaced, as a splice of the original content, and its new sections.
+	 */
+	static final class Replacement {
+		final int start;
+		final int removed;
+		final String text;
+		final List<Section> sections;
+
+		Replacement(int start, int removed, String text, List<Section> sections) {
+			this.start = start;
+			this.removed = removed;
+			this.text = text;
+			this.sections = sections;
+		}
+	}
+
+	static List<Section> index(CharSequence markdown) {
+		Indexer indexer = new Indexer();
+		for (int i = 0; i < markdown.length(); i++) {
+			indexer.accept(markdown.charAt(i));
+		}
+		return indexer.finish();
+	}
+
+	static JsonArray toJson(List<Section> sections) {
+		JsonArray json = new JsonArray();
+		for (int i = 0; i < sections.size(); i++) {
+			json.add(sections.get(i).toJson(i));
+		}
+		return json;
+	}
+
+	/**
+	 * @return a reader indexing the characters that go through it into {@code indexer}
+	 */
+	static Reader indexing(Reader reader, Indexer indexer) {
+		return new FilterReader(reader) {
+			@Override
+			public int read() throws IOException {
+				int c = super.read();
+				if (c != -1) {
+					indexer.accept((char) c);
+				}
+				return c;
+			}
+
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				int read = super.read(buffer, offset, length);
+				for (int i = 0; i < read; i++) {
+					indexer.accept(buffer[offset + i]);
+				}
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * Replaces section {@code index} with {@code markdown}, which may itself hold headings. A line break is appended
+	 * when needed so that the next heading still starts a line.
+	 *
+	 * @return {@code null} if there is no such section
+	 */
+	static Replacement replace(List<Section> sections, int index, String markdown) {
+		if (index < 0 || index >= sections.size()) {
+			return null;
+		}
+		Section replaced = sections.get(index);
+		String text = markdown;
+		if (index < sections.size() - 1 && !text.isEmpty() && text.charAt(text.length() - 1) != '\n') {
+			text = text + "\n";
+		}
+		int delta = text.length() - replaced.length;
+
+		List<Section> result = new ArrayList<>(sections.size());
+		for (int i = 0; i < index; i++) {
+			result.add(sections.get(i));
+		}
+		List<Section> inserted = index(text);
+		Section preamble = inserted.get(0);
+		if (index == 0) {
+			result.add(preamble);
+		} else if (preamble.length > 0) {
+			// Text before the first heading of the replacement belongs to the previous section
+			Section previous = result.remove(index - 1);
+			result.add(new Section(previous.heading, previous.level, previous.start, previous.length + preamble.length));
+		}
+		for (int i = 1; i < inserted.size(); i++) {
+			Section section = inserted.get(i);
+			result.add(new Section(section.heading, section.level, replaced.start + section.start, section.length));
+		}
+		for (int i = index + 1; i < sections.size(); i++) {
+			Section section = sections.get(i);
+			result.add(new Section(section.heading, section.level, section.start + delta, section.length));
+		}
+		return new Replacement(replaced.start, replaced.length, text, result);
+	}
+
+	/**
+	 * Incremental indexer, fed one character at a time so that content streamed to the database is indexed on the
+	 * way. Only the beginning of each line is buffered.
+	 */
+	static final class Indexer {
+
+		private final List<Section> sections = new ArrayList<>();
+		private final StringBuilder line = new StringBuilder();
+
+		private int position;
+		private int lineStart;
+		private char fence;
+		private String heading;
+		private int level;
+		private int sectionStart;
+
+		void accept(char c) {
+			position++;
+			if (c == '\n') {
+				endLine();
+				lineStart = position;
+			} else if (line.length() < MAX_LINE_PREFIX) {
+				line.append(c);
+			}
+		}
+
+		List<Section> finish() {
+			endLine();
+			sections.add(new Section(heading, level, sectionStart, position - sectionStart));
+			return sections;
+		}
+
+		private void endLine() {
+			int indent = 0;
+			while (indent < 3 && indent < line.length() && line.charAt(indent) == ' ') {
+				indent++;
+			}
+			if (startsFence(indent)) {
+				char marker = line.charAt(indent);
+				if (fence == 0) {
+					fence = marker;
+				} else if (fence == marker) {
+					fence = 0;
+				}
+			} else if (fence == 0) {
+				int hashes = 0;
+				while (indent + hashes < line.length() && line.charAt(indent + hashes) == '#') {
+					hashes++;
+				}
+				int end = indent + hashes;
+				if (hashes >= 1 && hashes <= 6 && (end == line.length() || Character.isWhitespace(line.charAt(end)))) {
+					sections.add(new Section(heading, level, sectionStart, lineStart - sectionStart));
+					heading = headingText(line.substring(end));
+					level = hashes;
+					sectionStart = lineStart;
+				}
+			}
+			line.setLength(0);
+		}
+
+		private boolean startsFence(int indent) {
+			if (line.length() < indent + 3) {
+				return false;
+			}
+			char marker = line.charAt(indent);
+			return (marker == '`' || marker == '~')
+					&& line.charAt(indent + 1) == marker
+					&& line.charAt(indent + 2) == marker;
+		}
+
+		private static String headingText(String text) {
+			String trimmed = text.trim();
+			int end = trimmed.length();
+			while (end > 0 && trimmed.charAt(end - 1) == '#') {
+				end--;
+			}
+			if (end == 0 || Character.isWhitespace(trimmed.charAt(end - 1))) {
+				trimmed = trimmed.substring(0, end).trim();
+			}
+			return trimmed.length() > MAX_HEADING_LENGTH ? trimmed.substring(0, MAX_HEADING_LENGTH) : trimmed;
+		}
+	}
+}
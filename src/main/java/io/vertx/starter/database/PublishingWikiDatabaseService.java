@@ -0,0 +1,196 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * Publishes a {@link WikiDataBaseVerticle#PAGE_CHANGES_ADDRESS} event after every successful write of the wrapped
+ * service, so that page caches on every node of the cluster can drop stale entries.
+ * <p>
+ * Events carry an {@code action} ({@code create}, {@code save}, {@code delete} or {@code import}) and the {@code name},
+ * {@code id} or {@code names} the caller passed. Deletions also carry the {@code name} of the page, read before it is
+ * deleted, so that indexes of page names can drop it. When the wrapped service is a shard, ids are made global as in
+ * {@link ShardedWikiDatabaseService}.
+ */
+class PublishingWikiDatabaseService implements WikiDatabaseService {
+
+	private final Vertx vertx;
+	private final WikiDatabaseService delegate;
+	private final int shard;
+	private final int shards;
+
+	PublishingWikiDatabaseService(Vertx vertx, WikiDatabaseService delegate, int shard, int shards) {
+		this.vertx = vertx;
+		this.delegate = delegate;
+		this.shard = shard;
+		this.shards = shards;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+		delegate.fetchAllPages(resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchPage(name, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchPageById(id, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchPageName(id, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		delegate.createPage(title, markdown, publishing(resultHandler,
+				new JsonObject().put("action", "create").put("name", title)));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		delegate.savePage(id, markdown, publishing(resultHandler,
+				new JsonObject().put("action", "save").put("id", globalId(id))));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.savePageIfVersion(id, version, markdown, ar -> {
+			if (ar.succeeded() && ar.result().getBoolean("saved", false)) {
+				vertx.eventBus().publish(WikiDataBaseVerticle.PAGE_CHANGES_ADDRESS,
+						new JsonObject().put("action", "save").put("id", globalId(id)));
+			}
+			resultHandler.handle(ar);
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler) {
+		delegate.savePageFromFile(id, file, publishing(resultHandler,
+				new JsonObject().put("action", "save").put("id", globalId(id))));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+		// Names never change, so the one read first is still the name of the deleted page
+		delegate.fetchPageName(id, page -> {
+			if (page.failed()) {
+				resultHandler.handle(Future.failedFuture(page.cause()));
+				return;
+			}
+			JsonObject event = new JsonObject().put("action", "delete").put("id", globalId(id));
+			if (page.result().getBoolean("found")) {
+				event.put("name", page.result().getString("name"));
+			}
+			delegate.deletePage(id, publishing(resultHandler, event));
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler) {
+		JsonArray names = new JsonArray();
+		pages.forEach(page -> names.add(((JsonObject) page).getString("name")));
+		delegate.importPages(pages, publishing(resultHandler,
+				new JsonObject().put("action", "import").put("names", names)));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+		delegate.fetchAllPagesData(resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchPageSections(id, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchPageSection(id, index, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.savePageSection(id, index, markdown, ar -> {
+			if (ar.succeeded() && ar.result().getBoolean("found")) {
+				vertx.eventBus().publish(WikiDataBaseVerticle.PAGE_CHANGES_ADDRESS,
+						new JsonObject().put("action", "save").put("id", globalId(id)));
+			}
+			resultHandler.handle(ar);
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.savePageSectionIfVersion(id, index, version, markdown, ar -> {
+			if (ar.succeeded() && ar.result().getBoolean("saved", false)) {
+				vertx.eventBus().publish(WikiDataBaseVerticle.PAGE_CHANGES_ADDRESS,
+						new JsonObject().put("action", "save").put("id", globalId(id)));
+			}
+			resultHandler.handle(ar);
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchChanges(since, limit, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler) {
+		delegate.fetchBacklinks(name, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler) {
+		delegate.fetchExistingPages(names, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+		delegate.fetchStatistics(resultHandler);
+		return this;
+	}
+
+	private int globalId(int id) {
+		return shards > 1 ? ShardedWikiDatabaseService.globalId(id, shard, shards) : id;
+	}
+
+	private Handler<AsyncResult<Void>> publishing(Handler<AsyncResult<Void>> resultHandler, JsonObject event) {
+		return ar -> {
+			if (ar.succeeded()) {
+				vertx.eventBus().publish(WikiDataBaseVerticle.PAGE_CHANGES_ADDRESS, event);
+			}
+			resultHandler.handle(ar);
+		};
+	}
+}
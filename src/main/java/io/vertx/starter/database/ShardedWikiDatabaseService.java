@@ -0,0 +1,355 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Routes calls to {@code shards} database verticles listening on {@code <address>.0} to {@code <address>.<shards-1>}.
+ * <p>
+ * Pages are placed by the hash of their name. Page ids seen by callers are global: {@code localId * shards + shard},
+ * so id based calls go straight to the right shard. Listing calls are sent to every shard and their results merged by
+ * page name. An import is split by shard and runs on all of them in parallel, so it is only atomic per shard.
+ */
+class ShardedWikiDatabaseService implements WikiDatabaseService {
+
+	private final WikiDatabaseService[] shards;
+
+	ShardedWikiDatabaseService(Vertx vertx, String address, int shardCount, DeliveryOptions options) {
+		this.shards = new WikiDatabaseService[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			shards[i] = WikiDatabaseService.createProxy(vertx, shardAddress(address, i), options);
+		}
+	}
+
+	static String shardAddress(String address, int shard) {
+		return address + "." + shard;
+	}
+
+	static int shardOf(String name, int shardCount) {
+		return Math.floorMod(name.hashCode(), shardCount);
+	}
+
+	static int globalId(int localId, int shard, int shardCount) {
+		return localId * shardCount + shard;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (WikiDatabaseService shard : shards) {
+			Future<JsonArray> reply = Future.future();
+			shard.fetchAllPages(reply.completer());
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				List<String> names = new ArrayList<>();
+				for (int i = 0; i < shards.length; i++) {
+					ar.result().<JsonArray>resultAt(i).forEach(name -> names.add((String) name));
+				}
+				names.sort(null);
+				resultHandler.handle(Future.succeededFuture(new JsonArray(names)));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+		int shard = shardOf(name, shards.length);
+		shards[shard].fetchPage(name, globalId(shard, resultHandler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		int shard = Math.floorMod(id, shards.length);
+		shards[shard].fetchPageById(Math.floorDiv(id, shards.length), globalId(shard, resultHandler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].fetchPageName(Math.floorDiv(id, shards.length), resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		shards[shardOf(title, shards.length)].createPage(title, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].savePage(Math.floorDiv(id, shards.length), markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].savePageIfVersion(Math.floorDiv(id, shards.length), version, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].savePageFromFile(Math.floorDiv(id, shards.length), file, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].deletePage(Math.floorDiv(id, shards.length), resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].fetchPageSections(Math.floorDiv(id, shards.length), resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].fetchPageSection(Math.floorDiv(id, shards.length), index, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].savePageSection(Math.floorDiv(id, shards.length), index, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		shards[Math.floorMod(id, shards.length)].savePageSectionIfVersion(Math.floorDiv(id, shards.length), index, version, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler) {
+		JsonArray[] batches = new JsonArray[shards.length];
+		for (int i = 0; i < pages.size(); i++) {
+			JsonObject page = pages.getJsonObject(i);
+			int shard = shardOf(page.getString("name"), shards.length);
+			if (batches[shard] == null) {
+				batches[shard] = new JsonArray();
+			}
+			batches[shard].add(page);
+		}
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			if (batches[i] != null) {
+				Future<Void> reply = Future.future();
+				shards[i].importPages(batches[i], reply.completer());
+				replies.add(reply);
+			}
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				resultHandler.handle(Future.succeededFuture());
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (WikiDatabaseService shard : shards) {
+			Future<List<JsonObject>> reply = Future.future();
+			shard.fetchAllPagesData(reply.completer());
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				List<JsonObject> pages = new ArrayList<>();
+				for (int i = 0; i < shards.length; i++) {
+					for (JsonObject page : ar.result().<List<JsonObject>>resultAt(i)) {
+						pages.add(page.put("ID", globalId(page.getInteger("ID"), i, shards.length)));
+					}
+				}
+				resultHandler.handle(Future.succeededFuture(pages.stream()
+						.sorted(Comparator.comparing(page -> page.getString("NAME")))
+						.collect(Collectors.toList())));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * The sequence is made of the sequences of the shards, joined with dots. Each shard returns up to {@code limit}
+	 * pages. When one shard resets, all of them are read again from the start, since the client drops every page.
+	 */
+	@Override
+	public WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		String[] sequences = since.split("\\.", -1);
+		if (sequences.length != shards.length) {
+			sequences = new String[shards.length];
+			Arrays.fill(sequences, "0");
+			fetchChanges(sequences, limit, !"0".equals(since), resultHandler);
+		} else {
+			fetchChanges(sequences, limit, false, resultHandler);
+		}
+		return this;
+	}
+
+	private void fetchChanges(String[] sequences, int limit, boolean reset, Handler<AsyncResult<JsonObject>> resultHandler) {
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			Future<JsonObject> reply = Future.future();
+			shards[i].fetchChanges(sequences[i], limit, reply.completer());
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.failed()) {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			boolean fromStart = Arrays.stream(sequences).allMatch("0"::equals);
+			List<String> next = new ArrayList<>(shards.length);
+			JsonArray pages = new JsonArray();
+			boolean more = false;
+			boolean shardReset = false;
+			for (int i = 0; i < shards.length; i++) {
+				JsonObject reply = ar.result().resultAt(i);
+				if (reply.getBoolean("reset") && !fromStart) {
+					String[] start = new String[shards.length];
+					Arrays.fill(start, "0");
+					fetchChanges(start, limit, true, resultHandler);
+					return;
+				}
+				shardReset |= reply.getBoolean("reset");
+				next.add(reply.getString("sequence"));
+				more |= reply.getBoolean("more");
+				for (Object page : reply.getJsonArray("pages")) {
+					JsonObject json = (JsonObject) page;
+					pages.add(json.put("id", globalId(json.getInteger("id"), i, shards.length)));
+				}
+			}
+			resultHandler.handle(Future.succeededFuture(new JsonObject()
+					.put("reset", reset || shardReset)
+					.put("sequence", String.join(".", next))
+					.put("more", more)
+					.put("pages", pages)));
+		});
+	}
+
+	/**
+	 * Linking pages can be on any shard, so every shard is asked.
+	 */
+	@Override
+	public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler) {
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (WikiDatabaseService shard : shards) {
+			Future<JsonArray> reply = Future.future();
+			shard.fetchBacklinks(name, reply.completer());
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				List<String> names = new ArrayList<>();
+				for (int i = 0; i < shards.length; i++) {
+					ar.result().<JsonArray>resultAt(i).forEach(source -> names.add((String) source));
+				}
+				names.sort(null);
+				resultHandler.handle(Future.succeededFuture(new JsonArray(names)));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Each shard is only asked about the names placed on it.
+	 */
+	@Override
+	public WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler) {
+		JsonArray[] byShard = new JsonArray[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			byShard[i] = new JsonArray();
+		}
+		for (Object name : names) {
+			byShard[shardOf((String) name, shards.length)].add(name);
+		}
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (int i = 0; i < shards.length; i++) {
+			Future<JsonArray> reply = Future.future();
+			if (byShard[i].isEmpty()) {
+				reply.complete(new JsonArray());
+			} else {
+				shards[i].fetchExistingPages(byShard[i], reply.completer());
+			}
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				Set<Object> existing = new HashSet<>();
+				for (int i = 0; i < shards.length; i++) {
+					existing.addAll(ar.result().<JsonArray>resultAt(i).getList());
+				}
+				resultHandler.handle(Future.succeededFuture(new JsonArray(names.stream()
+						.filter(existing::contains)
+						.collect(Collectors.toList()))));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+		List<Future> replies = new ArrayList<>(shards.length);
+		for (WikiDatabaseService shard : shards) {
+			Future<JsonObject> reply = Future.future();
+			shard.fetchStatistics(reply.completer());
+			replies.add(reply);
+		}
+		CompositeFuture.all(replies).setHandler(ar -> {
+			if (ar.succeeded()) {
+				JsonArray statistics = new JsonArray();
+				for (int i = 0; i < shards.length; i++) {
+					statistics.add(ar.result().<JsonObject>resultAt(i));
+				}
+				resultHandler.handle(Future.succeededFuture(new JsonObject().put("shards", statistics)));
+			} else {
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+		return this;
+	}
+
+	private Handler<AsyncResult<JsonObject>> globalId(int shard, Handler<AsyncResult<JsonObject>> resultHandler) {
+		return ar -> {
+			if (ar.succeeded() && ar.result().getInteger("id") != null) {
+				JsonObject page = ar.result();
+				page.put("id", globalId(page.getInteger("id"), shard, shards.length));
+			}
+			resultHandler.handle(ar);
+		};
+	}
+}
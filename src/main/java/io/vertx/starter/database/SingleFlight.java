@@ -0,0 +1,88 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces identical concurrent reads: a call whose key already has a query in flight waits for that query instead
+ * of running its own, and every waiter gets its own copy of the reply.
+ * <p>
+ * Writes must call {@link #detachAll()} once they complete, so that later calls start a fresh query rather than
+ * join one that may have read the data before the write. The queries already in flight still complete for their
+ * waiters.
+ * <p>
+ * Instances are confined to the event loop of the database verticle, so there is no synchronization.
+ */
+class SingleFlight<K> {
+
+	private final Map<K, Flight> flights = new HashMap<>();
+
+	private long queries;
+	private long coalesced;
+
+	/**
+	 * Runs {@code query} for {@code key} unless a query for the same key is in flight, in which case
+	 * {@code resultHandler} joins it. The query is given the flight, to complete, and to read its deadline from: the
+	 * latest of the deadlines of its callers.
+	 */
+	void execute(K key, long deadline, Handler<AsyncResult<JsonObject>> resultHandler, Handler<Flight> query) {
+		Flight flight = flights.get(key);
+		if (flight != null) {
+			coalesced++;
+			flight.deadline = Math.max(flight.deadline, deadline);
+			flight.waiters.add(resultHandler);
+			return;
+		}
+		queries++;
+		flight = new Flight(key, deadline, resultHandler);
+		flights.put(key, flight);
+		query.handle(flight);
+	}
+
+	void detachAll() {
+		flights.clear();
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("queries", queries)
+				.put("coalesced", coalesced)
+				.put("inFlight", flights.size());
+	}
+
+	final class Flight implements Handler<AsyncResult<JsonObject>> {
+
+		private final K key;
+		private final List<Handler<AsyncResult<JsonObject>>> waiters = new ArrayList<>(1);
+		private long deadline;
+
+		private Flight(K key, long deadline, Handler<AsyncResult<JsonObject>> first) {
+			this.key = key;
+			this.deadline = deadline;
+			waiters.add(first);
+		}
+
+		long deadline() {
+			return deadline;
+		}
+
+		@Override
+		public void handle(AsyncResult<JsonObject> result) {
+			flights.remove(key, this);
+			for (int i = 0; i < waiters.size(); i++) {
+				if (result.succeeded() && i > 0) {
+					waiters.get(i).handle(Future.succeededFuture(result.result().copy()));
+				} else {
+					waiters.get(i).handle(result);
+				}
+			}
+		}
+	}
+}
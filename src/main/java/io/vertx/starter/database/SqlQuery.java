@@ -5,6 +5,7 @@ package io.vertx.starter.database;
  */
 
 enum SqlQuery {
+  MVCC,
   CREATE_PAGES_TABLE,
   ALL_PAGES,
   GET_PAGE,
@@ -12,5 +13,47 @@ enum SqlQuery {
   SAVE_PAGE,
   DELETE_PAGE,
   ALL_PAGES_DATA,
-  GET_PAGE_BY_ID
+  GET_PAGE_BY_ID,
+  GET_PAGE_CONTENT,
+  IMPORT_PAGE,
+  CREATE_SECTIONS_TABLE,
+  GET_SECTIONS,
+  GET_SECTION_CONTENT,
+  INSERT_SECTION,
+  INSERT_SECTION_BY_NAME,
+  DELETE_SECTIONS,
+  DELETE_SECTIONS_BY_NAME,
+  SAVE_SECTION_IF_VERSION,
+  CREATE_CHANGES_TABLE,
+  CREATE_CHANGES_INDEX,
+  CREATE_CHANGES_HORIZON_TABLE,
+  BACKFILL_CHANGES,
+  LOG_CHANGE,
+  LOG_CHANGE_BY_NAME,
+  LOG_DELETION,
+  GET_CHANGES,
+  GET_CHANGES_BOUNDS,
+  DELETE_SUPERSEDED_CHANGES,
+  RECORD_CHANGES_HORIZON,
+  PURGE_CHANGES,
+  TRIM_CHANGES_HORIZON,
+  CREATE_LINKS_TABLE,
+  LINKS_OCCURRENCES_COLUMN,
+  ADD_LINKS_OCCURRENCES_COLUMN,
+  CLEAR_LINKS,
+  ALL_LINKS,
+  UNINDEXED_LINKS,
+  INSERT_LINK,
+  INSERT_LINK_BY_NAME,
+  ADD_LINK_OCCURRENCES,
+  DELETE_UNUSED_LINKS,
+  GET_LINKS,
+  DELETE_LINKS,
+  DELETE_LINKS_BY_NAME,
+  GET_PAGE_NAME,
+  EXISTING_PAGES,
+  SAVE_PAGE_IF_VERSION,
+  GET_PAGE_VERSION,
+  PAGES_VERSION_COLUMN,
+  ADD_PAGES_VERSION_COLUMN
 }
@@ -1,20 +1,24 @@
 package io.vertx.starter.database;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
-import io.vertx.serviceproxy.ProxyHelper;
+import io.vertx.starter.StartupTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Properties;
@@ -28,32 +32,175 @@ public class WikiDataBaseVerticle extends AbstractVerticle {
 	public static final String CONFIG_WIKIDB_JDBC_URL = "wikidb.jdbc.url";
 	public static final String CONFIG_WIKIDB_JDBC_DRIVER_CLASS = "wikidb.jdbc.driver_class";
 	public static final String CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE = "wikidb.jdbc.max_pool_size";
+	public static final String CONFIG_WIKIDB_JDBC_WARMUP_CONNECTIONS = "wikidb.jdbc.warmup_connections";
 	public static final String CONFIG_WIKIDB_SQL_QUERIES_RESOURCE_FILE = "wikidb.sqlqueries.resource.file";
 
+	/**
+	 * How often the page change log is compacted, in milliseconds, and how long, in seconds, deletions are kept in it;
+	 * see {@link WikiDatabaseService#fetchChanges}.
+	 */
+	public static final String CONFIG_WIKIDB_CHANGES_COMPACTION_INTERVAL = "wikidb.changes.compaction_interval";
+	public static final String CONFIG_WIKIDB_CHANGES_TOMBSTONE_TTL = "wikidb.changes.tombstone_ttl";
+
+	public static final String CONFIG_WIKIDB_BACKEND = "wikidb.backend";
+	public static final String CONFIG_WIKIDB_LOGSTORE_DIRECTORY = "wikidb.logstore.directory";
+	public static final String CONFIG_WIKIDB_LOGSTORE_SEGMENT_SIZE = "wikidb.logstore.segment_size";
+	public static final String CONFIG_WIKIDB_LOGSTORE_SYNC_INTERVAL = "wikidb.logstore.sync_interval";
+	public static final String CONFIG_WIKIDB_LOGSTORE_COMPACTION_INTERVAL = "wikidb.logstore.compaction_interval";
+	public static final String CONFIG_WIKIDB_LOGSTORE_COMPACTION_THRESHOLD = "wikidb.logstore.compaction_threshold";
+
+	public static final String BACKEND_JDBC = "jdbc";
+	public static final String BACKEND_LOGSTORE = "logstore";
+
 	public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
 
+	/**
+	 * Number of shards; each shard is a database verticle with its own queue and storage, see {@link #shardConfig}.
+	 */
+	public static final String CONFIG_WIKIDB_SHARDS = "wikidb.shards";
+	public static final String CONFIG_WIKIDB_SHARD = "wikidb.shard";
+
+	/**
+	 * Where page change events are published, see {@link PublishingWikiDatabaseService}.
+	 */
+	public static final String PAGE_CHANGES_ADDRESS = "wiki.pages.changed";
+
+	/**
+	 * Delivery option header carrying the absolute deadline of a call, in epoch milliseconds.
+	 */
+	public static final String DEADLINE_HEADER = "x-deadline";
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(WikiDataBaseVerticle.class);
 
+	private final DeadlineTracker deadlines = new DeadlineTracker();
+
+	private LogStoreWikiDatabaseServiceImpl logStore;
+
 	@Override
 	public void start(Future<Void> startFuture) throws Exception {
-		HashMap<SqlQuery, String> sqlQueries = loadSqlQueries();
+		StartupTimer timer = StartupTimer.shared(vertx);
+		String phase = config().containsKey(CONFIG_WIKIDB_SHARD) ? "db." + config().getInteger(CONFIG_WIKIDB_SHARD) : "db";
+
+		String backend = config().getString(CONFIG_WIKIDB_BACKEND, BACKEND_JDBC);
+		if (BACKEND_LOGSTORE.equals(backend)) {
+			WikiDatabaseService.createLogStore(vertx, config(), deadlines, timer.timed(phase + ".logstore", resultHandler -> {
+				if (resultHandler.succeeded()) {
+					logStore = (LogStoreWikiDatabaseServiceImpl) resultHandler.result();
+					registerService(logStore);
+					startFuture.complete();
+				} else {
+					startFuture.fail(resultHandler.cause());
+				}
+			}));
+			return;
+		} else if (!BACKEND_JDBC.equals(backend)) {
+			startFuture.fail("Unknown database backend: " + backend);
+			return;
+		}
 
 		JDBCClient dbClient = JDBCClient.createShared(vertx, new JsonObject()
 				.put("url", config().getString(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:db/wiki"))
 				.put("driver_class", config().getString(CONFIG_WIKIDB_JDBC_DRIVER_CLASS, "org.hsqldb.jdbcDriver"))
-				.put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30)));
+				.put("max_pool_size", config().getInteger(CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30)), queue());
+
+		// Reading the queries and opening the first connections are independent, do them at the same time
+		Future<HashMap<SqlQuery, String>> sqlQueries = Future.future();
+		vertx.executeBlocking(future -> {
+			try {
+				future.complete(loadSqlQueries());
+			} catch (IOException e) {
+				future.fail(e);
+			}
+		}, false, timer.timed(phase + ".sql_queries", sqlQueries.completer()));
 
-		WikiDatabaseService.create(dbClient, sqlQueries, resultHandler -> {
+		Future<Void> poolWarmup = Future.future();
+		warmUpPool(dbClient, config().getInteger(CONFIG_WIKIDB_JDBC_WARMUP_CONNECTIONS, 2),
+				timer.timed(phase + ".pool_warmup", poolWarmup.completer()));
 
-			if (resultHandler.succeeded()) {
-				ProxyHelper.registerService(WikiDatabaseService.class, vertx, resultHandler.result(), CONFIG_WIKIDB_QUEUE);
-				startFuture.complete();
-			} else {
-				startFuture.fail(resultHandler.cause());
+		CompositeFuture.all(sqlQueries, poolWarmup).setHandler(ready -> {
+			if (ready.failed()) {
+				LOGGER.error("Database preparation error", ready.cause());
+				startFuture.fail(ready.cause());
+				return;
 			}
+			WikiDatabaseService.create(vertx, config(), dbClient, sqlQueries.result(), deadlines, timer.timed(phase + ".schema", resultHandler -> {
+
+				if (resultHandler.succeeded()) {
+					registerService(resultHandler.result());
+					startFuture.complete();
+				} else {
+					startFuture.fail(resultHandler.cause());
+				}
+			}));
 		});
 	}
 
+	/**
+	 * Opens {@code connections} connections at once, so that the pool creates them now rather than on the first
+	 * requests, then gives them back.
+	 */
+	private void warmUpPool(JDBCClient dbClient, int connections, Handler<AsyncResult<Void>> handler) {
+		List<Future> acquired = new ArrayList<>(connections);
+		for (int i = 0; i < connections; i++) {
+			Future<SQLConnection> connection = Future.future();
+			dbClient.getConnection(connection.completer());
+			acquired.add(connection);
+		}
+		CompositeFuture.join(acquired).setHandler(ar -> {
+			for (Future connection : acquired) {
+				if (connection.succeeded()) {
+					((SQLConnection) connection.result()).close();
+				}
+			}
+			handler.handle(ar.succeeded() ? Future.succeededFuture() : Future.failedFuture(ar.cause()));
+		});
+	}
+
+	/**
+	 * Same as {@code ProxyHelper.registerService}, except that calls go through the {@link DeadlineTracker} first and
+	 * that writes are published on {@link #PAGE_CHANGES_ADDRESS}.
+	 */
+	private void registerService(WikiDatabaseService service) {
+		WikiDatabaseServiceVertxProxyHandler proxyHandler = new WikiDatabaseServiceVertxProxyHandler(vertx,
+				new PublishingWikiDatabaseService(vertx, service,
+						config().getInteger(CONFIG_WIKIDB_SHARD, 0), config().getInteger(CONFIG_WIKIDB_SHARDS, 1)));
+		proxyHandler.setConsumer(vertx.eventBus().<JsonObject>consumer(queue(),
+				message -> deadlines.dispatch(message, proxyHandler)));
+	}
+
+	private String queue() {
+		return config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue");
+	}
+
+	/**
+	 * Derives the configuration of one shard: its own queue, JDBC URL (the database name gets a {@code -<shard>}
+	 * suffix) and log store directory.
+	 */
+	public static JsonObject shardConfig(JsonObject config, int shard) {
+		int shards = config.getInteger(CONFIG_WIKIDB_SHARDS, 1);
+		String url = config.getString(CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:db/wiki");
+		int parameters = url.indexOf(';');
+		String shardUrl = parameters < 0 ? url + "-" + shard
+				: url.substring(0, parameters) + "-" + shard + url.substring(parameters);
+		return config.copy()
+				.put(CONFIG_WIKIDB_SHARD, shard)
+				.put(CONFIG_WIKIDB_SHARDS, shards)
+				.put(CONFIG_WIKIDB_QUEUE, ShardedWikiDatabaseService.shardAddress(
+						config.getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue"), shard))
+				.put(CONFIG_WIKIDB_JDBC_URL, shardUrl)
+				.put(CONFIG_WIKIDB_LOGSTORE_DIRECTORY,
+						config.getString(CONFIG_WIKIDB_LOGSTORE_DIRECTORY, "db/logstore") + "/" + shard);
+	}
+
+	@Override
+	public void stop(Future<Void> stopFuture) throws Exception {
+		if (logStore != null) {
+			logStore.close(stopFuture.completer());
+		} else {
+			stopFuture.complete();
+		}
+	}
+
 	/**
 	 * Note: this uses blocking APIs, but data is small ...
 	 */
@@ -80,6 +227,49 @@ public class WikiDataBaseVerticle extends AbstractVerticle {
 		sqlQueries.put(SqlQuery.DELETE_PAGE, queriesProps.getProperty("delete-page"));
 		sqlQueries.put(SqlQuery.ALL_PAGES_DATA, queriesProps.getProperty("all-pages-data"));
 		sqlQueries.put(SqlQuery.GET_PAGE_BY_ID, queriesProps.getProperty("get-page-by-id"));
+		sqlQueries.put(SqlQuery.GET_PAGE_CONTENT, queriesProps.getProperty("get-page-content"));
+		sqlQueries.put(SqlQuery.IMPORT_PAGE, queriesProps.getProperty("import-page"));
+		sqlQueries.put(SqlQuery.CREATE_SECTIONS_TABLE, queriesProps.getProperty("create-sections-table"));
+		sqlQueries.put(SqlQuery.GET_SECTIONS, queriesProps.getProperty("get-sections"));
+		sqlQueries.put(SqlQuery.GET_SECTION_CONTENT, queriesProps.getProperty("get-section-content"));
+		sqlQueries.put(SqlQuery.INSERT_SECTION, queriesProps.getProperty("insert-section"));
+		sqlQueries.put(SqlQuery.INSERT_SECTION_BY_NAME, queriesProps.getProperty("insert-section-by-name"));
+		sqlQueries.put(SqlQuery.DELETE_SECTIONS, queriesProps.getProperty("delete-sections"));
+		sqlQueries.put(SqlQuery.DELETE_SECTIONS_BY_NAME, queriesProps.getProperty("delete-sections-by-name"));
+		sqlQueries.put(SqlQuery.CREATE_CHANGES_TABLE, queriesProps.getProperty("create-changes-table"));
+		sqlQueries.put(SqlQuery.CREATE_CHANGES_INDEX, queriesProps.getProperty("create-changes-index"));
+		sqlQueries.put(SqlQuery.CREATE_CHANGES_HORIZON_TABLE, queriesProps.getProperty("create-changes-horizon-table"));
+		sqlQueries.put(SqlQuery.BACKFILL_CHANGES, queriesProps.getProperty("backfill-changes"));
+		sqlQueries.put(SqlQuery.LOG_CHANGE, queriesProps.getProperty("log-change"));
+		sqlQueries.put(SqlQuery.LOG_CHANGE_BY_NAME, queriesProps.getProperty("log-change-by-name"));
+		sqlQueries.put(SqlQuery.LOG_DELETION, queriesProps.getProperty("log-deletion"));
+		sqlQueries.put(SqlQuery.GET_CHANGES, queriesProps.getProperty("get-changes"));
+		sqlQueries.put(SqlQuery.GET_CHANGES_BOUNDS, queriesProps.getProperty("get-changes-bounds"));
+		sqlQueries.put(SqlQuery.DELETE_SUPERSEDED_CHANGES, queriesProps.getProperty("delete-superseded-changes"));
+		sqlQueries.put(SqlQuery.RECORD_CHANGES_HORIZON, queriesProps.getProperty("record-changes-horizon"));
+		sqlQueries.put(SqlQuery.PURGE_CHANGES, queriesProps.getProperty("purge-changes"));
+		sqlQueries.put(SqlQuery.TRIM_CHANGES_HORIZON, queriesProps.getProperty("trim-changes-horizon"));
+		sqlQueries.put(SqlQuery.CREATE_LINKS_TABLE, queriesProps.getProperty("create-links-table"));
+		sqlQueries.put(SqlQuery.LINKS_OCCURRENCES_COLUMN, queriesProps.getProperty("links-occurrences-column"));
+		sqlQueries.put(SqlQuery.ADD_LINKS_OCCURRENCES_COLUMN, queriesProps.getProperty("add-links-occurrences-column"));
+		sqlQueries.put(SqlQuery.CLEAR_LINKS, queriesProps.getProperty("clear-links"));
+		sqlQueries.put(SqlQuery.ALL_LINKS, queriesProps.getProperty("all-links"));
+		sqlQueries.put(SqlQuery.UNINDEXED_LINKS, queriesProps.getProperty("unindexed-links"));
+		sqlQueries.put(SqlQuery.INSERT_LINK, queriesProps.getProperty("insert-link"));
+		sqlQueries.put(SqlQuery.INSERT_LINK_BY_NAME, queriesProps.getProperty("insert-link-by-name"));
+		sqlQueries.put(SqlQuery.ADD_LINK_OCCURRENCES, queriesProps.getProperty("add-link-occurrences"));
+		sqlQueries.put(SqlQuery.DELETE_UNUSED_LINKS, queriesProps.getProperty("delete-unused-links"));
+		sqlQueries.put(SqlQuery.GET_LINKS, queriesProps.getProperty("get-links"));
+		sqlQueries.put(SqlQuery.DELETE_LINKS, queriesProps.getProperty("delete-links"));
+		sqlQueries.put(SqlQuery.DELETE_LINKS_BY_NAME, queriesProps.getProperty("delete-links-by-name"));
+		sqlQueries.put(SqlQuery.GET_PAGE_NAME, queriesProps.getProperty("get-page-name"));
+		sqlQueries.put(SqlQuery.EXISTING_PAGES, queriesProps.getProperty("existing-pages"));
+		sqlQueries.put(SqlQuery.SAVE_PAGE_IF_VERSION, queriesProps.getProperty("save-page-if-version"));
+		sqlQueries.put(SqlQuery.GET_PAGE_VERSION, queriesProps.getProperty("get-page-version"));
+		sqlQueries.put(SqlQuery.PAGES_VERSION_COLUMN, queriesProps.getProperty("pages-version-column"));
+		sqlQueries.put(SqlQuery.ADD_PAGES_VERSION_COLUMN, queriesProps.getProperty("add-pages-version-column"));
+		sqlQueries.put(SqlQuery.MVCC, queriesProps.getProperty("mvcc"));
+		sqlQueries.put(SqlQuery.SAVE_SECTION_IF_VERSION, queriesProps.getProperty("save-section-if-version"));
 
 		return sqlQueries;
 	}
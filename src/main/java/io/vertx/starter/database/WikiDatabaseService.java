@@ -1,10 +1,12 @@
 package io.vertx.starter.database;
 
 import io.vertx.codegen.annotations.Fluent;
+import io.vertx.codegen.annotations.GenIgnore;
 import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
@@ -19,15 +21,36 @@ import java.util.List;
 @ProxyGen
 public interface WikiDatabaseService {
 
-	static WikiDatabaseService create(JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries,
-									  Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
-		return new WikiDatabaseServiceImpl(dbClient, sqlQueries, readyHandler);
+	static WikiDatabaseService create(Vertx vertx, JsonObject config, JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries,
+									  DeadlineTracker deadlines, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+		return new WikiDatabaseServiceImpl(vertx, config, dbClient, sqlQueries, deadlines, readyHandler);
+	}
+
+	static WikiDatabaseService createLogStore(Vertx vertx, JsonObject config, DeadlineTracker deadlines,
+											  Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+		return new LogStoreWikiDatabaseServiceImpl(vertx, config, deadlines, readyHandler);
 	}
 
 	static WikiDatabaseService createProxy(Vertx vertx, String address) {
 		return new WikiDatabaseServiceVertxEBProxy(vertx, address);
 	}
 
+	@GenIgnore
+	static WikiDatabaseService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+		return new WikiDatabaseServiceVertxEBProxy(vertx, address, options);
+	}
+
+	/**
+	 * @return a plain proxy when {@code shards} is 1 or less, a {@link ShardedWikiDatabaseService} otherwise
+	 */
+	@GenIgnore
+	static WikiDatabaseService createProxy(Vertx vertx, String address, int shards, DeliveryOptions options) {
+		if (shards <= 1) {
+			return createProxy(vertx, address, options);
+		}
+		return new ShardedWikiDatabaseService(vertx, address, shards, options);
+	}
+
 	@Fluent
 	WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler);
 
@@ -37,16 +60,123 @@ public interface WikiDatabaseService {
 	@Fluent
 	WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler);
 
+	/**
+	 * Looks up only the name of a page, for callers that do not need its content.
+	 *
+	 * @return {@code found} and, if found, the {@code name} of the page
+	 */
+	@Fluent
+	WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler);
+
 	@Fluent
 	WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler);
 
 	@Fluent
 	WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler);
 
+	/**
+	 * Replaces the content of a page only if it is still at {@code version}, as returned with it by the fetch calls,
+	 * so that a writer never overwrites a change it has not seen. Every write of a page changes its version; versions
+	 * are only meant to be compared for equality.
+	 *
+	 * @return {@code found} and, if found, {@code saved} and the {@code version} of the page, the new one if saved
+	 */
+	@Fluent
+	WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Replaces the content of a page with the UTF-8 text of {@code file}, which is streamed to the database rather
+	 * than loaded in memory. The file must be readable from the database verticle, i.e. on the same host.
+	 */
+	@Fluent
+	WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler);
+
 	@Fluent
 	WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler);
 
 	@Fluent
 	WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler);
 
+	/**
+	 * Creates or overwrites, by name, every page of the batch.
+	 * <p>
+	 * A single database writes the batch in one transaction. Sharded databases write one transaction per shard, and
+	 * the page log writes the pages one at a time, so there a failed batch may be partly written.
+	 *
+	 * @param pages objects with {@code name} and {@code markdown} fields
+	 */
+	@Fluent
+	WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler);
+
+	/**
+	 * Lists the heading-delimited sections of a page, section 0 being the text before the first heading.
+	 *
+	 * @return {@code found} and, if found, {@code sections} objects with {@code index}, {@code heading}, {@code level},
+	 * {@code start} and {@code length} fields
+	 */
+	@Fluent
+	WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Reads a single section of a page, without loading the rest of it.
+	 *
+	 * @return {@code found} and, if found, the fields of the section and its {@code markdown}
+	 */
+	@Fluent
+	WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Replaces a single section of a page, heading included, with {@code markdown}.
+	 *
+	 * @return {@code found} and, if found, the new {@code sections} of the page
+	 */
+	@Fluent
+	WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Replaces a single section of a page only if the page is still at {@code version}, see
+	 * {@link #savePageIfVersion(int, int, String, Handler)}.
+	 *
+	 * @return {@code found} and, if found, {@code saved}, the {@code version} of the page, the new one if saved, and
+	 * the new {@code sections} of the page if saved
+	 */
+	@Fluent
+	WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Lists the pages created, updated or deleted after {@code since}, oldest change first, each page once with its
+	 * latest state. Clients keep the returned {@code sequence} and pass it back on their next call, starting from
+	 * {@code "0"}; it is opaque to them.
+	 * <p>
+	 * Deletions are only kept for a while, so a client that has not synced for longer, or that passes a sequence this
+	 * service does not know, gets every page from the start with {@code reset} set: it must then drop the pages it has
+	 * before applying the reply.
+	 *
+	 * @param limit the maximum number of pages to return; {@code more} is set when there are others
+	 * @return {@code reset}, {@code sequence}, {@code more} and {@code pages} objects with {@code id}, {@code name},
+	 * {@code deleted} and, unless deleted, {@code markdown} fields
+	 */
+	@Fluent
+	WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler);
+
+	/**
+	 * Lists the pages whose content links to page {@code name}, with Markdown links to {@code /wiki/<name>}. Links are
+	 * indexed when pages are written, so the page itself does not have to exist.
+	 *
+	 * @return the names of the linking pages, sorted
+	 */
+	@Fluent
+	WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler);
+
+	/**
+	 * Checks the existence of several pages at once.
+	 *
+	 * @return the {@code names} of existing pages, in the same order
+	 */
+	@Fluent
+	WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler);
+
+	@Fluent
+	WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler);
+
 }
@@ -3,16 +3,36 @@ package io.vertx.starter.database;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.jdbc.JDBCClient;
 import io.vertx.ext.sql.ResultSet;
 import io.vertx.ext.sql.SQLConnection;
+import io.vertx.serviceproxy.ServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -22,13 +42,37 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(WikiDatabaseServiceImpl.class);
 
+	/**
+	 * Names looked up per query by {@link #fetchExistingPages(JsonArray, Handler)}.
+	 */
+	private static final int EXISTING_PAGES_CHUNK = 100;
+
+	private final Vertx vertx;
 	private final HashMap<SqlQuery, String> sqlQueries;
 	private final JDBCClient dbClient;
+	private final DeadlineTracker deadlines;
+	private final SingleFlight<String> pageFlights = new SingleFlight<>();
+	private final SingleFlight<Integer> pageByIdFlights = new SingleFlight<>();
+	private final PageLinks links = new PageLinks();
+
+	/**
+	 * Held while a transaction writes its change log rows and commits, see
+	 * {@link #inTransaction(SQLConnection, Transaction, Handler)}.
+	 */
+	private final Object commits = new Object();
+	private final long tombstoneTtl;
+
+	private long compactions;
+	private long compactedChanges;
 
-	WikiDatabaseServiceImpl(JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries,
-							Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+	WikiDatabaseServiceImpl(Vertx vertx, JsonObject config, JDBCClient dbClient, HashMap<SqlQuery, String> sqlQueries,
+							DeadlineTracker deadlines, Handler<AsyncResult<WikiDatabaseService>> readyHandler) {
+		this.vertx = vertx;
 		this.dbClient = dbClient;
 		this.sqlQueries = sqlQueries;
+		this.deadlines = deadlines;
+		this.tombstoneTtl = config.getLong(WikiDataBaseVerticle.CONFIG_WIKIDB_CHANGES_TOMBSTONE_TTL, 7 * 24 * 3600L);
+		long compactionInterval = config.getLong(WikiDataBaseVerticle.CONFIG_WIKIDB_CHANGES_COMPACTION_INTERVAL, 3_600_000L);
 
 		dbClient.getConnection(asyncResult -> {
 			if (asyncResult.failed()) {
@@ -36,15 +80,41 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 				readyHandler.handle(Future.failedFuture(asyncResult.cause()));
 			} else {
 				SQLConnection connection = asyncResult.result();
-				connection.execute(sqlQueries.get(SqlQuery.CREATE_PAGES_TABLE), resultHandler -> {
-					connection.close();
-
-					if (resultHandler.failed()) {
-						LOGGER.error("Database preparation error", resultHandler.cause());
-						readyHandler.handle(Future.failedFuture(resultHandler.cause()));
+				// Pages written before the change log existed are logged once, as if just created
+				execute(connection, Arrays.asList(SqlQuery.MVCC, SqlQuery.CREATE_PAGES_TABLE, SqlQuery.CREATE_SECTIONS_TABLE,
+						SqlQuery.CREATE_CHANGES_TABLE, SqlQuery.CREATE_CHANGES_INDEX, SqlQuery.CREATE_CHANGES_HORIZON_TABLE,
+						SqlQuery.BACKFILL_CHANGES, SqlQuery.CREATE_LINKS_TABLE).iterator(), created -> {
+					Future<Void> prepared = Future.future();
+					if (created.failed()) {
+						prepared.fail(created.cause());
 					} else {
-						readyHandler.handle(Future.succeededFuture(this));
+						addVersionColumn(connection, added -> {
+							if (added.failed()) {
+								prepared.fail(added.cause());
+								return;
+							}
+							addOccurrencesColumn(connection, counted -> {
+								if (counted.failed()) {
+									prepared.fail(counted.cause());
+								} else {
+									loadLinks(connection, prepared.completer());
+								}
+							});
+						});
 					}
+					prepared.setHandler(resultHandler -> {
+						connection.close();
+
+						if (resultHandler.failed()) {
+							LOGGER.error("Database preparation error", resultHandler.cause());
+							readyHandler.handle(Future.failedFuture(resultHandler.cause()));
+						} else {
+							if (compactionInterval > 0) {
+								vertx.setPeriodic(compactionInterval, id -> compactChanges());
+							}
+							readyHandler.handle(Future.succeededFuture(this));
+						}
+					});
 				});
 			}
 
@@ -54,9 +124,13 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 	@Override
 	public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
 
+		long deadline = deadlines.current();
 		dbClient.getConnection(asyncResult -> {
 			if (asyncResult.succeeded()) {
 				SQLConnection connection = asyncResult.result();
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
 				connection.query(sqlQueries.get(SqlQuery.ALL_PAGES), result -> {
 					connection.close();
 
@@ -82,13 +156,20 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 		return this;
 	}
 
+	/**
+	 * Concurrent calls for the same page share a single query, see {@link SingleFlight}; so do those of
+	 * {@link #fetchPageById(int, Handler)}.
+	 */
 	@Override
 	public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
 
-		dbClient.getConnection(asyncResult -> {
+		pageFlights.execute(name, deadlines.current(), resultHandler, flight -> dbClient.getConnection(asyncResult -> {
 			if (asyncResult.succeeded()) {
 
 				SQLConnection connection = asyncResult.result();
+				if (dropIfExpired(flight.deadline(), connection, flight)) {
+					return;
+				}
 				connection.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE), new JsonArray().add(name), result -> {
 					connection.close();
 
@@ -102,50 +183,86 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 							JsonArray row = resultSet.getResults().get(0);
 							response.put("id", row.getInteger(0));
 							response.put("rawContent", row.getString(1));
+							response.put("version", row.getInteger(2));
 						}
 
-						resultHandler.handle(Future.succeededFuture(response));
+						flight.handle(Future.succeededFuture(response));
 					} else {
 						LOGGER.error("Database query error", result.cause());
-						resultHandler.handle(Future.failedFuture(result.cause()));
+						flight.handle(Future.failedFuture(result.cause()));
 					}
 				});
 			} else {
 				LOGGER.error("Database query error", asyncResult.cause());
-				resultHandler.handle(Future.failedFuture(asyncResult.cause()));
+				flight.handle(Future.failedFuture(asyncResult.cause()));
 			}
-		});
+		}));
 
 		return this;
 	}
 
 	@Override
 	public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
-		dbClient.getConnection(car -> {
+		pageByIdFlights.execute(id, deadlines.current(), resultHandler, flight -> dbClient.getConnection(car -> {
 			if (car.succeeded()) {
 				SQLConnection connection = car.result();
+				if (dropIfExpired(flight.deadline(), connection, flight)) {
+					return;
+				}
 				connection.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE_BY_ID), new JsonArray().add(id), res -> {
+					connection.close();
 					if (res.succeeded()) {
 						if (res.result().getNumRows() > 0) {
 							JsonObject result = res.result().getRows().get(0);
-							resultHandler.handle(Future.succeededFuture(new JsonObject()
+							flight.handle(Future.succeededFuture(new JsonObject()
 									.put("found", true)
 									.put("id", result.getInteger("ID"))
 									.put("name", result.getString("NAME"))
-									.put("content", result.getString("CONTENT"))));
+									.put("content", result.getString("CONTENT"))
+									.put("version", result.getInteger("VERSION"))));
 						} else {
-							resultHandler.handle(Future.succeededFuture(
+							flight.handle(Future.succeededFuture(
 									new JsonObject().put("found", false)));
 						}
 					} else {
 						LOGGER.error("Database query error", res.cause());
-						resultHandler.handle(Future.failedFuture(res.cause()));
+						flight.handle(Future.failedFuture(res.cause()));
 					}
 				});
 			} else {
+				LOGGER.error("Database query error", car.cause());
+				flight.handle(Future.failedFuture(car.cause()));
+			}
+		}));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		long deadline = deadlines.current();
+		dbClient.getConnection(car -> {
+			if (car.failed()) {
 				LOGGER.error("Database query error", car.cause());
 				resultHandler.handle(Future.failedFuture(car.cause()));
+				return;
+			}
+			SQLConnection connection = car.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
 			}
+			connection.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE_NAME), new JsonArray().add(id), res -> {
+				connection.close();
+				if (res.failed()) {
+					LOGGER.error("Database query error", res.cause());
+					resultHandler.handle(Future.failedFuture(res.cause()));
+				} else if (res.result().getNumRows() == 0) {
+					resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+				} else {
+					resultHandler.handle(Future.succeededFuture(new JsonObject()
+							.put("found", true)
+							.put("name", res.result().getResults().get(0).getString(0))));
+				}
+			});
 		});
 		return this;
 	}
@@ -153,21 +270,48 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 	@Override
 	public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
 
+		long deadline = deadlines.current();
 		dbClient.getConnection(asyncResult -> {
 			if (asyncResult.succeeded()) {
 
-				JsonArray data = new JsonArray().add(title).add(markdown);
+				Map<String, Integer> targets = PageLinks.count(markdown);
 				SQLConnection connection = asyncResult.result();
-				connection.updateWithParams(sqlQueries.get(SqlQuery.CREATE_PAGE), data, result -> {
-					connection.close();
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
+				this.<Void>inTransaction(connection, (jdbc, changes) -> {
+					update(jdbc, SqlQuery.CREATE_PAGE, title, markdown);
+					changes.log(SqlQuery.LOG_CHANGE_BY_NAME, title);
+					batch(jdbc, SqlQuery.INSERT_SECTION_BY_NAME, sectionParams(title, PageSections.index(markdown)));
+					batch(jdbc, SqlQuery.INSERT_LINK_BY_NAME, linkParams(title, targets));
+					return null;
+				}, relinking(Collections.singletonMap(title, targets.keySet()), resultHandler));
+			} else {
+				LOGGER.error("Database query error", asyncResult.cause());
+				resultHandler.handle(Future.failedFuture(asyncResult.cause()));
+			}
+		});
 
-					if (result.succeeded()) {
-						resultHandler.handle(Future.succeededFuture());
-					} else {
-						LOGGER.error("Database query error", result.cause());
-						resultHandler.handle(Future.failedFuture(result.cause()));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+
+		long deadline = deadlines.current();
+		dbClient.getConnection(asyncResult -> {
+			if (asyncResult.succeeded()) {
+				SQLConnection connection = asyncResult.result();
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
+				Map<String, Set<String>> relinked = new HashMap<>();
+				this.<Void>inTransaction(connection, (jdbc, changes) -> {
+					if (update(jdbc, SqlQuery.SAVE_PAGE, markdown, id) > 0) {
+						saved(jdbc, changes, id, markdown, relinked);
 					}
-				});
+					return null;
+				}, relinking(relinked, resultHandler));
 			} else {
 				LOGGER.error("Database query error", asyncResult.cause());
 				resultHandler.handle(Future.failedFuture(asyncResult.cause()));
@@ -177,22 +321,75 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 		return this;
 	}
 
+	/**
+	 * The version is checked by the update itself, under the row lock it takes on the page, so no other write can come
+	 * between the check and the save.
+	 */
 	@Override
-	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+	public WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			Map<String, Set<String>> relinked = new HashMap<>();
+			inTransaction(connection, (jdbc, changes) -> {
+				boolean updated = update(jdbc, SqlQuery.SAVE_PAGE_IF_VERSION, markdown, id, version) > 0;
+				if (updated) {
+					saved(jdbc, changes, id, markdown, relinked);
+				}
+				List<JsonArray> current = query(jdbc, SqlQuery.GET_PAGE_VERSION, id);
+				if (current.isEmpty()) {
+					return new JsonObject().put("found", false);
+				}
+				return new JsonObject()
+						.put("found", true)
+						.put("saved", updated)
+						.put("version", current.get(0).getInteger(0));
+			}, relinking(relinked, resultHandler));
+		});
+
+		return this;
+	}
 
+	/**
+	 * The JDBC client only takes parameters as JSON values, so this one binds the file as a character stream, as the
+	 * transaction runs on the JDBC connection anyway.
+	 */
+	@Override
+	public WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler) {
+
+		long deadline = deadlines.current();
 		dbClient.getConnection(asyncResult -> {
 			if (asyncResult.succeeded()) {
 				SQLConnection connection = asyncResult.result();
-				JsonArray data = new JsonArray().add(id).add(markdown);
-				connection.updateWithParams(sqlQueries.get(SqlQuery.SAVE_PAGE), data, result -> {
-					connection.close();
-					if (result.succeeded()) {
-						resultHandler.handle(Future.succeededFuture());
-					} else {
-						LOGGER.error("Database query error", result.cause());
-						resultHandler.handle(Future.failedFuture(result.cause()));
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
+				Map<String, Set<String>> relinked = new HashMap<>();
+				this.<Void>inTransaction(connection, (jdbc, changes) -> {
+					PageSections.Indexer indexer = new PageSections.Indexer();
+					PageLinks.Extractor extractor = new PageLinks.Extractor();
+					try (Reader reader = PageLinks.extracting(PageSections.indexing(
+							Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8), indexer), extractor);
+						 PreparedStatement statement = jdbc.prepareStatement(sqlQueries.get(SqlQuery.SAVE_PAGE))) {
+						statement.setCharacterStream(1, reader);
+						statement.setInt(2, id);
+						if (statement.executeUpdate() > 0) {
+							changes.log(SqlQuery.LOG_CHANGE, id);
+							reindex(jdbc, id, indexer.finish());
+							relink(jdbc, id, extractor.counts(), relinked);
+						}
 					}
-				});
+					return null;
+				}, relinking(relinked, resultHandler));
 			} else {
 				LOGGER.error("Database query error", asyncResult.cause());
 				resultHandler.handle(Future.failedFuture(asyncResult.cause()));
@@ -205,19 +402,25 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 	@Override
 	public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
 
+		long deadline = deadlines.current();
 		dbClient.getConnection(asyncResult -> {
 			if (asyncResult.succeeded()) {
 				SQLConnection connection = asyncResult.result();
-				JsonArray data = new JsonArray().add(id);
-				connection.updateWithParams(sqlQueries.get(SqlQuery.DELETE_PAGE), data, result -> {
-					connection.close();
-					if (result.succeeded()) {
-						resultHandler.handle(Future.succeededFuture());
-					} else {
-						LOGGER.error("Database query error", result.cause());
-						resultHandler.handle(Future.failedFuture(result.cause()));
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
+				Map<String, Set<String>> relinked = new HashMap<>();
+				this.<Void>inTransaction(connection, (jdbc, changes) -> {
+					List<JsonArray> named = query(jdbc, SqlQuery.GET_PAGE_NAME, id);
+					if (update(jdbc, SqlQuery.DELETE_PAGE, id) > 0) {
+						update(jdbc, SqlQuery.DELETE_SECTIONS, id);
+						update(jdbc, SqlQuery.DELETE_LINKS, id);
+						String name = named.get(0).getString(0);
+						relinked.put(name, null);
+						changes.log(SqlQuery.LOG_DELETION, id, name);
 					}
-				});
+					return null;
+				}, relinking(relinked, resultHandler));
 			} else {
 				LOGGER.error("Database query error", asyncResult.cause());
 				resultHandler.handle(Future.failedFuture(asyncResult.cause()));
@@ -230,10 +433,15 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 	@Override
 	public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
 
+		long deadline = deadlines.current();
 		dbClient.getConnection(ar -> {
 			if(ar.succeeded()) {
 				SQLConnection connection = ar.result();
+				if (dropIfExpired(deadline, connection, resultHandler)) {
+					return;
+				}
 				connection.query(sqlQueries.get(SqlQuery.ALL_PAGES_DATA), res -> {
+					connection.close();
 					if(res.succeeded()) {
 						resultHandler.handle(Future.succeededFuture(res.result().getRows()));
 					} else {
@@ -251,5 +459,831 @@ public class WikiDatabaseServiceImpl implements WikiDatabaseService {
 		return this;
 	}
 
+	@Override
+	public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler) {
 
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			List<JsonArray> batch = new ArrayList<>(pages.size());
+			List<JsonArray> names = new ArrayList<>(pages.size());
+			List<JsonArray> sections = new ArrayList<>();
+			List<JsonArray> pageLinks = new ArrayList<>();
+			Map<String, Set<String>> relinked = new HashMap<>();
+			// In name order, as two imports locking the same pages in different orders could deadlock
+			List<JsonObject> sorted = new ArrayList<>(pages.size());
+			for (int i = 0; i < pages.size(); i++) {
+				sorted.add(pages.getJsonObject(i));
+			}
+			sorted.sort(Comparator.comparing(page -> page.getString("name")));
+			for (JsonObject page : sorted) {
+				String name = page.getString("name");
+				Map<String, Integer> targets = PageLinks.count(page.getString("markdown"));
+				batch.add(new JsonArray().add(name).add(page.getString("markdown")));
+				names.add(new JsonArray().add(name));
+				sections.addAll(sectionParams(name, PageSections.index(page.getString("markdown"))));
+				pageLinks.addAll(linkParams(name, targets));
+				relinked.put(name, targets.keySet());
+			}
+			this.<Void>inTransaction(connection, (jdbc, changes) -> {
+				batch(jdbc, SqlQuery.IMPORT_PAGE, batch);
+				names.forEach(name -> changes.log(SqlQuery.LOG_CHANGE_BY_NAME, name.getString(0)));
+				batch(jdbc, SqlQuery.DELETE_SECTIONS_BY_NAME, names);
+				batch(jdbc, SqlQuery.INSERT_SECTION_BY_NAME, sections);
+				batch(jdbc, SqlQuery.DELETE_LINKS_BY_NAME, names);
+				batch(jdbc, SqlQuery.INSERT_LINK_BY_NAME, pageLinks);
+				return null;
+			}, relinking(relinked, resultHandler));
+		});
+
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			sections(connection, id, res -> {
+				connection.close();
+				if (res.failed()) {
+					LOGGER.error("Database query error", res.cause());
+					resultHandler.handle(Future.failedFuture(res.cause()));
+				} else if (res.result() == null) {
+					resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+				} else {
+					resultHandler.handle(Future.succeededFuture(new JsonObject()
+							.put("found", true)
+							.put("sections", PageSections.toJson(res.result()))));
+				}
+			});
+		});
+
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler) {
+
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			sections(connection, id, res -> {
+				if (res.failed() || res.result() == null || index < 0 || index >= res.result().size()) {
+					connection.close();
+					if (res.failed()) {
+						LOGGER.error("Database query error", res.cause());
+						resultHandler.handle(Future.failedFuture(res.cause()));
+					} else {
+						resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+					}
+					return;
+				}
+				PageSections.Section section = res.result().get(index);
+				JsonArray params = new JsonArray().add(section.start + 1).add(section.length).add(id);
+				connection.queryWithParams(sqlQueries.get(SqlQuery.GET_SECTION_CONTENT), params, content -> {
+					connection.close();
+					if (content.succeeded()) {
+						resultHandler.handle(Future.succeededFuture(section.toJson(index)
+								.put("found", true)
+								.put("markdown", content.result().getResults().get(0).getString(0))));
+					} else {
+						LOGGER.error("Database query error", content.cause());
+						resultHandler.handle(Future.failedFuture(content.cause()));
+					}
+				});
+			});
+		});
+
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		saveSection(id, index, null, markdown, resultHandler);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		saveSection(id, index, version, markdown, resultHandler);
+		return this;
+	}
+
+	/**
+	 * Every write logs the pages it touches in the {@code PageChanges} table of the same transaction, under an identity
+	 * sequence. The database runs with MVCC, so readers never wait for writers. The log rows are only written when the
+	 * transaction commits, one transaction at a time, so sequences become visible in increasing order and a client
+	 * never skips a change committed after its last call; concurrent saves of a page are told apart by its version.
+	 * <p>
+	 * The log is compacted every {@link WikiDataBaseVerticle#CONFIG_WIKIDB_CHANGES_COMPACTION_INTERVAL}, see
+	 * {@link #compactChanges()}. Sequences older than the last deletion purged from it are answered with a reset.
+	 */
+	@Override
+	public WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+
+		long from = sequence(since);
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			changes(connection, Math.max(from, 0), limit, changes -> {
+				if (changes.failed()) {
+					connection.close();
+					LOGGER.error("Database query error", changes.cause());
+					resultHandler.handle(Future.failedFuture(changes.cause()));
+					return;
+				}
+				// Read after the changes: the horizon only grows, so if it is still below the sequence then no
+				// deletion the client has not seen was purged before the read
+				connection.query(sqlQueries.get(SqlQuery.GET_CHANGES_BOUNDS), bounds -> {
+					if (bounds.failed()) {
+						connection.close();
+						LOGGER.error("Database query error", bounds.cause());
+						resultHandler.handle(Future.failedFuture(bounds.cause()));
+						return;
+					}
+					JsonArray row = bounds.result().getResults().get(0);
+					long horizon = row.getLong(1);
+					long latest = Math.max(row.getLong(0), horizon);
+					if (from == 0 || (from >= horizon && from <= latest)) {
+						connection.close();
+						resultHandler.handle(Future.succeededFuture(changes.result().put("reset", false)));
+						return;
+					}
+					changes(connection, 0, limit, all -> {
+						connection.close();
+						if (all.succeeded()) {
+							resultHandler.handle(Future.succeededFuture(all.result().put("reset", true)));
+						} else {
+							LOGGER.error("Database query error", all.cause());
+							resultHandler.handle(Future.failedFuture(all.cause()));
+						}
+					});
+				});
+			});
+		});
+
+		return this;
+	}
+
+	/**
+	 * Answered from the link index, which every write keeps in step with the {@code PageLinks} table once committed.
+	 */
+	@Override
+	public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler) {
+		resultHandler.handle(Future.succeededFuture(links.sources(name)));
+		return this;
+	}
+
+	/**
+	 * Looks the names up {@value #EXISTING_PAGES_CHUNK} at a time, with one {@code in} list per query.
+	 */
+	@Override
+	public WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler) {
+
+		if (names.isEmpty()) {
+			resultHandler.handle(Future.succeededFuture(new JsonArray()));
+			return this;
+		}
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			existing(connection, names, 0, new HashSet<>(), res -> {
+				connection.close();
+				if (res.succeeded()) {
+					resultHandler.handle(Future.succeededFuture(new JsonArray(names.stream()
+							.filter(res.result()::contains)
+							.collect(Collectors.toList()))));
+				} else {
+					LOGGER.error("Database query error", res.cause());
+					resultHandler.handle(Future.failedFuture(res.cause()));
+				}
+			});
+		});
+
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+		resultHandler.handle(Future.succeededFuture(new JsonObject()
+				.put("deadlines", deadlines.statistics())
+				.put("links", links.links())
+				.put("changes", new JsonObject()
+						.put("compactions", compactions)
+						.put("compacted", compactedChanges))
+				.put("singleFlight", new JsonObject()
+						.put("fetchPage", pageFlights.statistics())
+						.put("fetchPageById", pageByIdFlights.statistics()))));
+		return this;
+	}
+
+	/**
+	 * Reads the latest change of every page changed after {@code from}, and the sequence to continue from.
+	 */
+	private void changes(SQLConnection connection, long from, int limit, Handler<AsyncResult<JsonObject>> handler) {
+		JsonArray params = new JsonArray().add(from).add(limit + 1);
+		connection.queryWithParams(sqlQueries.get(SqlQuery.GET_CHANGES), params, res -> {
+			if (res.failed()) {
+				handler.handle(Future.failedFuture(res.cause()));
+				return;
+			}
+			List<JsonArray> rows = res.result().getResults();
+			JsonArray pages = new JsonArray();
+			long sequence = from;
+			for (int i = 0; i < rows.size() && i < limit; i++) {
+				JsonArray row = rows.get(i);
+				sequence = row.getLong(0);
+				JsonObject page = new JsonObject()
+						.put("id", row.getInteger(1))
+						.put("name", row.getString(2))
+						.put("deleted", row.getBoolean(3));
+				if (!row.getBoolean(3)) {
+					page.put("markdown", row.getString(4));
+				}
+				pages.add(page);
+			}
+			handler.handle(Future.succeededFuture(new JsonObject()
+					.put("sequence", String.valueOf(sequence))
+					.put("more", rows.size() > limit)
+					.put("pages", pages)));
+		});
+	}
+
+	/**
+	 * @return the sequence {@code since} stands for, or -1 if it is not one of ours
+	 */
+	private static long sequence(String since) {
+		try {
+			return Long.parseLong(since);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Drops the log rows superseded by a later change of the same page, then the deletions older than
+	 * {@link WikiDataBaseVerticle#CONFIG_WIKIDB_CHANGES_TOMBSTONE_TTL}, remembering the latest of them as the horizon
+	 * below which sequences can no longer be served.
+	 */
+	private void compactChanges() {
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Could not compact the page change log", ar.cause());
+				return;
+			}
+			SQLConnection connection = ar.result();
+			this.<Integer>inTransaction(connection, (jdbc, changes) -> {
+				int superseded = update(jdbc, SqlQuery.DELETE_SUPERSEDED_CHANGES);
+				update(jdbc, SqlQuery.RECORD_CHANGES_HORIZON, tombstoneTtl);
+				int purged = update(jdbc, SqlQuery.PURGE_CHANGES, tombstoneTtl);
+				update(jdbc, SqlQuery.TRIM_CHANGES_HORIZON);
+				return superseded + purged;
+			}, res -> {
+				if (res.succeeded()) {
+					compactions++;
+					compactedChanges += res.result();
+					LOGGER.debug("Compacted the page change log, {} rows removed", res.result());
+				}
+			});
+		});
+	}
+
+	/**
+	 * Runs the statements in order, stopping at the first failure.
+	 */
+	private void execute(SQLConnection connection, Iterator<SqlQuery> statements, Handler<AsyncResult<Void>> handler) {
+		if (!statements.hasNext()) {
+			handler.handle(Future.succeededFuture());
+			return;
+		}
+		connection.execute(sqlQueries.get(statements.next()), ar -> {
+			if (ar.failed()) {
+				handler.handle(Future.failedFuture(ar.cause()));
+			} else {
+				execute(connection, statements, handler);
+			}
+		});
+	}
+
+	/**
+	 * Runs {@code work} in a transaction on the JDBC connection underneath {@code connection}, committed if it returns
+	 * and rolled back if it throws. The connection is closed once done.
+	 * <p>
+	 * The whole transaction is a single blocking task: were each statement a task of its own, transactions waiting on a
+	 * lock could take every worker thread while the one holding it waits for a thread to run its next statement.
+	 * <p>
+	 * The change log rows of the transaction are written at the end, and committed with {@link #commits} held, see
+	 * {@link #fetchChanges(String, int, Handler)}. Writers lock the {@code Pages} row first, then the sections and
+	 * links of the page, so they cannot deadlock on each other.
+	 */
+	private <T> void inTransaction(SQLConnection connection, Transaction<T> work, Handler<AsyncResult<T>> resultHandler) {
+		vertx.<T>executeBlocking(future -> {
+			Connection jdbc = connection.unwrap();
+			try {
+				jdbc.setAutoCommit(false);
+				try {
+					ChangeLog changes = new ChangeLog();
+					T result = work.run(jdbc, changes);
+					if (changes.rows.isEmpty()) {
+						jdbc.commit();
+					} else {
+						synchronized (commits) {
+							for (Map.Entry<SqlQuery, List<JsonArray>> rows : changes.rows.entrySet()) {
+								batch(jdbc, rows.getKey(), rows.getValue());
+							}
+							jdbc.commit();
+						}
+					}
+					future.complete(result);
+				} catch (IOException | SQLException | RuntimeException e) {
+					jdbc.rollback();
+					throw e;
+				} finally {
+					jdbc.setAutoCommit(true);
+				}
+			} catch (IOException | SQLException e) {
+				future.fail(e);
+			}
+		}, false, res -> {
+			connection.close();
+			if (res.succeeded()) {
+				writeCompleted();
+				resultHandler.handle(Future.succeededFuture(res.result()));
+			} else {
+				LOGGER.error("Database query error", res.cause());
+				resultHandler.handle(Future.failedFuture(res.cause()));
+			}
+		});
+	}
+
+	/**
+	 * The statements of a transaction, see {@link #inTransaction(SQLConnection, Transaction, Handler)}.
+	 */
+	@FunctionalInterface
+	private interface Transaction<T> {
+		T run(Connection jdbc, ChangeLog changes) throws IOException, SQLException;
+	}
+
+	/**
+	 * The change log rows a transaction writes when it commits, by query.
+	 */
+	private static final class ChangeLog {
+
+		private final Map<SqlQuery, List<JsonArray>> rows = new LinkedHashMap<>();
+
+		void log(SqlQuery query, Object... params) {
+			rows.computeIfAbsent(query, q -> new ArrayList<>()).add(new JsonArray(Arrays.asList(params)));
+		}
+	}
+
+	/**
+	 * Splices the new section into the stored content, so the rest of the page never leaves the database; only the
+	 * replaced section is read, to update the link counts.
+	 * <p>
+	 * The update checks the version the sections were read at, as {@link #savePageIfVersion(int, int, String, Handler)}
+	 * does. When another write came in between, it is answered with the current version if the caller gave one, and
+	 * made again on the new sections otherwise.
+	 */
+	private void saveSection(int id, int index, Integer version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		long deadline = deadlines.current();
+		dbClient.getConnection(ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Database query error", ar.cause());
+				resultHandler.handle(Future.failedFuture(ar.cause()));
+				return;
+			}
+			SQLConnection connection = ar.result();
+			if (dropIfExpired(deadline, connection, resultHandler)) {
+				return;
+			}
+			Map<String, Set<String>> relinked = new HashMap<>();
+			inTransaction(connection, (jdbc, changes) -> {
+				while (true) {
+					// The version is read first: sections written after it make the update below miss
+					List<JsonArray> current = query(jdbc, SqlQuery.GET_PAGE_VERSION, id);
+					if (current.isEmpty()) {
+						return new JsonObject().put("found", false);
+					}
+					int read = current.get(0).getInteger(0);
+					if (version != null && version != read) {
+						return new JsonObject()
+								.put("found", true)
+								.put("saved", false)
+								.put("version", read);
+					}
+					List<PageSections.Section> indexed = sections(jdbc, id);
+					PageSections.Replacement replacement = indexed == null ? null : PageSections.replace(indexed, index, markdown);
+					if (replacement == null) {
+						return new JsonObject().put("found", false);
+					}
+					String removed = query(jdbc, SqlQuery.GET_SECTION_CONTENT, replacement.start + 1, replacement.removed, id)
+							.get(0).getString(0);
+					if (update(jdbc, SqlQuery.SAVE_SECTION_IF_VERSION, replacement.start, replacement.text,
+							replacement.start + replacement.removed + 1, id, read) == 0) {
+						continue;
+					}
+					List<PageSections.Section> sections = replacement.sections;
+					changes.log(SqlQuery.LOG_CHANGE, id);
+					reindex(jdbc, id, sections);
+					relink(jdbc, id, removed, replacement.text, relinked);
+					JsonObject result = new JsonObject()
+							.put("found", true)
+							.put("saved", true)
+							.put("sections", PageSections.toJson(sections));
+					if (version != null) {
+						result.put("version", read + 1);
+					}
+					return result;
+				}
+			}, relinking(relinked, resultHandler));
+		});
+	}
+
+	/**
+	 * Page reads started before a write may return the previous content, so calls made after it must not join them.
+	 */
+	private void writeCompleted() {
+		pageFlights.detachAll();
+		pageByIdFlights.detachAll();
+	}
+
+	/**
+	 * Reads the section index of a page, building it from the content for pages saved before the index existed.
+	 * The result is {@code null} if there is no such page.
+	 */
+	private void sections(SQLConnection connection, int id, Handler<AsyncResult<List<PageSections.Section>>> handler) {
+		JsonArray params = new JsonArray().add(id);
+		connection.queryWithParams(sqlQueries.get(SqlQuery.GET_SECTIONS), params, indexed -> {
+			if (indexed.failed()) {
+				handler.handle(Future.failedFuture(indexed.cause()));
+			} else if (indexed.result().getNumRows() > 0) {
+				handler.handle(Future.succeededFuture(indexed.result().getResults().stream()
+						.map(row -> new PageSections.Section(row.getString(1), row.getInteger(2), row.getInteger(3), row.getInteger(4)))
+						.collect(Collectors.toList())));
+			} else {
+				connection.queryWithParams(sqlQueries.get(SqlQuery.GET_PAGE_BY_ID), params, page -> {
+					if (page.failed()) {
+						handler.handle(Future.failedFuture(page.cause()));
+					} else if (page.result().getNumRows() == 0) {
+						handler.handle(Future.succeededFuture());
+					} else {
+						List<PageSections.Section> sections = PageSections.index(page.result().getRows().get(0).getString("CONTENT"));
+						connection.batchWithParams(sqlQueries.get(SqlQuery.INSERT_SECTION), sectionParams(id, sections), inserted -> {
+							if (inserted.failed()) {
+								handler.handle(Future.failedFuture(inserted.cause()));
+							} else {
+								handler.handle(Future.succeededFuture(sections));
+							}
+						});
+					}
+				});
+			}
+		});
+	}
+
+	private List<PageSections.Section> sections(Connection jdbc, int id) throws SQLException {
+		List<JsonArray> indexed = query(jdbc, SqlQuery.GET_SECTIONS, id);
+		if (!indexed.isEmpty()) {
+			return indexed.stream()
+					.map(row -> new PageSections.Section(row.getString(1), row.getInteger(2), row.getInteger(3), row.getInteger(4)))
+					.collect(Collectors.toList());
+		}
+		List<JsonArray> page = query(jdbc, SqlQuery.GET_PAGE_CONTENT, id);
+		if (page.isEmpty()) {
+			return null;
+		}
+		List<PageSections.Section> sections = PageSections.index(page.get(0).getString(0));
+		batch(jdbc, SqlQuery.INSERT_SECTION, sectionParams(id, sections));
+		return sections;
+	}
+
+	/**
+	 * Adds the names among {@code names}, from {@code from} on, that are those of pages to {@code found}.
+	 */
+	private void existing(SQLConnection connection, JsonArray names, int from, Set<String> found, Handler<AsyncResult<Set<String>>> handler) {
+		if (from >= names.size()) {
+			handler.handle(Future.succeededFuture(found));
+			return;
+		}
+		int to = Math.min(from + EXISTING_PAGES_CHUNK, names.size());
+		JsonArray params = new JsonArray(names.getList().subList(from, to));
+		String placeholders = String.join(", ", Collections.nCopies(params.size(), "?"));
+		String query = sqlQueries.get(SqlQuery.EXISTING_PAGES).replace("(?)", "(" + placeholders + ")");
+		connection.queryWithParams(query, params, res -> {
+			if (res.failed()) {
+				handler.handle(Future.failedFuture(res.cause()));
+				return;
+			}
+			res.result().getResults().forEach(row -> found.add(row.getString(0)));
+			existing(connection, names, to, found, handler);
+		});
+	}
+
+	/**
+	 * Loads the link index from the {@code PageLinks} table, filling the table first from the content of the pages if
+	 * it is empty, as it is on databases written before links were recorded.
+	 */
+	private void loadLinks(SQLConnection connection, Handler<AsyncResult<Void>> handler) {
+		connection.query(sqlQueries.get(SqlQuery.UNINDEXED_LINKS), unindexed -> {
+			if (unindexed.failed()) {
+				handler.handle(Future.failedFuture(unindexed.cause()));
+				return;
+			}
+			List<JsonArray> params = new ArrayList<>();
+			for (JsonArray row : unindexed.result().getResults()) {
+				params.addAll(linkParams(row.getString(0), PageLinks.count(row.getString(1))));
+			}
+			batch(connection, SqlQuery.INSERT_LINK_BY_NAME, params, inserted -> {
+				if (inserted.failed()) {
+					handler.handle(Future.failedFuture(inserted.cause()));
+					return;
+				}
+				connection.query(sqlQueries.get(SqlQuery.ALL_LINKS), all -> {
+					if (all.failed()) {
+						handler.handle(Future.failedFuture(all.cause()));
+						return;
+					}
+					Map<String, Set<String>> outgoing = new HashMap<>();
+					for (JsonArray row : all.result().getResults()) {
+						outgoing.computeIfAbsent(row.getString(0), name -> new HashSet<>()).add(row.getString(1));
+					}
+					outgoing.forEach(links::set);
+					LOGGER.info("Loaded {} links between pages", links.links());
+					handler.handle(Future.succeededFuture());
+				});
+			});
+		});
+	}
+
+	/**
+	 * Applies the links that a transaction wrote to the index once it has committed; a {@code null} set stands for
+	 * a deleted page.
+	 */
+	private <T> Handler<AsyncResult<T>> relinking(Map<String, Set<String>> relinked, Handler<AsyncResult<T>> resultHandler) {
+		return ar -> {
+			if (ar.succeeded()) {
+				relinked.forEach((name, targets) -> {
+					if (targets == null) {
+						links.remove(name);
+					} else {
+						links.set(name, targets);
+					}
+				});
+			}
+			resultHandler.handle(ar);
+		};
+	}
+
+	/**
+	 * Updates the link counts of page {@code id} for a section save that replaced {@code removed} with {@code added},
+	 * so the rest of the page is not read: links end at the line they start on, and sections start at a line.
+	 */
+	private void relink(Connection jdbc, int id, String removed, String added, Map<String, Set<String>> relinked)
+			throws SQLException {
+		Map<String, Integer> delta = new HashMap<>(PageLinks.count(added));
+		PageLinks.count(removed).forEach((target, count) -> delta.merge(target, -count, Integer::sum));
+		List<JsonArray> params = new ArrayList<>();
+		delta.forEach((target, count) -> {
+			if (count != 0) {
+				params.add(new JsonArray().add(id).add(target).add(count));
+			}
+		});
+		if (params.isEmpty()) {
+			return;
+		}
+		batch(jdbc, SqlQuery.ADD_LINK_OCCURRENCES, params);
+		update(jdbc, SqlQuery.DELETE_UNUSED_LINKS, id);
+		Set<String> targets = query(jdbc, SqlQuery.GET_LINKS, id).stream()
+				.map(row -> row.getString(0))
+				.collect(Collectors.toSet());
+		relinked.put(query(jdbc, SqlQuery.GET_PAGE_NAME, id).get(0).getString(0), targets);
+	}
+
+	/**
+	 * Replaces the links of page {@code id} with {@code targets}, counted by occurrence, and records them under its
+	 * name in {@code relinked}.
+	 */
+	private void relink(Connection jdbc, int id, Map<String, Integer> targets, Map<String, Set<String>> relinked)
+			throws SQLException {
+		update(jdbc, SqlQuery.DELETE_LINKS, id);
+		batch(jdbc, SqlQuery.INSERT_LINK, linkParams(id, targets));
+		query(jdbc, SqlQuery.GET_PAGE_NAME, id).forEach(row -> relinked.put(row.getString(0), targets.keySet()));
+	}
+
+	/**
+	 * Runs a batch, unless there is nothing in it.
+	 */
+	private void batch(SQLConnection connection, SqlQuery query, List<JsonArray> params, Handler<AsyncResult<Void>> handler) {
+		if (params.isEmpty()) {
+			handler.handle(Future.succeededFuture());
+			return;
+		}
+		connection.batchWithParams(sqlQueries.get(query), params, ar -> {
+			if (ar.succeeded()) {
+				handler.handle(Future.succeededFuture());
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	/**
+	 * Logs, indexes and links page {@code id} once its content has been replaced with {@code markdown}.
+	 */
+	private void saved(Connection jdbc, ChangeLog changes, int id, String markdown, Map<String, Set<String>> relinked)
+			throws SQLException {
+		changes.log(SqlQuery.LOG_CHANGE, id);
+		reindex(jdbc, id, PageSections.index(markdown));
+		relink(jdbc, id, PageLinks.count(markdown), relinked);
+	}
+
+	/**
+	 * Adds the {@code Occurrences} column to a {@code PageLinks} table created before it existed, and empties the table
+	 * so that {@link #loadLinks(SQLConnection, Handler)} counts the links again.
+	 */
+	private void addOccurrencesColumn(SQLConnection connection, Handler<AsyncResult<Void>> handler) {
+		connection.query(sqlQueries.get(SqlQuery.LINKS_OCCURRENCES_COLUMN), column -> {
+			if (column.failed()) {
+				handler.handle(Future.failedFuture(column.cause()));
+			} else if (column.result().getResults().get(0).getInteger(0) > 0) {
+				handler.handle(Future.succeededFuture());
+			} else {
+				LOGGER.info("Adding an occurrences column to the links table");
+				execute(connection, Arrays.asList(SqlQuery.ADD_LINKS_OCCURRENCES_COLUMN, SqlQuery.CLEAR_LINKS).iterator(), handler);
+			}
+		});
+	}
+
+	/**
+	 * Adds the {@code Version} column to a {@code Pages} table created before it existed.
+	 */
+	private void addVersionColumn(SQLConnection connection, Handler<AsyncResult<Void>> handler) {
+		connection.query(sqlQueries.get(SqlQuery.PAGES_VERSION_COLUMN), column -> {
+			if (column.failed()) {
+				handler.handle(Future.failedFuture(column.cause()));
+			} else if (column.result().getResults().get(0).getInteger(0) > 0) {
+				handler.handle(Future.succeededFuture());
+			} else {
+				LOGGER.info("Adding a version column to the pages table");
+				connection.execute(sqlQueries.get(SqlQuery.ADD_PAGES_VERSION_COLUMN), handler);
+			}
+		});
+	}
+
+	private void reindex(Connection jdbc, int id, List<PageSections.Section> sections) throws SQLException {
+		try (PreparedStatement delete = jdbc.prepareStatement(sqlQueries.get(SqlQuery.DELETE_SECTIONS));
+			 PreparedStatement insert = jdbc.prepareStatement(sqlQueries.get(SqlQuery.INSERT_SECTION))) {
+			delete.setInt(1, id);
+			delete.executeUpdate();
+			for (int i = 0; i < sections.size(); i++) {
+				PageSections.Section section = sections.get(i);
+				insert.setInt(1, id);
+				insert.setInt(2, i);
+				insert.setString(3, section.heading);
+				insert.setInt(4, section.level);
+				insert.setInt(5, section.start);
+				insert.setInt(6, section.length);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		}
+	}
+
+	private int update(Connection jdbc, SqlQuery query, Object... params) throws SQLException {
+		try (PreparedStatement statement = jdbc.prepareStatement(sqlQueries.get(query))) {
+			bind(statement, params);
+			return statement.executeUpdate();
+		}
+	}
+
+	private void batch(Connection jdbc, SqlQuery query, List<JsonArray> params) throws SQLException {
+		if (params.isEmpty()) {
+			return;
+		}
+		try (PreparedStatement statement = jdbc.prepareStatement(sqlQueries.get(query))) {
+			for (JsonArray row : params) {
+				bind(statement, row.getList().toArray());
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		}
+	}
+
+	/**
+	 * @return the rows, with character large objects read as strings
+	 */
+	private List<JsonArray> query(Connection jdbc, SqlQuery query, Object... params) throws SQLException {
+		try (PreparedStatement statement = jdbc.prepareStatement(sqlQueries.get(query))) {
+			bind(statement, params);
+			try (java.sql.ResultSet resultSet = statement.executeQuery()) {
+				List<JsonArray> rows = new ArrayList<>();
+				int columns = resultSet.getMetaData().getColumnCount();
+				while (resultSet.next()) {
+					List<Object> row = new ArrayList<>(columns);
+					for (int i = 1; i <= columns; i++) {
+						Object value = resultSet.getObject(i);
+						row.add(value instanceof Clob ? resultSet.getString(i) : value);
+					}
+					rows.add(new JsonArray(row));
+				}
+				return rows;
+			}
+		}
+	}
+
+	private static void bind(PreparedStatement statement, Object... params) throws SQLException {
+		for (int i = 0; i < params.length; i++) {
+			statement.setObject(i + 1, params[i]);
+		}
+	}
+
+	private static List<JsonArray> sectionParams(int id, List<PageSections.Section> sections) {
+		List<JsonArray> params = new ArrayList<>(sections.size());
+		for (int i = 0; i < sections.size(); i++) {
+			params.add(sectionRow(new JsonArray().add(id), i, sections.get(i)));
+		}
+		return params;
+	}
+
+	private static List<JsonArray> sectionParams(String name, List<PageSections.Section> sections) {
+		List<JsonArray> params = new ArrayList<>(sections.size());
+		for (int i = 0; i < sections.size(); i++) {
+			params.add(sectionRow(new JsonArray(), i, sections.get(i)).add(name));
+		}
+		return params;
+	}
+
+	private static List<JsonArray> linkParams(int id, Map<String, Integer> targets) {
+		return targets.entrySet().stream()
+				.map(target -> new JsonArray().add(id).add(target.getKey()).add(target.getValue()))
+				.collect(Collectors.toList());
+	}
+
+	private static List<JsonArray> linkParams(String name, Map<String, Integer> targets) {
+		return targets.entrySet().stream()
+				.map(target -> new JsonArray().add(target.getKey()).add(target.getValue()).add(name))
+				.collect(Collectors.toList());
+	}
+
+	private static JsonArray sectionRow(JsonArray row, int position, PageSections.Section section) {
+		row.add(position);
+		if (section.heading == null) {
+			row.addNull();
+		} else {
+			row.add(section.heading);
+		}
+		return row.add(section.level).add(section.start).add(section.length);
+	}
+
+	private <T> boolean dropIfExpired(long deadline, SQLConnection connection, Handler<AsyncResult<T>> resultHandler) {
+		if (deadlines.expired(deadline)) {
+			connection.close();
+			resultHandler.handle(Future.failedFuture(
+					new ServiceException(ErrorCodes.DEADLINE_EXCEEDED.ordinal(), "Deadline exceeded")));
+			return true;
+		}
+		return false;
+	}
 }
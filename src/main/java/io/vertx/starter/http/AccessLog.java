@@ -0,0 +1,129 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one line per response, with the method, route, path, status, latency and bytes sent, to the
+ * {@code io.vertx.starter.http.AccessLog} logger, which {@code logback.xml} sends to an asynchronous appender that
+ * drops lines rather than block when its queue is full.
+ * <p>
+ * Routes are logged as declared, e.g. {@code /api/pages/:id}, and each can be sampled: a route listed in
+ * {@link HttpServerVerticle#CONFIG_ACCESS_LOG_SAMPLING} logs that fraction of its responses, the others
+ * {@link HttpServerVerticle#CONFIG_ACCESS_LOG_DEFAULT_SAMPLING}. Server errors are always logged. Sub-routers must
+ * call {@link #enterSubRouter(RoutingContext)} first for their routes to be known.
+ * <p>
+ * Also throttles the dumps of request payloads, see {@link #dump(Logger, String, Buffer)}.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class AccessLog {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLog.class);
+
+	private static final String ROUTING_CONTEXT_KEY = "accessLog.routingContext";
+
+	private final boolean enabled;
+	private final double defaultSampling;
+	private final Map<String, Double> sampling = new HashMap<>();
+	private final int dumpsPerMinute;
+	private final int dumpMaxLength;
+
+	private long logged;
+	private long sampledOut;
+
+	private long dumpWindow;
+	private int dumpsInWindow;
+	private long dumpsSuppressed;
+
+	AccessLog(JsonObject config) {
+		this.enabled = config.getBoolean(HttpServerVerticle.CONFIG_ACCESS_LOG_ENABLED, true);
+		this.defaultSampling = config.getDouble(HttpServerVerticle.CONFIG_ACCESS_LOG_DEFAULT_SAMPLING, 1.0);
+		JsonObject routes = config.getJsonObject(HttpServerVerticle.CONFIG_ACCESS_LOG_SAMPLING, new JsonObject());
+		for (String route : routes.fieldNames()) {
+			sampling.put(route, routes.getDouble(route));
+		}
+		this.dumpsPerMinute = config.getInteger(HttpServerVerticle.CONFIG_LOG_DUMPS_PER_MINUTE, 10);
+		this.dumpMaxLength = config.getInteger(HttpServerVerticle.CONFIG_LOG_DUMP_MAX_LENGTH, 1024);
+	}
+
+	void handle(RoutingContext context) {
+		if (enabled && LOGGER.isInfoEnabled()) {
+			long start = System.nanoTime();
+			context.addBodyEndHandler(v -> log(context, start));
+		}
+		context.next();
+	}
+
+	/**
+	 * Remembers the context of a sub-router, whose current route is the one that ends the response, rather than the
+	 * mount point.
+	 */
+	void enterSubRouter(RoutingContext context) {
+		context.put(ROUTING_CONTEXT_KEY, context);
+		context.next();
+	}
+
+	/**
+	 * Logs {@code message} at warn level with the start of {@code payload}, unless {@link
+	 * HttpServerVerticle#CONFIG_LOG_DUMPS_PER_MINUTE} dumps were already logged in the current minute. The payload is
+	 * logged as received, so that large or deeply nested bodies cost no encoding.
+	 */
+	void dump(Logger logger, String message, Buffer payload) {
+		long window = System.nanoTime() / 60_000_000_000L;
+		if (window != dumpWindow) {
+			dumpWindow = window;
+			dumpsInWindow = 0;
+		}
+		if (dumpsInWindow >= dumpsPerMinute || !logger.isWarnEnabled()) {
+			dumpsSuppressed++;
+			return;
+		}
+		dumpsInWindow++;
+		String body = payload == null ? "" : payload.length() <= dumpMaxLength ? payload.toString()
+				: payload.getString(0, dumpMaxLength) + "... (" + payload.length() + " bytes)";
+		logger.warn("{}: {}", message, body);
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("logged", logged)
+				.put("sampledOut", sampledOut)
+				.put("dumpsSuppressed", dumpsSuppressed);
+	}
+
+	private void log(RoutingContext context, long start) {
+		HttpServerResponse response = context.response();
+		RoutingContext routing = context.get(ROUTING_CONTEXT_KEY);
+		String route = route(routing == null ? context : routing);
+		if (response.getStatusCode() < 500) {
+			double rate = sampling.getOrDefault(route, defaultSampling);
+			if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+				sampledOut++;
+				return;
+			}
+		}
+		logged++;
+		LOGGER.info("method={} route={} path={} status={} latency_us={} bytes={}",
+				context.request().method(), route, context.request().path(), response.getStatusCode(),
+				(System.nanoTime() - start) / 1000, response.bytesWritten());
+	}
+
+	private static String route(RoutingContext context) {
+		Route route = context.currentRoute();
+		if (route == null || route.getPath() == null) {
+			return "-";
+		}
+		String mountPoint = context.mountPoint();
+		return mountPoint == null ? route.getPath() : mountPoint + route.getPath();
+	}
+}
@@ -0,0 +1,186 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pushes the page change events of the database verticles to the clients of one {@link HttpServerVerticle}
+ * instance, over Server-Sent Events or, when the request asks for an upgrade, a WebSocket.
+ * <p>
+ * Every client gets a write queue of {@link HttpServerVerticle#CONFIG_FEED_CLIENT_BUFFER} bytes. A client whose queue
+ * is still full when an event arrives is disconnected instead of being buffered for, so that slow consumers cost
+ * neither memory nor latency to the others; they are expected to reconnect, as {@code EventSource} does, and to
+ * re-read the pages they show.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class ChangeFeed {
+
+	private static final Buffer HEARTBEAT = Buffer.buffer(":\n\n");
+
+	private final int clientBuffer;
+	private final int maxClients;
+	private final long heartbeatTimer;
+	private final Vertx vertx;
+
+	private final Set<Client> clients = new LinkedHashSet<>();
+
+	private long sequence;
+	private long sent;
+	private long dropped;
+	private long rejected;
+
+	ChangeFeed(Vertx vertx, JsonObject config) {
+		this.vertx = vertx;
+		this.clientBuffer = config.getInteger(HttpServerVerticle.CONFIG_FEED_CLIENT_BUFFER, 64 * 1024);
+		this.maxClients = config.getInteger(HttpServerVerticle.CONFIG_FEED_MAX_CLIENTS, 1000);
+		this.heartbeatTimer = vertx.setPeriodic(config.getLong(HttpServerVerticle.CONFIG_FEED_HEARTBEAT_INTERVAL, 15_000L),
+				id -> heartbeat());
+	}
+
+	void handle(RoutingContext context) {
+		HttpServerRequest request = context.request();
+		if (clients.size() >= maxClients) {
+			rejected++;
+			context.response()
+					.setStatusCode(503)
+					.putHeader("Retry-After", "10")
+					.end("Too many change feed clients");
+			return;
+		}
+		if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+			ServerWebSocket socket = request.upgrade();
+			socket.setWriteQueueMaxSize(clientBuffer);
+			Client client = new WebSocketClient(socket);
+			clients.add(client);
+			socket.closeHandler(v -> clients.remove(client));
+			return;
+		}
+		HttpServerResponse response = context.response();
+		response.setChunked(true)
+				.setWriteQueueMaxSize(clientBuffer)
+				.putHeader("Content-Type", "text/event-stream")
+				.putHeader("Cache-Control", "no-cache")
+				.write("retry: 2000\n\n");
+		Client client = new EventStreamClient(response);
+		clients.add(client);
+		response.closeHandler(v -> clients.remove(client));
+	}
+
+	/**
+	 * Sends {@code event}, a {@link io.vertx.starter.database.WikiDataBaseVerticle#PAGE_CHANGES_ADDRESS} message, to
+	 * every client, each event being encoded once for all of them.
+	 */
+	void publish(JsonObject event) {
+		if (clients.isEmpty()) {
+			return;
+		}
+		sequence++;
+		String data = event.encode();
+		Buffer eventStream = Buffer.buffer("id: " + sequence + "\nevent: " + event.getString("action") + "\ndata: " + data + "\n\n");
+		for (Client client : new ArrayList<>(clients)) {
+			if (client.full()) {
+				dropped++;
+				clients.remove(client);
+				client.close();
+			} else {
+				sent++;
+				client.send(data, eventStream);
+			}
+		}
+	}
+
+	/**
+	 * Disconnects every client, e.g. before the verticle stops, so that they reconnect to another instance.
+	 */
+	void closeAll() {
+		vertx.cancelTimer(heartbeatTimer);
+		List<Client> left = new ArrayList<>(clients);
+		clients.clear();
+		left.forEach(Client::close);
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("clients", clients.size())
+				.put("events", sequence)
+				.put("sent", sent)
+				.put("dropped", dropped)
+				.put("rejected", rejected);
+	}
+
+	/**
+	 * Keeps idle event streams from being cut by proxies.
+	 */
+	private void heartbeat() {
+		for (Client client : clients) {
+			if (client instanceof EventStreamClient && !client.full()) {
+				((EventStreamClient) client).response.write(HEARTBEAT);
+			}
+		}
+	}
+
+	private interface Client {
+		boolean full();
+
+		void send(String data, Buffer eventStream);
+
+		void close();
+	}
+
+	private static final class EventStreamClient implements Client {
+		final HttpServerResponse response;
+
+		EventStreamClient(HttpServerResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public boolean full() {
+			return response.writeQueueFull();
+		}
+
+		@Override
+		public void send(String data, Buffer eventStream) {
+			response.write(eventStream);
+		}
+
+		@Override
+		public void close() {
+			response.close();
+		}
+	}
+
+	private static final class WebSocketClient implements Client {
+		final ServerWebSocket socket;
+
+		WebSocketClient(ServerWebSocket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public boolean full() {
+			return socket.writeQueueFull();
+		}
+
+		@Override
+		public void send(String data, Buffer eventStream) {
+			socket.writeFinalTextFrame(data);
+		}
+
+		@Override
+		public void close() {
+			socket.close();
+		}
+	}
+}
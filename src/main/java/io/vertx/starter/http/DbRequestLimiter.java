@@ -0,0 +1,178 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.ArrayDeque;
+
+/**
+ * Caps the number of database requests a single {@link HttpServerVerticle} instance has in flight.
+ * <p>
+ * Requests over the limit wait in a small bounded queue; when the queue is full, or a request waited longer than
+ * the queue timeout, it fails fast with a {@link ServiceException} carrying {@link #OVERLOADED}. Waiting requests are
+ * checked when a slot frees up and, so that they also fail when none does, by {@link #expire()}, which the verticle
+ * calls every {@link #sweepInterval()} milliseconds. In adaptive mode the
+ * limit follows an AIMD rule driven by the observed round-trip latency: it grows by {@code 1/limit} for every fast
+ * reply and shrinks by {@link #BACKOFF_RATIO} for every slow or timed out one.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class DbRequestLimiter {
+
+	static final int OVERLOADED = 503;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final int maxQueueSize;
+	private final long queueTimeout;
+	private final boolean adaptive;
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTarget;
+
+	private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+
+	private double limit;
+	private int inFlight;
+	private long shed;
+	private long completed;
+	private Handler<Void> idleHandler;
+
+	DbRequestLimiter(JsonObject config) {
+		this.limit = config.getInteger(HttpServerVerticle.CONFIG_DBLIMITER_LIMIT, 64);
+		this.maxQueueSize = config.getInteger(HttpServerVerticle.CONFIG_DBLIMITER_QUEUE_SIZE, 16);
+		this.queueTimeout = config.getLong(HttpServerVerticle.CONFIG_DBLIMITER_QUEUE_TIMEOUT, 100L);
+		this.adaptive = config.getBoolean(HttpServerVerticle.CONFIG_DBLIMITER_ADAPTIVE, false);
+		this.minLimit = config.getInteger(HttpServerVerticle.CONFIG_DBLIMITER_MIN_LIMIT, 4);
+		this.maxLimit = config.getInteger(HttpServerVerticle.CONFIG_DBLIMITER_MAX_LIMIT, 256);
+		this.latencyTarget = config.getLong(HttpServerVerticle.CONFIG_DBLIMITER_LATENCY_TARGET, 50L);
+	}
+
+	static boolean isOverload(Throwable cause) {
+		return cause instanceof ServiceException && ((ServiceException) cause).failureCode() == OVERLOADED;
+	}
+
+	/**
+	 * Runs {@code call} now if a slot is free, queues it otherwise, or fails {@code resultHandler} when overloaded.
+	 */
+	<T> void execute(Handler<AsyncResult<T>> resultHandler, Handler<Handler<AsyncResult<T>>> call) {
+		Pending pending = new Pending() {
+			@Override
+			void start() {
+				inFlight++;
+				long startTime = System.nanoTime();
+				call.handle(ar -> {
+					release(startTime, ar);
+					resultHandler.handle(ar);
+				});
+			}
+
+			@Override
+			void reject(String reason) {
+				shed++;
+				resultHandler.handle(Future.failedFuture(new ServiceException(OVERLOADED, reason)));
+			}
+		};
+
+		if (inFlight < (int) limit) {
+			pending.start();
+		} else if (queue.size() < maxQueueSize) {
+			queue.add(pending);
+		} else {
+			pending.reject("Too many pending database requests");
+		}
+	}
+
+	/**
+	 * Calls {@code handler} once no request is in flight or queued, right away if that is already the case.
+	 */
+	void whenIdle(Handler<Void> handler) {
+		if (inFlight == 0 && queue.isEmpty()) {
+			handler.handle(null);
+		} else {
+			idleHandler = handler;
+		}
+	}
+
+	/**
+	 * Fails the queued requests that waited longer than the queue timeout, even if no request in flight completes.
+	 */
+	void expire() {
+		long now = System.nanoTime();
+		while (!queue.isEmpty() && expired(queue.peek(), now)) {
+			queue.poll().reject("Timed out waiting for a database request slot");
+		}
+		notifyIfIdle();
+	}
+
+	/**
+	 * @return how often {@link #expire()} must run for queued requests to fail at most half a timeout late
+	 */
+	long sweepInterval() {
+		return Math.max(1, queueTimeout / 2);
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("limit", (int) limit)
+				.put("adaptive", adaptive)
+				.put("inFlight", inFlight)
+				.put("queued", queue.size())
+				.put("shed", shed)
+				.put("completed", completed);
+	}
+
+	private void release(long startTime, AsyncResult<?> ar) {
+		inFlight--;
+		completed++;
+		if (adaptive) {
+			long latency = (System.nanoTime() - startTime) / 1_000_000;
+			if (latency > latencyTarget || isTimeout(ar)) {
+				limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+			} else {
+				limit = Math.min(maxLimit, limit + 1.0 / limit);
+			}
+		}
+
+		long now = System.nanoTime();
+		while (inFlight < (int) limit && !queue.isEmpty()) {
+			Pending next = queue.poll();
+			if (expired(next, now)) {
+				next.reject("Timed out waiting for a database request slot");
+			} else {
+				next.start();
+			}
+		}
+		notifyIfIdle();
+	}
+
+	private boolean expired(Pending pending, long now) {
+		return (now - pending.enqueuedAt) / 1_000_000 > queueTimeout;
+	}
+
+	private void notifyIfIdle() {
+		if (inFlight == 0 && queue.isEmpty() && idleHandler != null) {
+			Handler<Void> handler = idleHandler;
+			idleHandler = null;
+			handler.handle(null);
+		}
+	}
+
+	private static boolean isTimeout(AsyncResult<?> ar) {
+		return ar.failed() && ar.cause() instanceof ReplyException
+				&& ((ReplyException) ar.cause()).failureType() == ReplyFailure.TIMEOUT;
+	}
+
+	private abstract static class Pending {
+		final long enqueuedAt = System.nanoTime();
+
+		abstract void start();
+
+		abstract void reject(String reason);
+	}
+}
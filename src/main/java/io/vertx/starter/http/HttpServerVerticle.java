@@ -1,28 +1,48 @@
 package io.vertx.starter.http;
 
 import com.github.rjeschke.txtmark.Processor;
+import freemarker.template.TemplateException;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
 import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
-import io.vertx.ext.web.client.HttpResponse;
-import io.vertx.ext.web.client.WebClient;
-import io.vertx.ext.web.client.WebClientOptions;
-import io.vertx.ext.web.codec.BodyCodec;
 import io.vertx.ext.web.handler.BodyHandler;
-import io.vertx.ext.web.templ.FreeMarkerTemplateEngine;
+import io.vertx.starter.StartupTimer;
+import io.vertx.starter.backup.BackupService;
+import io.vertx.starter.capture.TrafficCapture;
+import io.vertx.starter.database.ErrorCodes;
+import io.vertx.starter.database.WikiDataBaseVerticle;
 import io.vertx.starter.database.WikiDatabaseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Created by trunglnm on 8/30/17.
@@ -31,72 +51,466 @@ public class HttpServerVerticle extends AbstractVerticle {
 
 	public static final String CONFIG_HTTP_SERVER_PORT = "http.server.port";
 	public static final String CONFIG_WIKIDB_QUEUE = "wikidb.queue";
+	public static final String CONFIG_BACKUP_QUEUE = "backup.queue";
+
+	public static final String CONFIG_DBLIMITER_LIMIT = "http.dblimiter.limit";
+	public static final String CONFIG_DBLIMITER_QUEUE_SIZE = "http.dblimiter.queue_size";
+	public static final String CONFIG_DBLIMITER_QUEUE_TIMEOUT = "http.dblimiter.queue_timeout";
+	public static final String CONFIG_DBLIMITER_ADAPTIVE = "http.dblimiter.adaptive";
+	public static final String CONFIG_DBLIMITER_MIN_LIMIT = "http.dblimiter.min_limit";
+	public static final String CONFIG_DBLIMITER_MAX_LIMIT = "http.dblimiter.max_limit";
+	public static final String CONFIG_DBLIMITER_LATENCY_TARGET = "http.dblimiter.latency_target";
+	public static final String CONFIG_DBLIMITER_RETRY_AFTER = "http.dblimiter.retry_after";
+
+	public static final String CONFIG_IMPORT_BATCH_SIZE = "http.import.batch_size";
+	public static final String CONFIG_IMPORT_MAX_IN_FLIGHT = "http.import.max_in_flight";
+	public static final String CONFIG_IMPORT_MAX_LINE_LENGTH = "http.import.max_line_length";
+	public static final String CONFIG_IMPORT_BATCH_TIMEOUT = "http.import.batch_timeout";
+
+	public static final String CONFIG_PAGE_CACHE_SIZE = "http.page_cache.size";
+	public static final String CONFIG_PAGE_CACHE_TTL = "http.page_cache.ttl";
+
+	public static final String CONFIG_PAGE_FILTER_ENABLED = "http.page_filter.enabled";
+	public static final String CONFIG_PAGE_FILTER_EXPECTED_PAGES = "http.page_filter.expected_pages";
+	public static final String CONFIG_PAGE_FILTER_FPP = "http.page_filter.fpp";
+
+	public static final String CONFIG_TOP_PAGES_SIZE = "http.top_pages.size";
+	public static final String CONFIG_TOP_PAGES_FILE = "http.top_pages.file";
+	public static final String CONFIG_TOP_PAGES_SNAPSHOT_INTERVAL = "http.top_pages.snapshot_interval";
+	public static final String CONFIG_TOP_PAGES_PREWARM_TIMEOUT = "http.top_pages.prewarm_timeout";
+	public static final String CONFIG_DATABASE_WAIT_TIMEOUT = "http.database_wait_timeout";
+	public static final String CONFIG_DRAIN_TIMEOUT = "http.drain.timeout";
+
+	public static final String CONFIG_ASSETS_DIRECTORY = "http.assets.directory";
+	public static final String CONFIG_ASSETS_REQUIRE_BUNDLED = "http.assets.require_bundled";
+
+	public static final String CONFIG_BODY_LIMIT = "http.body_limit";
+	public static final String CONFIG_UPLOAD_LIMIT = "http.upload.limit";
+	public static final String CONFIG_UPLOAD_DIRECTORY = "http.upload.directory";
+	public static final String CONFIG_UPLOAD_SAVE_TIMEOUT = "http.upload.save_timeout";
+
+	public static final String CONFIG_RATE_LIMIT_ENABLED = "http.rate_limit.enabled";
+	public static final String CONFIG_RATE_LIMIT_RULES = "http.rate_limit.rules";
+	public static final String CONFIG_RATE_LIMIT_MAX_BUCKETS = "http.rate_limit.max_buckets";
+	public static final String CONFIG_RATE_LIMIT_EVICTION_INTERVAL = "http.rate_limit.eviction_interval";
+
+	public static final String CONFIG_FEED_CLIENT_BUFFER = "http.feed.client_buffer";
+	public static final String CONFIG_FEED_MAX_CLIENTS = "http.feed.max_clients";
+	public static final String CONFIG_FEED_HEARTBEAT_INTERVAL = "http.feed.heartbeat_interval";
+
+	public static final String CONFIG_ACCESS_LOG_ENABLED = "http.access_log.enabled";
+	public static final String CONFIG_ACCESS_LOG_DEFAULT_SAMPLING = "http.access_log.default_sampling";
+	public static final String CONFIG_ACCESS_LOG_SAMPLING = "http.access_log.sampling";
+	public static final String CONFIG_LOG_DUMPS_PER_MINUTE = "http.log.dumps_per_minute";
+	public static final String CONFIG_LOG_DUMP_MAX_LENGTH = "http.log.dump_max_length";
+
+	public static final String CONFIG_CAPTURE_DIRECTORY = "http.capture.directory";
+	public static final String CONFIG_CAPTURE_BODIES = "http.capture.bodies";
+
+	public static final String CONFIG_DEADLINE_DEFAULT = "http.deadline.default";
+	public static final String CONFIG_DEADLINE_ROUTES = "http.deadline.routes";
+
+	/**
+	 * Request header a client can use to shorten the deadline of its request, in milliseconds.
+	 */
+	public static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+
+	private static final String DEADLINE_KEY = "deadline";
+
+	private static final Pattern SEQUENCE = Pattern.compile("[0-9]{1,18}(\\.[0-9]{1,18})*");
+
+	/**
+	 * Entity tags of pages are their version, quoted.
+	 */
+	private static final Pattern DECIMAL = Pattern.compile("[0-9]+");
+	private static final Pattern ETAG = Pattern.compile("\"(-?[0-9]{1,10})\"");
+
+	private static final int DEFAULT_CHANGES_LIMIT = 100;
+	private static final int MAX_CHANGES_LIMIT = 1000;
+	private static final int DEFAULT_COMPLETIONS = 10;
+	private static final int MAX_COMPLETIONS = 100;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerVerticle.class);
 
-	private final FreeMarkerTemplateEngine templateEngine = FreeMarkerTemplateEngine.create();
+	private String wikiDbQueue;
+
+	private int wikiDbShards;
+
+	private DbRequestLimiter dbLimiter;
+
+	private BackupService backupService;
+
+	private PageCache pageCache;
+
+	private PageNameFilter pageFilter;
+	private List<String> pageFilterPending;
+	private PageNameIndex pageIndex;
+	private List<JsonObject> pageIndexPending;
+
+	private final Set<PageImport> imports = new LinkedHashSet<>();
 
-	private WikiDatabaseService dbService;
+	private PageViewCounters pageViews;
+	private boolean ownsSnapshots;
 
-	private WebClient webClient;
+	private RateLimiter rateLimiter;
+
+	private ChangeFeed changeFeed;
+
+	private HttpServer server;
+	private RequestDrainer drainer;
+	private AccessLog accessLog;
+	private TrafficCapture capture;
+	private StaticAssets staticAssets;
+	private PageTemplates pageTemplates;
+	private int portNumber;
+	private boolean listening;
+
+	private static final long DATABASE_POLL_INTERVAL = 100;
 
 	private static final String EMPTY_PAGE_MARKDOWN =
 			"# A new page\n" +
 					"\n" +
 					"Feel-free to write in Markdown!\n";
 
+	private static final String EMPTY_PAGE_HTML = Processor.process(EMPTY_PAGE_MARKDOWN);
+
 	@Override
 	public void start(Future<Void> startFuture) throws Exception {
+		StartupTimer timer = StartupTimer.shared(vertx);
+		long start = System.currentTimeMillis();
+
+		// Without the local copies, pages still link the libraries from their CDN, unless they are required
+		boolean requireBundled = config().getBoolean(CONFIG_ASSETS_REQUIRE_BUNDLED, false);
+		staticAssets = new StaticAssets(vertx, config().getString(CONFIG_ASSETS_DIRECTORY,
+				Paths.get(System.getProperty("java.io.tmpdir"), "wiki-assets").toString()), requireBundled);
+		Future<Void> templates = Future.future();
+		staticAssets.prepare(timer.timed("http.assets", ar -> {
+			if (ar.failed()) {
+				if (requireBundled) {
+					templates.fail(ar.cause());
+					return;
+				}
+				LOGGER.warn("Could not prepare the static assets", ar.cause());
+			}
+			// The header and footer are rendered with the asset URLs
+			loadTemplates(timer.timed("http.templates", templates.completer()));
+		}));
+
+		wikiDbQueue = config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue");
+		wikiDbShards = config().getInteger(WikiDataBaseVerticle.CONFIG_WIKIDB_SHARDS, 1);
+		dbLimiter = new DbRequestLimiter(config());
+		// Queued requests must time out even when the database stops replying altogether
+		vertx.setPeriodic(dbLimiter.sweepInterval(), id -> dbLimiter.expire());
+
+		pageCache = new PageCache(config().getInteger(CONFIG_PAGE_CACHE_SIZE, 1000),
+				config().getLong(CONFIG_PAGE_CACHE_TTL, 60_000L));
+		changeFeed = new ChangeFeed(vertx, config());
+		vertx.eventBus().<JsonObject>consumer(WikiDataBaseVerticle.PAGE_CHANGES_ADDRESS,
+				message -> pageChanged(message.body()));
+		if (config().getBoolean(CONFIG_PAGE_FILTER_ENABLED, true)) {
+			loadPageFilter();
+		}
+		loadPageIndex();
 
-		String wikiDbQueue = config().getString(CONFIG_WIKIDB_QUEUE, "wikidb.queue");
-		dbService = WikiDatabaseService.createProxy(vertx, wikiDbQueue);
+		backupService = BackupService.createProxy(vertx, config().getString(CONFIG_BACKUP_QUEUE, "backup.queue"));
 
-		webClient = WebClient.create(vertx, new WebClientOptions()
-				.setSsl(true)
-				.setUserAgent("vert-x3"));
+		drainer = new RequestDrainer(vertx);
+		server = vertx.createHttpServer().connectionHandler(drainer::connectionOpened);
 
-		HttpServer server = vertx.createHttpServer();
+		accessLog = new AccessLog(config());
+
+		// Off unless configured: each instance then records its requests for TrafficReplay
+		Future<Void> captureOpened = Future.future();
+		String captureDirectory = config().getString(CONFIG_CAPTURE_DIRECTORY);
+		if (captureDirectory != null) {
+			capture = new TrafficCapture(vertx, config().getBoolean(CONFIG_CAPTURE_BODIES, false));
+			capture.open(captureDirectory, ar -> {
+				if (ar.failed()) {
+					LOGGER.error("Could not open a capture file in " + captureDirectory, ar.cause());
+				}
+				captureOpened.complete();
+			});
+		} else {
+			captureOpened.complete();
+		}
 
 		Router router = Router.router(vertx);
+		router.route().handler(accessLog::handle);
+		if (capture != null) {
+			router.route().handler(capture::handle);
+		}
+		router.route().handler(drainer::handle);
+		if (config().getBoolean(CONFIG_RATE_LIMIT_ENABLED, true)) {
+			rateLimiter = RateLimiter.shared(vertx, config());
+			vertx.setPeriodic(config().getLong(CONFIG_RATE_LIMIT_EVICTION_INTERVAL, 10_000L),
+					id -> rateLimiter.evictIdle(System.nanoTime()));
+			router.route().handler(rateLimiter::handle);
+		}
+		router.route().handler(this::deadlineHandler);
+		router.get(StaticAssets.PREFIX + "*").handler(staticAssets::handle);
 		router.get("/").handler(this::indexHandler);
 		router.get("/backup").handler(this::backupHandler);
 		router.get("/wiki/:page").handler(this::pageRenderingHandler);
-		router.post().handler(BodyHandler.create());
+		BodyHandler bodyHandler = BodyHandler.create().setBodyLimit(config().getLong(CONFIG_BODY_LIMIT, 2L * 1024 * 1024));
+		router.post("/save").handler(bodyHandler);
+		router.post("/create").handler(bodyHandler);
+		router.post("/delete").handler(bodyHandler);
 		router.post("/save").handler(this::pageUpdateHandler);
 		router.post("/create").handler(this::pageCreateHandler);
 		router.post("/delete").handler(this::pageDeletionHandler);
+		router.route().failureHandler(this::failureHandler);
 
 		// tag::apiRouter[]
 		Router apiRouter = Router.router(vertx);
+		apiRouter.route().handler(accessLog::enterSubRouter);
 		apiRouter.get("/pages").handler(this::apiRoot);
+		apiRouter.get("/pages/complete").handler(this::apiCompletePages);
 		apiRouter.get("/pages/:id").handler(this::apiGetPage);
-		apiRouter.post().handler(BodyHandler.create());
+		apiRouter.post("/pages").handler(bodyHandler);
 		apiRouter.post("/pages").handler(this::apiCreatePage);
-		apiRouter.put().handler(BodyHandler.create());
+		apiRouter.post("/import").handler(this::apiImport);
+		apiRouter.put("/pages/:id").handler(bodyHandler);
 		apiRouter.put("/pages/:id").handler(this::apiUpdatePage);
+		apiRouter.put("/pages/:id/markdown").handler(this::apiUploadPage);
 		apiRouter.delete("/pages/:id").handler(this::apiDeletePage);
+		apiRouter.get("/pages/:id/backlinks").handler(this::apiGetBacklinks);
+		apiRouter.get("/pages/:id/sections").handler(this::apiGetSections);
+		apiRouter.get("/pages/:id/sections/:index").handler(this::apiGetSection);
+		apiRouter.put("/pages/:id/sections/:index").handler(bodyHandler);
+		apiRouter.put("/pages/:id/sections/:index").handler(this::apiUpdateSection);
+		apiRouter.get("/changes").handler(changeFeed::handle);
+		apiRouter.get("/stats").handler(this::apiStats);
+		apiRouter.get("/stats/top").handler(this::apiTopPages);
+		apiRouter.post("/backups").handler(this::apiStartBackup);
+		apiRouter.get("/backups/:id").handler(this::apiGetBackup);
 
 		router.mountSubRouter("/api", apiRouter); // <1>
 		// end::apiRouter[]
+		timer.record("http.router", start);
 
-		int portNumber = config().getInteger(CONFIG_HTTP_SERVER_PORT, 8080);
-		server
-				.requestHandler(router::accept)
-				.listen(portNumber, ar -> {
-					if (ar.succeeded()) {
-						LOGGER.info("HTTP server running on port " + portNumber);
-						startFuture.complete();
-					} else {
-						LOGGER.error("Could not start a HTTP server", ar.cause());
-						startFuture.fail(ar.cause());
-					}
-				});
+		pageViews = PageViewCounters.shared(vertx);
+		ownsSnapshots = pageViews.claimSnapshots();
+		vertx.setPeriodic(config().getLong(CONFIG_TOP_PAGES_SNAPSHOT_INTERVAL, 60_000L), id -> {
+			// The owner may have been undeployed since, by a redeploy for instance
+			if (!ownsSnapshots) {
+				ownsSnapshots = pageViews.claimSnapshots();
+			}
+			if (ownsSnapshots) {
+				writeTopPages(ar -> {});
+			}
+		});
+
+		portNumber = config().getInteger(CONFIG_HTTP_SERVER_PORT, 8080);
+		Future<Void> prewarmed = Future.future();
+		long databaseStart = System.currentTimeMillis();
+		awaitDatabase(databaseStart + config().getLong(CONFIG_DATABASE_WAIT_TIMEOUT, 10_000L), ready -> {
+			timer.record("http.database_wait", databaseStart);
+			long prewarmStart = System.currentTimeMillis();
+			prewarm(v -> {
+				timer.record("http.prewarm", prewarmStart);
+				prewarmed.complete();
+			});
+		});
+		CompositeFuture.all(templates, prewarmed, captureOpened).setHandler(ready -> {
+			if (ready.failed()) {
+				LOGGER.error("Could not load the templates", ready.cause());
+				startFuture.fail(ready.cause());
+				return;
+			}
+			server.requestHandler(router::accept)
+					.listen(portNumber, timer.timed("http.listen", ar -> {
+						if (ar.succeeded()) {
+							LOGGER.info("HTTP server running on port " + portNumber);
+							listening = true;
+							RequestDrainer.updateListening(vertx, portNumber, 1);
+							startFuture.complete();
+						} else {
+							LOGGER.error("Could not start a HTTP server", ar.cause());
+							startFuture.fail(ar.cause());
+						}
+					}));
+		});
+	}
+
+	/**
+	 * Parses the templates and renders their static fragments on a worker thread, see {@link PageTemplates}.
+	 */
+	private void loadTemplates(Handler<AsyncResult<Void>> handler) {
+		vertx.<PageTemplates>executeBlocking(future -> {
+			try {
+				future.complete(PageTemplates.load(staticAssets.urls(), staticAssets.integrity()));
+			} catch (IOException | TemplateException e) {
+				future.fail(e);
+			}
+		}, false, ar -> {
+			if (ar.succeeded()) {
+				pageTemplates = ar.result();
+				handler.handle(Future.succeededFuture());
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	/**
+	 * Drains the instance before it is undeployed: in-flight requests get up to {@link #CONFIG_DRAIN_TIMEOUT} to
+	 * finish, then the database calls they started to complete. When other instances listen on the same port, as
+	 * during a rolling redeploy, the server is closed first so that they take the new connections; otherwise it keeps
+	 * answering 503 until the end of the drain.
+	 */
+	@Override
+	public void stop(Future<Void> stopFuture) throws Exception {
+		long deadline = System.currentTimeMillis() + config().getLong(CONFIG_DRAIN_TIMEOUT, 10_000L);
+		boolean last = !listening || RequestDrainer.updateListening(vertx, portNumber, -1) == 0;
+		if (!last) {
+			server.close();
+		}
+
+		changeFeed.closeAll();
+		Future<Void> drained = Future.future();
+		drainer.drain(Math.max(1, deadline - System.currentTimeMillis()), last, v -> {
+			long timer = vertx.setTimer(Math.max(1, deadline - System.currentTimeMillis()), id -> drained.tryComplete());
+			dbLimiter.whenIdle(idle -> {
+				vertx.cancelTimer(timer);
+				drained.tryComplete();
+			});
+		});
+
+		drained.setHandler(v -> {
+			JsonObject left = drainer.statistics();
+			if (left.getInteger("inFlight") > 0) {
+				LOGGER.warn("Stopping with {} requests still in flight", left.getInteger("inFlight"));
+			}
+			drainer.closeAll();
+			Future<Void> captureClosed = Future.future();
+			if (capture != null) {
+				capture.close(captureClosed.completer());
+			} else {
+				captureClosed.complete();
+			}
+			captureClosed.setHandler(closed -> {
+				if (ownsSnapshots) {
+					writeTopPages(ar -> {
+						pageViews.releaseSnapshots();
+						stopFuture.complete();
+					});
+				} else {
+					stopFuture.complete();
+				}
+			});
+		});
+	}
+
+	/**
+	 * Fetches and renders the pages of the last top-K snapshot into the page cache, so that the most viewed pages do
+	 * not all miss right after a restart. The snapshot owner also seeds the view counters with it. Gives up after
+	 * {@link #CONFIG_TOP_PAGES_PREWARM_TIMEOUT}: a slow database must not prevent the server from starting.
+	 */
+	private void prewarm(Handler<Void> done) {
+		String file = config().getString(CONFIG_TOP_PAGES_FILE, "db/top-pages.json");
+		long timeout = config().getLong(CONFIG_TOP_PAGES_PREWARM_TIMEOUT, 5000L);
+		vertx.fileSystem().readFile(file, read -> {
+			if (read.failed()) {
+				LOGGER.debug("No top pages snapshot to prewarm from: " + read.cause().getMessage());
+				done.handle(null);
+				return;
+			}
+			JsonArray pages;
+			try {
+				pages = read.result().toJsonObject().getJsonArray("pages", new JsonArray());
+			} catch (RuntimeException e) {
+				LOGGER.warn("Ignoring malformed top pages snapshot " + file, e);
+				done.handle(null);
+				return;
+			}
+			if (ownsSnapshots) {
+				pageViews.seed(pages);
+			}
+			if (pages.isEmpty()) {
+				done.handle(null);
+				return;
+			}
+
+			long start = System.currentTimeMillis();
+			Future<Void> finished = Future.future();
+			long timer = vertx.setTimer(timeout, id -> finished.tryFail("timeout"));
+			WikiDatabaseService service = dbService(start + timeout);
+			int[] remaining = {pages.size()};
+			pages.forEach(page -> fetchPageCached(service, ((JsonObject) page).getString("name"), ar -> {
+				if (--remaining[0] == 0) {
+					finished.tryComplete();
+				}
+			}));
+			finished.setHandler(ar -> {
+				vertx.cancelTimer(timer);
+				if (ar.succeeded()) {
+					LOGGER.info("Prewarmed {} pages in {} ms", pages.size(), System.currentTimeMillis() - start);
+				} else {
+					LOGGER.warn("Gave up prewarming {} pages after {} ms", pages.size(), timeout);
+				}
+				done.handle(null);
+			});
+		});
+	}
+
+	/**
+	 * Calls {@code ready} once the database service answers, or at {@code deadline}. The database verticles are
+	 * deployed at the same time as this one, so their address may not be registered yet; the server starts listening
+	 * anyway after {@link #CONFIG_DATABASE_WAIT_TIMEOUT}.
+	 */
+	private void awaitDatabase(long deadline, Handler<Void> ready) {
+		WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, new DeliveryOptions()).fetchStatistics(ar -> {
+			if (isNotRegisteredYet(ar) && System.currentTimeMillis() < deadline) {
+				vertx.setTimer(DATABASE_POLL_INTERVAL, id -> awaitDatabase(deadline, ready));
+			} else {
+				ready.handle(null);
+			}
+		});
+	}
+
+	private static boolean isNotRegisteredYet(AsyncResult<?> ar) {
+		return ar.failed() && ar.cause() instanceof ReplyException
+				&& ((ReplyException) ar.cause()).failureType() == ReplyFailure.NO_HANDLERS;
+	}
+
+	private void writeTopPages(Handler<AsyncResult<Void>> handler) {
+		JsonArray top = pageViews.top(config().getInteger(CONFIG_TOP_PAGES_SIZE, 20));
+		if (top.isEmpty()) {
+			handler.handle(Future.succeededFuture());
+			return;
+		}
+		String file = config().getString(CONFIG_TOP_PAGES_FILE, "db/top-pages.json");
+		JsonObject snapshot = new JsonObject()
+				.put("takenAt", System.currentTimeMillis())
+				.put("pages", top);
+		vertx.fileSystem().writeFile(file, snapshot.toBuffer(), ar -> {
+			if (ar.failed()) {
+				LOGGER.error("Could not write the top pages snapshot", ar.cause());
+			}
+			handler.handle(ar);
+		});
+	}
+
+	private void apiTopPages(RoutingContext context) {
+		int size = config().getInteger(CONFIG_TOP_PAGES_SIZE, 20);
+		String requested = context.request().getParam("k");
+		if (requested != null) {
+			try {
+				size = Math.max(1, Math.min(1000, Integer.parseInt(requested)));
+			} catch (NumberFormatException e) {
+				LOGGER.debug("Ignoring malformed k parameter: " + requested);
+			}
+		}
+		context.response().putHeader("Content-Type", "application/json");
+		context.response().end(new JsonObject()
+				.put("success", true)
+				.put("pages", pageViews.top(size)).encode());
 	}
 
 	// tag::apiDeletePage[]
 	private void apiDeletePage(RoutingContext context) {
 		int id = Integer.valueOf(context.request().getParam("id"));
-		dbService.deletePage(id, reply -> {
+		dbService(context).deletePage(id, reply -> {
 			handleSimpleDbReply(context, reply);
 		});
 	}
@@ -109,15 +523,167 @@ public class HttpServerVerticle extends AbstractVerticle {
 			context.response().putHeader("Content-Type", "application/json");
 			context.response().end(new JsonObject().put("success", true).encode());
 		} else {
-			context.response().setStatusCode(500);
-			context.response().putHeader("Content-Type", "application/json");
-			context.response().end(new JsonObject()
-					.put("success", false)
-					.put("error", reply.cause().getMessage()).encode());
+			apiFailure(context, reply.cause());
 		}
 	}
 	// end::handleSimpleDbReply[]
 
+	private void apiFailure(RoutingContext context, Throwable cause) {
+		apiFailure(context, cause, new JsonObject());
+	}
+
+	private void apiFailure(RoutingContext context, Throwable cause, JsonObject details) {
+		if (DbRequestLimiter.isOverload(cause)) {
+			context.response().setStatusCode(503);
+			context.response().putHeader("Retry-After", String.valueOf(retryAfter()));
+		} else if (isDeadlineExceeded(cause)) {
+			context.response().setStatusCode(504);
+		} else {
+			context.response().setStatusCode(500);
+		}
+		context.response().putHeader("Content-Type", "application/json");
+		context.response().end(details
+				.put("success", false)
+				.put("error", cause.getMessage()).encode());
+	}
+
+	private void failureHandler(RoutingContext context) {
+		if (DbRequestLimiter.isOverload(context.failure())) {
+			context.response().setStatusCode(503);
+			context.response().putHeader("Retry-After", String.valueOf(retryAfter()));
+			context.response().end("Service Unavailable");
+		} else if (isDeadlineExceeded(context.failure())) {
+			context.response().setStatusCode(504);
+			context.response().end("Gateway Timeout");
+		} else {
+			context.next();
+		}
+	}
+
+	private static boolean isDeadlineExceeded(Throwable cause) {
+		if (cause instanceof ReplyException) {
+			ReplyException e = (ReplyException) cause;
+			return e.failureType() == ReplyFailure.TIMEOUT
+					|| (e.failureType() == ReplyFailure.RECIPIENT_FAILURE
+					&& e.failureCode() == ErrorCodes.DEADLINE_EXCEEDED.ordinal());
+		}
+		return false;
+	}
+
+	/**
+	 * Gives the request an absolute deadline: the longest matching route prefix in {@link #CONFIG_DEADLINE_ROUTES},
+	 * or {@link #CONFIG_DEADLINE_DEFAULT}, shortened by the {@link #REQUEST_TIMEOUT_HEADER} header if present.
+	 */
+	private void deadlineHandler(RoutingContext context) {
+		long timeout = config().getLong(CONFIG_DEADLINE_DEFAULT, 5000L);
+		JsonObject routes = config().getJsonObject(CONFIG_DEADLINE_ROUTES, new JsonObject());
+		String path = context.normalisedPath();
+		int matched = -1;
+		for (String prefix : routes.fieldNames()) {
+			if (path.startsWith(prefix) && prefix.length() > matched) {
+				matched = prefix.length();
+				timeout = routes.getLong(prefix);
+			}
+		}
+		String requested = context.request().getHeader(REQUEST_TIMEOUT_HEADER);
+		if (requested != null) {
+			try {
+				timeout = Math.min(timeout, Long.parseLong(requested));
+			} catch (NumberFormatException e) {
+				LOGGER.debug("Ignoring malformed " + REQUEST_TIMEOUT_HEADER + " header: " + requested);
+			}
+		}
+		context.put(DEADLINE_KEY, System.currentTimeMillis() + Math.max(0, timeout));
+		context.next();
+	}
+
+	/**
+	 * @return a proxy whose calls carry the request deadline, both as the event bus send timeout and as the
+	 * {@link WikiDataBaseVerticle#DEADLINE_HEADER} header, and go through the in-flight limiter
+	 */
+	private WikiDatabaseService dbService(RoutingContext context) {
+		return dbService((long) context.get(DEADLINE_KEY));
+	}
+
+	private WikiDatabaseService dbService(long deadline) {
+		DeliveryOptions options = new DeliveryOptions()
+				.setSendTimeout(Math.max(1, deadline - System.currentTimeMillis()))
+				.addHeader(WikiDataBaseVerticle.DEADLINE_HEADER, String.valueOf(deadline));
+		return new LimitedWikiDatabaseService(
+				WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, options), dbLimiter);
+	}
+
+	private int retryAfter() {
+		return config().getInteger(CONFIG_DBLIMITER_RETRY_AFTER, 1);
+	}
+
+	/**
+	 * Bulk import of an NDJSON body, see {@link PageImport}. Batches bypass the in-flight limiter, the import window
+	 * being its own limit, and each batch gets its own {@link #CONFIG_IMPORT_BATCH_TIMEOUT} deadline instead of the
+	 * request deadline.
+	 * <p>
+	 * Failures are answered with the progress so far: the {@code imported} pages are committed, the rest are not.
+	 */
+	private void apiImport(RoutingContext context) {
+		long batchTimeout = config().getLong(CONFIG_IMPORT_BATCH_TIMEOUT, 30_000L);
+		PageImport.BatchWriter writer = (pages, handler) -> {
+			long deadline = System.currentTimeMillis() + batchTimeout;
+			DeliveryOptions options = new DeliveryOptions()
+					.setSendTimeout(batchTimeout)
+					.addHeader(WikiDataBaseVerticle.DEADLINE_HEADER, String.valueOf(deadline));
+			WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, options).importPages(pages, handler);
+		};
+		PageImport pageImport = new PageImport(context.request(), writer,
+				config().getInteger(CONFIG_IMPORT_BATCH_SIZE, 500),
+				config().getInteger(CONFIG_IMPORT_MAX_IN_FLIGHT, 2),
+				config().getInteger(CONFIG_IMPORT_MAX_LINE_LENGTH, 1024 * 1024));
+		imports.add(pageImport);
+		pageImport.start(ar -> {
+			imports.remove(pageImport);
+			context.response().putHeader("Content-Type", "application/json");
+			if (ar.succeeded()) {
+				context.response().setStatusCode(200);
+				context.response().end(new JsonObject()
+						.put("success", true)
+						.put("import", ar.result()).encode());
+			} else if (ar.cause() instanceof PageImport.MalformedInputException) {
+				context.response().setStatusCode(400);
+				context.response().end(new JsonObject()
+						.put("success", false)
+						.put("error", ar.cause().getMessage())
+						.put("import", pageImport.progress()).encode());
+			} else {
+				apiFailure(context, ar.cause(), new JsonObject().put("import", pageImport.progress()));
+			}
+		});
+	}
+
+	private void apiStats(RoutingContext context) {
+		JsonArray importProgress = new JsonArray();
+		imports.forEach(pageImport -> importProgress.add(pageImport.progress()));
+		JsonObject stats = new JsonObject()
+				.put("verticle", deploymentID())
+				.put("drain", drainer.statistics())
+				.put("accessLog", accessLog.statistics())
+				.put("capture", capture == null ? null : capture.statistics())
+				.put("rateLimiter", rateLimiter == null ? null : rateLimiter.statistics())
+				.put("dbLimiter", dbLimiter.statistics())
+				.put("pageCache", pageCache.statistics())
+				.put("pageFilter", pageFilter == null ? null : pageFilter.statistics())
+				.put("pageIndex", pageIndex == null ? null : pageIndex.statistics())
+				.put("changeFeed", changeFeed.statistics())
+				.put("imports", importProgress);
+		WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, new DeliveryOptions()).fetchStatistics(reply -> {
+			if (reply.succeeded()) {
+				stats.put("database", reply.result());
+			} else {
+				stats.put("database", new JsonObject().put("error", reply.cause().getMessage()));
+			}
+			context.response().putHeader("Content-Type", "application/json");
+			context.response().end(stats.encode());
+		});
+	}
+
 	// tag::apiUpdatePage[]
 	private void apiUpdatePage(RoutingContext context) {
 		int id = Integer.valueOf(context.request().getParam("id"));
@@ -125,29 +691,167 @@ public class HttpServerVerticle extends AbstractVerticle {
 		if (!validateJsonPageDocument(context, page, "markdown")) {
 			return;
 		}
-		dbService.savePage(id, page.getString("markdown"), reply -> {
-			handleSimpleDbReply(context, reply);
+		String ifMatch = context.request().getHeader("If-Match");
+		if (ifMatch == null || "*".equals(ifMatch.trim())) {
+			dbService(context).savePage(id, page.getString("markdown"), reply -> {
+				handleSimpleDbReply(context, reply);
+			});
+			return;
+		}
+		Integer version = versionOf(ifMatch);
+		if (version == null) {
+			badIfMatch(context, ifMatch);
+			return;
+		}
+		dbService(context).savePageIfVersion(id, version, page.getString("markdown"), reply -> {
+			if (reply.failed()) {
+				apiFailure(context, reply.cause());
+				return;
+			}
+			JsonObject result = reply.result();
+			context.response().putHeader("Content-Type", "application/json");
+			if (!result.getBoolean("found")) {
+				context.response().setStatusCode(404);
+				context.response().end(new JsonObject()
+						.put("success", false)
+						.put("error", "There is no page with ID " + id).encode());
+				return;
+			}
+			context.response().putHeader("ETag", etag(result.getInteger("version")));
+			if (result.getBoolean("saved")) {
+				context.response().setStatusCode(200);
+				context.response().end(new JsonObject().put("success", true).encode());
+			} else {
+				changedSince(context, version);
+			}
 		});
 	}
 	// end::apiUpdatePage[]
 
+	private static void badIfMatch(RoutingContext context, String ifMatch) {
+		context.response().setStatusCode(412);
+		context.response().putHeader("Content-Type", "application/json");
+		context.response().end(new JsonObject()
+				.put("success", false)
+				.put("error", "Bad If-Match header: " + ifMatch).encode());
+	}
+
+	private static void changedSince(RoutingContext context, int version) {
+		context.response().setStatusCode(412);
+		context.response().putHeader("Content-Type", "application/json");
+		context.response().end(new JsonObject()
+				.put("success", false)
+				.put("error", "The page was changed since version " + version).encode());
+	}
+
+	static String etag(int version) {
+		return "\"" + version + "\"";
+	}
+
+	/**
+	 * @return the version in an {@code If-Match} header holding one of our entity tags, or {@code null}
+	 */
+	static Integer versionOf(String ifMatch) {
+		Matcher matcher = ETAG.matcher(ifMatch.trim());
+		if (!matcher.matches()) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(matcher.group(1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Saves a page from a raw markdown body of any size up to {@link #CONFIG_UPLOAD_LIMIT}, with bounded memory: the
+	 * body is streamed to a temporary file, with back-pressure, and the database reads it from there.
+	 */
+	private void apiUploadPage(RoutingContext context) {
+		int id = Integer.valueOf(context.request().getParam("id"));
+		long limit = config().getLong(CONFIG_UPLOAD_LIMIT, 64L * 1024 * 1024);
+		HttpServerRequest request = context.request();
+		String length = request.getHeader("Content-Length");
+		if (length != null && !DECIMAL.matcher(length).matches()) {
+			context.response().setStatusCode(400);
+			context.response().putHeader("Content-Type", "application/json");
+			context.response().end(new JsonObject()
+					.put("success", false)
+					.put("error", "Bad Content-Length header: " + length).encode());
+			return;
+		}
+		if (length != null && (length.length() > 18 || Long.parseLong(length) > limit)) {
+			context.fail(413);
+			return;
+		}
+
+		request.pause();
+		String directory = config().getString(CONFIG_UPLOAD_DIRECTORY, System.getProperty("java.io.tmpdir"));
+		FileSystem fs = vertx.fileSystem();
+		String file = Paths.get(directory, "page-" + UUID.randomUUID() + ".md").toString();
+		fs.open(file, new OpenOptions().setWrite(true).setCreateNew(true), opened -> {
+			if (opened.failed()) {
+				request.resume();
+				context.fail(opened.cause());
+				return;
+			}
+			AsyncFile upload = opened.result();
+			long[] received = {0};
+			boolean[] discarded = {false};
+			Handler<Void> discard = v -> {
+				if (!discarded[0]) {
+					discarded[0] = true;
+					upload.close(ar -> fs.delete(file, deleted -> {}));
+				}
+			};
+			request.handler(chunk -> {
+				received[0] += chunk.length();
+				if (received[0] > limit) {
+					// Closing the connection fails the request, which must not close the file a second time
+					request.handler(null);
+					request.endHandler(null);
+					request.exceptionHandler(null);
+					discard.handle(null);
+					context.response().setStatusCode(413).putHeader("Connection", "close").end();
+					context.request().connection().close();
+					return;
+				}
+				upload.write(chunk);
+				if (upload.writeQueueFull()) {
+					request.pause();
+					upload.drainHandler(v -> request.resume());
+				}
+			});
+			request.exceptionHandler(e -> discard.handle(null));
+			request.endHandler(v -> upload.close(closed -> {
+				if (closed.failed()) {
+					fs.delete(file, ar -> {});
+					apiFailure(context, closed.cause());
+					return;
+				}
+				long deadline = System.currentTimeMillis() + config().getLong(CONFIG_UPLOAD_SAVE_TIMEOUT, 30_000L);
+				dbService(deadline).savePageFromFile(id, file, reply -> {
+					fs.delete(file, ar -> {});
+					handleSimpleDbReply(context, reply);
+				});
+			}));
+			request.resume();
+		});
+	}
+
 	// tag::apiCreatePage[]
 	private void apiCreatePage(RoutingContext context) {
 		JsonObject page = context.getBodyAsJson();
 		if (!validateJsonPageDocument(context, page, "name", "markdown")) {
 			return;
 		}
-		dbService.createPage(page.getString("name"), page.getString("markdown"), reply -> {
+		dbService(context).createPage(page.getString("name"), page.getString("markdown"), reply -> {
 			if (reply.succeeded()) {
 				context.response().setStatusCode(201);
 				context.response().putHeader("Content-Type", "application/json");
 				context.response().end(new JsonObject().put("success", true).encode());
 			} else {
-				context.response().setStatusCode(500);
-				context.response().putHeader("Content-Type", "application/json");
-				context.response().end(new JsonObject()
-						.put("success", false)
-						.put("error", reply.cause().getMessage()).encode());
+				apiFailure(context, reply.cause());
 			}
 		});
 	}
@@ -156,7 +860,7 @@ public class HttpServerVerticle extends AbstractVerticle {
 	// tag::validateJsonPageDocument[]
 	private boolean validateJsonPageDocument(RoutingContext context, JsonObject page, String... expectedKeys) {
 		if (!Arrays.stream(expectedKeys).allMatch(page::containsKey)) {
-			LOGGER.error("Bad page creation JSON payload: " + page.encodePrettily() + " from " + context.request().remoteAddress());
+			accessLog.dump(LOGGER, "Bad page JSON payload from " + context.request().remoteAddress(), context.getBody());
 			context.response().setStatusCode(400);
 			context.response().putHeader("Content-Type", "application/json");
 			context.response().end(new JsonObject()
@@ -171,109 +875,415 @@ public class HttpServerVerticle extends AbstractVerticle {
 	// tag::apiGetPage[]
 	private void apiGetPage(RoutingContext context) {
 		int id = Integer.valueOf(context.request().getParam("id"));
-		dbService.fetchPageById(id, reply -> {
-			JsonObject response = new JsonObject();
+		dbService(context).fetchPageById(id, reply -> {
 			if (reply.succeeded()) {
 				JsonObject dbObject = reply.result();
+				context.response().putHeader("Content-Type", "application/json");
 				if (dbObject.getBoolean("found")) {
-					JsonObject payload = new JsonObject()
-							.put("name", dbObject.getString("name"))
-							.put("id", dbObject.getInteger("id"))
-							.put("markdown", dbObject.getString("content"))
-							.put("html", Processor.process(dbObject.getString("content")));
-					response
-							.put("success", true)
-							.put("page", payload);
+					context.response().putHeader("ETag", etag(dbObject.getInteger("version")));
 					context.response().setStatusCode(200);
+					context.response().end(JsonResponses.page(dbObject, Processor.process(dbObject.getString("content"))));
 				} else {
 					context.response().setStatusCode(404);
-					response
+					context.response().end(new JsonObject()
 							.put("success", false)
-							.put("error", "There is no page with ID " + id);
+							.put("error", "There is no page with ID " + id).encode());
 				}
 			} else {
-				response
-						.put("success", false)
-						.put("error", reply.cause().getMessage());
-				context.response().setStatusCode(500);
+				apiFailure(context, reply.cause());
 			}
-			context.response().putHeader("Content-Type", "application/json");
-			context.response().end(response.encode());
 		});
 	}
 	// end::apiGetPage[]
 
+	private void apiGetBacklinks(RoutingContext context) {
+		int id = Integer.valueOf(context.request().getParam("id"));
+		WikiDatabaseService service = dbService(context);
+		service.fetchPageName(id, reply -> {
+			if (reply.failed()) {
+				apiFailure(context, reply.cause());
+				return;
+			}
+			context.response().putHeader("Content-Type", "application/json");
+			if (!reply.result().getBoolean("found")) {
+				context.response().setStatusCode(404);
+				context.response().end(new JsonObject()
+						.put("success", false)
+						.put("error", "There is no page with ID " + id).encode());
+				return;
+			}
+			String name = reply.result().getString("name");
+			service.fetchBacklinks(name, backlinks -> {
+				if (backlinks.succeeded()) {
+					context.response().end(new JsonObject()
+							.put("success", true)
+							.put("name", name)
+							.put("backlinks", backlinks.result()).encode());
+				} else {
+					apiFailure(context, backlinks.cause());
+				}
+			});
+		});
+	}
+
+	private void apiGetSections(RoutingContext context) {
+		int id = Integer.valueOf(context.request().getParam("id"));
+		dbService(context).fetchPageSections(id, reply -> {
+			if (reply.succeeded()) {
+				handleSectionReply(context, id, reply.result(), new JsonObject()
+						.put("success", true)
+						.put("sections", reply.result().getJsonArray("sections")));
+			} else {
+				apiFailure(context, reply.cause());
+			}
+		});
+	}
+
+	/**
+	 * Only the section is read from the database and rendered.
+	 */
+	private void apiGetSection(RoutingContext context) {
+		int id = Integer.valueOf(context.request().getParam("id"));
+		int index = Integer.valueOf(context.request().getParam("index"));
+		dbService(context).fetchPageSection(id, index, reply -> {
+			if (reply.succeeded()) {
+				JsonObject section = reply.result().copy();
+				section.remove("found");
+				if (section.containsKey("markdown")) {
+					section.put("html", Processor.process(section.getString("markdown")));
+				}
+				handleSectionReply(context, id, reply.result(), new JsonObject()
+						.put("success", true)
+						.put("section", section));
+			} else {
+				apiFailure(context, reply.cause());
+			}
+		});
+	}
+
+	private void apiUpdateSection(RoutingContext context) {
+		int id = Integer.valueOf(context.request().getParam("id"));
+		int index = Integer.valueOf(context.request().getParam("index"));
+		JsonObject section = context.getBodyAsJson();
+		if (!validateJsonPageDocument(context, section, "markdown")) {
+			return;
+		}
+		String ifMatch = context.request().getHeader("If-Match");
+		if (ifMatch == null || "*".equals(ifMatch.trim())) {
+			dbService(context).savePageSection(id, index, section.getString("markdown"), reply -> {
+				if (reply.succeeded()) {
+					handleSectionReply(context, id, reply.result(), new JsonObject()
+							.put("success", true)
+							.put("sections", reply.result().getJsonArray("sections")));
+				} else {
+					apiFailure(context, reply.cause());
+				}
+			});
+			return;
+		}
+		Integer version = versionOf(ifMatch);
+		if (version == null) {
+			badIfMatch(context, ifMatch);
+			return;
+		}
+		dbService(context).savePageSectionIfVersion(id, index, version, section.getString("markdown"), reply -> {
+			if (reply.failed()) {
+				apiFailure(context, reply.cause());
+				return;
+			}
+			JsonObject result = reply.result();
+			if (!result.getBoolean("found")) {
+				handleSectionReply(context, id, result, null);
+				return;
+			}
+			context.response().putHeader("ETag", etag(result.getInteger("version")));
+			if (result.getBoolean("saved")) {
+				handleSectionReply(context, id, result, new JsonObject()
+						.put("success", true)
+						.put("sections", result.getJsonArray("sections")));
+			} else {
+				changedSince(context, version);
+			}
+		});
+	}
+
+	private void handleSectionReply(RoutingContext context, int id, JsonObject dbObject, JsonObject response) {
+		context.response().putHeader("Content-Type", "application/json");
+		if (dbObject.getBoolean("found")) {
+			context.response().setStatusCode(200);
+			context.response().end(response.encode());
+		} else {
+			context.response().setStatusCode(404);
+			context.response().end(new JsonObject()
+					.put("success", false)
+					.put("error", "There is no such section in page with ID " + id).encode());
+		}
+	}
+
 	// tag::apiRoot[]
 	private void apiRoot(RoutingContext context) {
-		dbService.fetchAllPagesData(reply -> {
-			JsonObject response = new JsonObject();
+		if (context.request().getParam("since") != null) {
+			apiChanges(context);
+			return;
+		}
+		dbService(context).fetchAllPagesData(reply -> {
 			if (reply.succeeded()) {
-				List<JsonObject> pages = reply.result()
-						.stream()
-						.map(obj -> new JsonObject()
-								.put("id", obj.getInteger("ID"))  // <1>
-								.put("name", obj.getString("NAME")))
-						.collect(Collectors.toList());
-				response
-						.put("success", true)
-						.put("pages", pages); // <2>
 				context.response().setStatusCode(200);
 				context.response().putHeader("Content-Type", "application/json");
-				context.response().end(response.encode()); // <3>
+				context.response().end(JsonResponses.pages(reply.result()));
 			} else {
-				response
-						.put("success", false)
-						.put("error", reply.cause().getMessage());
-				context.response().setStatusCode(500);
-				context.response().putHeader("Content-Type", "application/json");
-				context.response().end(response.encode());
+				apiFailure(context, reply.cause());
 			}
 		});
 	}
 	// end::apiRoot[]
 
+	/**
+	 * {@code GET /api/pages?since=<sequence>[&limit=<pages>]}, see {@link WikiDatabaseService#fetchChanges}.
+	 */
+	private void apiChanges(RoutingContext context) {
+		String since = context.request().getParam("since");
+		String limitParam = context.request().getParam("limit");
+		if (!SEQUENCE.matcher(since).matches() || (limitParam != null && !limitParam.matches("[0-9]{1,9}"))) {
+			context.response().setStatusCode(400);
+			context.response().putHeader("Content-Type", "application/json");
+			context.response().end(new JsonObject()
+					.put("success", false)
+					.put("error", "Bad since or limit parameter").encode());
+			return;
+		}
+		int limit = limitParam == null ? DEFAULT_CHANGES_LIMIT : Math.max(1, Math.min(Integer.parseInt(limitParam), MAX_CHANGES_LIMIT));
+		dbService(context).fetchChanges(since, limit, reply -> {
+			if (reply.succeeded()) {
+				context.response().setStatusCode(200);
+				context.response().putHeader("Content-Type", "application/json");
+				context.response().end(reply.result().put("success", true).encode());
+			} else {
+				apiFailure(context, reply.cause());
+			}
+		});
+	}
+
+	/**
+	 * Completes page names from the {@link PageNameIndex}, without going to the database; answers 503 until the index
+	 * is first loaded.
+	 */
+	private void apiCompletePages(RoutingContext context) {
+		String prefix = context.request().getParam("prefix");
+		String limitParam = context.request().getParam("limit");
+		context.response().putHeader("Content-Type", "application/json");
+		if (prefix == null || (limitParam != null && !limitParam.matches("[0-9]{1,9}"))) {
+			context.response().setStatusCode(400);
+			context.response().end(new JsonObject()
+					.put("success", false)
+					.put("error", "Bad prefix or limit parameter").encode());
+			return;
+		}
+		if (pageIndex == null) {
+			context.response().setStatusCode(503);
+			context.response().putHeader("Retry-After", String.valueOf(retryAfter()));
+			context.response().end(new JsonObject()
+					.put("success", false)
+					.put("error", "The page index is not loaded yet").encode());
+			return;
+		}
+		int limit = limitParam == null ? DEFAULT_COMPLETIONS : Math.max(1, Math.min(Integer.parseInt(limitParam), MAX_COMPLETIONS));
+		context.response().end(new JsonObject()
+				.put("success", true)
+				.put("pages", pageIndex.complete(prefix, limit)).encode());
+	}
+
 	private void indexHandler(RoutingContext context) {
-		dbService.fetchAllPages(reply -> {
+		dbService(context).fetchAllPages(reply -> {
 			if (reply.succeeded()) {
-				context.put("title", "Wiki home");
-				context.put("pages", reply.result().getList());
-				templateEngine.render(context, "templates", "/index.ftl", ar -> {
-					if (ar.succeeded()) {
-						context.response().putHeader("Content-Type", "text/html");
-						context.response().end(ar.result());
-					} else {
-						context.fail(ar.cause());
-					}
-				});
+				Map<String, Object> data = new HashMap<>();
+				data.put("title", "Wiki home");
+				data.put("pages", reply.result().getList());
+				renderPage(context, PageTemplates.INDEX, data);
 			} else {
 				context.fail(reply.cause());
 			}
 		});
 	}
 
+	/**
+	 * Same as {@code fetchPage}, through the {@link PageCache} and the {@link PageNameFilter}. Found pages also get
+	 * their Markdown rendered once, in an {@code html} field.
+	 */
+	private void fetchPageCached(WikiDatabaseService service, String name,
+								 Handler<AsyncResult<JsonObject>> resultHandler) {
+		JsonObject cached = pageCache.get(name);
+		if (cached != null) {
+			resultHandler.handle(Future.succeededFuture(cached));
+			return;
+		}
+		PageNameFilter filter = pageFilter;
+		if (filter != null && !filter.mightContain(name)) {
+			resultHandler.handle(Future.succeededFuture(new JsonObject().put("found", false)));
+			return;
+		}
+		long stamp = pageCache.stamp();
+		service.fetchPage(name, reply -> {
+			if (reply.succeeded()) {
+				if (reply.result().getBoolean("found")) {
+					reply.result().put("html", Processor.process(reply.result().getString("rawContent")));
+				}
+				pageCache.put(name, reply.result(), stamp);
+				if (filter != null && !reply.result().getBoolean("found")) {
+					filter.falsePositive();
+				}
+			}
+			resultHandler.handle(reply);
+		});
+	}
+
+	private void pageChanged(JsonObject event) {
+		pageCache.invalidate(event);
+		changeFeed.publish(event);
+		if ("delete".equals(event.getString("action")) && event.getString("name") != null) {
+			pageViews.forget(event.getString("name"));
+		}
+
+		List<String> added = new ArrayList<>();
+		if ("create".equals(event.getString("action"))) {
+			added.add(event.getString("name"));
+		} else if ("import".equals(event.getString("action"))) {
+			event.getJsonArray("names").forEach(name -> added.add((String) name));
+		}
+		if (pageFilterPending != null) {
+			pageFilterPending.addAll(added);
+		}
+		if (pageFilter != null) {
+			added.forEach(pageFilter::add);
+			if ("delete".equals(event.getString("action"))) {
+				pageFilter.removed();
+			}
+			if (pageFilter.needsRebuild() && pageFilterPending == null) {
+				loadPageFilter();
+			}
+		}
+
+		if (pageIndexPending != null) {
+			pageIndexPending.add(event);
+		} else if (pageIndex != null && !updatePageIndex(pageIndex, event)) {
+			loadPageIndex();
+		}
+	}
+
+	/**
+	 * @return {@code false} if the event is a deletion without the name of the page, so the index must be reloaded
+	 */
+	private static boolean updatePageIndex(PageNameIndex index, JsonObject event) {
+		switch (event.getString("action")) {
+			case "create":
+				index.add(event.getString("name"));
+				return true;
+			case "import":
+				event.getJsonArray("names").forEach(name -> index.add((String) name));
+				return true;
+			case "delete":
+				if (event.getString("name") == null) {
+					return false;
+				}
+				index.remove(event.getString("name"));
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * (Re)loads the {@link PageNameIndex} from the list of pages; the change events received meanwhile are applied
+	 * once it is loaded.
+	 */
+	private void loadPageIndex() {
+		pageIndexPending = new ArrayList<>();
+		WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, new DeliveryOptions()).fetchAllPages(reply -> {
+			List<JsonObject> pending = pageIndexPending;
+			pageIndexPending = null;
+			if (reply.failed()) {
+				if (isNotRegisteredYet(reply)) {
+					vertx.setTimer(DATABASE_POLL_INTERVAL, id -> loadPageIndex());
+					return;
+				}
+				LOGGER.error("Could not load the page name index, retrying", reply.cause());
+				vertx.setTimer(5000, id -> loadPageIndex());
+				return;
+			}
+			List<String> names = new ArrayList<>();
+			reply.result().forEach(name -> names.add((String) name));
+			PageNameIndex index = new PageNameIndex(names);
+			boolean complete = true;
+			for (JsonObject event : pending) {
+				complete &= updatePageIndex(index, event);
+			}
+			if (pageIndex != null) {
+				index.carryStatistics(pageIndex);
+			}
+			pageIndex = index;
+			if (!complete) {
+				loadPageIndex();
+			}
+		});
+	}
+
+	/**
+	 * (Re)builds the {@link PageNameFilter} from the list of pages; until the first build completes, every lookup goes
+	 * to the database. Pages created while the list is being fetched are added from the change events.
+	 */
+	private void loadPageFilter() {
+		pageFilterPending = new ArrayList<>();
+		WikiDatabaseService.createProxy(vertx, wikiDbQueue, wikiDbShards, new DeliveryOptions()).fetchAllPages(reply -> {
+			List<String> pending = pageFilterPending;
+			pageFilterPending = null;
+			if (reply.failed()) {
+				if (isNotRegisteredYet(reply)) {
+					vertx.setTimer(DATABASE_POLL_INTERVAL, id -> loadPageFilter());
+					return;
+				}
+				LOGGER.error("Could not load the page name filter, retrying", reply.cause());
+				vertx.setTimer(5000, id -> loadPageFilter());
+				return;
+			}
+			int expected = Math.max(config().getInteger(CONFIG_PAGE_FILTER_EXPECTED_PAGES, 10_000),
+					2 * reply.result().size());
+			PageNameFilter filter = new PageNameFilter(expected, config().getDouble(CONFIG_PAGE_FILTER_FPP, 0.01));
+			reply.result().forEach(name -> filter.add((String) name));
+			pending.forEach(filter::add);
+			if (pageFilter != null) {
+				filter.carryStatistics(pageFilter);
+			}
+			pageFilter = filter;
+		});
+	}
+
 	private void pageRenderingHandler(RoutingContext context) {
 		String requestedPage = context.request().getParam("page");
-		dbService.fetchPage(requestedPage, reply -> {
+		fetchPageCached(dbService(context), requestedPage, reply -> {
 			if (reply.succeeded()) {
 
 				JsonObject payLoad = reply.result();
 				boolean found = payLoad.getBoolean("found");
+				if (found) {
+					pageViews.viewed(requestedPage);
+				}
 				String rawContent = payLoad.getString("rawContent", EMPTY_PAGE_MARKDOWN);
-				context.put("title", requestedPage);
-				context.put("id", payLoad.getInteger("id", -1));
-				context.put("newPage", found ? "no" : "yes");
-				context.put("rawContent", rawContent);
-				context.put("content", Processor.process(rawContent));
-				context.put("timestamp", new Date().toString());
-
-				templateEngine.render(context, "templates", "/page.ftl", ar -> {
-					if (ar.succeeded()) {
-						context.response().putHeader("Content-Type", "text/html");
-						context.response().end(ar.result());
-					} else {
-						context.fail(ar.cause());
-					}
-				});
+				Map<String, Object> data = new HashMap<>();
+				data.put("title", requestedPage);
+				data.put("id", payLoad.getInteger("id", -1));
+				data.put("newPage", found ? "no" : "yes");
+				data.put("version", payLoad.getInteger("version", 0));
+				data.put("rawContent", rawContent);
+				data.put("timestamp", new Date().toString());
+				if (found) {
+					markMissingLinks(dbService(context), payLoad.getString("html"), html -> {
+						data.put("content", html);
+						renderPage(context, PageTemplates.PAGE, data);
+					});
+				} else {
+					data.put("content", EMPTY_PAGE_HTML);
+					renderPage(context, PageTemplates.PAGE, data);
+				}
 
 			} else {
 				context.fail(reply.cause());
@@ -281,6 +1291,45 @@ public class HttpServerVerticle extends AbstractVerticle {
 		});
 	}
 
+	/**
+	 * Styles the links to pages that do not exist. They are checked against the {@link PageNameIndex}, or with a
+	 * single {@code fetchExistingPages} call for all of them until it is loaded; the page is rendered without the
+	 * styling if that call fails.
+	 */
+	private void markMissingLinks(WikiDatabaseService service, String html, Handler<String> handler) {
+		Set<String> targets = MissingPageLinks.targets(html);
+		if (targets.isEmpty()) {
+			handler.handle(html);
+			return;
+		}
+		if (pageIndex != null) {
+			targets.removeIf(pageIndex::contains);
+			handler.handle(MissingPageLinks.mark(html, targets));
+			return;
+		}
+		service.fetchExistingPages(new JsonArray(new ArrayList<>(targets)), reply -> {
+			if (reply.succeeded()) {
+				reply.result().forEach(targets::remove);
+				handler.handle(MissingPageLinks.mark(html, targets));
+			} else {
+				LOGGER.warn("Could not check the pages linked from a page", reply.cause());
+				handler.handle(html);
+			}
+		});
+	}
+
+	private void renderPage(RoutingContext context, String template, Map<String, Object> data) {
+		Buffer page;
+		try {
+			page = pageTemplates.render(template, (String) data.get("title"), data);
+		} catch (IOException | TemplateException e) {
+			context.fail(e);
+			return;
+		}
+		context.response().putHeader("Content-Type", "text/html;charset=UTF-8");
+		context.response().end(page);
+	}
+
 	private void pageUpdateHandler(RoutingContext context) {
 		String title = context.request().getParam("title");
 
@@ -295,10 +1344,20 @@ public class HttpServerVerticle extends AbstractVerticle {
 		};
 
 		String markdown = context.request().getParam("markdown");
+		String version = context.request().getParam("version");
 		if ("yes".equals(context.request().getParam("newPage"))) {
-			dbService.createPage(title, markdown, handler);
+			dbService(context).createPage(title, markdown, handler);
+		} else if (version != null) {
+			// The form carries the version it was rendered from: saving over a later change is a conflict
+			dbService(context).savePageIfVersion(Integer.valueOf(context.request().getParam("id")), Integer.valueOf(version), markdown, reply -> {
+				if (reply.succeeded() && reply.result().getBoolean("found") && !reply.result().getBoolean("saved")) {
+					context.fail(409);
+				} else {
+					handler.handle(reply.map((Void) null));
+				}
+			});
 		} else {
-			dbService.savePage(Integer.valueOf(context.request().getParam("id")), markdown, handler);
+			dbService(context).savePage(Integer.valueOf(context.request().getParam("id")), markdown, handler);
 		}
 	}
 
@@ -314,7 +1373,7 @@ public class HttpServerVerticle extends AbstractVerticle {
 	}
 
 	private void pageDeletionHandler(RoutingContext context) {
-		dbService.deletePage(Integer.valueOf(context.request().getParam("id")), reply -> {
+		dbService(context).deletePage(Integer.valueOf(context.request().getParam("id")), reply -> {
 			if (reply.succeeded()) {
 				context.response().setStatusCode(303);
 				context.response().putHeader("Location", "/");
@@ -326,55 +1385,53 @@ public class HttpServerVerticle extends AbstractVerticle {
 	}
 
 	private void backupHandler(RoutingContext context) {
-		dbService.fetchAllPagesData(reply -> {
+		backupService.startBackup(reply -> {
 			if (reply.succeeded()) {
-
-				JsonObject filesObject = new JsonObject();
-				JsonObject gistPayload = new JsonObject()
-						.put("files", filesObject)
-						.put("description", "A wiki backup")
-						.put("public", true);
-
-				reply
-						.result()
-						.forEach(page -> {
-							JsonObject fileObject = new JsonObject();
-							filesObject.put(page.getString("NAME"), fileObject);
-							fileObject.put("content", page.getString("CONTENT"));
-						});
-
-				webClient.post(443, "api.github.com", "/gists")
-						.putHeader("User-Agent", "vert-x3")
-						.putHeader("Accept", "application/vnd.github.v3+json")
-						.putHeader("Content-Type", "application/json")
-						.as(BodyCodec.jsonObject())
-						.sendJsonObject(gistPayload, ar -> {
-							if (ar.succeeded()) {
-								HttpResponse<JsonObject> response = ar.result();
-								if (response.statusCode() == 201) {
-									context.put("backup_gist_url", response.body().getString("html_url"));
-									indexHandler(context);
-								} else {
-									StringBuilder message = new StringBuilder()
-											.append("Could not backup the wiki: ")
-											.append(response.statusMessage());
-									JsonObject body = response.body();
-									if (body != null) {
-										message.append(System.getProperty("line.separator"))
-												.append(body.encodePrettily());
-									}
-									LOGGER.error(message.toString());
-									context.fail(502);
-								}
-							} else {
-								Throwable err = ar.cause();
-								LOGGER.error("HTTP Client error", err);
-								context.fail(err);
-							}
-						});
+				context.response().setStatusCode(303);
+				context.response().putHeader("Location", "/api/backups/" + reply.result().getString("id"));
+				context.response().end();
 			} else {
 				context.fail(reply.cause());
 			}
 		});
 	}
+
+	private void apiStartBackup(RoutingContext context) {
+		backupService.startBackup(reply -> {
+			if (reply.succeeded()) {
+				String id = reply.result().getString("id");
+				context.response().setStatusCode(202);
+				context.response().putHeader("Location", "/api/backups/" + id);
+				context.response().putHeader("Content-Type", "application/json");
+				context.response().end(new JsonObject()
+						.put("success", true)
+						.put("job", reply.result()).encode());
+			} else {
+				apiFailure(context, reply.cause());
+			}
+		});
+	}
+
+	private void apiGetBackup(RoutingContext context) {
+		backupService.fetchJob(context.request().getParam("id"), reply -> {
+			if (reply.failed()) {
+				apiFailure(context, reply.cause());
+				return;
+			}
+			JsonObject job = reply.result();
+			context.response().putHeader("Content-Type", "application/json");
+			if (job.getBoolean("found")) {
+				job.remove("found");
+				context.response().setStatusCode(200);
+				context.response().end(new JsonObject()
+						.put("success", true)
+						.put("job", job).encode());
+			} else {
+				context.response().setStatusCode(404);
+				context.response().end(new JsonObject()
+						.put("success", false)
+						.put("error", "There is no backup job with ID " + context.request().getParam("id")).encode());
+			}
+		});
+	}
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package io.vertx.starter.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Writes the bodies of the busiest API responses straight into a {@link Buffer} with a streaming JSON generator,
+ * instead of building a {@link JsonObject} tree, encoding it to a {@code String} and copying that into a buffer.
+ * <p>
+ * Jackson recycles the byte and char buffers of its generators per thread, that is per event loop here, so writing a
+ * response allocates little more than the returned buffer, which is sized up front from the content.
+ */
+final class JsonResponses {
+
+	private static final JsonFactory FACTORY = Json.mapper.getFactory();
+
+	private JsonResponses() {
+	}
+
+	/**
+	 * {@code {"success": true, "pages": [{"id": ..., "name": ...}, ...]}} from the rows of
+	 * {@link io.vertx.starter.database.WikiDatabaseService#fetchAllPagesData}.
+	 */
+	static Buffer pages(List<JsonObject> rows) {
+		return write(32 + rows.size() * 48, generator -> {
+			generator.writeStartObject();
+			generator.writeBooleanField("success", true);
+			generator.writeArrayFieldStart("pages");
+			for (JsonObject row : rows) {
+				generator.writeStartObject();
+				generator.writeNumberField("id", row.getInteger("ID"));
+				generator.writeStringField("name", row.getString("NAME"));
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		});
+	}
+
+	/**
+	 * {@code {"success": true, "page": {"name": ..., "id": ..., "markdown": ..., "html": ...}}} from the reply of
+	 * {@link io.vertx.starter.database.WikiDatabaseService#fetchPageById}.
+	 */
+	static Buffer page(JsonObject page, String html) {
+		String name = page.getString("name");
+		String markdown = page.getString("content");
+		return write(64 + encodedLength(name) + encodedLength(markdown) + encodedLength(html), generator -> {
+			generator.writeStartObject();
+			generator.writeBooleanField("success", true);
+			generator.writeObjectFieldStart("page");
+			generator.writeStringField("name", name);
+			generator.writeNumberField("id", page.getInteger("id"));
+			generator.writeStringField("markdown", markdown);
+			generator.writeStringField("html", html);
+			generator.writeEndObject();
+			generator.writeEndObject();
+		});
+	}
+
+	static Buffer write(int sizeHint, Body body) {
+		Buffer buffer = Buffer.buffer(sizeHint);
+		try (JsonGenerator generator = FACTORY.createGenerator(new BufferOutputStream(buffer))) {
+			body.write(generator);
+		} catch (IOException e) {
+			// Only thrown by the generator on misuse, the buffer itself does not fail
+			throw new UncheckedIOException(e);
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return the length of {@code value} once escaped and encoded in UTF-8, so that large bodies are written into a
+	 * buffer of the right size rather than one grown, and copied, several times
+	 */
+	static int encodedLength(String value) {
+		int length = 2;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x20) {
+				length += c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f' ? 2 : 6;
+			} else if (c < 0x80) {
+				length += c == '"' || c == '\\' ? 2 : 1;
+			} else if (c < 0x800 || Character.isSurrogate(c)) {
+				// A surrogate pair takes 4 bytes
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	@FunctionalInterface
+	interface Body {
+		void write(JsonGenerator generator) throws IOException;
+	}
+
+	private static final class BufferOutputStream extends OutputStream {
+
+		private final Buffer buffer;
+
+		BufferOutputStream(Buffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public void write(int b) {
+			buffer.appendByte((byte) b);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+			buffer.appendBytes(bytes, offset, length);
+		}
+	}
+}
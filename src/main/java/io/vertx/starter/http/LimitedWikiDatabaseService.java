@@ -0,0 +1,137 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.database.WikiDatabaseService;
+
+import java.util.List;
+
+/**
+ * Routes every call to the wrapped service through a {@link DbRequestLimiter}.
+ */
+class LimitedWikiDatabaseService implements WikiDatabaseService {
+
+	private final WikiDatabaseService delegate;
+	private final DbRequestLimiter limiter;
+
+	LimitedWikiDatabaseService(WikiDatabaseService delegate, DbRequestLimiter limiter) {
+		this.delegate = delegate;
+		this.limiter = limiter;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPages(Handler<AsyncResult<JsonArray>> resultHandler) {
+		limiter.execute(resultHandler, delegate::fetchAllPages);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPage(String name, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchPage(name, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchPageById(id, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageName(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchPageName(id, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService createPage(String title, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.createPage(title, markdown, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePage(int id, String markdown, Handler<AsyncResult<Void>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.savePage(id, markdown, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageIfVersion(int id, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.savePageIfVersion(id, version, markdown, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageFromFile(int id, String file, Handler<AsyncResult<Void>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.savePageFromFile(id, file, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService deletePage(int id, Handler<AsyncResult<Void>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.deletePage(id, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchAllPagesData(Handler<AsyncResult<List<JsonObject>>> resultHandler) {
+		limiter.execute(resultHandler, delegate::fetchAllPagesData);
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService importPages(JsonArray pages, Handler<AsyncResult<Void>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.importPages(pages, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSections(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchPageSections(id, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchPageSection(int id, int index, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchPageSection(id, index, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSection(int id, int index, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.savePageSection(id, index, markdown, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService savePageSectionIfVersion(int id, int index, int version, String markdown, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.savePageSectionIfVersion(id, index, version, markdown, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchChanges(String since, int limit, Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchChanges(since, limit, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchBacklinks(String name, Handler<AsyncResult<JsonArray>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchBacklinks(name, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchExistingPages(JsonArray names, Handler<AsyncResult<JsonArray>> resultHandler) {
+		limiter.execute(resultHandler, handler -> delegate.fetchExistingPages(names, handler));
+		return this;
+	}
+
+	@Override
+	public WikiDatabaseService fetchStatistics(Handler<AsyncResult<JsonObject>> resultHandler) {
+		limiter.execute(resultHandler, delegate::fetchStatistics);
+		return this;
+	}
+}
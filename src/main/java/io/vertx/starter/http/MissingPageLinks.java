@@ -0,0 +1,63 @@
+package io.vertx.starter.http;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the links to wiki pages in rendered HTML, and styles those to pages that do not exist.
+ * <p>
+ * Only the anchors written by the Markdown processor are recognized, {@code <a href="/wiki/Name"}, with the name
+ * percent-encoded as in the Markdown source.
+ */
+final class MissingPageLinks {
+
+	static final String MISSING_CLASS = "text-danger";
+
+	private static final Pattern LINK = Pattern.compile("<a href=\"/wiki/([^\"#?]+)");
+
+	private MissingPageLinks() {
+	}
+
+	/**
+	 * @return the names of the pages linked from {@code html}, in order of appearance
+	 */
+	static Set<String> targets(String html) {
+		Set<String> targets = new LinkedHashSet<>();
+		Matcher matcher = LINK.matcher(html);
+		while (matcher.find()) {
+			targets.add(decode(matcher.group(1)));
+		}
+		return targets;
+	}
+
+	/**
+	 * @return {@code html} with the links to the pages in {@code missing} given the {@link #MISSING_CLASS} class
+	 */
+	static String mark(String html, Set<String> missing) {
+		if (missing.isEmpty()) {
+			return html;
+		}
+		Matcher matcher = LINK.matcher(html);
+		StringBuilder marked = new StringBuilder(html.length() + 32 * missing.size());
+		int copied = 0;
+		while (matcher.find()) {
+			if (missing.contains(decode(matcher.group(1)))) {
+				marked.append(html, copied, matcher.start() + 2).append(" class=\"").append(MISSING_CLASS).append('"');
+				copied = matcher.start() + 2;
+			}
+		}
+		return marked.append(html, copied, html.length()).toString();
+	}
+
+	private static String decode(String encoded) {
+		try {
+			return URLDecoder.decode(encoded.replace("&amp;", "&").replace("+", "%2B"), "UTF-8");
+		} catch (IllegalArgumentException | UnsupportedEncodingException e) {
+			return encoded;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of {@code fetchPage} replies, keyed by page name, kept coherent by the page change events of the
+ * database verticle. Entries also expire after {@code ttl} milliseconds, in case an event is lost.
+ * <p>
+ * A reply is only cached if no change event arrived while it was being fetched: callers take a {@link #stamp()}
+ * before the call and hand it back to {@link #put(String, JsonObject, long)}.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class PageCache {
+
+	private final int maxSize;
+	private final long ttl;
+
+	private final Map<String, Entry> entries;
+	private final Map<Integer, String> namesById = new HashMap<>();
+
+	private long changes;
+	private long hits;
+	private long misses;
+	private long invalidations;
+
+	PageCache(int maxSize, long ttl) {
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > PageCache.this.maxSize) {
+					unindex(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return a copy of the cached reply, or {@code null}
+	 */
+	JsonObject get(String name) {
+		Entry entry = entries.get(name);
+		if (entry != null && System.currentTimeMillis() - entry.cachedAt > ttl) {
+			entries.remove(name);
+			unindex(entry);
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.page.copy();
+	}
+
+	long stamp() {
+		return changes;
+	}
+
+	void put(String name, JsonObject page, long stamp) {
+		if (maxSize <= 0 || stamp != changes) {
+			return;
+		}
+		Entry previous = entries.put(name, new Entry(page.copy()));
+		if (previous != null) {
+			unindex(previous);
+		}
+		Integer id = page.getInteger("id");
+		if (id != null) {
+			namesById.put(id, name);
+		}
+	}
+
+	/**
+	 * Drops the entries affected by a page change event.
+	 */
+	void invalidate(JsonObject event) {
+		changes++;
+		if (event.containsKey("name")) {
+			remove(event.getString("name"));
+		}
+		if (event.containsKey("id")) {
+			String name = namesById.get(event.getInteger("id"));
+			if (name != null) {
+				remove(name);
+			}
+		}
+		if (event.containsKey("names")) {
+			event.getJsonArray("names").forEach(name -> remove((String) name));
+		}
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("size", entries.size())
+				.put("hits", hits)
+				.put("misses", misses)
+				.put("invalidations", invalidations);
+	}
+
+	private void remove(String name) {
+		Entry entry = entries.remove(name);
+		if (entry != null) {
+			invalidations++;
+			unindex(entry);
+		}
+	}
+
+	private void unindex(Entry entry) {
+		Integer id = entry.page.getInteger("id");
+		if (id != null) {
+			namesById.remove(id);
+		}
+	}
+
+	private static class Entry {
+		final JsonObject page;
+		final long cachedAt = System.currentTimeMillis();
+
+		Entry(JsonObject page) {
+			this.page = page;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams an NDJSON request body, one {@code {"name": ..., "markdown": ...}} object per line, into the database in
+ * batches.
+ * <p>
+ * Only the current partial line and the batches being written are held in memory: the request is paused while
+ * {@code maxInFlight} batches are awaiting their reply and resumed as soon as fewer are. Lines longer than
+ * {@code maxLineLength} bytes are rejected.
+ * <p>
+ * Imports are not all-or-nothing: each batch is committed on its own, so an import that fails part way leaves the
+ * batches written before the failure in place. {@link #progress()} counts them as {@code imported}.
+ */
+class PageImport {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageImport.class);
+
+	/**
+	 * Reports a malformed request body; {@link #line} is 1-based.
+	 */
+	static class MalformedInputException extends RuntimeException {
+		final long line;
+
+		MalformedInputException(long line, String message) {
+			super("Line " + line + ": " + message);
+			this.line = line;
+		}
+	}
+
+	@FunctionalInterface
+	interface BatchWriter {
+		void write(JsonArray pages, Handler<AsyncResult<Void>> resultHandler);
+	}
+
+	private final HttpServerRequest request;
+	private final BatchWriter writer;
+	private final int batchSize;
+	private final int maxInFlight;
+	private final int maxLineLength;
+
+	private Handler<AsyncResult<JsonObject>> doneHandler;
+
+	private final long startedAt = System.currentTimeMillis();
+
+	private Buffer pending = Buffer.buffer();
+	private JsonArray batch = new JsonArray();
+	private int inFlight;
+	private boolean paused;
+	private boolean ended;
+	private boolean done;
+
+	private long lines;
+	private long bytes;
+	private long imported;
+	private long batches;
+	private long pauses;
+
+	PageImport(HttpServerRequest request, BatchWriter writer, int batchSize, int maxInFlight, int maxLineLength) {
+		this.request = request;
+		this.writer = writer;
+		this.batchSize = batchSize;
+		this.maxInFlight = maxInFlight;
+		this.maxLineLength = maxLineLength;
+	}
+
+	/**
+	 * @param doneHandler called once, with the final {@link #progress()} or the first failure
+	 */
+	void start(Handler<AsyncResult<JsonObject>> doneHandler) {
+		this.doneHandler = doneHandler;
+		request.handler(this::handleData);
+		request.endHandler(v -> {
+			ended = true;
+			if (done) {
+				return;
+			}
+			if (pending.length() > 0) {
+				handleLine(pending);
+				pending = Buffer.buffer();
+			}
+			if (!done) {
+				flush();
+				completeIfDrained();
+			}
+		});
+		request.exceptionHandler(this::fail);
+	}
+
+	/**
+	 * @return the counters so far; {@code imported} only counts the pages of batches the database acknowledged
+	 */
+	JsonObject progress() {
+		long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+		return new JsonObject()
+				.put("lines", lines)
+				.put("bytes", bytes)
+				.put("imported", imported)
+				.put("batches", batches)
+				.put("inFlight", inFlight)
+				.put("pauses", pauses)
+				.put("elapsed", elapsed)
+				.put("pagesPerSecond", imported * 1000 / elapsed)
+				.put("bytesPerSecond", bytes * 1000 / elapsed);
+	}
+
+	private void handleData(Buffer data) {
+		if (done) {
+			return;
+		}
+		bytes += data.length();
+		pending.appendBuffer(data);
+		int start = 0;
+		for (int i = pending.length() - data.length(); i < pending.length() && !done; i++) {
+			if (pending.getByte(i) == '\n') {
+				handleLine(pending.slice(start, i));
+				start = i + 1;
+			}
+		}
+		if (done) {
+			return;
+		}
+		if (pending.length() - start > maxLineLength) {
+			fail(new MalformedInputException(lines + 1, "longer than " + maxLineLength + " bytes"));
+			return;
+		}
+		pending = start == 0 ? pending : pending.getBuffer(start, pending.length());
+	}
+
+	private void handleLine(Buffer line) {
+		lines++;
+		String text = line.toString("UTF-8").trim();
+		if (text.isEmpty()) {
+			return;
+		}
+		JsonObject page;
+		try {
+			page = new JsonObject(text);
+		} catch (DecodeException | ClassCastException e) {
+			fail(new MalformedInputException(lines, "not a JSON object"));
+			return;
+		}
+		if (!(page.getValue("name") instanceof String) || !(page.getValue("markdown") instanceof String)) {
+			fail(new MalformedInputException(lines, "expected string fields name and markdown"));
+			return;
+		}
+		batch.add(page);
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	private void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+		JsonArray pages = batch;
+		batch = new JsonArray();
+		inFlight++;
+		if (inFlight >= maxInFlight && !paused && !ended) {
+			paused = true;
+			pauses++;
+			request.pause();
+		}
+		writer.write(pages, ar -> {
+			inFlight--;
+			if (done) {
+				return;
+			}
+			if (ar.failed()) {
+				fail(ar.cause());
+				return;
+			}
+			imported += pages.size();
+			batches++;
+			if (paused && inFlight < maxInFlight) {
+				paused = false;
+				request.resume();
+			}
+			completeIfDrained();
+		});
+	}
+
+	private void completeIfDrained() {
+		if (ended && inFlight == 0 && !done) {
+			done = true;
+			JsonObject progress = progress();
+			LOGGER.info("Imported {} pages in {} ms", imported, progress.getLong("elapsed"));
+			doneHandler.handle(Future.succeededFuture(progress));
+		}
+	}
+
+	private void fail(Throwable cause) {
+		if (done) {
+			return;
+		}
+		done = true;
+		if (paused) {
+			paused = false;
+			request.resume();
+		}
+		doneHandler.handle(Future.failedFuture(cause));
+	}
+}
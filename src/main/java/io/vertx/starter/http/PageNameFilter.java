@@ -0,0 +1,127 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Bloom filter of existing page names, so that lookups of pages that definitely do not exist can skip the database.
+ * <p>
+ * Bloom filters do not support removals: deleted pages are only counted, and the owner rebuilds the filter when
+ * {@link #needsRebuild()} says the stale entries or the number of pages make the false positive rate drift away from
+ * its target.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class PageNameFilter {
+
+	private final long[] bits;
+	private final int bitCount;
+	private final int hashes;
+	private final int expectedPages;
+
+	private int insertions;
+	private int stale;
+
+	private long lookups;
+	private long shortCircuits;
+	private long falsePositives;
+
+	/**
+	 * @param expectedPages number of pages the filter is sized for
+	 * @param fpp           target false positive probability at {@code expectedPages}
+	 */
+	PageNameFilter(int expectedPages, double fpp) {
+		this.expectedPages = Math.max(1, expectedPages);
+		long optimalBits = (long) Math.ceil(-this.expectedPages * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+		this.hashes = Math.max(1, (int) Math.round((double) bitCount / this.expectedPages * Math.log(2)));
+		this.bits = new long[(bitCount + 63) / 64];
+	}
+
+	/**
+	 * Keeps the lookup counters of the filter this one replaces.
+	 */
+	void carryStatistics(PageNameFilter previous) {
+		lookups = previous.lookups;
+		shortCircuits = previous.shortCircuits;
+		falsePositives = previous.falsePositives;
+	}
+
+	void add(String name) {
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashes; i++) {
+			int bit = Math.floorMod(h1 + i * h2, bitCount);
+			bits[bit >>> 6] |= 1L << bit;
+		}
+		insertions++;
+	}
+
+	/**
+	 * @return {@code false} if the page definitely does not exist
+	 */
+	boolean mightContain(String name) {
+		lookups++;
+		long hash = hash(name);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < hashes; i++) {
+			int bit = Math.floorMod(h1 + i * h2, bitCount);
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				shortCircuits++;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records that a page {@link #mightContain(String)} accepted turned out not to exist.
+	 */
+	void falsePositive() {
+		falsePositives++;
+	}
+
+	void removed() {
+		stale++;
+	}
+
+	boolean needsRebuild() {
+		return stale > Math.max(64, insertions / 10) || insertions > expectedPages;
+	}
+
+	int insertions() {
+		return insertions;
+	}
+
+	JsonObject statistics() {
+		long misses = shortCircuits + falsePositives;
+		return new JsonObject()
+				.put("bits", bitCount)
+				.put("hashes", hashes)
+				.put("insertions", insertions)
+				.put("stale", stale)
+				.put("expectedFalsePositiveRate", Math.pow(1 - Math.exp(-(double) hashes * insertions / bitCount), hashes))
+				.put("observedFalsePositiveRate", misses == 0 ? 0.0 : (double) falsePositives / misses)
+				.put("lookups", lookups)
+				.put("shortCircuits", shortCircuits)
+				.put("falsePositives", falsePositives);
+	}
+
+	/**
+	 * 64-bit FNV-1a over the UTF-16 code units, with a final avalanche so that both halves are usable as hashes.
+	 */
+	private static long hash(String name) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < name.length(); i++) {
+			hash ^= name.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,153 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Page names sorted case-insensitively, for prefix completion without the database.
+ * <p>
+ * Names are kept in two parallel arrays, their lower-case keys and the names themselves, so that a completion is two
+ * binary searches and a copy of the matches. Additions and removals shift the arrays; they are rare next to lookups.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class PageNameIndex {
+
+	private String[] keys;
+	private String[] names;
+	private int size;
+
+	private long completions;
+
+	PageNameIndex(Collection<String> pages) {
+		String[] sorted = pages.stream().distinct().toArray(String[]::new);
+		Arrays.sort(sorted, PageNameIndex::compare);
+		this.names = Arrays.copyOf(sorted, Math.max(16, sorted.length));
+		this.keys = new String[names.length];
+		for (int i = 0; i < sorted.length; i++) {
+			keys[i] = key(sorted[i]);
+		}
+		this.size = sorted.length;
+	}
+
+	/**
+	 * Keeps the counters of the index this one replaces.
+	 */
+	void carryStatistics(PageNameIndex previous) {
+		completions = previous.completions;
+	}
+
+	void add(String name) {
+		int index = search(name);
+		if (index >= 0) {
+			return;
+		}
+		index = -index - 1;
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			keys = Arrays.copyOf(keys, size * 2);
+		}
+		System.arraycopy(names, index, names, index + 1, size - index);
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		names[index] = name;
+		keys[index] = key(name);
+		size++;
+	}
+
+	void remove(String name) {
+		int index = search(name);
+		if (index < 0) {
+			return;
+		}
+		System.arraycopy(names, index + 1, names, index, size - index - 1);
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		size--;
+		names[size] = null;
+		keys[size] = null;
+	}
+
+	/**
+	 * @return the first {@code limit} names starting with {@code prefix}, ignoring case, in alphabetical order
+	 */
+	JsonArray complete(String prefix, int limit) {
+		completions++;
+		String key = key(prefix);
+		int index = lowerBound(key);
+		JsonArray matches = new JsonArray();
+		for (int i = index; i < size && matches.size() < limit && keys[i].startsWith(key); i++) {
+			matches.add(names[i]);
+		}
+		return matches;
+	}
+
+	boolean contains(String name) {
+		return search(name) >= 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("pages", size)
+				.put("completions", completions);
+	}
+
+	/**
+	 * @return the index of {@code name}, or {@code -(insertion point) - 1}
+	 */
+	private int search(String name) {
+		String key = key(name);
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = keys[middle].compareTo(key);
+			if (comparison == 0) {
+				comparison = names[middle].compareTo(name);
+			}
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -low - 1;
+	}
+
+	/**
+	 * @return the index of the first key not less than {@code key}
+	 */
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle].compareTo(key) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Orders by key, then by name, so that names differing only by case have a stable place.
+	 */
+	private static int compare(String a, String b) {
+		int comparison = key(a).compareTo(key(b));
+		return comparison != 0 ? comparison : a.compareTo(b);
+	}
+
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+}
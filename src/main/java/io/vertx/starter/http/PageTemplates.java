@@ -0,0 +1,95 @@
+package io.vertx.starter.http;
+
+import freemarker.cache.ClassTemplateLoader;
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Renders the HTML pages from the templates of {@code /templates}.
+ * <p>
+ * {@code header.ftl} and {@code footer.ftl} only depend on the {@link StaticAssets} URLs and hashes, which are fixed once the
+ * verticle is started, and, for the header, on the title. They are rendered once, the header around a marker title,
+ * into byte arrays; a page is then those arrays, the encoded title and the page template, rendered straight into a
+ * byte buffer, assembled into one composite buffer without copying.
+ * <p>
+ * Page templates see their data as {@code context}, as with the Vert.x template engine. Instances are immutable.
+ */
+class PageTemplates {
+
+	static final String INDEX = "index.ftl";
+	static final String PAGE = "page.ftl";
+
+	private static final String TITLE_MARKER = "\u0000title\u0000";
+
+	private final Map<String, Template> templates = new HashMap<>();
+	private final byte[] headerStart;
+	private final byte[] headerEnd;
+	private final byte[] footer;
+
+	private PageTemplates(Configuration configuration, Map<String, String> assets, Map<String, String> integrity)
+			throws IOException, TemplateException {
+		for (String name : new String[]{INDEX, PAGE}) {
+			templates.put(name, configuration.getTemplate(name));
+		}
+		Map<String, Object> data = new HashMap<>();
+		data.put("title", TITLE_MARKER);
+		data.put("assets", assets);
+		data.put("integrity", integrity);
+		String header = renderToString(configuration.getTemplate("header.ftl"), data);
+		int title = header.indexOf(TITLE_MARKER);
+		headerStart = header.substring(0, title).getBytes(StandardCharsets.UTF_8);
+		headerEnd = header.substring(title + TITLE_MARKER.length()).getBytes(StandardCharsets.UTF_8);
+		footer = renderToString(configuration.getTemplate("footer.ftl"), data).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the templates and renders the fragments; this reads them from the classpath, so it blocks.
+	 */
+	static PageTemplates load(Map<String, String> assets, Map<String, String> integrity) throws IOException, TemplateException {
+		return new PageTemplates(configuration(), assets, integrity);
+	}
+
+	static Configuration configuration() {
+		Configuration configuration = new Configuration(Configuration.VERSION_2_3_23);
+		configuration.setTemplateLoader(new ClassTemplateLoader(PageTemplates.class, "/templates"));
+		configuration.setDefaultEncoding("UTF-8");
+		return configuration;
+	}
+
+	/**
+	 * Renders the page {@code template} of the given {@code title}; {@code data} must hold the title too if the
+	 * template shows it.
+	 */
+	Buffer render(String template, String title, Map<String, Object> data) throws IOException, TemplateException {
+		ByteBuf body = Unpooled.buffer(4096);
+		try (Writer writer = new OutputStreamWriter(new ByteBufOutputStream(body), StandardCharsets.UTF_8)) {
+			templates.get(template).process(Collections.singletonMap("context", data), writer);
+		}
+		return Buffer.buffer(Unpooled.wrappedBuffer(
+				Unpooled.wrappedBuffer(headerStart),
+				Unpooled.wrappedBuffer(title.getBytes(StandardCharsets.UTF_8)),
+				Unpooled.wrappedBuffer(headerEnd),
+				body,
+				Unpooled.wrappedBuffer(footer)));
+	}
+
+	private static String renderToString(Template template, Map<String, Object> data) throws IOException, TemplateException {
+		StringWriter writer = new StringWriter();
+		template.process(Collections.singletonMap("context", data), writer);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,105 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.SharedState;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Page view counters shared by all the {@link HttpServerVerticle} instances of a Vert.x instance, isolated
+ * generations included. Counting is lock free: each page has a striped {@link LongAdder}, so instances on different
+ * event loops do not contend.
+ * <p>
+ * One instance at a time owns the periodic top-K snapshots, see {@link #claimSnapshots()}.
+ */
+class PageViewCounters {
+
+	private static final String SHARED_MAP = "wiki.http";
+	private static final String SHARED_KEY = "pageViews";
+
+	private final ConcurrentHashMap<String, LongAdder> views;
+	private final AtomicBoolean snapshotOwner;
+
+	PageViewCounters() {
+		this(new ConcurrentHashMap<>(), new AtomicBoolean());
+	}
+
+	private PageViewCounters(ConcurrentHashMap<String, LongAdder> views, AtomicBoolean snapshotOwner) {
+		this.views = views;
+		this.snapshotOwner = snapshotOwner;
+	}
+
+	/**
+	 * The counters are JDK classes kept in {@link SharedState}, so the generations redeployed in an isolation group,
+	 * which cannot share an instance of this class, count in the same map, and take turns owning the snapshots.
+	 */
+	static PageViewCounters shared(Vertx vertx) {
+		return new PageViewCounters(
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY, ConcurrentHashMap::new),
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY + ".snapshotOwner", AtomicBoolean::new));
+	}
+
+	void viewed(String name) {
+		views.computeIfAbsent(name, key -> new LongAdder()).increment();
+	}
+
+	void forget(String name) {
+		views.remove(name);
+	}
+
+	/**
+	 * Starts from a previous snapshot, with counts halved so that pages that stopped being viewed fade out across
+	 * restarts.
+	 */
+	void seed(JsonArray pages) {
+		pages.forEach(page -> {
+			JsonObject entry = (JsonObject) page;
+			views.computeIfAbsent(entry.getString("name"), key -> new LongAdder()).add(entry.getLong("views") / 2);
+		});
+	}
+
+	/**
+	 * @return the {@code k} most viewed pages as {@code {name, views}} objects, most viewed first
+	 */
+	JsonArray top(int k) {
+		PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+		views.forEach((name, adder) -> {
+			long count = adder.sum();
+			if (count == 0) {
+				return;
+			}
+			if (heap.size() < k) {
+				heap.add(new AbstractMap.SimpleImmutableEntry<>(name, count));
+			} else if (count > heap.peek().getValue()) {
+				heap.poll();
+				heap.add(new AbstractMap.SimpleImmutableEntry<>(name, count));
+			}
+		});
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(heap);
+		sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+		JsonArray top = new JsonArray();
+		sorted.forEach(entry -> top.add(new JsonObject().put("name", entry.getKey()).put("views", entry.getValue())));
+		return top;
+	}
+
+	/**
+	 * @return {@code true} if the caller is now in charge of the snapshots, until {@link #releaseSnapshots()}
+	 */
+	boolean claimSnapshots() {
+		return snapshotOwner.compareAndSet(false, true);
+	}
+
+	void releaseSnapshots() {
+		snapshotOwner.set(false);
+	}
+}
@@ -0,0 +1,232 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.starter.SharedState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-client token buckets shared by all the {@link HttpServerVerticle} instances of a Vert.x instance, isolated
+ * generations included.
+ * <p>
+ * Each rule of {@link HttpServerVerticle#CONFIG_RATE_LIMIT_RULES} applies to the paths starting with its prefix, or
+ * with {@code "METHOD /prefix"} to the requests of that method only, the longest prefix winning, and gives every
+ * remote address, and every {@link #API_KEY_HEADER} value, its own bucket of {@code burst} tokens refilled at
+ * {@code rate} tokens per second. Rules with the same {@code bucket} name share their buckets. A request must get a
+ * token from both its address and its key buckets; requests over the limit get a 429.
+ * <p>
+ * A bucket is a single {@link AtomicLong} holding the time at which it will be full again (the generic cell rate
+ * algorithm, equivalent to a token bucket), updated with compare-and-set: no locks, and no contention between
+ * clients. Full buckets are indistinguishable from new ones, so {@link #evictIdle(long)} drops them; past
+ * {@link HttpServerVerticle#CONFIG_RATE_LIMIT_MAX_BUCKETS}, new clients share one overflow bucket per rule until the
+ * next eviction.
+ */
+class RateLimiter {
+
+	static final String API_KEY_HEADER = "X-API-Key";
+
+	private static final String SHARED_MAP = "wiki.http";
+	private static final String SHARED_KEY = "rateLimiter";
+
+	private final List<Rule> rules = new ArrayList<>();
+	private final ConcurrentHashMap<String, AtomicLong> buckets;
+	private final ConcurrentHashMap<String, AtomicLong> overflows;
+	private final int maxBuckets;
+
+	private final LongAdder limited;
+	private final LongAdder overflowed;
+	private final LongAdder evicted;
+
+	RateLimiter(JsonObject config) {
+		this(config, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new LongAdder(), new LongAdder(),
+				new LongAdder());
+	}
+
+	private RateLimiter(JsonObject config, ConcurrentHashMap<String, AtomicLong> buckets,
+						ConcurrentHashMap<String, AtomicLong> overflows, LongAdder limited, LongAdder overflowed,
+						LongAdder evicted) {
+		this.buckets = buckets;
+		this.overflows = overflows;
+		this.limited = limited;
+		this.overflowed = overflowed;
+		this.evicted = evicted;
+		JsonObject ruleConfig = config.getJsonObject(HttpServerVerticle.CONFIG_RATE_LIMIT_RULES, new JsonObject()
+				.put("/api/", new JsonObject().put("rate", 100).put("burst", 200))
+				.put("/save", new JsonObject().put("rate", 5).put("burst", 10))
+				.put("/backup", new JsonObject().put("rate", 1.0 / 60).put("burst", 2).put("bucket", "backup"))
+				.put("POST /api/backups", new JsonObject().put("rate", 1.0 / 60).put("burst", 2).put("bucket", "backup")));
+		for (String name : ruleConfig.fieldNames()) {
+			JsonObject rule = ruleConfig.getJsonObject(name);
+			int space = name.indexOf(' ');
+			HttpMethod method = space < 0 ? null : HttpMethod.valueOf(name.substring(0, space));
+			String bucket = rule.getString("bucket", name);
+			rules.add(new Rule(method, name.substring(space + 1), bucket, rule.getDouble("rate"),
+					rule.getInteger("burst", 1), overflows.computeIfAbsent(bucket, key -> new AtomicLong(System.nanoTime()))));
+		}
+		// Longest prefix first, and for the same prefix the rule of a method before the one of any method
+		rules.sort((a, b) -> a.prefix.length() != b.prefix.length() ? b.prefix.length() - a.prefix.length()
+				: (a.method == null ? 1 : 0) - (b.method == null ? 1 : 0));
+		this.maxBuckets = config.getInteger(HttpServerVerticle.CONFIG_RATE_LIMIT_MAX_BUCKETS, 100_000);
+	}
+
+	/**
+	 * Shares the buckets and counters through {@link SharedState}, as {@link PageViewCounters} does, so that a client
+	 * gets no fresh buckets from the new generation of a redeploy.
+	 */
+	static RateLimiter shared(Vertx vertx, JsonObject config) {
+		return new RateLimiter(config,
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY, ConcurrentHashMap::new),
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY + ".overflows", ConcurrentHashMap::new),
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY + ".limited", LongAdder::new),
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY + ".overflowed", LongAdder::new),
+				SharedState.get(vertx, SHARED_MAP, SHARED_KEY + ".evicted", LongAdder::new));
+	}
+
+	void handle(RoutingContext context) {
+		long wait = acquire(context.request().method(), context.normalisedPath(), context.request().remoteAddress().host(),
+				context.request().getHeader(API_KEY_HEADER), System.nanoTime());
+		if (wait == 0) {
+			context.next();
+			return;
+		}
+		context.response()
+				.setStatusCode(429)
+				.putHeader("Retry-After", String.valueOf(TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999)))
+				.end("Too Many Requests");
+	}
+
+	/**
+	 * Takes a token from the buckets of the client for {@code path}, at {@code now} ({@link System#nanoTime()}).
+	 *
+	 * @return 0 if the request may go on, otherwise how long to wait before retrying, in nanoseconds
+	 */
+	long acquire(HttpMethod method, String path, String address, String apiKey, long now) {
+		Rule rule = match(method, path);
+		if (rule == null) {
+			return 0;
+		}
+		AtomicLong byAddress = bucket(rule, "ip:" + address, now);
+		AtomicLong byKey = apiKey == null ? null : bucket(rule, "key:" + apiKey, now);
+		// A request refused by one bucket must not cost a token from the other
+		long wait = byKey == null ? 0 : rule.waitFor(byKey, now);
+		if (wait == 0) {
+			wait = rule.acquire(byAddress, now);
+		}
+		if (wait == 0 && byKey != null) {
+			wait = rule.acquire(byKey, now);
+			if (wait != 0) {
+				// Another request took the last token of the key meanwhile
+				rule.release(byAddress);
+			}
+		}
+		if (wait != 0) {
+			limited.increment();
+		}
+		return wait;
+	}
+
+	/**
+	 * Drops the buckets that are full again: their clients have been idle for at least {@code burst / rate}.
+	 */
+	void evictIdle(long now) {
+		buckets.forEach((key, bucket) -> {
+			if (bucket.get() - now <= 0 && buckets.remove(key, bucket)) {
+				evicted.increment();
+			}
+		});
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("buckets", buckets.size())
+				.put("limited", limited.sum())
+				.put("overflowed", overflowed.sum())
+				.put("evicted", evicted.sum());
+	}
+
+	private Rule match(HttpMethod method, String path) {
+		for (Rule rule : rules) {
+			if ((rule.method == null || rule.method == method) && path.startsWith(rule.prefix)) {
+				return rule;
+			}
+		}
+		return null;
+	}
+
+	private AtomicLong bucket(Rule rule, String client, long now) {
+		String key = rule.bucket + " " + client;
+		AtomicLong bucket = buckets.get(key);
+		if (bucket != null) {
+			return bucket;
+		}
+		if (buckets.size() >= maxBuckets) {
+			overflowed.increment();
+			return rule.overflow;
+		}
+		AtomicLong created = new AtomicLong(now);
+		bucket = buckets.putIfAbsent(key, created);
+		return bucket != null ? bucket : created;
+	}
+
+	private static class Rule {
+		final HttpMethod method;
+		final String prefix;
+		final String bucket;
+		final long interval;
+		final long tolerance;
+		final AtomicLong overflow;
+
+		Rule(HttpMethod method, String prefix, String bucket, double rate, int burst, AtomicLong overflow) {
+			this.method = method;
+			this.prefix = prefix;
+			this.bucket = bucket;
+			this.overflow = overflow;
+			this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+			this.tolerance = interval * burst;
+		}
+
+		/**
+		 * Takes a token from {@code bucket}, whose value is the time at which it will be full again.
+		 *
+		 * @return 0 if a token was taken, otherwise how long to wait for one, in nanoseconds
+		 */
+		long acquire(AtomicLong bucket, long now) {
+			while (true) {
+				long full = bucket.get();
+				long start = full - now > 0 ? full : now;
+				long next = start + interval;
+				if (next - now > tolerance) {
+					return next - now - tolerance;
+				}
+				if (bucket.compareAndSet(full, next)) {
+					return 0;
+				}
+			}
+		}
+
+		/**
+		 * @return how long {@link #acquire(AtomicLong, long)} would have to wait for a token at {@code now}, without
+		 * taking it
+		 */
+		long waitFor(AtomicLong bucket, long now) {
+			long full = bucket.get();
+			long next = (full - now > 0 ? full : now) + interval;
+			return next - now > tolerance ? next - now - tolerance : 0;
+		}
+
+		/**
+		 * Puts back a token taken by {@link #acquire(AtomicLong, long)}.
+		 */
+		void release(AtomicLong bucket) {
+			bucket.addAndGet(-interval);
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the connections and in-flight requests of one {@link HttpServerVerticle} instance, so that stopping it can
+ * let the requests finish instead of cutting them.
+ * <p>
+ * Once {@link #drain(long, boolean, Handler)} is called, every response carries {@code Connection: close} and its
+ * connection is closed as soon as it is idle, so that clients reconnect to another instance. Requests arriving on
+ * existing connections are either still served, when other instances listen on the same port and the server was
+ * closed, or rejected with a 503 when this is the last instance.
+ * <p>
+ * Instances are confined to the event loop of their verticle, so there is no synchronization.
+ */
+class RequestDrainer {
+
+	private static final String SHARED_MAP = "wiki.http";
+
+	private final Vertx vertx;
+	private final Map<HttpConnection, Integer> connections = new HashMap<>();
+
+	private int inFlight;
+	private boolean draining;
+	private boolean rejectNew;
+	private long rejected;
+	private long closedIdle;
+	private Handler<Void> drainedHandler;
+	private long drainTimer = -1;
+
+	RequestDrainer(Vertx vertx) {
+		this.vertx = vertx;
+	}
+
+	/**
+	 * Counts the instances listening on {@code port} in this Vert.x instance; {@code delta} is +1 once listening, -1
+	 * when draining starts.
+	 *
+	 * @return the number of instances listening after the update
+	 */
+	static int updateListening(Vertx vertx, int port, int delta) {
+		LocalMap<String, Integer> map = vertx.sharedData().getLocalMap(SHARED_MAP);
+		String key = "listening." + port;
+		while (true) {
+			Integer current = map.putIfAbsent(key, delta);
+			if (current == null) {
+				return delta;
+			}
+			if (map.replaceIfPresent(key, current, current + delta)) {
+				return current + delta;
+			}
+		}
+	}
+
+	void connectionOpened(HttpConnection connection) {
+		connections.put(connection, 0);
+		connection.closeHandler(v -> {
+			Integer active = connections.remove(connection);
+			if (active != null && active > 0) {
+				inFlight -= active;
+				checkDrained();
+			}
+		});
+	}
+
+	/**
+	 * First route of the router: counts the request until its response is written.
+	 */
+	void handle(RoutingContext context) {
+		HttpConnection connection = context.request().connection();
+		if (draining && rejectNew) {
+			rejected++;
+			context.response()
+					.setStatusCode(503)
+					.putHeader("Connection", "close")
+					.putHeader("Retry-After", "1")
+					.end("Service Unavailable");
+			closeIfIdle(connection);
+			return;
+		}
+		inFlight++;
+		connections.merge(connection, 1, Integer::sum);
+		context.addHeadersEndHandler(v -> {
+			if (draining) {
+				context.response().putHeader("Connection", "close");
+			}
+		});
+		context.addBodyEndHandler(v -> {
+			Integer active = connections.computeIfPresent(connection, (key, count) -> count - 1);
+			if (active == null) {
+				// The connection was closed first and its requests already discounted
+				return;
+			}
+			inFlight--;
+			if (draining) {
+				closeIfIdle(connection);
+			}
+			checkDrained();
+		});
+		context.next();
+	}
+
+	/**
+	 * Starts draining: idle connections are closed now, the others once their last response is written.
+	 * {@code drained} is called when no request is in flight any more, or after {@code timeout} milliseconds.
+	 *
+	 * @param rejectNew whether requests arriving from now on get a 503 rather than being served
+	 */
+	void drain(long timeout, boolean rejectNew, Handler<Void> drained) {
+		this.draining = true;
+		this.rejectNew = rejectNew;
+		this.drainedHandler = drained;
+		for (HttpConnection connection : connections.keySet().toArray(new HttpConnection[0])) {
+			closeIfIdle(connection);
+		}
+		if (inFlight > 0) {
+			drainTimer = vertx.setTimer(timeout, id -> {
+				drainTimer = -1;
+				complete();
+			});
+		}
+		checkDrained();
+	}
+
+	/**
+	 * Closes every connection left, whether idle or not.
+	 */
+	void closeAll() {
+		for (HttpConnection connection : connections.keySet().toArray(new HttpConnection[0])) {
+			connection.close();
+		}
+	}
+
+	JsonObject statistics() {
+		return new JsonObject()
+				.put("draining", draining)
+				.put("inFlight", inFlight)
+				.put("connections", connections.size())
+				.put("rejected", rejected)
+				.put("closedIdle", closedIdle);
+	}
+
+	private void closeIfIdle(HttpConnection connection) {
+		Integer active = connections.get(connection);
+		if (active != null && active == 0) {
+			closedIdle++;
+			connection.close();
+		}
+	}
+
+	private void checkDrained() {
+		if (draining && inFlight == 0) {
+			if (drainTimer != -1) {
+				vertx.cancelTimer(drainTimer);
+				drainTimer = -1;
+			}
+			complete();
+		}
+	}
+
+	private void complete() {
+		Handler<Void> handler = drainedHandler;
+		drainedHandler = null;
+		if (handler != null) {
+			handler.handle(null);
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.handler.StaticHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the front-end libraries of the templates from {@code webroot/assets} on the classpath, under
+ * {@code /assets/<name>.<hash>.<extension>} names that change with their content, so that they can be cached forever.
+ * <p>
+ * On startup, each bundled library is copied with a gzipped variant to {@link HttpServerVerticle#CONFIG_ASSETS_DIRECTORY},
+ * from where both are sent with {@code sendFile}, the plain one through a {@link StaticHandler}. Libraries missing
+ * from the classpath are linked to their CDN instead; the templates get the URL to use for each from
+ * {@link #urls()}, and the subresource integrity hash to check it against from {@link #integrity()}.
+ * <p>
+ * The bundled copies are meant to be the exact files published on the CDN, as fetched by {@code fetch-assets.sh}; a
+ * copy that differs from the {@link #PUBLISHED_INTEGRITY} hash is still served, with its own hash, but logged. Deploys
+ * without access to the CDN set {@link HttpServerVerticle#CONFIG_ASSETS_REQUIRE_BUNDLED}, so that a missing copy fails
+ * the start instead of leaving pages without styles and scripts.
+ */
+class StaticAssets {
+
+	static final String PREFIX = "/assets/";
+
+	private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+	/**
+	 * The libraries the templates use, with the URLs they are loaded from when not bundled.
+	 */
+	static final Map<String, String> FALLBACKS;
+
+	static {
+		Map<String, String> fallbacks = new LinkedHashMap<>();
+		fallbacks.put("bootstrap.min.css", "https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/css/bootstrap.min.css");
+		fallbacks.put("jquery.min.js", "https://ajax.googleapis.com/ajax/libs/jquery/3.1.1/jquery.min.js");
+		fallbacks.put("tether.min.js", "https://cdnjs.cloudflare.com/ajax/libs/tether/1.3.7/js/tether.min.js");
+		fallbacks.put("bootstrap.min.js", "https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/js/bootstrap.min.js");
+		FALLBACKS = Collections.unmodifiableMap(fallbacks);
+
+		Map<String, String> published = new LinkedHashMap<>();
+		published.put("bootstrap.min.css", "sha384-AysaV+vQoT3kOAXZkl02PThvDr8HYKPZhNT5h/CXfBThSRXQ6jW5DO2ekP5ViFdi");
+		published.put("jquery.min.js", "sha384-3ceskX3iaEnIogmQchP8opvBy3Mi7Ce34nWjpBIwVTHfGYWQS9jwHDVRnpKKHJg7");
+		published.put("tether.min.js", "sha384-XTs3FgkjiBgo8qjEjBk0tGmf3wPrWtA6coPfQDfFEY8AnYJwjalXCiosYRBIBZX8");
+		published.put("bootstrap.min.js", "sha384-BLiI7JTZm+JWlgKa0M0kGRpJbF2J8q+qreVrKBC47e3K6BW78kGLrCkeRX6I9RoK");
+		PUBLISHED_INTEGRITY = Collections.unmodifiableMap(published);
+	}
+
+	/**
+	 * The integrity hashes of the files published at the {@link #FALLBACKS} URLs.
+	 */
+	static final Map<String, String> PUBLISHED_INTEGRITY;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StaticAssets.class);
+
+	private final Vertx vertx;
+	private final Path directory;
+	private final boolean requireBundled;
+	private final StaticHandler staticHandler;
+
+	private Map<String, String> urls = FALLBACKS;
+	private Map<String, String> integrity = PUBLISHED_INTEGRITY;
+	private Set<String> served = Collections.emptySet();
+
+	/**
+	 * @param requireBundled whether {@link #prepare(Handler)} fails when a library is not bundled
+	 */
+	StaticAssets(Vertx vertx, String directory, boolean requireBundled) {
+		this.vertx = vertx;
+		this.requireBundled = requireBundled;
+		this.directory = Paths.get(directory).toAbsolutePath();
+		this.staticHandler = StaticHandler.create()
+				.setAllowRootFileSystemAccess(true)
+				.setWebRoot(this.directory.toString())
+				.setDirectoryListing(false)
+				.setSendVaryHeader(false);
+	}
+
+	/**
+	 * Copies the bundled libraries to the assets directory, on a worker thread.
+	 */
+	void prepare(Handler<AsyncResult<Void>> handler) {
+		Map<String, String> checked = new HashMap<>(PUBLISHED_INTEGRITY);
+		vertx.<Map<String, String>>executeBlocking(future -> {
+			try {
+				Files.createDirectories(directory);
+				Map<String, String> prepared = new HashMap<>(FALLBACKS);
+				List<String> missing = new ArrayList<>();
+				for (String name : FALLBACKS.keySet()) {
+					byte[] content = read("/webroot/assets/" + name);
+					if (content == null) {
+						missing.add(name);
+						continue;
+					}
+					String hashed = hashedName(name, content);
+					write(directory.resolve(hashed), content, false);
+					write(directory.resolve(hashed + ".gz"), content, true);
+					prepared.put(name, PREFIX + hashed);
+					String actual = integrity(content);
+					if (!actual.equals(PUBLISHED_INTEGRITY.get(name))) {
+						LOGGER.warn("The bundled {} is not the file published at {}, run fetch-assets.sh", name, FALLBACKS.get(name));
+					}
+					checked.put(name, actual);
+				}
+				if (!missing.isEmpty() && requireBundled) {
+					future.fail(new IllegalStateException("Libraries missing from webroot/assets: " + missing
+							+ ", run fetch-assets.sh"));
+					return;
+				}
+				future.complete(prepared);
+			} catch (IOException e) {
+				future.fail(e);
+			}
+		}, false, ar -> {
+			if (ar.succeeded()) {
+				urls = ar.result();
+				integrity = checked;
+				served = new HashSet<>();
+				urls.values().stream()
+						.filter(url -> url.startsWith(PREFIX))
+						.forEach(url -> served.add(url.substring(PREFIX.length())));
+				handler.handle(Future.succeededFuture());
+			} else {
+				handler.handle(Future.failedFuture(ar.cause()));
+			}
+		});
+	}
+
+	/**
+	 * @return the URL of each library of {@link #FALLBACKS}, by name
+	 */
+	Map<String, String> urls() {
+		return urls;
+	}
+
+	/**
+	 * @return the subresource integrity hash of each library of {@link #FALLBACKS}, by name, that of the bundled copy
+	 * when there is one
+	 */
+	Map<String, String> integrity() {
+		return integrity;
+	}
+
+	void handle(RoutingContext context) {
+		String name = context.normalisedPath().substring(PREFIX.length());
+		if (!served.contains(name)) {
+			context.response().setStatusCode(404).end();
+			return;
+		}
+		HttpServerResponse response = context.response();
+		response.putHeader("Vary", "Accept-Encoding");
+		String acceptEncoding = context.request().getHeader("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			response.putHeader("Cache-Control", CACHE_CONTROL)
+					.putHeader("Content-Type", contentType(name))
+					.putHeader("Content-Encoding", "gzip")
+					.sendFile(directory.resolve(name + ".gz").toString());
+			return;
+		}
+		// The static handler sets its own max-age, without immutable
+		context.addHeadersEndHandler(v -> response.putHeader("Cache-Control", CACHE_CONTROL));
+		staticHandler.handle(context);
+	}
+
+	/**
+	 * @return {@code name} with the first 16 hex digits of the SHA-256 of {@code content} before its extension
+	 */
+	static String hashedName(String name, byte[] content) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest.digest(content);
+		StringBuilder hex = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			hex.append(String.format("%02x", hash[i]));
+		}
+		int extension = name.lastIndexOf('.');
+		return name.substring(0, extension) + "." + hex + name.substring(extension);
+	}
+
+	static String integrity(byte[] content) {
+		try {
+			return "sha384-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-384").digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String contentType(String name) {
+		return name.endsWith(".css") ? "text/css;charset=UTF-8" : "application/javascript;charset=UTF-8";
+	}
+
+	private static byte[] read(String resource) throws IOException {
+		try (InputStream in = StaticAssets.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				return null;
+			}
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				content.write(buffer, 0, read);
+			}
+			return content.toByteArray();
+		}
+	}
+
+	/**
+	 * Writes through a temporary file, as the instances of the verticle prepare the same files at the same time.
+	 * Names are derived from the content, so an existing file is already right.
+	 */
+	private static void write(Path file, byte[] content, boolean gzip) throws IOException {
+		if (Files.exists(file)) {
+			return;
+		}
+		Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = gzip ? new BestGzipOutputStream(Files.newOutputStream(temporary))
+					: Files.newOutputStream(temporary)) {
+				out.write(content);
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Compression happens once per library, so it may as well be the best.
+	 */
+	private static final class BestGzipOutputStream extends GZIPOutputStream {
+		BestGzipOutputStream(OutputStream out) throws IOException {
+			super(out);
+			def.setLevel(Deflater.BEST_COMPRESSION);
+		}
+	}
+}
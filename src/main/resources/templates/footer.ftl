@@ -1,11 +1,11 @@
   </div> <!-- .container -->
 
-  <script src="https://ajax.googleapis.com/ajax/libs/jquery/3.1.1/jquery.min.js"
-        integrity="sha384-3ceskX3iaEnIogmQchP8opvBy3Mi7Ce34nWjpBIwVTHfGYWQS9jwHDVRnpKKHJg7" crossorigin="anonymous"></script>
-  <script src="https://cdnjs.cloudflare.com/ajax/libs/tether/1.3.7/js/tether.min.js"
-        integrity="sha384-XTs3FgkjiBgo8qjEjBk0tGmf3wPrWtA6coPfQDfFEY8AnYJwjalXCiosYRBIBZX8" crossorigin="anonymous"></script>
-  <script src="https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/js/bootstrap.min.js"
-        integrity="sha384-BLiI7JTZm+JWlgKa0M0kGRpJbF2J8q+qreVrKBC47e3K6BW78kGLrCkeRX6I9RoK" crossorigin="anonymous"></script>
+  <script src="${context.assets["jquery.min.js"]}"
+        integrity="${context.integrity["jquery.min.js"]}" crossorigin="anonymous"></script>
+  <script src="${context.assets["tether.min.js"]}"
+        integrity="${context.integrity["tether.min.js"]}" crossorigin="anonymous"></script>
+  <script src="${context.assets["bootstrap.min.js"]}"
+        integrity="${context.integrity["bootstrap.min.js"]}" crossorigin="anonymous"></script>
 
 </body>
 
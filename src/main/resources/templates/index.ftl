@@ -1,5 +1,3 @@
-<#include "header.ftl">
-
 <div class="row">
 
   <div class="col-md-12 mt-1">
@@ -28,5 +26,3 @@
   </div>
 
 </div>
-
-<#include "footer.ftl">
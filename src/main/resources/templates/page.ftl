@@ -1,4 +1,4 @@
-<#include "header.ftl"> <div class="row">
+<div class="row">
   <div class="col-md-12 mt-1"> <span class="float-xs-right">
 <a class="btn btn-outline-primary" href="/" role="button" aria-pressed="true">Home</a> <button class="btn btn-outline-warning" type="button" data-toggle="collapse"
                                                                                                data-target="#editor" aria-expanded="false" aria-controls="editor">Edit</button>
@@ -14,6 +14,7 @@
       <input type="hidden" name="id" value="${context.id}">
       <input type="hidden" name="title" value="${context.title}">
       <input type="hidden" name="newPage" value="${context.newPage}">
+      <input type="hidden" name="version" value="${context.version?c}">
       <textarea class="form-control" id="markdown" name="markdown" rows="15">${context.rawContent}</textarea>
     </div>
     <button type="submit" class="btn btn-primary">Save</button> <#if context.id != -1>
@@ -25,4 +26,3 @@
     <p class="small">Rendered: ${context.timestamp}</p>
   </div>
 </div>
-<#include "footer.ftl">
@@ -0,0 +1,171 @@
+package io.vertx.starter;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.codec.BodyCodec;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.http.HttpServerVerticle;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One database node and two HTTP nodes on a clustered event bus, see {@code src/test/resources/cluster.xml}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ClusterTest {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ClusterTest.class);
+
+	private static final int[] HTTP_PORTS = {8081, 8082};
+
+	private static final Vertx[] nodes = new Vertx[3];
+	private static WebClient webClient;
+
+	private static File topPages;
+
+	@BeforeClass
+	public static void prepare(TestContext context) throws IOException {
+		topPages = File.createTempFile("top-pages", ".json");
+		topPages.delete();
+		JsonObject dbConf = new JsonObject()
+				.put(MainVerticle.CONFIG_ROLES, new JsonArray().add(MainVerticle.ROLE_DB))
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:clusterdb;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+		startNode(context, 0, dbConf);
+		for (int i = 0; i < HTTP_PORTS.length; i++) {
+			startNode(context, i + 1, new JsonObject()
+					.put(MainVerticle.CONFIG_ROLES, new JsonArray().add(MainVerticle.ROLE_HTTP))
+					.put(MainVerticle.CONFIG_HTTP_INSTANCES, 1)
+					.put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, HTTP_PORTS[i])
+					.put(HttpServerVerticle.CONFIG_RATE_LIMIT_ENABLED, false)
+					.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, topPages.getAbsolutePath()));
+		}
+		webClient = WebClient.create(nodes[1]);
+	}
+
+	private static void startNode(TestContext context, int index, JsonObject config) {
+		Async async = context.async();
+		VertxOptions options = new VertxOptions()
+				.setClusterManager(new HazelcastClusterManager())
+				.setClusterHost("127.0.0.1");
+		Vertx.clusteredVertx(options, context.asyncAssertSuccess(vertx -> {
+			nodes[index] = vertx;
+			vertx.deployVerticle(new MainVerticle(), new DeploymentOptions().setConfig(config),
+					context.asyncAssertSuccess(id -> async.complete()));
+		}));
+		async.awaitSuccess(60_000);
+	}
+
+	@AfterClass
+	public static void finish(TestContext context) {
+		for (Vertx node : nodes) {
+			if (node != null) {
+				node.close(context.asyncAssertSuccess());
+			}
+		}
+		topPages.deleteOnExit();
+	}
+
+	@Test(timeout = 120_000)
+	public void page_changes_invalidate_caches_on_every_node(TestContext context) {
+		Async async = context.async();
+
+		webClient.post(HTTP_PORTS[0], "localhost", "/api/pages").as(BodyCodec.jsonObject())
+				.sendJsonObject(new JsonObject().put("name", "Cluster").put("markdown", "before"),
+						context.asyncAssertSuccess(created -> {
+							context.assertTrue(created.body().getBoolean("success"));
+
+							// Cache the page on the second node
+							render(context, HTTP_PORTS[1], html -> {
+								context.assertTrue(html.contains("before"));
+
+								webClient.get(HTTP_PORTS[0], "localhost", "/api/pages").as(BodyCodec.jsonObject())
+										.send(context.asyncAssertSuccess(pages -> {
+											int id = pages.body().getJsonArray("pages").stream()
+													.map(JsonObject.class::cast)
+													.filter(page -> "Cluster".equals(page.getString("name")))
+													.findFirst().get().getInteger("id");
+
+											webClient.put(HTTP_PORTS[0], "localhost", "/api/pages/" + id).as(BodyCodec.jsonObject())
+													.sendJsonObject(new JsonObject().put("markdown", "after"),
+															context.asyncAssertSuccess(saved ->
+																	awaitContent(context, HTTP_PORTS[1], "after", 50, async::complete)));
+										}));
+							});
+						}));
+	}
+
+	@Test(timeout = 120_000)
+	public void throughput_across_nodes(TestContext context) {
+		Async async = context.async();
+		int requests = 2000;
+		int concurrency = 32;
+
+		webClient.post(HTTP_PORTS[0], "localhost", "/api/pages").as(BodyCodec.jsonObject())
+				.sendJsonObject(new JsonObject().put("name", "Load").put("markdown", "load"),
+						context.asyncAssertSuccess(created -> {
+							AtomicInteger sent = new AtomicInteger();
+							AtomicInteger done = new AtomicInteger();
+							long start = System.nanoTime();
+							Runnable[] next = new Runnable[1];
+							next[0] = () -> {
+								int n = sent.getAndIncrement();
+								if (n >= requests) {
+									return;
+								}
+								webClient.get(HTTP_PORTS[n % HTTP_PORTS.length], "localhost", "/api/pages")
+										.send(context.asyncAssertSuccess(response -> {
+											context.assertEquals(200, response.statusCode());
+											if (done.incrementAndGet() == requests) {
+												long elapsed = (System.nanoTime() - start) / 1_000_000;
+												LOGGER.info("{} requests over {} HTTP nodes in {} ms ({} req/s)", requests,
+														HTTP_PORTS.length, elapsed, requests * 1000L / Math.max(1, elapsed));
+												async.complete();
+											} else {
+												next[0].run();
+											}
+										}));
+							};
+							for (int i = 0; i < concurrency; i++) {
+								next[0].run();
+							}
+						}));
+	}
+
+	private void render(TestContext context, int port, Consumer<String> handler) {
+		webClient.get(port, "localhost", "/wiki/Cluster").as(BodyCodec.string())
+				.send(context.asyncAssertSuccess(response -> handler.accept(response.body())));
+	}
+
+	/**
+	 * Page change events are delivered asynchronously, so give the other node a moment to get it.
+	 */
+	private void awaitContent(TestContext context, int port, String content, int attempts, Runnable done) {
+		render(context, port, html -> {
+			if (html.contains(content)) {
+				done.run();
+			} else if (attempts == 0) {
+				context.fail("Stale page on port " + port);
+			} else {
+				nodes[0].setTimer(20, t -> awaitContent(context, port, content, attempts - 1, done));
+			}
+		});
+	}
+}
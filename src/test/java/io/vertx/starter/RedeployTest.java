@@ -0,0 +1,105 @@
+package io.vertx.starter;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.http.HttpServerVerticle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Rolling redeploy of the HTTP verticles while a request is in flight.
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedeployTest {
+
+	private static final int PORT = 8083;
+
+	private Vertx vertx;
+	private File topPages;
+
+	@Before
+	public void prepare(TestContext context) throws IOException {
+		vertx = Vertx.vertx();
+		topPages = File.createTempFile("top-pages", ".json");
+		topPages.delete();
+		JsonObject config = new JsonObject()
+				.put(MainVerticle.CONFIG_ROLES, new JsonArray().add(MainVerticle.ROLE_DB).add(MainVerticle.ROLE_HTTP))
+				.put(MainVerticle.CONFIG_HTTP_INSTANCES, 1)
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:redeploydb;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4)
+				.put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT)
+				.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, topPages.getAbsolutePath());
+		vertx.deployVerticle(new MainVerticle(), new DeploymentOptions().setConfig(config), context.asyncAssertSuccess());
+	}
+
+	@After
+	public void finish(TestContext context) {
+		vertx.close(context.asyncAssertSuccess());
+		topPages.delete();
+	}
+
+	@Test
+	public void in_flight_requests_survive_a_redeploy(TestContext context) {
+		Async async = context.async(2);
+		HttpClient client = vertx.createHttpClient();
+
+		HttpClientRequest request = client.post(PORT, "localhost", "/api/import", response -> {
+			context.assertEquals(200, response.statusCode());
+			context.assertEquals("close", response.getHeader("Connection"));
+			async.countDown();
+		});
+		request.setChunked(true);
+		request.write("{\"name\": \"A\", \"markdown\": \"a\"}\n");
+
+		vertx.setTimer(200, started -> {
+			boolean[] redeployed = {false};
+			vertx.eventBus().<JsonObject>send(MainVerticle.REDEPLOY_ADDRESS, new JsonObject().put("isolated", true),
+					new DeliveryOptions().setSendTimeout(30_000), context.asyncAssertSuccess(reply -> {
+						redeployed[0] = true;
+						context.assertNotEquals(reply.body().getString("previous"), reply.body().getString("deploymentId"));
+						async.countDown();
+					}));
+
+			// The new instance takes new connections while the old one waits for the import to finish
+			vertx.setTimer(500, id -> WebClient.create(vertx).get(PORT, "localhost", "/api/pages")
+					.send(context.asyncAssertSuccess(pages -> {
+						context.assertEquals(200, pages.statusCode());
+						context.assertFalse(redeployed[0]);
+						request.end("{\"name\": \"B\", \"markdown\": \"b\"}\n");
+					})));
+		});
+	}
+
+	@Test
+	public void page_views_survive_an_isolated_redeploy(TestContext context) {
+		Async async = context.async();
+		WebClient client = WebClient.create(vertx);
+
+		client.post(PORT, "localhost", "/api/pages").sendJsonObject(new JsonObject().put("name", "A").put("markdown", "a"),
+				context.asyncAssertSuccess(created -> client.get(PORT, "localhost", "/wiki/A").send(context.asyncAssertSuccess(viewed ->
+						vertx.eventBus().<JsonObject>send(MainVerticle.REDEPLOY_ADDRESS, new JsonObject().put("isolated", true),
+								new DeliveryOptions().setSendTimeout(30_000), context.asyncAssertSuccess(reply ->
+										client.get(PORT, "localhost", "/api/stats/top").send(context.asyncAssertSuccess(top -> {
+											JsonArray pages = top.bodyAsJsonObject().getJsonArray("pages");
+											context.assertEquals(1, pages.size());
+											context.assertEquals("A", pages.getJsonObject(0).getString("name"));
+											context.assertEquals(1L, pages.getJsonObject(0).getLong("views"));
+											async.complete();
+										}))))))));
+	}
+}
@@ -0,0 +1,150 @@
+package io.vertx.starter.backup;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.database.WikiDatabaseService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs backups against a local stand-in for the gist API.
+ */
+@RunWith(VertxUnitRunner.class)
+public class BackupVerticleTest {
+
+	private static final int TARGET_PORT = 8099;
+
+	private Vertx vertx;
+	private WikiDatabaseService dbService;
+	private BackupService backupService;
+	private File manifest;
+
+	private final List<JsonObject> requests = new ArrayList<>();
+	private int failuresLeft = 1;
+
+	@Before
+	public void prepare(TestContext context) throws Exception {
+		vertx = Vertx.vertx();
+		manifest = File.createTempFile("backup-manifest", ".json");
+		manifest.delete();
+
+		vertx.createHttpServer().requestHandler(request -> request.bodyHandler(body -> {
+			if (failuresLeft > 0) {
+				failuresLeft--;
+				request.response().setStatusCode(500).end();
+				return;
+			}
+			requests.add(new JsonObject()
+					.put("method", request.method().name())
+					.put("path", request.path())
+					.put("body", body.toJsonObject()));
+			request.response()
+					.setStatusCode(request.method() == HttpMethod.POST ? 201 : 200)
+					.putHeader("Content-Type", "application/json")
+					.end(new JsonObject().put("id", "g1").put("html_url", "http://localhost/g1").encode());
+		})).listen(TARGET_PORT, context.asyncAssertSuccess());
+
+		JsonObject dbConf = new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:backupdb;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+		vertx.deployVerticle(new WikiDataBaseVerticle(), new DeploymentOptions().setConfig(dbConf),
+				context.asyncAssertSuccess());
+
+		JsonObject backupConf = new JsonObject()
+				.put(BackupVerticle.CONFIG_BACKUP_MANIFEST_FILE, manifest.getAbsolutePath())
+				.put(BackupVerticle.CONFIG_BACKUP_BATCH_SIZE, 2)
+				.put(BackupVerticle.CONFIG_BACKUP_RETRY_INITIAL_DELAY, 10L)
+				.put(BackupVerticle.CONFIG_BACKUP_TARGET_HOST, "localhost")
+				.put(BackupVerticle.CONFIG_BACKUP_TARGET_PORT, TARGET_PORT)
+				.put(BackupVerticle.CONFIG_BACKUP_TARGET_SSL, false);
+		vertx.deployVerticle(new BackupVerticle(), new DeploymentOptions().setConfig(backupConf),
+				context.asyncAssertSuccess());
+
+		dbService = WikiDatabaseService.createProxy(vertx, WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE);
+		backupService = BackupService.createProxy(vertx, BackupVerticle.CONFIG_BACKUP_QUEUE);
+	}
+
+	@After
+	public void finish(TestContext context) {
+		manifest.delete();
+		vertx.close(context.asyncAssertSuccess());
+	}
+
+	@Test
+	public void only_changed_pages_are_uploaded(TestContext context) {
+		Async async = context.async();
+
+		dbService.createPage("A", "a", context.asyncAssertSuccess(v1 ->
+				dbService.createPage("B", "b", context.asyncAssertSuccess(v2 ->
+						dbService.createPage("C", "c", context.asyncAssertSuccess(v3 ->
+
+								runBackup(context, job1 -> {
+									context.assertEquals("succeeded", job1.getString("status"));
+									context.assertEquals(1, job1.getInteger("retries"));
+									context.assertEquals(3, job1.getInteger("uploaded"));
+									context.assertEquals("http://localhost/g1", job1.getString("url"));
+									context.assertEquals(2, requests.size());
+									context.assertEquals("POST", requests.get(0).getString("method"));
+									context.assertEquals("PATCH", requests.get(1).getString("method"));
+									context.assertEquals("/gists/g1", requests.get(1).getString("path"));
+									requests.clear();
+
+									dbService.fetchPage("A", context.asyncAssertSuccess(page ->
+											dbService.savePage(page.getInteger("id"), "a2", context.asyncAssertSuccess(v4 ->
+													dbService.fetchPage("B", context.asyncAssertSuccess(pageB ->
+															dbService.deletePage(pageB.getInteger("id"), context.asyncAssertSuccess(v5 ->
+
+																	runBackup(context, job2 -> {
+																		context.assertEquals("succeeded", job2.getString("status"));
+																		context.assertEquals(1, job2.getInteger("changed"));
+																		context.assertEquals(1, job2.getInteger("deleted"));
+																		context.assertEquals(1, requests.size());
+																		JsonObject files = requests.get(0).getJsonObject("body").getJsonObject("files");
+																		context.assertEquals(2, files.size());
+																		context.assertEquals("a2", files.getJsonObject("A").getString("content"));
+																		context.assertTrue(files.containsKey("B"));
+																		context.assertNull(files.getValue("B"));
+																		requests.clear();
+
+																		runBackup(context, job3 -> {
+																			context.assertEquals("succeeded", job3.getString("status"));
+																			context.assertEquals(0, job3.getInteger("changed"));
+																			context.assertEquals(0, job3.getInteger("deleted"));
+																			context.assertTrue(requests.isEmpty());
+																			async.complete();
+																		});
+																	})))))))));
+								})))))));
+	}
+
+	private void runBackup(TestContext context, Consumer<JsonObject> onDone) {
+		backupService.startBackup(context.asyncAssertSuccess(job -> {
+			context.assertEquals("running", job.getString("status"));
+			poll(context, job.getString("id"), onDone);
+		}));
+	}
+
+	private void poll(TestContext context, String id, Consumer<JsonObject> onDone) {
+		backupService.fetchJob(id, context.asyncAssertSuccess(job -> {
+			context.assertTrue(job.getBoolean("found"));
+			if ("running".equals(job.getString("status"))) {
+				vertx.setTimer(20, t -> poll(context, id, onDone));
+			} else {
+				onDone.accept(job);
+			}
+		}));
+	}
+}
@@ -0,0 +1,154 @@
+package io.vertx.starter.capture;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import io.vertx.starter.http.HttpServerVerticle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Captures a few requests, reads them back and replays them, and checks the comparison with a baseline.
+ */
+@RunWith(VertxUnitRunner.class)
+public class TrafficCaptureTest {
+
+	private Vertx vertx;
+	private Path directory;
+
+	@Before
+	public void prepare(TestContext context) throws IOException {
+		vertx = Vertx.vertx();
+		directory = Files.createTempDirectory("wiki-capture");
+		JsonObject dbConf = new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+		vertx.deployVerticle(new WikiDataBaseVerticle(), new DeploymentOptions().setConfig(dbConf),
+				context.asyncAssertSuccess());
+	}
+
+	@After
+	public void finish(TestContext context) throws IOException {
+		vertx.close(context.asyncAssertSuccess());
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Test
+	public void captured_requests_are_replayed(TestContext context) {
+		Async async = context.async();
+		JsonObject httpConf = new JsonObject()
+				.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, directory.resolve("top-pages.json").toString());
+		JsonObject captureConf = httpConf.copy()
+				.put(HttpServerVerticle.CONFIG_CAPTURE_DIRECTORY, directory.resolve("capture").toString())
+				.put(HttpServerVerticle.CONFIG_CAPTURE_BODIES, true);
+		WebClient client = WebClient.create(vertx, new WebClientOptions().setDefaultHost("localhost").setDefaultPort(8080));
+		JsonObject page = new JsonObject().put("name", "Sample").put("markdown", "# A Page");
+
+		Future<String> deployed = Future.future();
+		vertx.deployVerticle(new HttpServerVerticle(), new DeploymentOptions().setConfig(captureConf), deployed.completer());
+		deployed.compose(id -> {
+			Future<Void> requests = Future.future();
+			client.post("/api/pages").sendJsonObject(page, context.asyncAssertSuccess(created ->
+					client.get("/api/pages?fields=id").send(context.asyncAssertSuccess(listed ->
+							client.get("/wiki/Sample").send(context.asyncAssertSuccess(rendered ->
+								client.put("/api/pages/0")
+										.putHeader("If-Match", "\"999\"")
+										.putHeader("X-API-Key", "replay-key")
+										.putHeader("Accept-Encoding", "gzip")
+										.sendJsonObject(new JsonObject().put("markdown", "Stale"),
+												context.asyncAssertSuccess(stale -> {
+													context.assertEquals(412, stale.statusCode());
+													requests.complete();
+												}))))))));
+			return requests.compose(v -> {
+				Future<Void> undeployed = Future.future();
+				vertx.undeploy(id, undeployed.completer());
+				return undeployed;
+			});
+		}).compose(v -> {
+			List<CapturedRequest> captured;
+			try {
+				captured = TrafficReplay.read(Collections.singletonList(directory.resolve("capture")));
+			} catch (IOException e) {
+				return Future.failedFuture(e);
+			}
+			context.assertEquals(4, captured.size());
+			context.assertEquals(HttpMethod.POST, captured.get(0).method);
+			context.assertEquals("/api/pages", captured.get(0).uri);
+			context.assertEquals("application/json", captured.get(0).contentType);
+			context.assertEquals(page, captured.get(0).body.toJsonObject());
+			context.assertEquals(CapturedRequest.hash(captured.get(0).body), captured.get(0).bodyHash);
+			context.assertEquals(201, captured.get(0).status);
+			context.assertEquals("/api/pages?fields=id", captured.get(1).uri);
+			context.assertEquals("/wiki/Sample", captured.get(2).uri);
+			context.assertEquals(0, captured.get(2).bodyLength);
+			context.assertNull(captured.get(2).headers[0]);
+			context.assertEquals("\"999\"", captured.get(3).headers[0]);
+			context.assertEquals("replay-key", captured.get(3).headers[1]);
+			context.assertEquals("gzip", captured.get(3).headers[2]);
+			context.assertEquals(412, captured.get(3).status);
+			context.assertTrue(captured.get(1).arrival >= captured.get(0).arrival);
+
+			Future<String> redeployed = Future.future();
+			vertx.deployVerticle(new HttpServerVerticle(), new DeploymentOptions().setConfig(httpConf),
+					redeployed.completer());
+			return redeployed.compose(id -> {
+				Future<JsonObject> replayed = Future.future();
+				new TrafficReplay(vertx, captured, "localhost", 8080, 10, 4, 5000).run(replayed.completer());
+				return replayed;
+			});
+		}).setHandler(context.asyncAssertSuccess(summary -> {
+			context.assertEquals(4, summary.getInteger("requests"));
+			context.assertEquals(0, summary.getInteger("errors"));
+			context.assertEquals(0, summary.getInteger("missingBodies"));
+			context.assertEquals(4, summary.getJsonObject("latency").getInteger("count"));
+			// Without its If-Match header, the stale update would have been saved
+			context.assertEquals(1, summary.getJsonObject("statuses").getInteger("412"));
+			context.assertTrue(summary.getJsonObject("routes").containsKey("GET /wiki/:page"));
+			context.assertTrue(summary.getJsonObject("routes").containsKey("POST /api/pages"));
+			async.complete();
+		}));
+	}
+
+	@Test
+	public void regressions_against_a_baseline(TestContext context) {
+		JsonObject baseline = new JsonObject()
+				.put("latency", new JsonObject().put("p50", 1000).put("p90", 2000).put("p99", 10_000))
+				.put("routes", new JsonObject()
+						.put("GET /wiki/:page", new JsonObject().put("p50", 1000).put("p90", 2000).put("p99", 4000)));
+		JsonObject run = new JsonObject()
+				.put("latency", new JsonObject().put("p50", 1050).put("p90", 2500).put("p99", 15_000))
+				.put("routes", new JsonObject()
+						.put("GET /wiki/:page", new JsonObject().put("p50", 1000).put("p90", 2000).put("p99", 4100))
+						.put("GET /", new JsonObject().put("p50", 100_000).put("p90", 100_000).put("p99", 100_000)));
+
+		List<Object> regressions = TrafficReplay.compare(baseline, run, 0.1).stream()
+				.map(JsonObject.class::cast)
+				.filter(comparison -> comparison.getBoolean("regression"))
+				.map(comparison -> comparison.getString("route") + " " + comparison.getString("percentile"))
+				.collect(java.util.stream.Collectors.toList());
+		// p90 only grew by 500 us, under the noise floor
+		context.assertEquals(Collections.singletonList("* p99"), regressions);
+		context.assertEquals("GET /api/pages/:id", TrafficReplay.routeOf(HttpMethod.GET, "/api/pages/12?x=1"));
+	}
+}
@@ -0,0 +1,171 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Runs the {@link WikiDatabaseVerticleTest} scenarios against the log-structured backend, plus recovery and
+ * compaction checks on the underlying {@link PageLogStore}.
+ */
+@RunWith(VertxUnitRunner.class)
+public class LogStoreWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+	private Path directory;
+
+	@Override
+	protected JsonObject databaseConfig() throws Exception {
+		directory = Files.createTempDirectory("wiki-logstore");
+		return new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_BACKEND, WikiDataBaseVerticle.BACKEND_LOGSTORE)
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_LOGSTORE_DIRECTORY, directory.toString());
+	}
+
+	@After
+	public void cleanup(TestContext context) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Test
+	public void pages_survive_a_restart(TestContext context) throws IOException {
+		Path storeDirectory = directory.resolve("restart");
+		PageLogStore store = PageLogStore.open(storeDirectory, 4096);
+		int a = store.create("A", "abc");
+		int b = store.create("B", "123");
+		store.update(a, "Yo!");
+		store.delete(b);
+		store.close();
+
+		store = PageLogStore.open(storeDirectory, 4096);
+		context.assertEquals(1, store.size());
+		context.assertEquals("Yo!", store.readContent(store.get("A")));
+		context.assertNull(store.get("B"));
+		context.assertNull(store.get(b));
+		context.assertEquals(b + 1, store.create("C", "new"));
+		store.close();
+	}
+
+	@Test
+	public void torn_records_are_dropped_on_replay(TestContext context) throws IOException {
+		Path storeDirectory = directory.resolve("torn");
+		PageLogStore store = PageLogStore.open(storeDirectory, 4096);
+		store.create("A", "abc");
+		int b = store.create("B", "123");
+		PageLogStore.Entry torn = store.get(b);
+		int offset = torn.offset + torn.length - 1;
+		store.close();
+
+		try (FileChannel channel = FileChannel.open(torn.segment.path, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[]{'X'}), offset);
+		}
+
+		store = PageLogStore.open(storeDirectory, 4096);
+		context.assertEquals("abc", store.readContent(store.get("A")));
+		context.assertNull(store.get("B"));
+		store.create("B", "456");
+		store.close();
+
+		store = PageLogStore.open(storeDirectory, 4096);
+		context.assertEquals("456", store.readContent(store.get("B")));
+		store.close();
+	}
+
+	@Test
+	public void compaction_keeps_live_pages(TestContext context) throws IOException {
+		Path storeDirectory = directory.resolve("compaction");
+		PageLogStore store = PageLogStore.open(storeDirectory, 128);
+		int a = store.create("A", "a0");
+		int b = store.create("B", "b0");
+		for (int i = 1; i <= 20; i++) {
+			store.update(a, "a" + i);
+		}
+		store.delete(b);
+		context.assertTrue(store.garbageRatio() > 0.5);
+
+		PageLogStore.CompactionPlan plan = store.planCompaction();
+		store.update(a, "during compaction");
+		store.compact(plan);
+		store.completeCompaction(plan);
+		context.assertEquals("during compaction", store.readContent(store.get(a)));
+
+		int c = store.create("C", "c0");
+		plan = store.planCompaction();
+		store.compact(plan);
+		store.completeCompaction(plan);
+		context.assertEquals(0.0, store.garbageRatio());
+		store.close();
+
+		try (Stream<Path> files = Files.list(storeDirectory)) {
+			context.assertEquals(2L, files.count());
+		}
+
+		store = PageLogStore.open(storeDirectory, 128);
+		context.assertEquals(2, store.size());
+		context.assertEquals("during compaction", store.readContent(store.get(a)));
+		context.assertEquals("c0", store.readContent(store.get(c)));
+		context.assertNull(store.get("B"));
+		context.assertEquals(c + 1, store.create("D", "d0"));
+		store.close();
+	}
+
+	@Test
+	public void versions_count_the_writes_of_a_page(TestContext context) throws IOException {
+		Path storeDirectory = directory.resolve("versions");
+		PageLogStore store = PageLogStore.open(storeDirectory, 128);
+		int a = store.create("A", "same");
+		context.assertEquals(1, store.get(a).version);
+		store.update(a, "other");
+		store.update(a, "same");
+		context.assertEquals(3, store.get(a).version);
+		context.assertEquals("same", store.readContent(store.get(a)));
+
+		PageLogStore.CompactionPlan plan = store.planCompaction();
+		store.compact(plan);
+		store.completeCompaction(plan);
+		context.assertEquals(3, store.get(a).version);
+		store.close();
+
+		store = PageLogStore.open(storeDirectory, 128);
+		context.assertEquals(3, store.get(a).version);
+		context.assertEquals("same", store.readContent(store.get(a)));
+		store.update(a, "next");
+		context.assertEquals(4, store.get(a).version);
+		store.close();
+	}
+
+	@Override
+	@Test
+	public void changes_since_a_sequence(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("A", "a", context.asyncAssertSuccess(v1 -> {
+			service.fetchChanges("0", 100, context.asyncAssertSuccess(first -> {
+				context.assertTrue(first.getBoolean("reset"));
+				context.assertEquals("a", byName(first).getJsonObject("A").getString("markdown"));
+
+				service.fetchChanges(first.getString("sequence"), 100, context.asyncAssertSuccess(again -> {
+					context.assertTrue(again.getBoolean("reset"));
+					context.assertEquals(1, again.getJsonArray("pages").size());
+					async.complete();
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+}
@@ -0,0 +1,66 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PageLinksTest {
+
+	@Test
+	public void links_are_extracted() {
+		String markdown = "[A](/wiki/A) [B](/wiki/B \"title\") [C](/wiki/C#part) [A again](/wiki/A)\n"
+				+ "[Spaced](/wiki/Two%20Words) [Plus](/wiki/C++) [Outside](http://example.com/wiki/X)\n"
+				+ "[Empty](/wiki/) [Broken](/wiki/Never\nclosed) ]](/wiki/D)";
+		assertEquals(new LinkedHashSet<>(Arrays.asList("A", "B", "C", "Two Words", "C++", "D")),
+				PageLinks.extract(markdown));
+	}
+
+	@Test
+	public void links_are_counted() {
+		Map<String, Integer> expected = new LinkedHashMap<>();
+		expected.put("A", 2);
+		expected.put("B", 1);
+		assertEquals(expected, PageLinks.count("[A](/wiki/A) [B](/wiki/B)\n# Again\n[A](/wiki/A#top)"));
+	}
+
+	@Test
+	public void links_are_extracted_while_reading() throws IOException {
+		String markdown = "before [A](/wiki/A) after";
+		PageLinks.Extractor extractor = new PageLinks.Extractor();
+		char[] buffer = new char[3];
+		try (Reader reader = PageLinks.extracting(new StringReader(markdown), extractor)) {
+			while (reader.read(buffer, 0, buffer.length) != -1) {
+				// drained
+			}
+		}
+		assertEquals(Collections.singleton("A"), extractor.finish());
+	}
+
+	@Test
+	public void index_follows_updates() {
+		PageLinks links = new PageLinks();
+		links.set("X", new HashSet<>(Arrays.asList("A", "B")));
+		links.set("Y", new HashSet<>(Collections.singletonList("A")));
+		assertEquals(new JsonArray().add("X").add("Y"), links.sources("A"));
+		assertEquals(3, links.links());
+
+		links.set("X", new HashSet<>(Collections.singletonList("B")));
+		assertEquals(new JsonArray().add("Y"), links.sources("A"));
+		assertEquals(new JsonArray().add("X"), links.sources("B"));
+
+		links.remove("Y");
+		assertEquals(new JsonArray(), links.sources("A"));
+		assertEquals(1, links.links());
+	}
+}
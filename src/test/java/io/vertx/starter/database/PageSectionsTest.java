@@ -0,0 +1,90 @@
+package io.vertx.starter.database;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PageSectionsTest {
+
+	private static final String PAGE = "Intro\n"
+			+ "# First #\n"
+			+ "text\n"
+			+ "```\n"
+			+ "# not a heading\n"
+			+ "```\n"
+			+ "#not a heading either\n"
+			+ "## Second\n"
+			+ "more\n";
+
+	@Test
+	public void headings_outside_code_blocks_start_sections() {
+		List<PageSections.Section> sections = PageSections.index(PAGE);
+		assertEquals(3, sections.size());
+		assertNull(sections.get(0).heading);
+		assertEquals("Intro\n", section(PAGE, sections.get(0)));
+		assertEquals("First", sections.get(1).heading);
+		assertEquals(1, sections.get(1).level);
+		assertEquals("# First #\ntext\n```\n# not a heading\n```\n#not a heading either\n", section(PAGE, sections.get(1)));
+		assertEquals("Second", sections.get(2).heading);
+		assertEquals(2, sections.get(2).level);
+		assertEquals("## Second\nmore\n", section(PAGE, sections.get(2)));
+	}
+
+	@Test
+	public void page_without_headings_is_one_section() {
+		assertEquals(1, PageSections.index("").size());
+		assertEquals(10, PageSections.index("just\n\ntext").get(0).length);
+	}
+
+	@Test
+	public void streamed_content_is_indexed_the_same() throws IOException {
+		PageSections.Indexer indexer = new PageSections.Indexer();
+		try (Reader reader = PageSections.indexing(new StringReader(PAGE), indexer)) {
+			char[] buffer = new char[7];
+			while (reader.read(buffer) != -1) {
+			}
+		}
+		List<PageSections.Section> streamed = indexer.finish();
+		List<PageSections.Section> indexed = PageSections.index(PAGE);
+		assertEquals(indexed.size(), streamed.size());
+		for (int i = 0; i < indexed.size(); i++) {
+			assertEquals(indexed.get(i).start, streamed.get(i).start);
+			assertEquals(indexed.get(i).length, streamed.get(i).length);
+		}
+	}
+
+	@Test
+	public void replacing_a_section_shifts_the_next_ones() {
+		PageSections.Replacement replacement = PageSections.replace(PageSections.index(PAGE), 1, "# New\nshort\n## Added\nx");
+		String page = PAGE.substring(0, replacement.start) + replacement.text
+				+ PAGE.substring(replacement.start + replacement.removed);
+		assertEquals("Intro\n# New\nshort\n## Added\nx\n## Second\nmore\n", page);
+
+		List<PageSections.Section> expected = PageSections.index(page);
+		assertEquals(expected.size(), replacement.sections.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).heading, replacement.sections.get(i).heading);
+			assertEquals(expected.get(i).start, replacement.sections.get(i).start);
+			assertEquals(expected.get(i).length, replacement.sections.get(i).length);
+		}
+	}
+
+	@Test
+	public void text_without_heading_joins_the_previous_section() {
+		String page = "# A\na\n# B\nb\n";
+		PageSections.Replacement replacement = PageSections.replace(PageSections.index(page), 2, "no heading");
+		assertEquals(2, replacement.sections.size());
+		assertEquals("# A\na\nno heading".length(), replacement.sections.get(1).length);
+		assertNull(PageSections.replace(PageSections.index(page), 3, "x"));
+	}
+
+	private static String section(String page, PageSections.Section section) {
+		return page.substring(section.start, section.start + section.length);
+	}
+}
@@ -0,0 +1,89 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.starter.MainVerticle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Runs the {@link WikiDatabaseVerticleTest} scenarios through a {@link ShardedWikiDatabaseService} over three shards.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardedWikiDatabaseVerticleTest extends WikiDatabaseVerticleTest {
+
+	private static final int SHARDS = 3;
+
+	@Override
+	@Before
+	public void prepare(TestContext context) throws Exception {
+		vertx = Vertx.vertx();
+		JsonObject conf = databaseConfig()
+				.put(MainVerticle.CONFIG_ROLES, new JsonArray().add(MainVerticle.ROLE_DB))
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_SHARDS, SHARDS);
+		vertx.deployVerticle(new MainVerticle(), new DeploymentOptions().setConfig(conf),
+				context.asyncAssertSuccess(id -> service = WikiDatabaseService.createProxy(vertx,
+						WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE, SHARDS, new DeliveryOptions())));
+	}
+
+	@Override
+	@Test
+	public void expired_calls_are_dropped(TestContext context) {
+		Async async = context.async();
+
+		DeliveryOptions expired = new DeliveryOptions()
+				.addHeader(WikiDataBaseVerticle.DEADLINE_HEADER, String.valueOf(System.currentTimeMillis() - 1));
+		WikiDatabaseService.createProxy(vertx, WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE, SHARDS, expired)
+				.fetchPage("Test", context.asyncAssertFailure(err -> {
+					context.assertEquals(ErrorCodes.DEADLINE_EXCEEDED.ordinal(), ((ReplyException) err).failureCode());
+
+					service.fetchStatistics(context.asyncAssertSuccess(stats -> {
+						JsonObject shard = stats.getJsonArray("shards")
+								.getJsonObject(ShardedWikiDatabaseService.shardOf("Test", SHARDS));
+						context.assertEquals(1L, shard.getJsonObject("deadlines").getLong("expiredBeforeDispatch"));
+						async.complete();
+					}));
+				}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void pages_are_spread_over_shards(TestContext context) {
+		Async async = context.async();
+
+		JsonArray pages = new JsonArray();
+		for (int i = 0; i < 30; i++) {
+			pages.add(new JsonObject().put("name", "Page " + i).put("markdown", "content " + i));
+		}
+		service.importPages(pages, context.asyncAssertSuccess(v -> {
+			service.fetchAllPages(context.asyncAssertSuccess(names -> {
+				context.assertEquals(30, names.size());
+
+				service.fetchPage("Page 7", context.asyncAssertSuccess(page -> {
+					int id = page.getInteger("id");
+					context.assertEquals(ShardedWikiDatabaseService.shardOf("Page 7", SHARDS), id % SHARDS);
+
+					service.fetchPageById(id, context.asyncAssertSuccess(byId -> {
+						context.assertEquals("Page 7", byId.getString("name"));
+
+						service.fetchStatistics(context.asyncAssertSuccess(stats -> {
+							context.assertEquals(SHARDS, stats.getJsonArray("shards").size());
+							async.complete();
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+}
@@ -0,0 +1,58 @@
+package io.vertx.starter.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+	@Test
+	public void concurrent_calls_share_one_query() {
+		SingleFlight<String> flights = new SingleFlight<>();
+		List<SingleFlight<String>.Flight> queries = new ArrayList<>();
+		List<AsyncResult<JsonObject>> replies = new ArrayList<>();
+
+		for (int i = 0; i < 3; i++) {
+			flights.execute("Viral", 1000 + i, replies::add, queries::add);
+		}
+		assertEquals(1, queries.size());
+		assertEquals(1002, queries.get(0).deadline());
+
+		queries.get(0).handle(Future.succeededFuture(new JsonObject().put("found", true)));
+		assertEquals(3, replies.size());
+		assertTrue(replies.stream().allMatch(reply -> reply.result().getBoolean("found")));
+		assertNotSame(replies.get(0).result(), replies.get(1).result());
+
+		flights.execute("Viral", 0, replies::add, queries::add);
+		assertEquals(2, queries.size());
+		JsonObject statistics = flights.statistics();
+		assertEquals(2L, (long) statistics.getLong("queries"));
+		assertEquals(2L, (long) statistics.getLong("coalesced"));
+	}
+
+	@Test
+	public void calls_after_a_write_do_not_join_earlier_queries() {
+		SingleFlight<String> flights = new SingleFlight<>();
+		List<SingleFlight<String>.Flight> queries = new ArrayList<>();
+		List<AsyncResult<JsonObject>> replies = new ArrayList<>();
+
+		flights.execute("Page", 0, replies::add, queries::add);
+		flights.detachAll();
+		flights.execute("Page", 0, replies::add, queries::add);
+		assertEquals(2, queries.size());
+
+		queries.get(0).handle(Future.failedFuture("stale"));
+		flights.execute("Page", 0, replies::add, queries::add);
+		assertEquals(2, queries.size());
+		assertEquals(1, replies.size());
+		assertTrue(replies.get(0).failed());
+	}
+}
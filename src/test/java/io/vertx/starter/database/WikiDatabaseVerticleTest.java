@@ -2,6 +2,9 @@ package io.vertx.starter.database;
 
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -18,15 +21,19 @@ import org.junit.runner.RunWith;
 @RunWith(VertxUnitRunner.class)
 public class WikiDatabaseVerticleTest {
 
-	private Vertx vertx;
-	private WikiDatabaseService service;
+	protected Vertx vertx;
+	protected WikiDatabaseService service;
+
+	protected JsonObject databaseConfig() throws Exception {
+		return new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 30);
+	}
 
 	@Before
-	public void prepare(TestContext context) throws InterruptedException {
+	public void prepare(TestContext context) throws Exception {
 		vertx = Vertx.vertx();
-		JsonObject conf = new JsonObject()
-				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
-				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+		JsonObject conf = databaseConfig();
 		vertx.deployVerticle(new WikiDataBaseVerticle(), new DeploymentOptions().setConfig(conf),
 				context.asyncAssertSuccess(id ->
 						service = WikiDatabaseService.createProxy(vertx, WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE)));
@@ -97,4 +104,424 @@ public class WikiDatabaseVerticleTest {
 
 		async.awaitSuccess(5000);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void import_creates_and_overwrites_pages(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("A", "abc", context.asyncAssertSuccess(p1 -> {
+			JsonArray pages = new JsonArray()
+					.add(new JsonObject().put("name", "A").put("markdown", "imported a"))
+					.add(new JsonObject().put("name", "B").put("markdown", "imported b"));
+			service.importPages(pages, context.asyncAssertSuccess(v -> {
+				service.fetchAllPagesData(context.asyncAssertSuccess(data -> {
+					context.assertEquals(2, data.size());
+					context.assertEquals("imported a", data.get(0).getString("CONTENT"));
+					context.assertEquals("imported b", data.get(1).getString("CONTENT"));
+					async.complete();
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void sections_are_read_and_replaced(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("Doc", "intro\n# One\none\n## Two\ntwo\n", context.asyncAssertSuccess(v1 -> {
+			service.fetchPage("Doc", context.asyncAssertSuccess(page -> {
+				int id = page.getInteger("id");
+
+				service.fetchPageSections(id, context.asyncAssertSuccess(sections -> {
+					context.assertEquals(3, sections.getJsonArray("sections").size());
+					context.assertEquals("Two", sections.getJsonArray("sections").getJsonObject(2).getString("heading"));
+
+					service.savePageSection(id, 1, "# Uno\nuno", context.asyncAssertSuccess(saved -> {
+						context.assertTrue(saved.getBoolean("found"));
+
+						service.fetchPageSection(id, 2, context.asyncAssertSuccess(section -> {
+							context.assertEquals("## Two\ntwo\n", section.getString("markdown"));
+
+							service.fetchPage("Doc", context.asyncAssertSuccess(updated -> {
+								context.assertEquals("intro\n# Uno\nuno\n## Two\ntwo\n", updated.getString("rawContent"));
+
+								service.fetchPageSection(id, 3, context.asyncAssertSuccess(missing -> {
+									context.assertFalse(missing.getBoolean("found"));
+									async.complete();
+								}));
+							}));
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void saves_check_the_version(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("Versioned", "one", context.asyncAssertSuccess(v1 -> {
+			service.fetchPage("Versioned", context.asyncAssertSuccess(page -> {
+				int id = page.getInteger("id");
+				int version = page.getInteger("version");
+
+				service.savePageIfVersion(id, version, "two", context.asyncAssertSuccess(saved -> {
+					context.assertTrue(saved.getBoolean("saved"));
+					int next = saved.getInteger("version");
+					context.assertNotEquals(version, next);
+
+					service.savePageIfVersion(id, version, "three", context.asyncAssertSuccess(conflict -> {
+						context.assertTrue(conflict.getBoolean("found"));
+						context.assertFalse(conflict.getBoolean("saved"));
+						context.assertEquals(next, conflict.getInteger("version"));
+
+						service.fetchPageById(id, context.asyncAssertSuccess(current -> {
+							context.assertEquals("two", current.getString("content"));
+							context.assertEquals(next, current.getInteger("version"));
+
+							service.savePageIfVersion(id + 1000, next, "four", context.asyncAssertSuccess(missing -> {
+								context.assertFalse(missing.getBoolean("found"));
+								async.complete();
+							}));
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void section_saves_check_the_version(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("Sectioned", "# One\none\n# Two\ntwo\n", context.asyncAssertSuccess(v1 -> {
+			service.fetchPage("Sectioned", context.asyncAssertSuccess(page -> {
+				int id = page.getInteger("id");
+				int version = page.getInteger("version");
+
+				service.savePageSectionIfVersion(id, 1, version, "# Uno\nuno\n", context.asyncAssertSuccess(saved -> {
+					context.assertTrue(saved.getBoolean("saved"));
+					context.assertEquals(3, saved.getJsonArray("sections").size());
+					int next = saved.getInteger("version");
+					context.assertNotEquals(version, next);
+
+					service.savePageSectionIfVersion(id, 2, version, "# Dos\ndos\n", context.asyncAssertSuccess(conflict -> {
+						context.assertTrue(conflict.getBoolean("found"));
+						context.assertFalse(conflict.getBoolean("saved"));
+						context.assertEquals(next, conflict.getInteger("version"));
+
+						// Writing the first content back is still a change that a stale writer must not overwrite
+						service.savePage(id, "# One\none\n# Two\ntwo\n", context.asyncAssertSuccess(v2 -> {
+							service.savePageIfVersion(id, version, "stale", context.asyncAssertSuccess(stale -> {
+								context.assertFalse(stale.getBoolean("saved"));
+
+								service.savePageSectionIfVersion(id + 1000, 1, next, "# Missing\n", context.asyncAssertSuccess(missing -> {
+									context.assertFalse(missing.getBoolean("found"));
+									async.complete();
+								}));
+							}));
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void concurrent_section_saves_lose_no_update(TestContext context) {
+		Async async = context.async();
+		int sections = 8;
+
+		StringBuilder markdown = new StringBuilder();
+		for (int i = 0; i < sections; i++) {
+			markdown.append("# S").append(i).append("\nold\n");
+		}
+		service.createPage("Busy", markdown.toString(), context.asyncAssertSuccess(v -> {
+			service.fetchPage("Busy", context.asyncAssertSuccess(page -> {
+				int id = page.getInteger("id");
+				int version = page.getInteger("version");
+
+				Async saved = context.async(sections);
+				for (int i = 0; i < sections; i++) {
+					service.savePageSection(id, i + 1, "# S" + i + "\nnew " + i + "\n", context.asyncAssertSuccess(result -> {
+						context.assertTrue(result.getBoolean("saved"));
+						saved.countDown();
+					}));
+				}
+				saved.handler(done -> service.fetchPage("Busy", context.asyncAssertSuccess(current -> {
+					StringBuilder expected = new StringBuilder();
+					for (int i = 0; i < sections; i++) {
+						expected.append("# S").append(i).append("\nnew ").append(i).append("\n");
+					}
+					context.assertEquals(expected.toString(), current.getString("rawContent"));
+
+					int[] winners = new int[1];
+					Async conditional = context.async(sections);
+					for (int i = 0; i < sections; i++) {
+						service.savePageSectionIfVersion(id, i + 1, current.getInteger("version"), "# S" + i + "\n",
+								context.asyncAssertSuccess(result -> {
+							if (result.getBoolean("saved")) {
+								winners[0]++;
+							}
+							conditional.countDown();
+						}));
+					}
+					conditional.handler(all -> {
+						context.assertEquals(1, winners[0]);
+						context.assertNotEquals(version, current.getInteger("version"));
+						async.complete();
+					});
+				})));
+			}));
+		}));
+
+		async.awaitSuccess(10000);
+	}
+
+	@Test
+	public void concurrent_writes_all_commit(TestContext context) {
+		Async async = context.async();
+		int pages = 4;
+		int writes = 40;
+
+		Async created = context.async(pages);
+		for (int i = 0; i < pages; i++) {
+			service.createPage("P" + i, "# P" + i + "\n", context.asyncAssertSuccess(v -> created.countDown()));
+		}
+		created.awaitSuccess(5000);
+
+		service.fetchAllPagesData(context.asyncAssertSuccess(rows -> {
+			Async written = context.async(writes);
+			for (int i = 0; i < writes; i++) {
+				int id = rows.get(i % pages).getInteger("ID");
+				if (i % 2 == 0) {
+					service.savePage(id, "# Saved " + i + "\n", context.asyncAssertSuccess(v -> written.countDown()));
+				} else {
+					service.savePageSection(id, 1, "# Section " + i + "\n", context.asyncAssertSuccess(v -> written.countDown()));
+				}
+			}
+			written.handler(done -> service.fetchChanges("0", 100, context.asyncAssertSuccess(changes -> {
+				context.assertEquals(pages, changes.getJsonArray("pages").size());
+				service.fetchAllPagesData(context.asyncAssertSuccess(current -> {
+					JsonObject byName = byName(changes);
+					for (JsonObject row : current) {
+						context.assertEquals(row.getString("CONTENT"),
+								byName.getJsonObject(row.getString("NAME")).getString("markdown"));
+					}
+					async.complete();
+				}));
+			})));
+		}));
+
+		async.awaitSuccess(10000);
+	}
+
+	/**
+	 * More writes at once than there are worker threads, with as many connections as the default pool.
+	 */
+	@Test
+	public void writes_beyond_the_worker_pool_all_commit(TestContext context) {
+		Async async = context.async();
+		int writes = 64;
+
+		Async created = context.async(writes);
+		for (int i = 0; i < writes; i++) {
+			service.createPage("P" + i, "# P" + i + "\n[next](/wiki/P" + (i + 1) + ")\n", context.asyncAssertSuccess(v -> created.countDown()));
+		}
+		created.handler(done -> service.fetchAllPages(context.asyncAssertSuccess(pages -> {
+			context.assertEquals(writes, pages.size());
+			async.complete();
+		})));
+
+		async.awaitSuccess(15000);
+	}
+
+	@Test
+	public void backlinks_follow_writes(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("A", "see [B](/wiki/B) and [C](/wiki/C \"title\")", context.asyncAssertSuccess(v1 -> {
+			service.createPage("B", "intro\n# Back\nto [A](/wiki/A#top)\n", context.asyncAssertSuccess(v2 -> {
+				service.fetchBacklinks("B", context.asyncAssertSuccess(toB -> {
+					context.assertEquals(new JsonArray().add("A"), toB);
+					JsonArray names = new JsonArray().add("C").add("B").add("A");
+					service.fetchExistingPages(names, context.asyncAssertSuccess(existing -> {
+						context.assertEquals(new JsonArray().add("B").add("A"), existing);
+
+						service.fetchPage("A", context.asyncAssertSuccess(a -> {
+							service.savePage(a.getInteger("id"), "only [C](/wiki/C)", context.asyncAssertSuccess(v3 -> {
+								service.fetchBacklinks("B", context.asyncAssertSuccess(none -> {
+									context.assertTrue(none.isEmpty());
+
+									JsonArray pages = new JsonArray()
+											.add(new JsonObject().put("name", "D").put("markdown", "[C](/wiki/C)"));
+									service.importPages(pages, context.asyncAssertSuccess(v4 -> {
+										service.fetchPage("B", context.asyncAssertSuccess(b -> {
+											service.savePageSection(b.getInteger("id"), 1, "# Back\nto [C](/wiki/C)\n", context.asyncAssertSuccess(v5 -> {
+												service.fetchBacklinks("C", context.asyncAssertSuccess(toC -> {
+													context.assertEquals(new JsonArray().add("A").add("B").add("D"), toC);
+
+													service.deletePage(a.getInteger("id"), context.asyncAssertSuccess(v6 -> {
+														service.fetchBacklinks("C", context.asyncAssertSuccess(afterDelete -> {
+															context.assertEquals(new JsonArray().add("B").add("D"), afterDelete);
+															async.complete();
+														}));
+													}));
+												}));
+											}));
+										}));
+									}));
+								}));
+							}));
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void section_saves_keep_links_of_other_sections(TestContext context) {
+		Async async = context.async();
+
+		service.createPage("Hub", "# One\n[B](/wiki/B)\n# Two\n[B](/wiki/B) and [C](/wiki/C)\n", context.asyncAssertSuccess(v1 -> {
+			service.fetchPage("Hub", context.asyncAssertSuccess(hub -> {
+				int id = hub.getInteger("id");
+				service.savePageSection(id, 1, "# One\nnothing\n", context.asyncAssertSuccess(s1 -> {
+					service.fetchBacklinks("B", context.asyncAssertSuccess(toB -> {
+						context.assertEquals(new JsonArray().add("Hub"), toB);
+
+						service.savePageSection(id, 2, "# Two\n[D](/wiki/D)\n", context.asyncAssertSuccess(s2 -> {
+							service.fetchBacklinks("B", context.asyncAssertSuccess(none -> {
+								context.assertTrue(none.isEmpty());
+								service.fetchBacklinks("D", context.asyncAssertSuccess(toD -> {
+									context.assertEquals(new JsonArray().add("Hub"), toD);
+									service.fetchBacklinks("C", context.asyncAssertSuccess(toC -> {
+										context.assertTrue(toC.isEmpty());
+										async.complete();
+									}));
+								}));
+							}));
+						}));
+					}));
+				}));
+			}));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void expired_calls_are_dropped(TestContext context) {
+		Async async = context.async();
+
+		DeliveryOptions expired = new DeliveryOptions()
+				.addHeader(WikiDataBaseVerticle.DEADLINE_HEADER, String.valueOf(System.currentTimeMillis() - 1));
+		WikiDatabaseService.createProxy(vertx, WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE, expired)
+				.fetchPage("Test", context.asyncAssertFailure(err -> {
+					context.assertEquals(ErrorCodes.DEADLINE_EXCEEDED.ordinal(), ((ReplyException) err).failureCode());
+
+					service.fetchStatistics(context.asyncAssertSuccess(stats -> {
+						context.assertEquals(1L, stats.getJsonObject("deadlines").getLong("expiredBeforeDispatch"));
+						async.complete();
+					}));
+				}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void changes_since_a_sequence(TestContext context) {
+		Async async = context.async();
+
+		service.fetchChanges("0", 100, context.asyncAssertSuccess(initial -> {
+			String start = initial.getString("sequence");
+			service.createPage("A", "a", context.asyncAssertSuccess(v1 -> service.createPage("B", "b", context.asyncAssertSuccess(v2 -> {
+
+				service.fetchChanges(start, 100, context.asyncAssertSuccess(created -> {
+					context.assertFalse(created.getBoolean("reset"));
+					context.assertFalse(created.getBoolean("more"));
+					JsonObject pages = byName(created);
+					context.assertEquals(2, pages.size());
+					context.assertEquals("b", pages.getJsonObject("B").getString("markdown"));
+					String afterCreation = created.getString("sequence");
+
+					service.savePage(pages.getJsonObject("A").getInteger("id"), "a2", context.asyncAssertSuccess(v3 ->
+							service.deletePage(pages.getJsonObject("B").getInteger("id"), context.asyncAssertSuccess(v4 -> {
+
+								service.fetchChanges(afterCreation, 100, context.asyncAssertSuccess(changed -> {
+									JsonObject changes = byName(changed);
+									context.assertEquals(2, changes.size());
+									context.assertEquals("a2", changes.getJsonObject("A").getString("markdown"));
+									context.assertTrue(changes.getJsonObject("B").getBoolean("deleted"));
+									context.assertFalse(changes.getJsonObject("B").containsKey("markdown"));
+
+									service.fetchChanges(changed.getString("sequence"), 100, context.asyncAssertSuccess(none -> {
+										context.assertTrue(none.getJsonArray("pages").isEmpty());
+
+										service.fetchChanges("999999", 100, context.asyncAssertSuccess(unknown -> {
+											context.assertTrue(unknown.getBoolean("reset"));
+											context.assertEquals("a2", byName(unknown).getJsonObject("A").getString("markdown"));
+											async.complete();
+										}));
+									}));
+								}));
+							}))));
+				}));
+			}))));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	@Test
+	public void expired_deletions_reset_clients(TestContext context) {
+		Async async = context.async();
+
+		JsonObject conf = new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:compaction;shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_QUEUE, "wikidb.compaction")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_CHANGES_COMPACTION_INTERVAL, 100)
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_CHANGES_TOMBSTONE_TTL, 0);
+		vertx.deployVerticle(new WikiDataBaseVerticle(), new DeploymentOptions().setConfig(conf), context.asyncAssertSuccess(id -> {
+			WikiDatabaseService compacted = WikiDatabaseService.createProxy(vertx, "wikidb.compaction");
+			compacted.createPage("A", "a", context.asyncAssertSuccess(v1 -> compacted.createPage("B", "b", context.asyncAssertSuccess(v2 -> {
+				compacted.fetchChanges("0", 100, context.asyncAssertSuccess(created -> {
+					compacted.deletePage(byName(created).getJsonObject("A").getInteger("id"), context.asyncAssertSuccess(v3 -> {
+
+						vertx.setTimer(500, timer -> compacted.fetchChanges(created.getString("sequence"), 100, context.asyncAssertSuccess(changes -> {
+							context.assertTrue(changes.getBoolean("reset"));
+							JsonObject pages = byName(changes);
+							context.assertEquals(1, pages.size());
+							context.assertTrue(pages.containsKey("B"));
+
+							compacted.fetchStatistics(context.asyncAssertSuccess(stats -> {
+								context.assertTrue(stats.getJsonObject("changes").getLong("compacted") > 0);
+								async.complete();
+							}));
+						})));
+					}));
+				}));
+			}))));
+		}));
+
+		async.awaitSuccess(5000);
+	}
+
+	protected static JsonObject byName(JsonObject changes) {
+		JsonObject pages = new JsonObject();
+		changes.getJsonArray("pages").forEach(page -> pages.put(((JsonObject) page).getString("name"), page));
+		return pages;
+	}
+}
@@ -3,6 +3,9 @@ package io.vertx.starter.http;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -19,6 +22,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
 /**
  * Created by trunglnm on 8/31/17.
  */
@@ -27,10 +40,15 @@ public class ApiTest {
 
 	private Vertx vertx;
 	private WebClient webClient;
+	private File topPages;
+	private File uploads;
 
 	@Before
-	public void prepare(TestContext context) {
+	public void prepare(TestContext context) throws IOException {
 		vertx = Vertx.vertx();
+		topPages = File.createTempFile("top-pages", ".json");
+		topPages.delete();
+		uploads = Files.createTempDirectory("uploads").toFile();
 
 		JsonObject dbConf = new JsonObject()
 				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:mem:testdb;shutdown=true")
@@ -39,7 +57,12 @@ public class ApiTest {
 		vertx.deployVerticle(new WikiDataBaseVerticle(),
 				new DeploymentOptions().setConfig(dbConf), context.asyncAssertSuccess());
 
-		vertx.deployVerticle(new HttpServerVerticle(), context.asyncAssertSuccess());
+		JsonObject httpConf = new JsonObject()
+				.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, topPages.getAbsolutePath())
+				.put(HttpServerVerticle.CONFIG_UPLOAD_DIRECTORY, uploads.getAbsolutePath())
+				.put(HttpServerVerticle.CONFIG_UPLOAD_LIMIT, 4L * 1024 * 1024);
+		vertx.deployVerticle(new HttpServerVerticle(), new DeploymentOptions().setConfig(httpConf),
+				context.asyncAssertSuccess());
 
 		webClient = WebClient.create(vertx, new WebClientOptions()
 				.setDefaultHost("localhost")
@@ -50,6 +73,14 @@ public class ApiTest {
 	@After
 	public void finish(TestContext context) {
 		vertx.close(context.asyncAssertSuccess());
+		topPages.delete();
+		File[] left = uploads.listFiles();
+		if (left != null) {
+			for (File file : left) {
+				file.delete();
+			}
+		}
+		uploads.delete();
 	}
 
 
@@ -128,4 +159,413 @@ public class ApiTest {
 			async.complete();
 		}, Future.failedFuture("Oh?"));
 	}
+
+	@Test
+	public void import_ndjson(TestContext context) {
+		Async async = context.async();
+
+		HttpClientRequest request = vertx.createHttpClient().post(8080, "localhost", "/api/import", response -> {
+			context.assertEquals(200, response.statusCode());
+			response.bodyHandler(body -> {
+				context.assertEquals(3L, body.toJsonObject().getJsonObject("import").getLong("imported"));
+
+				webClient.get("/api/pages").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(pages -> {
+					context.assertEquals(3, pages.body().getJsonArray("pages").size());
+
+					webClient.post("/api/import").as(BodyCodec.jsonObject())
+							.sendBuffer(Buffer.buffer("{\"name\": \"D\", \"markdown\": \"d\"}\nnot json\n"),
+									context.asyncAssertSuccess(bad -> {
+										context.assertEquals(400, bad.statusCode());
+										context.assertTrue(bad.body().getString("error").startsWith("Line 2"));
+										context.assertEquals(0L, bad.body().getJsonObject("import").getLong("imported"));
+										async.complete();
+									}));
+				}));
+			});
+		});
+		request.setChunked(true);
+		request.write("{\"name\": \"A\", \"markdown\": \"a\"}\n{\"name\": \"B\", ");
+		request.write("\"markdown\": \"b\"}\n\n");
+		request.end("{\"name\": \"C\", \"markdown\": \"c\"}");
+	}
+
+	@Test
+	public void large_pages_are_streamed(TestContext context) {
+		Async async = context.async();
+		StringBuilder markdown = new StringBuilder();
+		while (markdown.length() < 3 * 1024 * 1024) {
+			markdown.append("Lorem ipsum dolor sit amet, \u00e9 \u00e0 \u00fc.\n");
+		}
+
+		webClient.post("/api/pages").as(BodyCodec.jsonObject())
+				.sendJsonObject(new JsonObject().put("name", "Large").put("markdown", "small"), context.asyncAssertSuccess(created -> {
+					webClient.put("/api/pages/0").as(BodyCodec.string())
+							.sendJsonObject(new JsonObject().put("markdown", markdown.toString()), context.asyncAssertSuccess(tooLarge -> {
+								context.assertEquals(413, tooLarge.statusCode());
+
+								webClient.put("/api/pages/0/markdown").as(BodyCodec.jsonObject())
+										.sendBuffer(Buffer.buffer(markdown.toString()), context.asyncAssertSuccess(saved -> {
+											context.assertEquals(200, saved.statusCode());
+
+											webClient.get("/api/pages/0").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(page -> {
+												context.assertEquals(markdown.toString(), page.body().getJsonObject("page").getString("markdown"));
+												async.complete();
+											}));
+										}));
+							}));
+				}));
+	}
+
+	@Test
+	public void uploads_over_the_limit_are_discarded(TestContext context) {
+		Async async = context.async();
+		Buffer chunk = Buffer.buffer(new byte[64 * 1024]);
+
+		webClient.post("/api/pages").sendJsonObject(new JsonObject().put("name", "Upload").put("markdown", "x"),
+				context.asyncAssertSuccess(created -> {
+					HttpClientRequest request = vertx.createHttpClient().put(8080, "localhost", "/api/pages/0/markdown", response -> {
+						context.assertEquals(413, response.statusCode());
+						awaitNoUploads(context, 50, async::complete);
+					});
+					request.exceptionHandler(e -> {
+						// the server closes the connection once it has answered
+					});
+					request.setChunked(true);
+					for (int i = 0; i < 80; i++) {
+						request.write(chunk);
+					}
+					request.end();
+				}));
+	}
+
+	@Test
+	public void uploads_with_a_malformed_length_are_refused(TestContext context) {
+		Async async = context.async();
+
+		// Netty leaves the Content-Length of a chunked request to the application
+		String request = "PUT /api/pages/0/markdown HTTP/1.1\r\nHost: localhost\r\nContent-Length: 12abc\r\n"
+				+ "Transfer-Encoding: chunked\r\n\r\n0\r\n\r\n";
+		vertx.createNetClient().connect(8080, "localhost", context.asyncAssertSuccess(socket -> {
+			Buffer response = Buffer.buffer();
+			socket.handler(data -> {
+				response.appendBuffer(data);
+				String text = response.toString(StandardCharsets.UTF_8);
+				if (text.contains("\r\n\r\n")) {
+					context.assertTrue(text.startsWith("HTTP/1.1 400"), text);
+					socket.close();
+					awaitNoUploads(context, 50, async::complete);
+				}
+			});
+			socket.write(request);
+		}));
+	}
+
+	private void awaitNoUploads(TestContext context, int attempts, Runnable done) {
+		String[] left = uploads.list();
+		if (left != null && left.length == 0) {
+			done.run();
+		} else if (attempts == 0) {
+			context.fail("Upload files left behind: " + Arrays.toString(left));
+		} else {
+			vertx.setTimer(100, id -> awaitNoUploads(context, attempts - 1, done));
+		}
+	}
+
+	@Test
+	public void sections_of_a_streamed_page(TestContext context) {
+		Async async = context.async();
+
+		webClient.post("/api/pages").as(BodyCodec.jsonObject())
+				.sendJsonObject(new JsonObject().put("name", "Sections").put("markdown", "x"), context.asyncAssertSuccess(created -> {
+					webClient.put("/api/pages/0/markdown").as(BodyCodec.jsonObject())
+							.sendBuffer(Buffer.buffer("intro\n# One\n1\n# Two\n2\n"), context.asyncAssertSuccess(saved -> {
+								webClient.get("/api/pages/0/sections").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(sections -> {
+									context.assertEquals(3, sections.body().getJsonArray("sections").size());
+
+									webClient.put("/api/pages/0/sections/2").as(BodyCodec.jsonObject())
+											.sendJsonObject(new JsonObject().put("markdown", "# Deux\n2"), context.asyncAssertSuccess(replaced -> {
+												context.assertEquals(200, replaced.statusCode());
+
+												webClient.get("/api/pages/0/sections/2").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(section -> {
+													JsonObject body = section.body().getJsonObject("section");
+													context.assertEquals("Deux", body.getString("heading"));
+													context.assertEquals("# Deux\n2", body.getString("markdown"));
+													context.assertTrue(body.getString("html").contains("<h1>Deux</h1>"));
+
+													webClient.get("/api/pages/0/sections/3").send(context.asyncAssertSuccess(missing -> {
+														context.assertEquals(404, missing.statusCode());
+														async.complete();
+													}));
+												}));
+											}));
+								}));
+							}));
+				}));
+	}
+
+	@Test
+	public void pages_changed_since_a_sequence(TestContext context) {
+		Async async = context.async();
+
+		webClient.get("/api/pages?since=0").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(initial -> {
+			String since = initial.body().getString("sequence");
+			webClient.post("/api/pages").as(BodyCodec.jsonObject())
+					.sendJsonObject(new JsonObject().put("name", "Delta").put("markdown", "d"), context.asyncAssertSuccess(created -> {
+						webClient.get("/api/pages?since=" + since + "&limit=10").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(changes -> {
+							context.assertTrue(changes.body().getBoolean("success"));
+							JsonArray pages = changes.body().getJsonArray("pages");
+							context.assertEquals(1, pages.size());
+							context.assertEquals("Delta", pages.getJsonObject(0).getString("name"));
+
+							webClient.get("/api/pages?since=x").send(context.asyncAssertSuccess(bad -> {
+								context.assertEquals(400, bad.statusCode());
+								async.complete();
+							}));
+						}));
+					}));
+		}));
+	}
+
+	@Test
+	public void page_names_are_completed(TestContext context) {
+		Async async = context.async();
+
+		Future<Void> created = Future.succeededFuture();
+		for (String name : new String[]{"Alpha", "alpine", "Beta"}) {
+			created = created.compose(v -> {
+				Future<Void> next = Future.future();
+				webClient.post("/api/pages").sendJsonObject(new JsonObject().put("name", name).put("markdown", "x"),
+						context.asyncAssertSuccess(response -> next.complete()));
+				return next;
+			});
+		}
+		created.setHandler(context.asyncAssertSuccess(v ->
+				webClient.get("/api/pages/complete?prefix=AL").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(completed -> {
+					context.assertEquals(new JsonArray().add("Alpha").add("alpine"), completed.body().getJsonArray("pages"));
+
+					webClient.get("/api/pages").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(pages -> {
+						int alpha = pages.body().getJsonArray("pages").stream()
+								.map(JsonObject.class::cast)
+								.filter(page -> "Alpha".equals(page.getString("name")))
+								.findFirst().get().getInteger("id");
+						webClient.delete("/api/pages/" + alpha).send(context.asyncAssertSuccess(deleted ->
+								webClient.get("/api/pages/complete?prefix=a&limit=5").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(after -> {
+									context.assertEquals(new JsonArray().add("alpine"), after.body().getJsonArray("pages"));
+
+									webClient.get("/api/pages/complete").send(context.asyncAssertSuccess(bad -> {
+										context.assertEquals(400, bad.statusCode());
+										async.complete();
+									}));
+								}))));
+					}));
+				}))));
+	}
+
+	@Test
+	public void backlinks_and_missing_links(TestContext context) {
+		Async async = context.async();
+
+		JsonObject target = new JsonObject().put("name", "Target").put("markdown", "# Target");
+		JsonObject linker = new JsonObject().put("name", "Linker").put("markdown", "[Here](/wiki/Target) and [Gone](/wiki/Nowhere)");
+		webClient.post("/api/pages").sendJsonObject(target, context.asyncAssertSuccess(created1 ->
+				webClient.post("/api/pages").sendJsonObject(linker, context.asyncAssertSuccess(created2 ->
+						webClient.get("/api/pages").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(pages -> {
+							int id = pages.body().getJsonArray("pages").stream()
+									.map(JsonObject.class::cast)
+									.filter(page -> "Target".equals(page.getString("name")))
+									.findFirst().get().getInteger("id");
+							webClient.get("/api/pages/" + id + "/backlinks").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(backlinks -> {
+								context.assertEquals(new JsonArray().add("Linker"), backlinks.body().getJsonArray("backlinks"));
+
+								webClient.get("/wiki/Linker").send(context.asyncAssertSuccess(page -> {
+									String html = page.bodyAsString();
+									context.assertTrue(html.contains("<a href=\"/wiki/Target\">"));
+									context.assertTrue(html.contains("<a class=\"text-danger\" href=\"/wiki/Nowhere\">"));
+
+									webClient.get("/api/pages/9999/backlinks").send(context.asyncAssertSuccess(missing -> {
+										context.assertEquals(404, missing.statusCode());
+										async.complete();
+									}));
+								}));
+							}));
+						}))))));
+	}
+
+	@Test
+	public void deleted_pages_leave_the_top_pages(TestContext context) {
+		Async async = context.async();
+
+		JsonObject page = new JsonObject().put("name", "Viewed").put("markdown", "# Viewed");
+		webClient.post("/api/pages").sendJsonObject(page, context.asyncAssertSuccess(created ->
+				webClient.get("/wiki/Viewed").send(context.asyncAssertSuccess(viewed ->
+						webClient.get("/api/stats/top").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(top -> {
+							context.assertEquals("Viewed", top.body().getJsonArray("pages").getJsonObject(0).getString("name"));
+
+							webClient.get("/api/pages").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(pages -> {
+								int id = pages.body().getJsonArray("pages").getJsonObject(0).getInteger("id");
+								webClient.delete("/api/pages/" + id).send(context.asyncAssertSuccess(deleted ->
+										webClient.get("/api/stats/top").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(after -> {
+											context.assertTrue(after.body().getJsonArray("pages").isEmpty());
+											async.complete();
+										}))));
+							}));
+						}))))));
+	}
+
+	@Test
+	public void updates_are_conditional_on_the_etag(TestContext context) {
+		Async async = context.async();
+
+		JsonObject page = new JsonObject().put("name", "Edited").put("markdown", "one");
+		webClient.post("/api/pages").sendJsonObject(page, context.asyncAssertSuccess(created ->
+				webClient.get("/api/pages").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(pages -> {
+					int id = pages.body().getJsonArray("pages").getJsonObject(0).getInteger("id");
+					webClient.get("/api/pages/" + id).send(context.asyncAssertSuccess(fetched -> {
+						String etag = fetched.getHeader("ETag");
+						context.assertNotNull(etag);
+
+						webClient.put("/api/pages/" + id).putHeader("If-Match", etag)
+								.sendJsonObject(new JsonObject().put("markdown", "two"), context.asyncAssertSuccess(saved -> {
+							context.assertEquals(200, saved.statusCode());
+							context.assertNotEquals(etag, saved.getHeader("ETag"));
+
+							webClient.put("/api/pages/" + id).putHeader("If-Match", etag)
+									.sendJsonObject(new JsonObject().put("markdown", "three"), context.asyncAssertSuccess(conflict -> {
+								context.assertEquals(412, conflict.statusCode());
+								context.assertEquals(saved.getHeader("ETag"), conflict.getHeader("ETag"));
+
+								webClient.put("/api/pages/" + id).putHeader("If-Match", "W/\"x\"")
+										.sendJsonObject(new JsonObject().put("markdown", "four"), context.asyncAssertSuccess(bad -> {
+									context.assertEquals(412, bad.statusCode());
+
+									webClient.get("/api/pages/" + id).as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(current -> {
+										context.assertEquals("two", current.body().getJsonObject("page").getString("markdown"));
+										async.complete();
+									}));
+								}));
+							}));
+						}));
+					}));
+				}))));
+	}
+
+	@Test
+	public void section_updates_are_conditional_on_the_etag(TestContext context) {
+		Async async = context.async();
+
+		JsonObject page = new JsonObject().put("name", "Split").put("markdown", "# One\n1\n# Two\n2\n");
+		webClient.post("/api/pages").sendJsonObject(page, context.asyncAssertSuccess(created ->
+				webClient.get("/api/pages/0").send(context.asyncAssertSuccess(fetched -> {
+					String etag = fetched.getHeader("ETag");
+
+					webClient.put("/api/pages/0/sections/1").putHeader("If-Match", etag)
+							.sendJsonObject(new JsonObject().put("markdown", "# Uno\n1\n"), context.asyncAssertSuccess(saved -> {
+						context.assertEquals(200, saved.statusCode());
+						context.assertNotEquals(etag, saved.getHeader("ETag"));
+
+						webClient.put("/api/pages/0/sections/2").putHeader("If-Match", etag)
+								.sendJsonObject(new JsonObject().put("markdown", "# Dos\n2\n"), context.asyncAssertSuccess(conflict -> {
+							context.assertEquals(412, conflict.statusCode());
+							context.assertEquals(saved.getHeader("ETag"), conflict.getHeader("ETag"));
+
+							webClient.put("/api/pages/0/sections/2").putHeader("If-Match", "W/\"x\"")
+									.sendJsonObject(new JsonObject().put("markdown", "# Dos\n2\n"), context.asyncAssertSuccess(bad -> {
+								context.assertEquals(412, bad.statusCode());
+
+								webClient.get("/api/pages/0").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(current -> {
+									context.assertEquals("# Uno\n1\n# Two\n2\n", current.body().getJsonObject("page").getString("markdown"));
+									async.complete();
+								}));
+							}));
+						}));
+					}));
+				}))));
+	}
+
+	@Test
+	public void responses_are_logged(TestContext context) {
+		Async async = context.async();
+
+		webClient.post("/api/pages").sendJsonObject(new JsonObject().put("unexpected", true), context.asyncAssertSuccess(bad -> {
+			context.assertEquals(400, bad.statusCode());
+
+			webClient.get("/api/pages").send(context.asyncAssertSuccess(pages -> {
+				webClient.get("/api/stats").as(BodyCodec.jsonObject()).send(context.asyncAssertSuccess(stats -> {
+					JsonObject accessLog = stats.body().getJsonObject("accessLog");
+					context.assertEquals(2L, accessLog.getLong("logged"));
+					context.assertEquals(0L, accessLog.getLong("dumpsSuppressed"));
+					async.complete();
+				}));
+			}));
+		}));
+	}
+
+	@Test
+	public void assets_are_served_under_hashed_names(TestContext context) {
+		Async async = context.async();
+		String expected = "/* Stands in for jQuery in the tests */\n";
+
+		webClient.get("/").send(context.asyncAssertSuccess(index -> {
+			Matcher matcher = Pattern.compile("src=\"(/assets/jquery\\.min\\.[0-9a-f]{16}\\.js)\"").matcher(index.bodyAsString());
+			context.assertTrue(matcher.find());
+			context.assertTrue(index.bodyAsString().contains("https://maxcdn.bootstrapcdn.com/bootstrap/4.0.0-alpha.5/js/bootstrap.min.js"));
+			context.assertTrue(index.bodyAsString().contains(StaticAssets.integrity(expected.getBytes(StandardCharsets.UTF_8))));
+			context.assertTrue(index.bodyAsString().contains(StaticAssets.PUBLISHED_INTEGRITY.get("bootstrap.min.js")));
+			String asset = matcher.group(1);
+
+			webClient.get(asset).send(context.asyncAssertSuccess(plain -> {
+				context.assertEquals(200, plain.statusCode());
+				context.assertEquals("public, max-age=31536000, immutable", plain.getHeader("Cache-Control"));
+				context.assertEquals(expected, plain.bodyAsString());
+
+				webClient.get(asset).putHeader("Accept-Encoding", "gzip").send(context.asyncAssertSuccess(gzipped -> {
+					context.assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+					context.assertEquals("public, max-age=31536000, immutable", gzipped.getHeader("Cache-Control"));
+					try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body().getBytes()))) {
+						byte[] content = new byte[1024];
+						int length = 0;
+						for (int read; (read = in.read(content, length, content.length - length)) > 0; ) {
+							length += read;
+						}
+						context.assertEquals(expected, new String(content, 0, length, StandardCharsets.UTF_8));
+					} catch (IOException e) {
+						context.fail(e);
+					}
+
+					webClient.get("/assets/jquery.min.js").send(context.asyncAssertSuccess(unhashed -> {
+						context.assertEquals(404, unhashed.statusCode());
+						async.complete();
+					}));
+				}));
+			}));
+		}));
+	}
+
+	@Test
+	public void changes_are_pushed(TestContext context) {
+		Async async = context.async(2);
+		HttpClient client = vertx.createHttpClient();
+
+		client.websocket(8080, "localhost", "/api/changes", socket -> socket.textMessageHandler(message -> {
+			context.assertEquals("create", new JsonObject(message).getString("action"));
+			socket.close();
+			async.countDown();
+		}));
+
+		client.getNow(8080, "localhost", "/api/changes", response -> {
+			context.assertEquals("text/event-stream", response.getHeader("Content-Type"));
+			StringBuilder events = new StringBuilder();
+			response.handler(chunk -> {
+				events.append(chunk.toString());
+				int event = events.indexOf("event: create");
+				if (event > 0 && events.indexOf("\n\n", event) > 0) {
+					context.assertTrue(events.indexOf("data: {\"action\":\"create\",\"name\":\"Pushed\"}") > 0);
+					async.countDown();
+				}
+			});
+			// Both clients are connected once the event stream has started
+			vertx.setTimer(200, id -> webClient.post("/api/pages")
+					.sendJsonObject(new JsonObject().put("name", "Pushed").put("markdown", "x"), context.asyncAssertSuccess()));
+		});
+	}
 }
@@ -0,0 +1,87 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DbRequestLimiterTest {
+
+	@Test
+	public void queues_then_sheds_over_the_limit() {
+		DbRequestLimiter limiter = new DbRequestLimiter(new JsonObject()
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_LIMIT, 2)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_QUEUE_SIZE, 1)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_QUEUE_TIMEOUT, 60_000L));
+
+		List<Handler<AsyncResult<String>>> calls = new ArrayList<>();
+		List<AsyncResult<String>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			limiter.<String>execute(results::add, calls::add);
+		}
+
+		assertEquals(2, calls.size());
+		assertEquals(1, results.size());
+		assertTrue(DbRequestLimiter.isOverload(results.get(0).cause()));
+
+		JsonObject stats = limiter.statistics();
+		assertEquals(2, (int) stats.getInteger("inFlight"));
+		assertEquals(1, (int) stats.getInteger("queued"));
+		assertEquals(1L, (long) stats.getLong("shed"));
+
+		calls.get(0).handle(Future.succeededFuture("done"));
+		assertEquals(3, calls.size());
+		assertEquals("done", results.get(1).result());
+		assertEquals(0, (int) limiter.statistics().getInteger("queued"));
+	}
+
+	@Test
+	public void queued_requests_time_out_without_replies() throws InterruptedException {
+		DbRequestLimiter limiter = new DbRequestLimiter(new JsonObject()
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_LIMIT, 1)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_QUEUE_TIMEOUT, 5L));
+
+		List<Handler<AsyncResult<String>>> calls = new ArrayList<>();
+		List<AsyncResult<String>> results = new ArrayList<>();
+		limiter.<String>execute(results::add, calls::add);
+		limiter.<String>execute(results::add, calls::add);
+
+		limiter.expire();
+		assertTrue(results.isEmpty());
+		Thread.sleep(10);
+		limiter.expire();
+		assertEquals(1, results.size());
+		assertTrue(DbRequestLimiter.isOverload(results.get(0).cause()));
+		assertEquals(1, calls.size());
+		assertEquals(0, (int) limiter.statistics().getInteger("queued"));
+	}
+
+	@Test
+	public void adaptive_limit_backs_off_on_slow_replies() throws InterruptedException {
+		DbRequestLimiter limiter = new DbRequestLimiter(new JsonObject()
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_LIMIT, 10)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_ADAPTIVE, true)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_MIN_LIMIT, 8)
+				.put(HttpServerVerticle.CONFIG_DBLIMITER_LATENCY_TARGET, 5L));
+
+		for (int i = 0; i < 5; i++) {
+			List<Handler<AsyncResult<Void>>> calls = new ArrayList<>();
+			limiter.<Void>execute(ar -> {}, calls::add);
+			Thread.sleep(10);
+			calls.get(0).handle(Future.succeededFuture());
+		}
+		assertEquals(8, (int) limiter.statistics().getInteger("limit"));
+
+		for (int i = 0; i < 100; i++) {
+			limiter.<Void>execute(ar -> {}, handler -> handler.handle(Future.succeededFuture()));
+		}
+		assertTrue(limiter.statistics().getInteger("limit") > 8);
+	}
+}
@@ -0,0 +1,52 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static io.vertx.starter.http.JsonResponsesTest.HTML;
+import static io.vertx.starter.http.JsonResponsesTest.PAGE;
+import static io.vertx.starter.http.JsonResponsesTest.ROWS;
+import static io.vertx.starter.http.JsonResponsesTest.pageTree;
+import static io.vertx.starter.http.JsonResponsesTest.pagesTree;
+
+/**
+ * Bytes allocated per response for the {@code /api/pages} and {@code /api/pages/:id} shapes, encoded from
+ * {@link io.vertx.core.json.JsonObject} trees and streamed by {@link JsonResponses}. Run with {@code mvn -Pbench test}.
+ */
+public class JsonResponsesBenchmark {
+
+	private static final int WARMUP = 500;
+	private static final int ITERATIONS = 500;
+
+	@Test
+	public void allocation_per_response() {
+		long tree = allocatedPerCall(() -> Buffer.buffer(pagesTree().encode()));
+		long streamed = allocatedPerCall(() -> JsonResponses.pages(ROWS));
+		System.out.println("/api/pages (1000 pages): tree " + tree + " B, streamed " + streamed + " B");
+
+		tree = allocatedPerCall(() -> Buffer.buffer(pageTree().encode()));
+		streamed = allocatedPerCall(() -> JsonResponses.page(PAGE, HTML));
+		System.out.println("/api/pages/:id (64 KB page): tree " + tree + " B, streamed " + streamed + " B");
+	}
+
+	private static long allocatedPerCall(Supplier<Buffer> response) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long length = 0;
+		for (int i = 0; i < WARMUP; i++) {
+			length += response.get().length();
+		}
+		long start = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < ITERATIONS; i++) {
+			length += response.get().length();
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - start;
+		if (length == 0) {
+			throw new AssertionError("Empty responses");
+		}
+		return allocated / ITERATIONS;
+	}
+}
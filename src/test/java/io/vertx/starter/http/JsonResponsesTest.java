@@ -0,0 +1,71 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the streamed bodies against the {@link JsonObject} trees they replace, see {@link JsonResponsesBenchmark}
+ * for what they save.
+ */
+public class JsonResponsesTest {
+
+	static final List<JsonObject> ROWS = new ArrayList<>();
+	static final JsonObject PAGE;
+	static final String HTML;
+
+	static {
+		for (int i = 0; i < 1_000; i++) {
+			ROWS.add(new JsonObject().put("ID", i).put("NAME", "Page \"" + i + "\"").put("CONTENT", "# Page " + i));
+		}
+		StringBuilder markdown = new StringBuilder();
+		while (markdown.length() < 64 * 1024) {
+			markdown.append("Lorem ipsum dolor sit amet, \u00e9 \u00e0 \u00fc.\n");
+		}
+		PAGE = new JsonObject().put("found", true).put("id", 42).put("name", "Large").put("content", markdown.toString());
+		HTML = "<p>" + markdown + "</p>";
+	}
+
+	@Test
+	public void same_json_as_the_trees() {
+		assertEquals(pagesTree(), new JsonObject(JsonResponses.pages(ROWS)));
+		assertEquals(pageTree(), new JsonObject(JsonResponses.page(PAGE, HTML)));
+	}
+
+	@Test
+	public void strings_are_escaped_and_sized_as_encoded() {
+		String value = "quote \" backslash \\ tab \t bell \u0007 \u00e9 \u20ac \ud83d\ude00 end";
+		assertEquals(Json.encode(value).getBytes(StandardCharsets.UTF_8).length, JsonResponses.encodedLength(value));
+		Buffer written = JsonResponses.write(0, generator -> generator.writeString(value));
+		assertEquals(value, Json.decodeValue(written.toString("UTF-8"), String.class));
+	}
+
+	static JsonObject pagesTree() {
+		List<JsonObject> pages = ROWS.stream()
+				.map(obj -> new JsonObject()
+						.put("id", obj.getInteger("ID"))
+						.put("name", obj.getString("NAME")))
+				.collect(Collectors.toList());
+		return new JsonObject()
+				.put("success", true)
+				.put("pages", pages);
+	}
+
+	static JsonObject pageTree() {
+		return new JsonObject()
+				.put("success", true)
+				.put("page", new JsonObject()
+						.put("name", PAGE.getString("name"))
+						.put("id", PAGE.getInteger("id"))
+						.put("markdown", PAGE.getString("content"))
+						.put("html", HTML));
+	}
+}
@@ -0,0 +1,44 @@
+package io.vertx.starter.http;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageNameFilterTest {
+
+	@Test
+	public void no_false_negatives_and_bounded_false_positives() {
+		PageNameFilter filter = new PageNameFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.add("Page " + i);
+		}
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(filter.mightContain("Page " + i));
+		}
+
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain("Missing " + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue("false positive rate " + falsePositives / 100_000.0, falsePositives < 2_000);
+		assertEquals(100_000L - falsePositives, (long) filter.statistics().getLong("shortCircuits"));
+	}
+
+	@Test
+	public void rebuild_after_many_deletions() {
+		PageNameFilter filter = new PageNameFilter(1_000, 0.01);
+		for (int i = 0; i < 100; i++) {
+			filter.add("Page " + i);
+		}
+		for (int i = 0; i < 64; i++) {
+			filter.removed();
+		}
+		assertFalse(filter.needsRebuild());
+		filter.removed();
+		assertTrue(filter.needsRebuild());
+	}
+}
@@ -0,0 +1,57 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.json.JsonArray;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageNameIndexTest {
+
+	@Test
+	public void completes_prefixes_ignoring_case() {
+		PageNameIndex index = new PageNameIndex(Arrays.asList("beta", "Alpha", "alpine", "Alps", "Gamma"));
+		assertEquals(new JsonArray().add("Alpha").add("alpine"), index.complete("ALP", 2));
+		assertEquals(new JsonArray().add("Alpha").add("alpine").add("Alps"), index.complete("al", 10));
+		assertEquals(new JsonArray().add("Gamma"), index.complete("g", 10));
+		assertEquals(new JsonArray(), index.complete("delta", 10));
+		assertEquals(new JsonArray().add("Alpha").add("alpine").add("Alps").add("beta").add("Gamma"), index.complete("", 10));
+	}
+
+	@Test
+	public void follows_additions_and_removals() {
+		PageNameIndex index = new PageNameIndex(new ArrayList<>());
+		for (int i = 99; i >= 0; i--) {
+			index.add("Page " + i);
+		}
+		index.add("Page 7");
+		index.add("page 7");
+		assertEquals(101, index.size());
+		assertEquals(new JsonArray().add("Page 7").add("page 7").add("Page 70"), index.complete("page 7", 3));
+
+		index.remove("Page 7");
+		index.remove("Missing");
+		assertEquals(new JsonArray().add("page 7").add("Page 70"), index.complete("page 7", 2));
+		assertEquals(100, index.size());
+	}
+
+	@Test
+	public void completes_among_many_pages() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			names.add("Page " + i);
+		}
+		PageNameIndex index = new PageNameIndex(names);
+		assertEquals(new JsonArray().add("Page 1234").add("Page 12340").add("Page 12341"), index.complete("page 1234", 3));
+		assertEquals(new JsonArray().add("Page 99999"), index.complete("PAGE 99999", 10));
+		assertEquals(11, index.complete("page 9999", 20).size());
+		assertEquals(new JsonArray(), index.complete("page 100000", 10));
+		assertTrue(index.contains("Page 0"));
+		assertFalse(index.contains("page 0"));
+	}
+}
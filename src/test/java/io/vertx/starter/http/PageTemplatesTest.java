@@ -0,0 +1,90 @@
+package io.vertx.starter.http;
+
+import freemarker.template.Template;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the pages assembled from fragments against the full templates, byte for byte.
+ */
+public class PageTemplatesTest {
+
+	private static final Map<String, Object> INDEX = new HashMap<>();
+	private static final Map<String, Object> PAGE = new HashMap<>();
+
+	static {
+		List<String> pages = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			pages.add("Page " + i);
+		}
+		INDEX.put("title", "Wiki home");
+		INDEX.put("pages", pages);
+		INDEX.put("assets", StaticAssets.FALLBACKS);
+		INDEX.put("integrity", StaticAssets.PUBLISHED_INTEGRITY);
+
+		PAGE.put("title", "Caf\u00e9");
+		PAGE.put("id", 42);
+		PAGE.put("newPage", "no");
+		PAGE.put("version", 3);
+		PAGE.put("rawContent", "# Caf\u00e9\n\nSome *text*.");
+		PAGE.put("content", "<h1>Caf\u00e9</h1>\n<p>Some <em>text</em>.</p>");
+		PAGE.put("timestamp", "Sun Oct 18 12:00:00 UTC 2026");
+		PAGE.put("assets", StaticAssets.FALLBACKS);
+		PAGE.put("integrity", StaticAssets.PUBLISHED_INTEGRITY);
+	}
+
+	@Test
+	public void same_pages_as_the_full_templates() throws Exception {
+		PageTemplates templates = PageTemplates.load(StaticAssets.FALLBACKS, StaticAssets.PUBLISHED_INTEGRITY);
+		assertEquals(full("index.ftl", INDEX), templates.render(PageTemplates.INDEX, "Wiki home", INDEX));
+		assertEquals(full("page.ftl", PAGE), templates.render(PageTemplates.PAGE, "Caf\u00e9", PAGE));
+	}
+
+	@Test
+	public void same_html_for_every_page_in_any_order() throws Exception {
+		PageTemplates templates = PageTemplates.load(StaticAssets.FALLBACKS, StaticAssets.PUBLISHED_INTEGRITY);
+		List<Map<String, Object>> pages = new ArrayList<>();
+		for (String title : new String[]{"Caf\u00e9", "<b>Tags</b> & \"quotes\"", "\u65e5\u672c\u8a9e \ud83d\ude00", ""}) {
+			Map<String, Object> page = new HashMap<>(PAGE);
+			page.put("title", title);
+			page.put("newPage", title.isEmpty() ? "yes" : "no");
+			pages.add(page);
+		}
+		Map<String, Object> emptyIndex = new HashMap<>(INDEX);
+		emptyIndex.put("pages", Collections.emptyList());
+
+		// Twice, so that a fragment changed by a previous render would show
+		for (int round = 0; round < 2; round++) {
+			for (Map<String, Object> page : pages) {
+				assertEquals(full("page.ftl", page), templates.render(PageTemplates.PAGE, (String) page.get("title"), page));
+			}
+			assertEquals(full("index.ftl", emptyIndex), templates.render(PageTemplates.INDEX, "Wiki home", emptyIndex));
+		}
+	}
+
+	private static Buffer full(String page, Map<String, Object> data) throws Exception {
+		return render(fullTemplate(page), data);
+	}
+
+	private static Template fullTemplate(String page) throws Exception {
+		return new Template("full-" + page,
+				"<#include \"/header.ftl\"><#include \"/" + page + "\"><#include \"/footer.ftl\">",
+				PageTemplates.configuration());
+	}
+
+	private static Buffer render(Template template, Map<String, Object> data) throws Exception {
+		StringWriter writer = new StringWriter();
+		template.process(Collections.singletonMap("context", data), writer);
+		return Buffer.buffer(writer.toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,45 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageViewCountersTest {
+
+	@Test
+	public void top_pages_most_viewed_first() {
+		PageViewCounters counters = new PageViewCounters();
+		for (int page = 0; page < 10; page++) {
+			for (int i = 0; i <= page; i++) {
+				counters.viewed("Page " + page);
+			}
+		}
+
+		JsonArray top = counters.top(3);
+		assertEquals(3, top.size());
+		assertEquals("Page 9", top.getJsonObject(0).getString("name"));
+		assertEquals(10L, (long) top.getJsonObject(0).getLong("views"));
+		assertEquals("Page 7", top.getJsonObject(2).getString("name"));
+	}
+
+	@Test
+	public void seeded_counts_are_halved() {
+		PageViewCounters counters = new PageViewCounters();
+		counters.seed(new JsonArray()
+				.add(new JsonObject().put("name", "Old").put("views", 100L))
+				.add(new JsonObject().put("name", "Older").put("views", 1L)));
+		counters.viewed("New");
+
+		JsonArray top = counters.top(10);
+		assertEquals(2, top.size());
+		assertEquals(50L, (long) top.getJsonObject(0).getLong("views"));
+		assertEquals("New", top.getJsonObject(1).getString("name"));
+
+		assertTrue(counters.claimSnapshots());
+		assertFalse(counters.claimSnapshots());
+	}
+}
@@ -0,0 +1,90 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final RateLimiter limiter = new RateLimiter(new JsonObject()
+			.put(HttpServerVerticle.CONFIG_RATE_LIMIT_RULES, new JsonObject()
+					.put("/api/", new JsonObject().put("rate", 10).put("burst", 3))
+					.put("/api/stats", new JsonObject().put("rate", 1).put("burst", 1))
+					.put("POST /api/jobs", new JsonObject().put("rate", 1).put("burst", 1).put("bucket", "jobs"))
+					.put("/jobs", new JsonObject().put("rate", 1).put("burst", 1).put("bucket", "jobs")))
+			.put(HttpServerVerticle.CONFIG_RATE_LIMIT_MAX_BUCKETS, 4));
+
+	private final long start = System.nanoTime();
+
+	@Test
+	public void buckets_allow_a_burst_then_refill() {
+		long now = start;
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.1", null, now));
+		}
+		long wait = limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.1", null, now);
+		assertEquals(SECOND / 10, wait);
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.2", null, now));
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/wiki/Home", "10.0.0.1", null, now));
+
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.1", null, now + wait));
+		assertTrue(limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.1", null, now + wait) > 0);
+
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/stats", "10.0.0.1", null, now));
+		assertTrue(limiter.acquire(HttpMethod.GET, "/api/stats", "10.0.0.1", null, now) > 0);
+		assertEquals(3L, (long) limiter.statistics().getLong("limited"));
+	}
+
+	@Test
+	public void api_keys_have_their_own_buckets() {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0." + i, "key", start));
+		}
+		assertTrue(limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.9", "key", start) > 0);
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.9", "other", start));
+	}
+
+	@Test
+	public void refused_requests_cost_no_token() {
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.1", "key", start));
+		}
+		assertTrue(limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.2", "key", start) > 0);
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.2", null, start));
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.2", null, start));
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0.2", null, start));
+	}
+
+	@Test
+	public void rules_may_be_limited_to_a_method_and_share_buckets() {
+		assertEquals(0, limiter.acquire(HttpMethod.POST, "/api/jobs", "10.0.0.1", null, start));
+		assertTrue(limiter.acquire(HttpMethod.GET, "/jobs", "10.0.0.1", null, start) > 0);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/jobs/1", "10.0.0.1", null, start));
+		}
+	}
+
+	@Test
+	public void idle_buckets_are_evicted_and_memory_is_bounded() {
+		for (int i = 0; i < 4; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.0." + i, null, start));
+		}
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.1." + i, null, start));
+		}
+		assertTrue(limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.1.3", null, start) > 0);
+		assertEquals(4, (int) limiter.statistics().getInteger("buckets"));
+		assertEquals(4L, (long) limiter.statistics().getLong("overflowed"));
+
+		limiter.evictIdle(start + SECOND);
+		assertEquals(0, (int) limiter.statistics().getInteger("buckets"));
+		assertEquals(0, limiter.acquire(HttpMethod.GET, "/api/pages", "10.0.1.3", null, start + SECOND));
+	}
+}
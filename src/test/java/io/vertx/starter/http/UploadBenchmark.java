@@ -0,0 +1,160 @@
+package io.vertx.starter.http;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Verticle;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.starter.database.WikiDataBaseVerticle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Memory cost of saving a 10 MB page with {@code PUT /api/pages/:id}, whose JSON body is buffered, and with the
+ * streamed {@code PUT /api/pages/:id/markdown}, against a file-backed database. Run with {@code mvn -Pbench test}.
+ * <p>
+ * The client runs on the test thread, whose allocations are left out: the figures are the bytes allocated by every
+ * other thread during a request, and the peak heap usage over the request. They are printed, not asserted.
+ */
+public class UploadBenchmark {
+
+	private static final int PORT = 8097;
+	private static final int PAGE_SIZE = 10 * 1024 * 1024;
+	private static final int ROUNDS = 4;
+
+	private Vertx vertx;
+	private Path directory;
+	private byte[] markdown;
+
+	@Before
+	public void prepare() throws Exception {
+		vertx = Vertx.vertx();
+		directory = Files.createTempDirectory("upload-benchmark");
+
+		JsonObject dbConf = new JsonObject()
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_URL, "jdbc:hsqldb:file:" + directory.resolve("wiki") + ";shutdown=true")
+				.put(WikiDataBaseVerticle.CONFIG_WIKIDB_JDBC_MAX_POOL_SIZE, 4);
+		deploy(new WikiDataBaseVerticle(), dbConf);
+		JsonObject httpConf = new JsonObject()
+				.put(HttpServerVerticle.CONFIG_HTTP_SERVER_PORT, PORT)
+				.put(HttpServerVerticle.CONFIG_BODY_LIMIT, 4L * PAGE_SIZE)
+				.put(HttpServerVerticle.CONFIG_RATE_LIMIT_ENABLED, false)
+				.put(HttpServerVerticle.CONFIG_UPLOAD_DIRECTORY, directory.toString())
+				.put(HttpServerVerticle.CONFIG_TOP_PAGES_FILE, directory.resolve("top-pages.json").toString());
+		deploy(new HttpServerVerticle(), httpConf);
+
+		StringBuilder text = new StringBuilder(PAGE_SIZE);
+		while (text.length() < PAGE_SIZE) {
+			text.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit.\n");
+		}
+		markdown = text.toString().getBytes(StandardCharsets.UTF_8);
+		assertEquals(201, send("POST", "/api/pages", "application/json",
+				new JsonObject().put("name", "Large").put("markdown", "small").encode().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@After
+	public void finish() throws Exception {
+		CompletableFuture<Void> closed = new CompletableFuture<>();
+		vertx.close(ar -> closed.complete(null));
+		closed.get(30, TimeUnit.SECONDS);
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	@Test
+	public void json_and_streamed_uploads() throws IOException {
+		byte[] json = new JsonObject().put("markdown", new String(markdown, StandardCharsets.UTF_8)).encode()
+				.getBytes(StandardCharsets.UTF_8);
+		measure("JSON PUT /api/pages/0", "/api/pages/0", "application/json", json);
+		measure("PUT /api/pages/0/markdown", "/api/pages/0/markdown", "text/markdown", markdown);
+	}
+
+	private void measure(String label, String uri, String contentType, byte[] body) throws IOException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for (int round = 1; round <= ROUNDS; round++) {
+			System.gc();
+			long idle = heapUsed();
+			ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+			long allocatedBefore = allocatedByOthers(threads);
+			long start = System.nanoTime();
+
+			assertEquals(200, send("PUT", uri, contentType, body));
+
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			long allocated = allocatedByOthers(threads) - allocatedBefore;
+			System.out.printf("%-28s round %d: %4d MB allocated, %4d MB peak heap (%d MB idle), %d ms%n",
+					label, round, allocated >> 20, heapPeak() >> 20, idle >> 20, elapsed);
+		}
+	}
+
+	private static long allocatedByOthers(com.sun.management.ThreadMXBean threads) {
+		long self = Thread.currentThread().getId();
+		long total = 0;
+		for (long id : threads.getAllThreadIds()) {
+			long allocated = threads.getThreadAllocatedBytes(id);
+			if (id != self && allocated > 0) {
+				total += allocated;
+			}
+		}
+		return total;
+	}
+
+	private static long heapUsed() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.mapToLong(pool -> pool.getUsage().getUsed())
+				.sum();
+	}
+
+	private static long heapPeak() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(pool -> pool.getType() == MemoryType.HEAP)
+				.mapToLong(pool -> pool.getPeakUsage().getUsed())
+				.sum();
+	}
+
+	private static int send(String method, String uri, String contentType, byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + uri).openConnection();
+		connection.setRequestMethod(method);
+		connection.setRequestProperty("Content-Type", contentType);
+		connection.setDoOutput(true);
+		connection.setFixedLengthStreamingMode(body.length);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body);
+		}
+		int status = connection.getResponseCode();
+		connection.disconnect();
+		return status;
+	}
+
+	private void deploy(Verticle verticle, JsonObject config) throws Exception {
+		CompletableFuture<String> deployed = new CompletableFuture<>();
+		vertx.deployVerticle(verticle, new DeploymentOptions().setConfig(config), ar -> {
+			if (ar.succeeded()) {
+				deployed.complete(ar.result());
+			} else {
+				deployed.completeExceptionally(ar.cause());
+			}
+		});
+		deployed.get(60, TimeUnit.SECONDS);
+	}
+}